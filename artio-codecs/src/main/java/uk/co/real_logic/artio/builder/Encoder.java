@@ -21,6 +21,7 @@ import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 public interface Encoder
 {
     int BITS_IN_INT = 32;
+    int UNKNOWN_MAX_ENCODED_LENGTH = -1;
 
     static int length(final long result)
     {
@@ -48,6 +49,19 @@ public interface Encoder
      */
     long encode(MutableAsciiBuffer buffer, int offset);
 
+    /**
+     * Gets the most bytes that {@link #encode(MutableAsciiBuffer, int)} could write from its offset, given the values
+     * that are currently set. A message can be encoded straight into a buffer of limited capacity, for example a
+     * publication claim, when this is no more than the space that it has.
+     *
+     * @return the most bytes that encoding the message could write, or {@link #UNKNOWN_MAX_ENCODED_LENGTH} if the
+     * encoder can't tell.
+     */
+    default int maxEncodedLength()
+    {
+        return UNKNOWN_MAX_ENCODED_LENGTH;
+    }
+
     /**
      * Resets the encoder. Sets all the fields back to their uninitialized state.
      */
@@ -39,6 +39,10 @@ public final class CodecUtil
     public static final int ENUM_UNKNOWN_INT = Integer.MAX_VALUE;
     public static final String ENUM_UNKNOWN_STRING = Character.toString(ENUM_UNKNOWN_CHAR);
 
+    public static final long UNPACKED_ASCII = -1L;
+    private static final int MAX_PACKED_ASCII_LENGTH = 8;
+    private static final char MAX_ASCII = 0x7F;
+
     // NB: only valid for ASCII bytes.
     @Deprecated // Will be removed in a future version
     public static byte[] toBytes(final CharSequence value, final byte[] oldBuffer)
@@ -166,6 +170,48 @@ public final class CodecUtil
         return true;
     }
 
+    public static boolean equals(final char[] value, final int offset, final String expected, final int length)
+    {
+        if (value.length < offset + length || expected.length() != length)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++)
+        {
+            if (value[i + offset] != expected.charAt(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Packs a value of up to 8 ASCII chars into a long, one byte per char, so that it can be switched on or compared
+    // rather than hashed. Returns UNPACKED_ASCII for values that are longer or that aren't ASCII.
+    public static long packAscii(final char[] value, final int offset, final int length)
+    {
+        if (length > MAX_PACKED_ASCII_LENGTH || value.length < offset + length)
+        {
+            return UNPACKED_ASCII;
+        }
+
+        long packed = 0;
+        for (int i = offset; i < offset + length; i++)
+        {
+            final char character = value[i];
+            if (character > MAX_ASCII)
+            {
+                return UNPACKED_ASCII;
+            }
+
+            packed = (packed << 8) | character;
+        }
+
+        return packed;
+    }
+
     public static int hashCode(final char[] value, final int offset, final int length)
     {
         int result = 1;
@@ -90,6 +90,22 @@ public class DecoderGenerator extends Generator
         RejectReason.TAG_APPEARS_MORE_THAN_ONCE.representation();
     public static final int TAG_SPECIFIED_OUT_OF_REQUIRED_ORDER = 14;
 
+    // HotSpot doesn't JIT compile methods whose bytecode is larger than this, see -XX:HugeMethodLimit. Generated
+    // decode methods with too many cases to fit are split, with the cases that don't fit moved into helper methods.
+    // Case sizes are estimated generously, leaving room for the validation and unknown field handling in decode.
+    // javac compiles a field case to around 40 bytes and a group case to around 130, the estimates are checked
+    // against its output by DecoderGeneratorMethodSizeTest.
+    static final int HUGE_METHOD_LIMIT = 8000;
+    static final int DECODE_CASES_BUDGET = 6000;
+    private static final int ESTIMATED_FIELD_CASE_SIZE = 48;
+    private static final int ESTIMATED_GROUP_CASE_SIZE = 160;
+    private static final String FIELD_NOT_DECODED = "FIELD_NOT_DECODED";
+
+    // Validation keeps track of the fields that an aggregate decodes in bitsets indexed by dense field ordinals,
+    // which are looked up with a switch that is split across methods in the same way as decode.
+    private static final int FIELD_ORDINALS_PER_METHOD = 500;
+    private static final String UNKNOWN_FIELD_ORDINAL = "UNKNOWN_FIELD_ORDINAL";
+
     static String decoderClassName(final Aggregate aggregate)
     {
         return decoderClassName(aggregate.name());
@@ -101,6 +117,7 @@ public class DecoderGenerator extends Generator
     }
 
     private Aggregate currentAggregate = null;
+    private List<Field> currentOrdinalFields = null;
 
     private final int initialBufferSize;
 
@@ -199,8 +216,13 @@ public class DecoderGenerator extends Generator
             interfaces.add(SessionHeaderDecoder.class.getSimpleName());
         }
 
+        final List<Field> parentOrdinalFields = currentOrdinalFields;
+        final List<Field> ordinalFields = ordinalFields(aggregate);
+        final int words = bitsetWords(ordinalFields.size());
+        currentOrdinalFields = ordinalFields;
+
         out.append(classDeclaration(className, interfaces, false));
-        generateValidation(out, aggregate, type);
+        generateValidation(out, aggregate, type, ordinalFields);
         if (isMessage)
         {
             final Message message = (Message)aggregate;
@@ -212,12 +234,20 @@ public class DecoderGenerator extends Generator
         }
         groupMethods(out, aggregate);
         headerMethods(out, aggregate, type);
+        if (flyweightsEnabled)
+        {
+            out.append(String.format(
+                "    private %1$s decodedFields%2$s;\n\n",
+                words == 1 ? "long" : "final long[]",
+                words == 1 ? "" : " = new long[" + words + "]"));
+        }
         generateGetters(out, className, aggregate.entries());
-        out.append(decodeMethod(aggregate.entries(), aggregate, type));
-        out.append(completeResetMethod(isMessage, aggregate.entries(), additionalReset(isGroup)));
+        out.append(decodeMethod(aggregate.entries(), aggregate, type, words));
+        out.append(completeResetMethod(isMessage, aggregate.entries(), additionalReset(isGroup, words)));
         out.append(toString(aggregate, isMessage));
         out.append("}\n");
         currentAggregate = parentAggregate;
+        currentOrdinalFields = parentOrdinalFields;
     }
 
     private List<Field> compileAllFieldsFor(final Message message)
@@ -330,25 +360,29 @@ public class DecoderGenerator extends Generator
             "        }\n";
     }
 
-    private String additionalReset(final boolean isGroup)
+    private String additionalReset(final boolean isGroup, final int words)
     {
         return
             "        buffer = null;\n" +
+            (flyweightsEnabled ? clearBitset("decodedFields", words, 2) : "") +
             "        if (" + CODEC_VALIDATION_ENABLED + ")\n" +
             "        {\n" +
             "            invalidTagId = Decoder.NO_ERROR;\n" +
             "            rejectReason = Decoder.NO_ERROR;\n" +
-            "            missingRequiredFields.clear();\n" +
+            clearBitset("missingRequiredFields", words, 3) +
             (isGroup ? "" :
                 "            unknownFields.clear();\n" +
-                "            alreadyVisitedFields.clear();\n") +
+                clearBitset("alreadyVisitedFields", words, 3) +
+                "            alreadyVisitedUnknownFields.clear();\n") +
             "        }\n";
     }
 
-    private void generateValidation(final Writer out, final Aggregate aggregate, final AggregateType type)
+    private void generateValidation(
+        final Writer out, final Aggregate aggregate, final AggregateType type, final List<Field> ordinalFields)
         throws IOException
     {
         final List<Field> requiredFields = requiredFields(aggregate.entries()).collect(toList());
+        final int words = bitsetWords(ordinalFields.size());
         out.append(generateFieldDictionary(requiredFields, REQUIRED_FIELDS, true));
 
         if (aggregate.containsGroup())
@@ -398,11 +432,13 @@ public class DecoderGenerator extends Generator
             "        }\n" :
             "";
 
+        out.append(fieldOrdinals(ordinalFields, requiredFields, isGroup));
         out.append(String.format(
             (isGroup ? "" :
-            "    private final IntHashSet alreadyVisitedFields = new IntHashSet(%5$d);\n\n" +
+            "    private %1$s alreadyVisitedFields%5$s;\n\n" +
+            "    private final IntHashSet alreadyVisitedUnknownFields = new IntHashSet(10);\n\n" +
             "    private final IntHashSet unknownFields = new IntHashSet(10);\n\n") +
-            "    private final IntHashSet missingRequiredFields = new IntHashSet(%1$d);\n\n" +
+            "    private %1$s missingRequiredFields%5$s;\n\n" +
             "    private int invalidTagId = Decoder.NO_ERROR;\n\n" +
             "    public int invalidTagId()\n" +
             "    {\n" +
@@ -420,24 +456,146 @@ public class DecoderGenerator extends Generator
             "        {\n" +
             "            return false;\n" +
             "        }\n" +
-            "        final IntIterator missingFieldsIterator = missingRequiredFields.iterator();\n" +
             (isMessage ? "        final IntIterator unknownFieldsIterator = unknownFields.iterator();\n" : "") +
             "%2$s" +
-            "        if (missingFieldsIterator.hasNext())\n" +
+            (words == 1 ?
+            "        if (missingRequiredFields != 0L)\n" +
             "        {\n" +
-            "            invalidTagId = missingFieldsIterator.nextValue();\n" +
+            "            invalidTagId = FIELD_ORDINAL_TAGS[Long.numberOfTrailingZeros(missingRequiredFields)];\n" +
             "            rejectReason = " + REQUIRED_TAG_MISSING + ";\n" +
             "            return false;\n" +
-            "        }\n" +
+            "        }\n" :
+            "        for (int word = 0; word < missingRequiredFields.length; word++)\n" +
+            "        {\n" +
+            "            final long missingFields = missingRequiredFields[word];\n" +
+            "            if (missingFields != 0L)\n" +
+            "            {\n" +
+            "                final int fieldOrdinal = (word << 6) + Long.numberOfTrailingZeros(missingFields);\n" +
+            "                invalidTagId = FIELD_ORDINAL_TAGS[fieldOrdinal];\n" +
+            "                rejectReason = " + REQUIRED_TAG_MISSING + ";\n" +
+            "                return false;\n" +
+            "            }\n" +
+            "        }\n") +
             "%3$s" +
             "%4$s" +
             "        return true;\n" +
             "    }\n\n",
-            sizeHashSet(requiredFields),
+            words == 1 ? "long" : "final long[]",
             messageValidation,
             enumValidation,
             groupValidation,
-            2 * aggregate.allFieldsIncludingComponents().count()));
+            words == 1 ? "" : " = new long[" + words + "]"));
+    }
+
+    // Fields that are decoded by an aggregate's own decode method, in the order that they're given ordinals.
+    private static List<Field> ordinalFields(final Aggregate aggregate)
+    {
+        final List<Entry> decodedEntries = new ArrayList<>();
+        flattenComponents(aggregate.entries(), decodedEntries);
+        return decodedEntries
+            .stream()
+            .map((entry) -> (Field)(entry.isGroup() ?
+                ((Group)entry.element()).numberField().element() : entry.element()))
+            .collect(toList());
+    }
+
+    private static int bitsetWords(final int fieldCount)
+    {
+        return Math.max(1, (fieldCount + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    private static String bitsetWord(final String name, final int words, final String ordinal)
+    {
+        return words == 1 ? name : name + "[" + ordinal + " >>> 6]";
+    }
+
+    private String clearBitset(final String name, final int words, final int indent)
+    {
+        return words == 1 ?
+            indent(indent, name + " = 0L;\n") :
+            indent(indent, "java.util.Arrays.fill(" + name + ", 0L);\n");
+    }
+
+    private String fieldOrdinals(
+        final List<Field> ordinalFields, final List<Field> requiredFields, final boolean isGroup)
+    {
+        final int words = bitsetWords(ordinalFields.size());
+        final long[] requiredFieldsMask = new long[words];
+        for (final Field requiredField : requiredFields)
+        {
+            final int ordinal = ordinalFields.indexOf(requiredField);
+            requiredFieldsMask[ordinal >>> 6] |= 1L << ordinal;
+        }
+
+        // Group decoders are inner classes, which can only have static members that are compile time constants
+        final String staticModifier = isGroup ? "" : "static ";
+        final StringBuilder fieldOrdinals = new StringBuilder();
+        fieldOrdinals
+            .append("    private static final int " + UNKNOWN_FIELD_ORDINAL + " = -1;\n\n")
+            .append(ordinalFields
+                .stream()
+                .map((field) -> "Constants." + constantName(field.name()))
+                .collect(joining(",\n        ",
+                "    private " + staticModifier + "final int[] FIELD_ORDINAL_TAGS =\n    {\n        ",
+                "\n    };\n\n")))
+            .append(words == 1 ?
+                String.format(
+                "    private static final long REQUIRED_FIELDS_MASK = 0x%xL;\n\n", requiredFieldsMask[0]) :
+                Arrays.stream(requiredFieldsMask)
+                    .mapToObj((mask) -> String.format("0x%xL", mask))
+                    .collect(joining(", ",
+                    "    private " + staticModifier + "final long[] REQUIRED_FIELDS_MASK = { ", " };\n\n")));
+
+        // Split the lookup across methods so that each of them stays well under the huge method limit
+        final int methods = Math.max(1, (ordinalFields.size() + FIELD_ORDINALS_PER_METHOD - 1) /
+            FIELD_ORDINALS_PER_METHOD);
+        for (int method = 0; method < methods; method++)
+        {
+            final int firstOrdinal = method * FIELD_ORDINALS_PER_METHOD;
+            final int lastOrdinal = Math.min(ordinalFields.size(), firstOrdinal + FIELD_ORDINALS_PER_METHOD);
+            fieldOrdinals
+                .append("    private ").append(staticModifier).append("int fieldOrdinal")
+                .append(method == 0 ? "" : String.valueOf(method))
+                .append("(final int tag)\n")
+                .append("    {\n")
+                .append("        switch (tag)\n")
+                .append("        {\n");
+            for (int ordinal = firstOrdinal; ordinal < lastOrdinal; ordinal++)
+            {
+                fieldOrdinals
+                    .append("            case Constants.").append(constantName(ordinalFields.get(ordinal).name()))
+                    .append(":\n")
+                    .append("                return ").append(ordinal).append(";\n\n");
+            }
+            fieldOrdinals
+                .append("            default:\n")
+                .append(method == methods - 1 ?
+                    "                return " + UNKNOWN_FIELD_ORDINAL + ";\n" :
+                    "                return fieldOrdinal" + (method + 1) + "(tag);\n")
+                .append("        }\n")
+                .append("    }\n\n");
+        }
+
+        if (!isGroup)
+        {
+            fieldOrdinals.append(
+                "    private boolean visitField(final int tag, final int fieldOrdinal)\n" +
+                "    {\n" +
+                "        if (fieldOrdinal == " + UNKNOWN_FIELD_ORDINAL + ")\n" +
+                "        {\n" +
+                "            // Unknown fields are only remembered when they're rejected, otherwise they're skipped\n" +
+                "            return !" + CODEC_REJECT_UNKNOWN_FIELD_ENABLED +
+                " || alreadyVisitedUnknownFields.add(tag);\n" +
+                "        }\n\n" +
+                "        final long bit = 1L << fieldOrdinal;\n" +
+                "        final boolean alreadyVisited = (" +
+                bitsetWord("alreadyVisitedFields", words, "fieldOrdinal") + " & bit) != 0L;\n" +
+                "        " + bitsetWord("alreadyVisitedFields", words, "fieldOrdinal") + " |= bit;\n" +
+                "        return !alreadyVisited;\n" +
+                "    }\n\n");
+        }
+
+        return fieldOrdinals.toString();
     }
 
     private String generateFieldDictionary(final Collection<Field> fields, final String name,
@@ -497,17 +655,13 @@ public class DecoderGenerator extends Generator
 
         final boolean isPrimitive = type.isIntBased() || type == Type.CHAR;
 
-        final String enumValidation = String.format(
-            "        if (" + codecRejectUnknownEnumValueEnabled + " && !%1$s.isValid(%2$s%4$s))\n" +
+        final String enumValidationFormat =
+            "        if (" + codecRejectUnknownEnumValueEnabled + " && !%1$s.isValid(%2$s))\n" +
             "        {\n" +
             "            invalidTagId = %3$s;\n" +
             "            rejectReason = " + VALUE_IS_INCORRECT + ";\n" +
             "            return false;\n" +
-            "        }\n",
-            name,
-            propertyName,
-            tagNumber,
-            isPrimitive ? "()" : "Wrapper");
+            "        }\n";
 
         final String enumValidationMethod;
         if (type.isMultiValue())
@@ -519,26 +673,26 @@ public class DecoderGenerator extends Generator
                     "          {\n" +
                     "            if (%1$s()[i] == ' ')\n" +
                     "            {\n" +
-                    "              %1$sWrapper.wrap(%1$s(), %1$sOffset, i - %1$sOffset);\n" +
                     "%2$s" +
                     "                %1$sOffset = i + 1;\n" +
                     "            }\n" +
                     "          }\n" +
-                    "          %1$sWrapper.wrap(%1$s(), %1$sOffset, %1$sLength - %1$sOffset);\n" +
-                    "%2$s",
+                    "%3$s",
                     propertyName,
-                    enumValidation
+                    String.format(enumValidationFormat, name,
+                        propertyName + "(), " + propertyName + "Offset, i - " + propertyName + "Offset", tagNumber),
+                    String.format(enumValidationFormat, name,
+                        propertyName + "(), " + propertyName + "Offset, " + propertyName + "Length - " +
+                        propertyName + "Offset", tagNumber)
                 );
         }
         else
         {
-            enumValidationMethod =
-                String.format(
-                    (isPrimitive ? "" : "        %1$sWrapper.wrap(%1$s(), %1$sLength);\n") +
-                    "%2$s",
-                    propertyName,
-                    enumValidation
-                );
+            enumValidationMethod = String.format(
+                enumValidationFormat,
+                name,
+                isPrimitive ? propertyName + "()" : propertyName + "(), 0, " + propertyName + "Length",
+                tagNumber);
         }
 
         return
@@ -954,32 +1108,27 @@ public class DecoderGenerator extends Generator
 
         final String enumValueDecoder = String.format(
             type.isStringBased() ?
-            "%1$s.decode(%2$sWrapper)" :
+            "%1$s.decode(%2$s(), 0, %2$sLength)" :
             // Need to ensure that decode the field
             (flyweightsEnabled && (type.isIntBased() || type.isFloatBased())) ?
             "%1$s.decode(%2$s())" :
             "%1$s.decode(%2$s)",
             name,
             fieldName);
-        final String enumStringBasedWrapperField =
-            String.format("    private final CharArrayWrapper %1$sWrapper = new CharArrayWrapper();\n", fieldName);
         final String enumDecoder = EnumGenerator.hasEnumGenerated(field) && !field.type().isMultiValue() ?
             String.format(
-            "%4$s" +
             "    public %1$s %2$sAsEnum()\n" +
             "    {\n" +
-            (!entry.required() ? "        if (!has%1$s)\n return %1$s.%5$s;\n" : "") +
-            (type.isStringBased() ? "        %2$sWrapper.wrap(%2$s(), %2$sLength);\n" : "") +
+            (!entry.required() ? "        if (!has%1$s)\n return %1$s.%4$s;\n" : "") +
             "        return %3$s;\n" +
             "    }\n\n",
             name,
             fieldName,
             enumValueDecoder,
-            enumStringBasedWrapperField,
             NULL_VAL_NAME
-        ) : field.type().isMultiValue() ? enumStringBasedWrapperField : "";
+        ) : "";
 
-        final String lazyInitialisation = fieldLazyInstantialisation(field, fieldName);
+        final String lazyInitialisation = flyweightsEnabled ? fieldLazyInstantialisation(field, fieldName) : "";
 
         return String.format(
             "    private %1$s %2$s%3$s;\n\n" +
@@ -1001,7 +1150,7 @@ public class DecoderGenerator extends Generator
             optionalGetter(entry),
             offsetField,
             enumDecoder,
-            flyweightsEnabled ? lazyInitialisation : "");
+            lazyInitialisation);
     }
 
     private String generateAsStringBody(final Entry entry, final String name, final String fieldName)
@@ -1027,7 +1176,9 @@ public class DecoderGenerator extends Generator
         return asStringBody;
     }
 
-    private static String fieldLazyInstantialisation(final Field field, final String fieldName)
+    // Flyweight decoders parse each field the first time that its getter is called after a decode and cache the
+    // value, keeping track of which fields have been parsed in a bitset indexed by field ordinal.
+    private String fieldLazyInstantialisation(final Field field, final String fieldName)
     {
         final String decodeMethod;
         switch (field.type())
@@ -1070,12 +1221,15 @@ public class DecoderGenerator extends Generator
                 }
                 final String associatedFieldName = formatPropertyName(associatedLengthField.name());
                 return String.format(
-                    "        if (buffer != null && %2$s > 0)\n" +
+                    "        if (buffer != null && %2$s > 0%3$s)\n" +
                     "        {\n" +
                     "            %1$s = buffer.getBytes(%1$s, %1$sOffset, %2$s);\n" +
+                    "%4$s" +
                     "        }\n",
                     fieldName,
-                    associatedFieldName);
+                    associatedFieldName,
+                    notYetDecoded(field),
+                    markDecoded(field));
 
             case UTCTIMESTAMP:
             case LOCALMKTDATE:
@@ -1095,12 +1249,49 @@ public class DecoderGenerator extends Generator
         }
 
         return String.format(
-            "        if (buffer != null && %1$sLength > 0)\n" +
+            "        if (buffer != null && %1$sLength > 0%3$s)\n" +
             "        {\n" +
             "            %1$s = %2$s;\n" +
+            "%4$s" +
             "        }\n",
             fieldName,
-            decodeMethod);
+            decodeMethod,
+            notYetDecoded(field),
+            markDecoded(field));
+    }
+
+    private String notYetDecoded(final Field field)
+    {
+        final int ordinal = currentOrdinalFields.indexOf(field);
+        if (ordinal == -1)
+        {
+            return "";
+        }
+
+        return String.format(
+            " && (%1$s & 0x%2$xL) == 0L",
+            decodedFieldsWord(ordinal),
+            1L << ordinal);
+    }
+
+    private String decodedFieldsWord(final int ordinal)
+    {
+        return bitsetWords(currentOrdinalFields.size()) == 1 ?
+            "decodedFields" : "decodedFields[" + (ordinal >>> 6) + "]";
+    }
+
+    private String markDecoded(final Field field)
+    {
+        final int ordinal = currentOrdinalFields.indexOf(field);
+        if (ordinal == -1)
+        {
+            return "";
+        }
+
+        return String.format(
+            "            %1$s |= 0x%2$xL;\n",
+            decodedFieldsWord(ordinal),
+            1L << ordinal);
     }
 
     private String fieldInitialisation(final Type type)
@@ -1235,7 +1426,8 @@ public class DecoderGenerator extends Generator
         }
     }
 
-    private String decodeMethod(final List<Entry> entries, final Aggregate aggregate, final AggregateType type)
+    private String decodeMethod(
+        final List<Entry> entries, final Aggregate aggregate, final AggregateType type, final int words)
     {
         final boolean hasCommonCompounds = type == MESSAGE;
         final boolean isGroup = type == GROUP;
@@ -1249,10 +1441,15 @@ public class DecoderGenerator extends Generator
             "        int seenFieldCount = 0;\n" +
             "        if (" + CODEC_VALIDATION_ENABLED + ")\n" +
             "        {\n" +
-            "            missingRequiredFields.copy(" + REQUIRED_FIELDS + ");\n" +
-            (isGroup ? "" : "            alreadyVisitedFields.clear();\n") +
+            (words == 1 ?
+            "            missingRequiredFields = REQUIRED_FIELDS_MASK;\n" :
+            "            System.arraycopy(REQUIRED_FIELDS_MASK, 0, missingRequiredFields, 0, " + words + ");\n") +
+            (isGroup ? "" :
+            clearBitset("alreadyVisitedFields", words, 3) +
+            "            alreadyVisitedUnknownFields.clear();\n") +
             "        }\n" +
             "        this.buffer = buffer;\n" +
+            (flyweightsEnabled ? clearBitset("decodedFields", words, 2) : "") +
             "        final int end = offset + length;\n" +
             "        int position = offset;\n" +
             (hasCommonCompounds ? "        position += header.decode(buffer, position, length);\n" : "") +
@@ -1273,6 +1470,7 @@ public class DecoderGenerator extends Generator
             "            final int valueLength = endOfField - valueOffset;\n" +
             "            if (" + CODEC_VALIDATION_ENABLED + ")\n" +
             "            {\n" +
+            "                final int fieldOrdinal = fieldOrdinal(tag);\n" +
             "                if (tag <= 0)\n" +
             "                {\n" +
             "                    invalidTagId = tag;\n" +
@@ -1285,30 +1483,55 @@ public class DecoderGenerator extends Generator
             "                }\n" +
             headerValidation(isHeader) +
             (isGroup ? "" :
-            "                if (!alreadyVisitedFields.add(tag))\n" +
+            "                if (!visitField(tag, fieldOrdinal))\n" +
             "                {\n" +
             "                    invalidTagId = tag;\n" +
             "                    rejectReason = " + TAG_APPEARS_MORE_THAN_ONCE + ";\n" +
             "                }\n") +
 
-            "                missingRequiredFields.remove(tag);\n" +
+            "                if (fieldOrdinal != " + UNKNOWN_FIELD_ORDINAL + ")\n" +
+            "                {\n" +
+            "                    " + bitsetWord("missingRequiredFields", words, "fieldOrdinal") +
+            " &= ~(1L << fieldOrdinal);\n" +
+            "                }\n" +
             "                seenFieldCount++;\n" +
             "            }\n" +
             "            switch (tag)\n" +
             "            {\n\n";
-        final String body = entries.stream()
-            .map(this::decodeEntry)
-            .collect(joining("\n", "", "\n"));
+        final List<Entry> decodedEntries = new ArrayList<>();
+        flattenComponents(entries, decodedEntries);
+        final String body;
+        final String delegatedDecode;
+        final String delegatedDecodeMethods;
+        if (estimatedCasesSize(decodedEntries) <= DECODE_CASES_BUDGET)
+        {
+            body = decodeEntries(entries);
+            delegatedDecode = "";
+            delegatedDecodeMethods = "";
+        }
+        else
+        {
+            final List<List<Entry>> tiers = splitIntoTiers(decodedEntries);
+            body = decodeEntries(tiers.get(0));
+            delegatedDecode =
+                "                final int decodedPosition = " + delegatedDecodeCall(1) +
+                "                if (decodedPosition != " + FIELD_NOT_DECODED + ")\n" +
+                "                {\n" +
+                "                    position = decodedPosition;\n" +
+                "                    break;\n" +
+                "                }\n";
+            delegatedDecodeMethods = delegatedDecodeMethods(tiers);
+        }
+
         final String suffix =
             "            default:\n" +
+            delegatedDecode +
+            (isGroup ?
             "                if (!" + CODEC_REJECT_UNKNOWN_FIELD_ENABLED + ")\n" +
             "                {\n" +
-            (isGroup ?
-            "                    seenFields.remove(tag);\n" :
-            "                    alreadyVisitedFields.remove(tag);\n") +
-            "                }\n" +
-            (isGroup ? "" :
-            "                else\n" +
+            "                    seenFields.remove(tag);\n" +
+            "                }\n" :
+            "                if (" + CODEC_REJECT_UNKNOWN_FIELD_ENABLED + ")\n" +
             "                {\n" +
             "                    if (!" + unknownFieldPredicate(type) + ")\n" +
             "                    {\n" +
@@ -1330,10 +1553,117 @@ public class DecoderGenerator extends Generator
             "            }\n" +
             "        }\n" +
             decodeTrailerOrReturn(hasCommonCompounds, 2) +
-            "    }\n\n";
+            "    }\n\n" +
+            delegatedDecodeMethods;
         return prefix + body + suffix;
     }
 
+    private static void flattenComponents(final List<Entry> entries, final List<Entry> decodedEntries)
+    {
+        for (final Entry entry : entries)
+        {
+            if (entry.isComponent())
+            {
+                flattenComponents(((Component)entry.element()).entries(), decodedEntries);
+            }
+            else
+            {
+                decodedEntries.add(entry);
+            }
+        }
+    }
+
+    private static int estimatedCasesSize(final List<Entry> entries)
+    {
+        int size = 0;
+        for (final Entry entry : entries)
+        {
+            size += estimatedCaseSize(entry);
+        }
+        return size;
+    }
+
+    private static int estimatedCaseSize(final Entry entry)
+    {
+        return entry.isGroup() ? ESTIMATED_GROUP_CASE_SIZE : ESTIMATED_FIELD_CASE_SIZE;
+    }
+
+    // The first tier is decoded inline, the rest are each decoded by a helper method. Required fields and groups
+    // are kept inline ahead of optional fields, since they turn up in more messages.
+    private static List<List<Entry>> splitIntoTiers(final List<Entry> entries)
+    {
+        final List<Entry> orderedEntries = new ArrayList<>();
+        entries.stream().filter(Entry::required).forEach(orderedEntries::add);
+        entries.stream().filter((entry) -> !entry.required() && entry.isGroup()).forEach(orderedEntries::add);
+        entries.stream().filter((entry) -> !entry.required() && !entry.isGroup()).forEach(orderedEntries::add);
+
+        final List<List<Entry>> tiers = new ArrayList<>();
+        List<Entry> tier = new ArrayList<>();
+        int tierSize = 0;
+        for (final Entry entry : orderedEntries)
+        {
+            final int caseSize = estimatedCaseSize(entry);
+            if (!tier.isEmpty() && tierSize + caseSize > DECODE_CASES_BUDGET)
+            {
+                tiers.add(tier);
+                tier = new ArrayList<>();
+                tierSize = 0;
+            }
+            tier.add(entry);
+            tierSize += caseSize;
+        }
+        tiers.add(tier);
+
+        return tiers;
+    }
+
+    private String decodeEntries(final List<Entry> entries)
+    {
+        return entries.stream()
+            .map(this::decodeEntry)
+            .collect(joining("\n", "", "\n"));
+    }
+
+    private String delegatedDecodeMethods(final List<List<Entry>> tiers)
+    {
+        final StringBuilder methods = new StringBuilder(
+            "    private static final int " + FIELD_NOT_DECODED + " = -1;\n\n");
+
+        final int lastTier = tiers.size() - 1;
+        for (int tier = 1; tier <= lastTier; tier++)
+        {
+            methods.append(
+                "    // Returns the position after the field, or " + FIELD_NOT_DECODED +
+                " for fields that it doesn't decode\n" +
+                "    private int decodeFields" + tier + "(\n" +
+                "        final AsciiBuffer buffer,\n" +
+                "        final int tag,\n" +
+                "        final int valueOffset,\n" +
+                "        final int valueLength,\n" +
+                "        int endOfField,\n" +
+                "        int position,\n" +
+                "        final int end)\n" +
+                "    {\n" +
+                "        switch (tag)\n" +
+                "        {\n\n" +
+                decodeEntries(tiers.get(tier)) +
+                "            default:\n" +
+                (tier == lastTier ?
+                "                return " + FIELD_NOT_DECODED + ";\n" :
+                "                return " + delegatedDecodeCall(tier + 1)) +
+                "        }\n\n" +
+                "        return position < (endOfField + 1) ? endOfField + 1 : position;\n" +
+                "    }\n\n");
+        }
+
+        return methods.toString();
+    }
+
+    private static String delegatedDecodeCall(final int tier)
+    {
+        return "decodeFields" + tier + "(buffer, tag, valueOffset, valueLength, endOfField, position, end);\n";
+    }
+
     private String malformedMessageCheck()
     {
         return "            if (endOfField == AsciiBuffer.UNKNOWN_INDEX || " +
@@ -1433,6 +1763,21 @@ public class DecoderGenerator extends Generator
             .collect(joining("\n", "", "\n"));
     }
 
+    protected void entriesToString(final List<Entry> entries, final List<String> entryToStrings)
+    {
+        for (final Entry entry : entries)
+        {
+            if (entry.isComponent())
+            {
+                entriesToString(((Component)entry.element()).entries(), entryToStrings);
+            }
+            else
+            {
+                entryToStrings.add(entryToString(entry));
+            }
+        }
+    }
+
     protected String componentToString(final Component component)
     {
         return component
@@ -45,6 +45,7 @@ import static uk.co.real_logic.artio.dictionary.generation.GenerationUtil.fileHe
 import static uk.co.real_logic.artio.dictionary.generation.GenerationUtil.importFor;
 import static uk.co.real_logic.artio.dictionary.generation.OptionalSessionFields.ENCODER_OPTIONAL_SESSION_FIELDS;
 import static uk.co.real_logic.artio.util.MutableAsciiBuffer.LONGEST_INT_LENGTH;
+import static uk.co.real_logic.artio.util.MutableAsciiBuffer.SEPARATOR;
 import static uk.co.real_logic.sbe.generation.java.JavaUtil.formatClassName;
 import static uk.co.real_logic.sbe.generation.java.JavaUtil.formatPropertyName;
 
@@ -66,11 +67,15 @@ public class EncoderGenerator extends Generator
 
     private static final String TRAILER_ENCODE_PREFIX =
         "    // |10=...|\n" +
-        "    long finishMessage(final MutableAsciiBuffer buffer, final int messageStart, final int offset)\n" +
+        "    long finishMessage(\n" +
+        "        final MutableAsciiBuffer buffer,\n" +
+        "        final int messageStart,\n" +
+        "        final int offset,\n" +
+        "        final int messageCheckSum)\n" +
         "    {\n" +
         "        int position = offset;\n" +
         "\n" +
-        "        final int checkSum = buffer.computeChecksum(messageStart, position);\n" +
+        "        final int checkSum = messageCheckSum & 0xFF;\n" +
         "        buffer.putBytes(position, checkSumHeader, 0, checkSumHeaderLength);\n" +
         "        position += checkSumHeaderLength;\n" +
         "        buffer.putNaturalPaddedIntAscii(position, 3, checkSum);\n" +
@@ -86,6 +91,7 @@ public class EncoderGenerator extends Generator
         "    {\n" +
         "        final int start = offset;\n" +
         "        int position = start;\n" +
+        "        int runningCheckSum = 0;\n" +
         "\n";
 
     // returns offset where message starts
@@ -96,15 +102,18 @@ public class EncoderGenerator extends Generator
         "        int position = bodyStart - 1;\n" +
         "\n" +
         "        buffer.putSeparator(position);\n" +
-        "        position = buffer.putNaturalIntAsciiFromEnd(bodyLength, position);\n" +
+        "        final long bodyLengthResult = buffer.putNaturalIntAsciiFromEndWithCheckSum(bodyLength, position);\n" +
+        "        position -= MutableAsciiBuffer.length(bodyLengthResult);\n" +
         "        position -= bodyLengthHeaderLength;\n" +
         "        buffer.putBytes(position, bodyLengthHeader, 0, bodyLengthHeaderLength);\n" +
+        "        encodedCheckSum += bodyLengthHeaderCheckSum + MutableAsciiBuffer.checkSum(bodyLengthResult);\n" +
         "\n" +
         "        if (beginStringLength > 0) {\n" +
         "        position--;\n" +
         "        buffer.putSeparator(position);\n" +
         "        position -= beginStringLength;\n" +
-        "        buffer.putBytes(position, beginString, beginStringOffset, beginStringLength);\n" +
+        "        encodedCheckSum += beginStringHeaderCheckSum +\n" +
+        "            buffer.putBytesWithCheckSum(position, beginString, beginStringOffset, beginStringLength);\n" +
         "        position -= beginStringHeaderLength;\n" +
         "        buffer.putBytes(position, beginStringHeader, 0, beginStringHeaderLength);\n" +
         "        } else if (" + CODEC_VALIDATION_ENABLED + ")\n" +
@@ -119,16 +128,19 @@ public class EncoderGenerator extends Generator
         "    public long startMessage(final MutableAsciiBuffer buffer, final int offset)\n" +
         "    {\n" +
         "        final int start = offset + beginStringLength + 16;\n" +
-        "        int position = start;";
+        "        int position = start;\n" +
+        "        int runningCheckSum = 0;";
 
     private static final String GROUP_ENCODE_PREFIX =
         "    public int encode(final MutableAsciiBuffer buffer, final int offset, final int remainingElements)\n" +
         "    {\n" +
         "        if (remainingElements == 0)\n" +
         "        {\n" +
+        "            encodedCheckSum = 0;\n" +
         "            return 0;\n" +
         "        }\n\n" +
-        "        int position = offset;\n\n";
+        "        int position = offset;\n" +
+        "        int runningCheckSum = 0;\n\n";
 
     // returns (offset, length) as long
     private static final String MESSAGE_ENCODE_PREFIX =
@@ -137,13 +149,23 @@ public class EncoderGenerator extends Generator
         "        final long startMessageResult = header.startMessage(buffer, offset);\n" +
         "        final int bodyStart = Encoder.offset(startMessageResult);\n" +
         "        int position = bodyStart + Encoder.length(startMessageResult);\n" +
+        "        int runningCheckSum = 0;\n" +
         "\n";
 
     // returns length as int
     private static final String OTHER_ENCODE_PREFIX =
         "    public int encode(final MutableAsciiBuffer buffer, final int offset)\n" +
         "    {\n" +
-        "        int position = offset;\n\n";
+        "        int position = offset;\n" +
+        "        int runningCheckSum = 0;\n\n";
+
+    // The checksum is summed up as the message is written, so the message doesn't have to be reread to finish it.
+    private static final String ENCODED_CHECKSUM =
+        "    private int encodedCheckSum;\n\n" +
+        "    int encodedCheckSum()\n" +
+        "    {\n" +
+        "        return encodedCheckSum;\n" +
+        "    }\n\n";
 
     private static final String RESET_NEXT_GROUP =
         "        if (next != null)" +
@@ -290,9 +312,15 @@ public class EncoderGenerator extends Generator
 
         }
 
+        if (!isMessage)
+        {
+            out.append(ENCODED_CHECKSUM);
+        }
+
         precomputedHeaders(out, aggregate.entries());
         generateSetters(out, className, aggregate.entries());
         out.append(encodeMethod(aggregate.entries(), type));
+        out.append(maxEncodedLengthMethod(aggregate.entries(), type));
         out.append(completeResetMethod(aggregate, isMessage, type));
         out.append(toString(aggregate, isMessage));
         out.append("}\n");
@@ -733,27 +761,32 @@ public class EncoderGenerator extends Generator
         {
             suffix =
                 "        position += trailer.startTrailer(buffer, position);\n" +
+                "        runningCheckSum += trailer.encodedCheckSum();\n" +
                 "\n" +
                 "        final int messageStart = header.finishHeader(buffer, bodyStart, position - bodyStart);\n" +
-                "        return trailer.finishMessage(buffer, messageStart, position);\n" +
+                "        runningCheckSum += header.encodedCheckSum();\n" +
+                "        return trailer.finishMessage(buffer, messageStart, position, runningCheckSum);\n" +
                 "    }\n\n";
         }
         else if (aggregateType == AggregateType.HEADER)
         {
             suffix =
                 "\n" +
+                "        encodedCheckSum = runningCheckSum;\n" +
                 "        return Encoder.result(position - start, start);\n" +
                 "    }\n\n";
         }
         else if (aggregateType == AggregateType.TRAILER)
         {
             suffix =
+                "        encodedCheckSum = runningCheckSum;\n" +
                 "        return position - start;\n" +
                 "    }\n\n";
         }
         else
         {
             suffix =
+                "        encodedCheckSum = runningCheckSum;\n" +
                 "        return position - offset;\n" +
                 "    }\n\n";
 
@@ -763,6 +796,7 @@ public class EncoderGenerator extends Generator
                     "        if (next != null)\n" +
                     "        {\n" +
                     "            position += next.encode(buffer, position, remainingElements - 1);\n" +
+                    "            runningCheckSum += next.encodedCheckSum();\n" +
                     "        }\n" + suffix;
             }
         }
@@ -770,6 +804,171 @@ public class EncoderGenerator extends Generator
         return prefix + body + suffix;
     }
 
+    // The most bytes that encode could write from its offset, so that a message can be encoded straight into a
+    // buffer of limited capacity without relying on bounds checks. Header fields are written backwards into the gap
+    // that startMessage leaves in front of them, and float values use scratch space beyond their own length.
+    private String maxEncodedLengthMethod(final List<Entry> entries, final AggregateType aggregateType)
+    {
+        final String signature;
+        final String initialLength;
+        switch (aggregateType)
+        {
+            case MESSAGE:
+                signature = "public int maxEncodedLength()";
+                initialLength = "header.maxEncodedLength() + trailer.maxEncodedLength()";
+                break;
+
+            case HEADER:
+                signature = "int maxEncodedLength()";
+                initialLength = "beginStringLength + 16";
+                break;
+
+            case TRAILER:
+                // |10=...|
+                signature = "int maxEncodedLength()";
+                initialLength = "checkSumHeaderLength + 4";
+                break;
+
+            case GROUP:
+                signature = "int maxEncodedLength(final int remainingElements)";
+                initialLength = "0";
+                break;
+
+            default:
+                signature = "int maxEncodedLength()";
+                initialLength = "0";
+                break;
+        }
+
+        final String body = entries.stream()
+            .map(this::maxEncodedLengthOfEntry)
+            .collect(joining());
+
+        final String prefix = aggregateType == GROUP ?
+            "        if (remainingElements == 0)\n" +
+            "        {\n" +
+            "            return 0;\n" +
+            "        }\n\n" : "";
+
+        final String suffix = aggregateType == GROUP ?
+            "        if (next != null)\n" +
+            "        {\n" +
+            "            maxLength += next.maxEncodedLength(remainingElements - 1);\n" +
+            "        }\n" : "";
+
+        return String.format(
+            "    %1$s\n" +
+            "    {\n" +
+            "%2$s" +
+            "        int maxLength = %3$s;\n" +
+            "%4$s" +
+            "%5$s" +
+            "        return maxLength;\n" +
+            "    }\n\n",
+            signature,
+            prefix,
+            initialLength,
+            body,
+            suffix);
+    }
+
+    private String maxEncodedLengthOfEntry(final Entry entry)
+    {
+        if (isBodyLength(entry) || isBeginString(entry) || isCheckSum(entry))
+        {
+            return "";
+        }
+
+        return entry.matchEntry(
+            this::maxEncodedLengthOfField,
+            (groupEntry) ->
+            {
+                final Group group = (Group)groupEntry.element();
+                return maxEncodedLengthOfField(group.numberField()) + String.format(
+                    "        if (%1$s != null)\n" +
+                    "        {\n" +
+                    "            maxLength += %1$s.maxEncodedLength(%2$s);\n" +
+                    "        }\n",
+                    formatPropertyName(group.name()),
+                    formatPropertyName(group.numberField().name()));
+            },
+            (componentEntry) -> String.format(
+                "        maxLength += %s.maxEncodedLength();\n",
+                formatPropertyName(componentEntry.name())));
+    }
+
+    private String maxEncodedLengthOfField(final Entry entry)
+    {
+        final Field field = (Field)entry.element();
+        final String name = field.name();
+        final String fieldName = formatPropertyName(name);
+        final Field.Type type = field.type();
+
+        final String valueLength;
+        switch (type)
+        {
+            case INT:
+            case LENGTH:
+            case SEQNUM:
+            case NUMINGROUP:
+            case DAYOFMONTH:
+                valueLength = String.valueOf(LONGEST_INT_LENGTH);
+                break;
+
+            case FLOAT:
+            case PRICE:
+            case PRICEOFFSET:
+            case QTY:
+            case PERCENTAGE:
+            case AMT:
+                valueLength = String.format("MutableAsciiBuffer.longestFloatLength(%s.scale())", fieldName);
+                break;
+
+            case CHAR:
+            case BOOLEAN:
+                valueLength = "1";
+                break;
+
+            case DATA:
+            case XMLDATA:
+                valueLength = fieldName + ".length";
+                break;
+
+            default:
+                valueLength = fieldName + "Length";
+                break;
+        }
+
+        // Data fields are byte arrays that are null until they're set, even when they're required.
+        final boolean isDataField = type.isDataBased();
+        final String condition;
+        if (hasFlag(entry, field))
+        {
+            condition = isDataField ? "has" + name + " && " + fieldName + " != null" : "has" + name;
+        }
+        else if (type.hasLengthField(false))
+        {
+            condition = fieldName + "Length > 0";
+        }
+        else if (isDataField)
+        {
+            condition = fieldName + " != null";
+        }
+        else
+        {
+            return String.format("        maxLength += %sHeaderLength + %s + 1;\n", fieldName, valueLength);
+        }
+
+        return String.format(
+            "        if (%s)\n" +
+            "        {\n" +
+            "            maxLength += %sHeaderLength + %s + 1;\n" +
+            "        }\n",
+            condition,
+            fieldName,
+            valueLength);
+    }
+
     private String encodeEntry(final Entry entry)
     {
         if (isBodyLength(entry) || isBeginString(entry) || isCheckSum(entry))
@@ -838,10 +1037,10 @@ public class EncoderGenerator extends Generator
                 return putValue(fieldName, tag, "Float", enablingSuffix);
 
             case CHAR:
-                return putValue(fieldName, tag, "Char", enablingSuffix);
+                return putValue(fieldName, tag, "Char", enablingSuffix, "(byte)" + fieldName);
 
             case BOOLEAN:
-                return putValue(fieldName, tag, "Boolean", enablingSuffix);
+                return putValue(fieldName, tag, "Boolean", enablingSuffix, "(" + fieldName + " ? 'Y' : 'N')");
 
             case STRING:
             case MULTIPLEVALUESTRING:
@@ -864,7 +1063,8 @@ public class EncoderGenerator extends Generator
             case XMLDATA:
                 return String.format(
                     "%s" +
-                    "        buffer.putBytes(position, %s);\n" +
+                    "        runningCheckSum +=\n" +
+                    "            %2$sHeaderCheckSum + buffer.putBytesWithCheckSum(position, %s, 0, %2$s.length);\n" +
                     "        position += %2$s.length;\n" +
                     SUFFIX,
                     tag,
@@ -879,7 +1079,8 @@ public class EncoderGenerator extends Generator
     private String encodeStringField(final String fieldName, final String optionalSuffix, final String tag)
     {
         return formatEncoder(fieldName, optionalSuffix, tag,
-        "        buffer.putBytes(position, %s, %2$sOffset, %2$sLength);\n" +
+        "        runningCheckSum += %2$sHeaderCheckSum +\n" +
+            "            buffer.putBytesWithCheckSum(position, %s, %2$sOffset, %2$sLength);\n" +
             "        position += %2$sLength;\n");
     }
 
@@ -901,6 +1102,7 @@ public class EncoderGenerator extends Generator
             "        if (%2$s != null)\n" +
             "        {\n" +
             "            position += %2$s.encode(buffer, position, %3$s);\n" +
+            "            runningCheckSum += %2$s.encodedCheckSum();\n" +
             "        }\n",
             encodeField(group.numberField()),
             formatPropertyName(group.name()),
@@ -911,7 +1113,8 @@ public class EncoderGenerator extends Generator
     {
         // TODO: make component return int, split encode prefix
         return String.format(
-            "            position += %1$s.encode(buffer, position);\n",
+            "            position += %1$s.encode(buffer, position);\n" +
+            "            runningCheckSum += %1$s.encodedCheckSum();\n",
             formatPropertyName(entry.name()));
     }
 
@@ -926,14 +1129,36 @@ public class EncoderGenerator extends Generator
     }
 
     private String putValue(final String fieldName, final String tag, final String type, final String optionalSuffix)
+    {
+        return String.format(
+            "%s" +
+            "        final long %3$sResult = buffer.put%sAsciiWithCheckSum(position, %s);\n" +
+            "        position += MutableAsciiBuffer.length(%3$sResult);\n" +
+            "        runningCheckSum += %3$sHeaderCheckSum + MutableAsciiBuffer.checkSum(%3$sResult);\n" +
+            SUFFIX,
+            tag,
+            type,
+            fieldName,
+            optionalSuffix);
+    }
+
+    // Single byte values are summed straight from the value.
+    private String putValue(
+        final String fieldName,
+        final String tag,
+        final String type,
+        final String optionalSuffix,
+        final String valueCheckSum)
     {
         return String.format(
             "%s" +
             "        position += buffer.put%sAscii(position, %s);\n" +
+            "        runningCheckSum += %3$sHeaderCheckSum + %s;\n" +
             SUFFIX,
             tag,
             type,
             fieldName,
+            valueCheckSum,
             optionalSuffix);
     }
 
@@ -963,13 +1188,17 @@ public class EncoderGenerator extends Generator
             .range(0, length)
             .mapToObj(i -> String.valueOf(buffer[i]))
             .collect(joining(", ", "", ", (byte) '='"));
+        // The header's checksum includes the separator that ends the field.
+        final int checkSum = IntStream.range(0, length).map(i -> buffer[i]).sum() + '=' + SEPARATOR;
 
         out.append(String.format(
             "    private static final int %sHeaderLength = %d;\n" +
-            "    private static final byte[] %1$sHeader = new byte[] {%s};\n\n",
+            "    private static final byte[] %1$sHeader = new byte[] {%s};\n" +
+            "    private static final int %1$sHeaderCheckSum = %d;\n\n",
             fieldName,
             length + 1,
-            bytes));
+            bytes,
+            checkSum));
     }
 
     protected String stringToString(final String fieldName)
@@ -33,9 +33,12 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import static java.lang.String.format;
+import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
 import static uk.co.real_logic.artio.dictionary.generation.CodecUtil.*;
 import static uk.co.real_logic.artio.dictionary.generation.GenerationUtil.*;
 
@@ -47,6 +50,8 @@ public final class EnumGenerator
     public static final String NULL_VAL_STRING = ENUM_MISSING_STRING;
 
     static final String UNKNOWN_NAME = "ARTIO_UNKNOWN";
+
+    private static final int MAX_PACKED_INT_LENGTH = 4;
     public static final String UNKNOWN_CHAR_AS_STRING = Character.toString(ENUM_UNKNOWN_CHAR);
     public static final String UNKNOWN_INT_AS_STRING = Integer.toString(ENUM_UNKNOWN_INT);
     public static final String UNKNOWN_STRING = ENUM_UNKNOWN_STRING;
@@ -131,6 +136,7 @@ public final class EnumGenerator
                 out.append(importFor(IntHashSet.class));
                 out.append(importFor(Map.class));
                 out.append(importFor(HashMap.class));
+                out.append(importFor(CodecUtil.class));
                 out.append(interfaceToImport);
                 out.append(generateEnumDeclaration(enumName, interfaceToImplement));
 
@@ -232,6 +238,11 @@ public final class EnumGenerator
                 return "    public static boolean isValid(final CharArrayWrapper key)\n" +
                        "    {\n" +
                        "        return charMap.containsKey(key);\n" +
+                       "    }\n" +
+                       "\n" +
+                       "    public static boolean isValid(final char[] value, final int offset, final int length)\n" +
+                       "    {\n" +
+                       "        return decode(value, offset, length) != " + UNKNOWN_NAME + ";\n" +
                        "    }\n";
             default:
                 final String primitiveValues = allValues
@@ -284,16 +295,93 @@ public final class EnumGenerator
                             "            return %3$s;\n" +
                             "        }\n" +
                             "        return value;\n" +
-                    "    }\n",
+                    "    }\n" +
+                    "\n" +
+                    "%4$s",
                     typeName,
                     entries,
-                    UNKNOWN_NAME);
+                    UNKNOWN_NAME,
+                    charArraySwitchDecode(typeName, allValues, type));
 
             default:
                 return "";
         }
     }
 
+    // Values are switched on by their length and then by their chars packed into an int or compared as a packed
+    // long, so decoding them hashes nothing. Values that are too long to pack are compared char by char.
+    private String charArraySwitchDecode(final String typeName, final List<Value> allValues, final Type type)
+    {
+        final Map<Integer, List<Value>> valuesByLength = allValues
+            .stream()
+            .collect(groupingBy((value) -> value.representation().length(), TreeMap::new, toList()));
+
+        final StringBuilder cases = new StringBuilder();
+        valuesByLength.forEach((length, values) ->
+        {
+            cases.append(format("        case %d:\n", length));
+
+            final StringBuilder packedIntCases = new StringBuilder();
+            for (final Value value : values)
+            {
+                final long packed = packAscii(value.representation().toCharArray(), 0, length);
+                if (packed == UNPACKED_ASCII)
+                {
+                    cases.append(format(
+                        "            if (CodecUtil.equals(value, offset, %s, length))\n" +
+                        "            {\n" +
+                        "                return %s;\n" +
+                        "            }\n",
+                        literal(value, type),
+                        value.description()));
+                }
+                else if (length <= MAX_PACKED_INT_LENGTH)
+                {
+                    packedIntCases.append(format(
+                        "            case 0x%x: return %s;\n", packed, value.description()));
+                }
+                else
+                {
+                    cases.append(format(
+                        "            if (packed == 0x%xL)\n" +
+                        "            {\n" +
+                        "                return %s;\n" +
+                        "            }\n",
+                        packed,
+                        value.description()));
+                }
+            }
+
+            if (packedIntCases.length() > 0)
+            {
+                cases.append(format(
+                    "            switch ((int)packed)\n" +
+                    "            {\n" +
+                    "%s" +
+                    "            }\n",
+                    packedIntCases));
+            }
+
+            cases.append("            break;\n\n");
+        });
+
+        return format(
+            "    public static %1$s decode(final char[] value, final int offset, final int length)\n" +
+            "    {\n" +
+            "        final long packed = CodecUtil.packAscii(value, offset, length);\n" +
+            "        switch (length)\n" +
+            "        {\n" +
+            "%2$s" +
+            "        }\n" +
+            "\n" +
+            "        return %3$s;\n" +
+            "    }\n" +
+            "\n",
+            typeName,
+            cases,
+            UNKNOWN_NAME);
+    }
+
     private boolean hasGeneratedValueOf(final Type type)
     {
         switch (type)
@@ -34,6 +34,7 @@ import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 import java.io.IOException;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
@@ -60,6 +61,9 @@ public abstract class Generator
     final String codecRejectUnknownEnumValueEnabled;
     public static final String MESSAGE_FIELDS = "messageFields";
 
+    // Each entry's part of toString compiles to around 35 bytes, see DecoderGenerator.HUGE_METHOD_LIMIT.
+    static final int TO_STRING_ENTRIES_PER_METHOD = 100;
+
     protected String commonCompoundImports(final String form, final boolean headerWrapsTrailer,
         final String messageFieldsSet)
     {
@@ -458,11 +462,35 @@ public abstract class Generator
 
     protected String toString(final Aggregate aggregate, final boolean hasCommonCompounds)
     {
-        final String entriesToString = aggregate
-            .entries()
-            .stream()
-            .map(this::entryToString)
-            .collect(joining(" + \n"));
+        final List<String> entryToStrings = new ArrayList<>();
+        entriesToString(aggregate.entries(), entryToStrings);
+
+        // Large aggregates would exceed HotSpot's huge method limit, so their entries are formatted by helper methods
+        final String entriesToString;
+        final StringBuilder entriesToStringMethods = new StringBuilder();
+        if (entryToStrings.size() <= TO_STRING_ENTRIES_PER_METHOD)
+        {
+            entriesToString = String.join(" + \n", entryToStrings);
+        }
+        else
+        {
+            final StringBuilder delegatedEntriesToString = new StringBuilder(
+                String.join(" + \n", entryToStrings.subList(0, TO_STRING_ENTRIES_PER_METHOD)));
+            for (int start = TO_STRING_ENTRIES_PER_METHOD, method = 1;
+                start < entryToStrings.size();
+                start += TO_STRING_ENTRIES_PER_METHOD, method++)
+            {
+                final int end = Math.min(start + TO_STRING_ENTRIES_PER_METHOD, entryToStrings.size());
+                delegatedEntriesToString.append(" + \n             entriesToString").append(method).append("()");
+                entriesToStringMethods.append(
+                    "    private String entriesToString" + method + "()\n" +
+                    "    {\n" +
+                    "        return\n" +
+                    String.join(" + \n", entryToStrings.subList(start, end)) + ";\n" +
+                    "    }\n\n");
+            }
+            entriesToString = delegatedEntriesToString.toString();
+        }
 
         final String prefix = !hasCommonCompounds ?
             "" : "\"  \\\"header\\\": \" + header" + EXPAND_INDENT + " + \"\\n\" + ";
@@ -489,12 +517,22 @@ public abstract class Generator
             "        entries = \"{\\n  \\\"MessageName\\\": \\\"%4$s\\\",\\n\" + entries + \"}\";\n" +
             "%3$s" +
             "        return entries;\n" +
-            "    }\n\n",
+            "    }\n\n" +
+            "%6$s",
             prefix,
             entriesToString,
             suffix,
             aggregate.name(),
-            parameters);
+            parameters,
+            entriesToStringMethods);
+    }
+
+    protected void entriesToString(final List<Entry> entries, final List<String> entryToStrings)
+    {
+        for (final Entry entry : entries)
+        {
+            entryToStrings.add(entryToString(entry));
+        }
     }
 
     protected abstract String toStringGroupParameters();
@@ -15,6 +15,7 @@
  */
 package uk.co.real_logic.artio.util;
 
+import org.agrona.BufferUtil;
 import org.agrona.DirectBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
 import uk.co.real_logic.artio.fields.*;
@@ -24,16 +25,27 @@ import uk.co.real_logic.artio.util.float_parsing.DecimalFloatParser;
 
 import java.nio.ByteBuffer;
 
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
 import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.agrona.BitUtil.SIZE_OF_LONG;
+import static org.agrona.BufferUtil.ARRAY_BASE_OFFSET;
+import static org.agrona.UnsafeAccess.UNSAFE;
 
 public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffer
 {
     private static final byte ZERO = '0';
     private static final byte DOT = (byte)'.';
+    private static final byte MINUS = (byte)'-';
 
     private static final byte Y = (byte)'Y';
     private static final byte N = (byte)'N';
 
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long LOW_BYTES_OF_SHORTS = 0x00FF00FF00FF00FFL;
+    private static final long ONE_IN_EACH_SHORT = 0x0001000100010001L;
+
     public MutableAsciiBuffer()
     {
         super(0, 0);
@@ -199,7 +211,21 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
 
     public int scanBack(final int startInclusive, final int endExclusive, final byte terminator)
     {
-        for (int index = startInclusive; index >= endExclusive; index--)
+        int index = startInclusive;
+        if (index - endExclusive >= SIZE_OF_LONG)
+        {
+            final long pattern = repeatedByte(terminator);
+            for (; index - (SIZE_OF_LONG - 1) >= endExclusive; index -= SIZE_OF_LONG)
+            {
+                final long matches = matchingBytes(getLong(index - (SIZE_OF_LONG - 1), LITTLE_ENDIAN) ^ pattern);
+                if (matches != 0)
+                {
+                    return index - (Long.numberOfLeadingZeros(matches) >>> 3);
+                }
+            }
+        }
+
+        for (; index >= endExclusive; index--)
         {
             final byte value = getByte(index);
             if (value == terminator)
@@ -218,24 +244,47 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
 
     public int scan(final int startInclusive, final int endInclusive, final byte terminator)
     {
-        int indexValue = UNKNOWN_INDEX;
-        for (int i = startInclusive; i <= endInclusive; i++)
+        int i = startInclusive;
+
+        // Callers may pass an end beyond the buffer when they expect to find the terminator before it.
+        final int lastWordStart = Math.min(endInclusive, capacity() - 1) - (SIZE_OF_LONG - 1);
+        if (i <= lastWordStart)
+        {
+            final long pattern = repeatedByte(terminator);
+            for (; i <= lastWordStart; i += SIZE_OF_LONG)
+            {
+                final long matches = matchingBytes(getLong(i, LITTLE_ENDIAN) ^ pattern);
+                if (matches != 0)
+                {
+                    return i + (Long.numberOfTrailingZeros(matches) >>> 3);
+                }
+            }
+        }
+
+        for (; i <= endInclusive; i++)
         {
             final byte value = getByte(i);
             if (value == terminator)
             {
-                indexValue = i;
-                break;
+                return i;
             }
         }
 
-        return indexValue;
+        return UNKNOWN_INDEX;
     }
 
     public int computeChecksum(final int offset, final int end)
     {
         int total = 0;
-        for (int index = offset; index < end; index++)
+        int index = offset;
+
+        final int lastWordStart = end - SIZE_OF_LONG;
+        for (; index <= lastWordStart; index += SIZE_OF_LONG)
+        {
+            total += sumBytes(getLong(index));
+        }
+
+        for (; index < end; index++)
         {
             total += getByte(index);
         }
@@ -243,6 +292,121 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
         return total % 256;
     }
 
+    // Sums 8 bytes at a time, bytes are summed as unsigned values and then bytes with their top bit set have 256
+    // taken off in order to give the same total as summing signed bytes.
+    private static int sumBytes(final long word)
+    {
+        final long pairSums = (word & LOW_BYTES_OF_SHORTS) + ((word >>> 8) & LOW_BYTES_OF_SHORTS);
+        final int unsignedSum = (int)((pairSums * ONE_IN_EACH_SHORT) >>> 48);
+        return unsignedSum - (Long.bitCount(word & HIGH_BITS) << 8);
+    }
+
+    /**
+     * Gets the length of a value that was put by one of the methods that also sum up the bytes that they write for
+     * the FIX checksum, such as {@link #putIntAsciiWithCheckSum(int, int)}.
+     *
+     * @param result the result of the put method.
+     * @return the length of the value that was put.
+     */
+    public static int length(final long result)
+    {
+        return (int)result;
+    }
+
+    /**
+     * Gets the sum of the bytes of a value that was put by one of the methods that also sum up the bytes that they
+     * write for the FIX checksum, such as {@link #putIntAsciiWithCheckSum(int, int)}.
+     *
+     * @param result the result of the put method.
+     * @return the sum of the bytes that were put, which hasn't been taken modulo 256.
+     */
+    public static int checkSum(final long result)
+    {
+        return (int)(result >> 32);
+    }
+
+    private static long checkSumResult(final int length, final int checkSum)
+    {
+        return (length & 0xFFFF_FFFFL) | ((long)checkSum) << 32;
+    }
+
+    /**
+     * Puts bytes, like {@link #putBytes(int, byte[], int, int)}, summing them up as they're copied.
+     *
+     * @param index the index in this buffer to put the bytes at.
+     * @param src the array to copy the bytes from.
+     * @param offset the offset in the array of the first byte to copy.
+     * @param length the number of bytes to copy.
+     * @return the sum of the bytes that were put, which hasn't been taken modulo 256.
+     */
+    public int putBytesWithCheckSum(final int index, final byte[] src, final int offset, final int length)
+    {
+        if (SHOULD_BOUNDS_CHECK)
+        {
+            boundsCheck(index, length);
+            BufferUtil.boundsCheck(src, offset, length);
+        }
+
+        return copyWithCheckSum(index, src, ARRAY_BASE_OFFSET + offset, length);
+    }
+
+    /**
+     * Puts bytes, like {@link #putBytes(int, DirectBuffer, int, int)}, summing them up as they're copied.
+     *
+     * @param index the index in this buffer to put the bytes at.
+     * @param src the buffer to copy the bytes from.
+     * @param offset the offset in the source buffer of the first byte to copy.
+     * @param length the number of bytes to copy.
+     * @return the sum of the bytes that were put, which hasn't been taken modulo 256.
+     */
+    public int putBytesWithCheckSum(final int index, final DirectBuffer src, final int offset, final int length)
+    {
+        if (SHOULD_BOUNDS_CHECK)
+        {
+            boundsCheck(index, length);
+            src.boundsCheck(offset, length);
+        }
+
+        return copyWithCheckSum(index, src.byteArray(), src.addressOffset() + offset, length);
+    }
+
+    private int copyWithCheckSum(final int index, final byte[] srcArray, final long srcAddress, final int length)
+    {
+        final byte[] byteArray = byteArray();
+        final long address = addressOffset() + index;
+        int total = 0;
+        int i = 0;
+        for (final int lastWordStart = length - SIZE_OF_LONG; i <= lastWordStart; i += SIZE_OF_LONG)
+        {
+            final long word = UNSAFE.getLong(srcArray, srcAddress + i);
+            UNSAFE.putLong(byteArray, address + i, word);
+            total += sumBytes(word);
+        }
+
+        for (; i < length; i++)
+        {
+            final byte value = UNSAFE.getByte(srcArray, srcAddress + i);
+            UNSAFE.putByte(byteArray, address + i, value);
+            total += value;
+        }
+
+        return total;
+    }
+
+    private static long repeatedByte(final byte value)
+    {
+        return (value & 0xFFL) * LOW_BITS;
+    }
+
+    // Returns a word with the top bit of each zero byte in word set and all other bits clear. Carries can't cross
+    // between bytes so, unlike the usual (word - 0x01..) & ~word & 0x80.. trick, it has no false positives, which
+    // scanning backwards relies on.
+    private static long matchingBytes(final long word)
+    {
+        final long nonZeroLowBits = (word & LOW_SEVEN_BITS) + LOW_SEVEN_BITS;
+        return ~(nonZeroLowBits | word | LOW_SEVEN_BITS);
+    }
+
     public int putAscii(final int index, final String string)
     {
         final byte[] bytes = string.getBytes(US_ASCII);
@@ -262,6 +426,18 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
         return 1;
     }
 
+    /**
+     * Gets the most bytes that {@link #putFloatAscii(int, long, int)} can write for a given scale, including the
+     * scratch space that it encodes the value's digits into.
+     *
+     * @param scale the scale of the value.
+     * @return the most bytes that could be written from the offset.
+     */
+    public static int longestFloatLength(final int scale)
+    {
+        return 1 + LONGEST_LONG_LENGTH + 1 + ZERO_LENGTH + DOT_LENGTH + Math.abs(scale);
+    }
+
     public static int lengthInAscii(final int value)
     {
         int characterCount = 0;
@@ -272,6 +448,68 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
         return characterCount;
     }
 
+    /**
+     * Puts an int value in an ascii encoding, like {@link #putIntAscii(int, int)}, summing up its bytes as they're
+     * written.
+     *
+     * @param index the index in this buffer to put the value at.
+     * @param value the value to put.
+     * @return the length and checksum of the encoded value packed into a long, see {@link #length(long)} and
+     * {@link #checkSum(long)}.
+     */
+    public long putIntAsciiWithCheckSum(final int index, final int value)
+    {
+        if (value == 0)
+        {
+            putByte(index, ZERO);
+            return checkSumResult(1, ZERO);
+        }
+
+        int start = index;
+        int checkSum = 0;
+        int remainder = value;
+        if (value < 0)
+        {
+            putByte(start, MINUS);
+            checkSum = MINUS;
+            start++;
+        }
+        else
+        {
+            // Digits are taken from a negative remainder so that Integer.MIN_VALUE doesn't overflow
+            remainder = -value;
+        }
+
+        int digitCount = 1;
+        for (long threshold = -10; remainder <= threshold; threshold *= 10)
+        {
+            digitCount++;
+        }
+
+        final long digits = putDigits(remainder, start + digitCount - 1);
+        return checkSumResult(start - index + digitCount, checkSum + checkSum(digits));
+    }
+
+    /**
+     * Puts the natural number in an ascii encoding, so that it ends just before an index, like
+     * {@link #putNaturalIntAsciiFromEnd(int, int)}, summing up its bytes as they're written.
+     *
+     * @param value the natural number to put.
+     * @param endExclusive the index after the last digit of the value.
+     * @return the length and checksum of the encoded value packed into a long, see {@link #length(long)} and
+     * {@link #checkSum(long)}.
+     */
+    public long putNaturalIntAsciiFromEndWithCheckSum(final int value, final int endExclusive)
+    {
+        if (value == 0)
+        {
+            putByte(endExclusive - 1, ZERO);
+            return checkSumResult(1, ZERO);
+        }
+
+        return putDigits(-value, endExclusive - 1);
+    }
+
     public int putCharAscii(final int index, final char value)
     {
         putByte(index, (byte)value);
@@ -293,27 +531,64 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
      * @return the length of the encoded value
      */
     public int putFloatAscii(final int offset, final long value, final int scale)
+    {
+        return length(putFloatAsciiWithCheckSum(offset, value, scale));
+    }
+
+    public long putFloatAsciiWithCheckSum(final int offset, final DecimalFloat price)
+    {
+        return putFloatAsciiWithCheckSum(offset, price.value(), price.scale());
+    }
+
+    /**
+     * Puts a float value in an ascii encoding, like {@link #putFloatAscii(int, long, int)}, summing up its bytes as
+     * they're written.
+     *
+     * @param offset the position at which to start putting ascii encoded float.
+     * @param value the value of the float to encode - see {@link DecimalFloat} for details.
+     * @param scale the scale of the float to encode - see {@link DecimalFloat} for details.
+     * @throws IllegalArgumentException if you try to encode NaN.
+     * @return the length and checksum of the encoded value packed into a long, see {@link #length(long)} and
+     * {@link #checkSum(long)}.
+     */
+    public long putFloatAsciiWithCheckSum(final int offset, final long value, final int scale)
     {
         if (DecimalFloat.isNaNValue(value, scale))
         {
             throw new IllegalArgumentException("You cannot encode NaN into a buffer - it's not a number");
         }
 
+        final int length;
+        final long digits;
         if (value == 0)
         {
-            return handleZero(offset, scale);
+            length = handleZero(offset, scale);
+            digits = 0;
+        }
+        else
+        {
+            final long remainder = calculateRemainderAndPutMinus(offset, value);
+            final int minusAdj = value < 0 ? 1 : 0;
+            final int start = offset + minusAdj;
+
+            // Encode the value into a tmp space, leaving the longest possible space required
+            final int tmpEnd = start + LONGEST_LONG_LENGTH;
+            digits = putDigits(remainder, tmpEnd);
+            length = minusAdj + moveDigits(start, tmpEnd - length(digits) + 1, length(digits), scale);
         }
 
-        final long remainder = calculateRemainderAndPutMinus(offset, value);
-        final int minusAdj = value < 0 ? 1 : 0;
-        final int start = offset + minusAdj;
+        // Apart from the digits of the value, only a minus sign, a dot and zeros can have been written
+        final int minusLength = value < 0 ? 1 : 0;
+        final int dotLength = scale > 0 ? DOT_LENGTH : 0;
+        final int zerosLength = length - length(digits) - minusLength - dotLength;
+        final int checkSum = checkSum(digits) + minusLength * MINUS + dotLength * DOT + zerosLength * ZERO;
 
-        // Encode the value into a tmp space, leaving the longest possible space required
-        final int tmpEnd = start + LONGEST_LONG_LENGTH;
-        final int tmpStart = putLong(remainder, tmpEnd) + 1;
-        final int length = tmpEnd - tmpStart + 1;
+        return checkSumResult(length, checkSum);
+    }
 
-        // Move the value to the beginning once you've encoded it
+    // Moves the digits of a value to the beginning once they've been encoded, returning the length from the start
+    private int moveDigits(final int start, final int tmpStart, final int length, final int scale)
+    {
         if (scale > 0)
         {
             final int end = start + length;
@@ -332,7 +607,7 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
                 }
                 putBytes(cursor, this, tmpStart, length);
 
-                return minusAdj + ZERO_LENGTH + DOT_LENGTH + numberOfZeros + length;
+                return ZERO_LENGTH + DOT_LENGTH + numberOfZeros + length;
             }
             else
             {
@@ -340,7 +615,7 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
                 putByte(split, DOT);
                 putBytes(split + 1, this, tmpStart + digitsBeforeDot, scale);
 
-                return minusAdj + length + DOT_LENGTH;
+                return length + DOT_LENGTH;
             }
         }
         else
@@ -351,7 +626,7 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
             {
                 putTrailingZero(start + length, trailingZeros);
             }
-            return length + minusAdj + trailingZeros;
+            return length + trailingZeros;
         }
     }
 
@@ -390,18 +665,22 @@ public final class MutableAsciiBuffer extends UnsafeBuffer implements AsciiBuffe
         }
     }
 
+    // Puts the digits of a negative remainder so that they end at an index, returning their length and checksum.
     @SuppressWarnings("FinalParameters")
-    private int putLong(long remainder, final int end)
+    private long putDigits(long remainder, final int end)
     {
         int index = end;
+        int checkSum = 0;
         while (remainder < 0)
         {
             final long digit = remainder % 10;
             remainder = remainder / 10;
-            putByte(index, (byte)(ZERO + (-1L * digit)));
+            final byte digitByte = (byte)(ZERO + (-1L * digit));
+            putByte(index, digitByte);
+            checkSum += digitByte;
             index--;
         }
 
-        return index;
+        return checkSumResult(end - index, checkSum);
     }
 }
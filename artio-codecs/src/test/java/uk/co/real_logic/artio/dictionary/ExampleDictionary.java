@@ -641,7 +641,9 @@ public final class ExampleDictionary
         final Field stringEnum = new Field(126, "stringEnum", Type.STRING)
             .addValue("0", "_0")
             .addValue("A", "_A")
-            .addValue("AA", "_AAA");
+            .addValue("AA", "_AAA")
+            .addValue("ABCDEFGH", "_ABCDEFGH")
+            .addValue("ABCDEFGHI", "_ABCDEFGHI");
 
         final Field multiStringValueEnum = new Field(126, "multiStringValueEnum", Type.MULTIPLESTRINGVALUE)
             .addValue("0", "_0")
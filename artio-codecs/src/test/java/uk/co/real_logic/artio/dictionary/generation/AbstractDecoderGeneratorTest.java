@@ -265,6 +265,30 @@ public abstract class AbstractDecoderGeneratorTest
         assertValid(decoder);
     }
 
+    @Test
+    public void decodesValuesOfLatestMessageWhenDecoderIsReused() throws Exception
+    {
+        final Decoder decoder = decodeHeartbeat(DERIVED_FIELDS_MESSAGE);
+        assertEquals(2, getIntField(decoder));
+        assertEquals(new DecimalFloat(11, 1), getFloatField(decoder));
+
+        decode(DERIVED_FIELDS_MESSAGE.replace("116=2", "116=3").replace("117=1.1", "117=2.2"), decoder);
+
+        assertEquals(3, getIntField(decoder));
+        assertEquals(new DecimalFloat(22, 1), getFloatField(decoder));
+    }
+
+    @Test
+    public void readsValuesThatHaveBeenReadBeforeFromTheDecoderRatherThanTheBuffer() throws Exception
+    {
+        final Decoder decoder = decodeHeartbeat(DERIVED_FIELDS_MESSAGE);
+        assertEquals(2, getIntField(decoder));
+
+        buffer.putByte(1 + DERIVED_FIELDS_MESSAGE.indexOf("116=2") + "116=".length(), (byte)'3');
+
+        assertEquals(2, getIntField(decoder));
+    }
+
     @Test
     public void decodesEnumValuesUsingAsEnumMethods() throws Exception
     {
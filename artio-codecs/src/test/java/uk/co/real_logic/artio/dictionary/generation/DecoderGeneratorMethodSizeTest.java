@@ -0,0 +1,397 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.dictionary.generation;
+
+import org.agrona.generation.StringWriterOutputManager;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.co.real_logic.artio.builder.Decoder;
+import uk.co.real_logic.artio.dictionary.ir.Dictionary;
+import uk.co.real_logic.artio.dictionary.ir.Field;
+import uk.co.real_logic.artio.dictionary.ir.Group;
+import uk.co.real_logic.artio.dictionary.ir.Message;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import javax.tools.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.*;
+
+import static java.util.Collections.emptyMap;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.*;
+import static uk.co.real_logic.artio.dictionary.ExampleDictionary.*;
+import static uk.co.real_logic.artio.dictionary.generation.DecoderGenerator.DECODE_CASES_BUDGET;
+import static uk.co.real_logic.artio.dictionary.generation.DecoderGenerator.HUGE_METHOD_LIMIT;
+import static uk.co.real_logic.artio.dictionary.generation.DecoderGenerator.REQUIRED_TAG_MISSING;
+import static uk.co.real_logic.artio.dictionary.generation.DecoderGenerator.TAG_APPEARS_MORE_THAN_ONCE;
+import static uk.co.real_logic.artio.dictionary.ir.Category.APP;
+import static uk.co.real_logic.artio.dictionary.ir.Field.Type.INT;
+import static uk.co.real_logic.artio.dictionary.ir.Field.Type.STRING;
+import static uk.co.real_logic.artio.dictionary.ir.Field.registerField;
+import static uk.co.real_logic.artio.util.Reflection.get;
+
+/**
+ * Checks that decoders for messages with many fields are split into methods that are small enough to be JIT compiled.
+ */
+public class DecoderGeneratorMethodSizeTest
+{
+    private static final String LARGE_MESSAGE_DECODER = TEST_PACKAGE + ".LargeMessageDecoder";
+    private static final String MANY_GROUPS_MESSAGE_DECODER = TEST_PACKAGE + ".ManyGroupsMessageDecoder";
+    private static final int FIELD_COUNT = 600;
+    private static final int GROUP_COUNT = 20;
+    private static final int FIRST_FIELD_TAG = 2000;
+    private static final int FIRST_GROUP_TAG = FIRST_FIELD_TAG + FIELD_COUNT;
+    private static final int MANY_GROUPS_COUNT = 80;
+    private static final int FIRST_MANY_GROUPS_TAG = FIRST_GROUP_TAG + 2 * GROUP_COUNT;
+    private static final int CODE_ATTRIBUTE_HEADER_LENGTH = 8;
+
+    private static Map<String, byte[]> classFiles;
+    private static Class<?> largeMessage;
+
+    @BeforeClass
+    public static void generate() throws Exception
+    {
+        final Map<String, Field> fields = new HashMap<>(MESSAGE_EXAMPLE.fields());
+        final Message message = new Message("LargeMessage", "LM", APP);
+        message.requiredEntry(registerField(fields, FIRST_FIELD_TAG, "LargeField0", INT));
+        for (int i = 1; i < FIELD_COUNT - 1; i++)
+        {
+            message.optionalEntry(registerField(fields, FIRST_FIELD_TAG + i, "LargeField" + i, STRING));
+        }
+        final int lastField = FIELD_COUNT - 1;
+        message.requiredEntry(registerField(fields, FIRST_FIELD_TAG + lastField, "LargeField" + lastField, STRING));
+        for (int i = 0; i < GROUP_COUNT; i++)
+        {
+            final int tag = FIRST_GROUP_TAG + 2 * i;
+            final Group group = Group.of(registerField(fields, tag, "NoLarge" + i, INT));
+            group.optionalEntry(registerField(fields, tag + 1, "Large" + i + "Field", INT));
+            message.optionalEntry(group);
+        }
+
+        final Message manyGroupsMessage = new Message("ManyGroupsMessage", "MG", APP);
+        for (int i = 0; i < MANY_GROUPS_COUNT; i++)
+        {
+            final int tag = FIRST_MANY_GROUPS_TAG + 2 * i;
+            final Group group = Group.of(registerField(fields, tag, "NoMany" + i, INT));
+            group.optionalEntry(registerField(fields, tag + 1, "Many" + i + "Field", INT));
+            manyGroupsMessage.optionalEntry(group);
+        }
+
+        final Dictionary dictionary = new Dictionary(
+            Arrays.asList(message, manyGroupsMessage), fields, emptyMap(), MESSAGE_EXAMPLE.header(),
+            MESSAGE_EXAMPLE.trailer(), "FIX", 4, 4);
+
+        final StringWriterOutputManager outputManager = new StringWriterOutputManager();
+        new ConstantGenerator(dictionary, TEST_PACKAGE, outputManager).generate();
+        new EnumGenerator(dictionary, TEST_PARENT_PACKAGE, outputManager).generate();
+        new DecoderGenerator(
+            dictionary, 1, TEST_PACKAGE, TEST_PARENT_PACKAGE, outputManager, ValidationOn.class,
+            RejectUnknownFieldOff.class, RejectUnknownEnumValueOn.class, false, "true").generate();
+
+        classFiles = compile(outputManager.getSources());
+        largeMessage = new ClassFileLoader(classFiles).loadClass(LARGE_MESSAGE_DECODER);
+    }
+
+    @Test
+    public void shouldKeepGeneratedMethodsUnderHugeMethodLimit() throws IOException
+    {
+        for (final Map.Entry<String, byte[]> classFile : classFiles.entrySet())
+        {
+            final Map<String, Integer> codeLengths = codeLengths(classFile.getValue());
+            // Initialisers only run when a codec is created, so aren't worth JIT compiling.
+            codeLengths.remove("<init>");
+            codeLengths.remove("<clinit>");
+            codeLengths.forEach((method, codeLength) ->
+                assertTrue(classFile.getKey() + "." + method + " is " + codeLength + " bytes",
+                    codeLength <= HUGE_METHOD_LIMIT));
+        }
+    }
+
+    @Test
+    public void shouldEstimateDecodeCaseSizesGenerously() throws IOException
+    {
+        // Helper methods are filled with cases up to the budget, so the real cases mustn't be larger than estimated.
+        final Map<String, Integer> fieldCodeLengths = codeLengths(classFiles.get(LARGE_MESSAGE_DECODER));
+        assertThat(fieldCodeLengths.get("decodeFields1"), lessThanOrEqualTo(DECODE_CASES_BUDGET));
+
+        final Map<String, Integer> groupCodeLengths = codeLengths(classFiles.get(MANY_GROUPS_MESSAGE_DECODER));
+        assertThat(groupCodeLengths.get("decodeFields1"), lessThanOrEqualTo(DECODE_CASES_BUDGET));
+    }
+
+    @Test
+    public void shouldSplitLargeToStringMethod() throws IOException
+    {
+        final Map<String, Integer> codeLengths = codeLengths(classFiles.get(LARGE_MESSAGE_DECODER));
+
+        assertTrue(codeLengths.keySet().toString(), codeLengths.containsKey("entriesToString1"));
+    }
+
+    @Test
+    public void shouldIncludeFieldsInEveryToStringMethod() throws Exception
+    {
+        final int lastGroup = GROUP_COUNT - 1;
+        final int lastGroupTag = FIRST_GROUP_TAG + 2 * lastGroup;
+        final int lastField = FIELD_COUNT - 1;
+        final Decoder decoder = decode(
+            FIRST_FIELD_TAG + "=10\001" +
+            (FIRST_FIELD_TAG + lastField) + "=last\001" +
+            lastGroupTag + "=1\001" +
+            (lastGroupTag + 1) + "=3\001");
+
+        final String string = decoder.toString();
+        assertThat(string, containsString("\"LargeField0\": \"10\""));
+        assertThat(string, containsString("\"LargeField" + lastField + "\": \"last\""));
+        assertThat(string, containsString("\"Large" + lastGroup + "Field\": \"3\""));
+    }
+
+    @Test
+    public void shouldSplitLargeDecodeMethod() throws IOException
+    {
+        final Map<String, Integer> codeLengths = codeLengths(classFiles.get(LARGE_MESSAGE_DECODER));
+
+        assertTrue(codeLengths.keySet().toString(), codeLengths.containsKey("decodeFields1"));
+    }
+
+    @Test
+    public void shouldDecodeFieldsInEveryTier() throws Exception
+    {
+        final int lastGroup = GROUP_COUNT - 1;
+        final int lastGroupTag = FIRST_GROUP_TAG + 2 * lastGroup;
+        final int lastField = FIELD_COUNT - 1;
+        final Decoder decoder = decode(
+            FIRST_FIELD_TAG + "=10\001" +
+            (FIRST_FIELD_TAG + 1) + "=first\001" +
+            (FIRST_FIELD_TAG + lastField) + "=last\001" +
+            lastGroupTag + "=2\001" +
+            (lastGroupTag + 1) + "=1\001" +
+            (lastGroupTag + 1) + "=2\001");
+
+        assertTrue("Failed validation: " + decoder.rejectReason(), decoder.validate());
+        assertEquals(10, get(decoder, "largeField0"));
+        assertEquals("first", get(decoder, "largeField1AsString"));
+        assertEquals("last", get(decoder, "largeField" + lastField + "AsString"));
+
+        final Object group = get(decoder, "large" + lastGroup + "Group");
+        assertEquals(1, get(group, "large" + lastGroup + "Field"));
+        assertEquals(2, get(get(group, "next"), "large" + lastGroup + "Field"));
+    }
+
+    @Test
+    public void shouldValidateMissingRequiredFieldsBeyondFirstBitsetWord() throws Exception
+    {
+        final Decoder decoder = decode(FIRST_FIELD_TAG + "=10\001");
+
+        assertFalse("Passed validation with missing fields", decoder.validate());
+        assertEquals("Wrong tag id", FIRST_FIELD_TAG + FIELD_COUNT - 1, decoder.invalidTagId());
+        assertEquals("Wrong reject reason", REQUIRED_TAG_MISSING, decoder.rejectReason());
+    }
+
+    @Test
+    public void shouldValidateRepeatedFieldsBeyondFirstBitsetWord() throws Exception
+    {
+        final int repeatedTag = FIRST_FIELD_TAG + 300;
+        final Decoder decoder = decode(
+            FIRST_FIELD_TAG + "=10\001" +
+            repeatedTag + "=a\001" +
+            repeatedTag + "=b\001" +
+            (FIRST_FIELD_TAG + FIELD_COUNT - 1) + "=last\001");
+
+        assertFalse("Passed validation with repeated field", decoder.validate());
+        assertEquals("Wrong tag id", repeatedTag, decoder.invalidTagId());
+        assertEquals("Wrong reject reason", TAG_APPEARS_MORE_THAN_ONCE, decoder.rejectReason());
+
+        decoder.reset();
+        decode(decoder, FIRST_FIELD_TAG + "=10\001" + (FIRST_FIELD_TAG + FIELD_COUNT - 1) + "=last\001");
+        assertTrue("Failed validation after reset: " + decoder.rejectReason(), decoder.validate());
+    }
+
+    private static Decoder decode(final String body) throws Exception
+    {
+        final Decoder decoder = (Decoder)largeMessage.getConstructor().newInstance();
+        decode(decoder, body);
+        return decoder;
+    }
+
+    private static void decode(final Decoder decoder, final String body)
+    {
+        final String example = "8=FIX.4.4\0019=0049\00135=LM\001" + body + "10=209\001";
+        final MutableAsciiBuffer buffer = new MutableAsciiBuffer(new byte[example.length() + 1]);
+        buffer.putAscii(1, example);
+        decoder.decode(buffer, 1, example.length());
+    }
+
+    private static Map<String, byte[]> compile(final Map<String, CharSequence> sources)
+    {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final Map<String, ByteArrayOutputStream> outputs = new HashMap<>();
+        final List<JavaFileObject> compilationUnits = new ArrayList<>();
+        sources.forEach((className, source) ->
+            compilationUnits.add(new SimpleJavaFileObject(sourceUri(className), JavaFileObject.Kind.SOURCE)
+            {
+                public CharSequence getCharContent(final boolean ignoreEncodingErrors)
+                {
+                    return source;
+                }
+            }));
+
+        final JavaFileManager fileManager = new ForwardingJavaFileManager<JavaFileManager>(
+            compiler.getStandardFileManager(null, null, null))
+        {
+            public JavaFileObject getJavaFileForOutput(
+                final Location location, final String className, final JavaFileObject.Kind kind,
+                final FileObject sibling)
+            {
+                return new SimpleJavaFileObject(URI.create("bytes:///" + className), kind)
+                {
+                    public OutputStream openOutputStream()
+                    {
+                        return outputs.computeIfAbsent(className, (name) -> new ByteArrayOutputStream());
+                    }
+                };
+            }
+        };
+
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final boolean compiled = compiler.getTask(null, fileManager, diagnostics, null, null, compilationUnits).call();
+        assertTrue(diagnostics.getDiagnostics().toString(), compiled);
+
+        final Map<String, byte[]> classFiles = new HashMap<>();
+        outputs.forEach((className, output) -> classFiles.put(className, output.toByteArray()));
+        return classFiles;
+    }
+
+    private static URI sourceUri(final String className)
+    {
+        return URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension);
+    }
+
+    // Reads the length of the bytecode of each method from a class file, see chapter 4 of the JVM specification.
+    private static Map<String, Integer> codeLengths(final byte[] classFile) throws IOException
+    {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+        in.skipBytes(8); // magic and version
+
+        final int constantPoolCount = in.readUnsignedShort();
+        final String[] utf8Constants = new String[constantPoolCount];
+        for (int i = 1; i < constantPoolCount; i++)
+        {
+            final int tag = in.readUnsignedByte();
+            switch (tag)
+            {
+                case 1: // Utf8
+                    utf8Constants[i] = in.readUTF();
+                    break;
+
+                case 5: // Long
+                case 6: // Double
+                    in.skipBytes(8);
+                    i++;
+                    break;
+
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                    in.skipBytes(2);
+                    break;
+
+                case 15: // MethodHandle
+                    in.skipBytes(3);
+                    break;
+
+                default: // Integer, Float, references, NameAndType and InvokeDynamic
+                    in.skipBytes(4);
+                    break;
+            }
+        }
+
+        in.skipBytes(6); // access flags, this class and super class
+        in.skipBytes(2 * in.readUnsignedShort()); // interfaces
+
+        final int fieldCount = in.readUnsignedShort();
+        for (int i = 0; i < fieldCount; i++)
+        {
+            in.skipBytes(6); // access flags, name and descriptor
+            skipAttributes(in);
+        }
+
+        final Map<String, Integer> codeLengths = new HashMap<>();
+        final int methodCount = in.readUnsignedShort();
+        for (int i = 0; i < methodCount; i++)
+        {
+            in.skipBytes(2); // access flags
+            final String name = utf8Constants[in.readUnsignedShort()];
+            in.skipBytes(2); // descriptor
+            final int attributeCount = in.readUnsignedShort();
+            for (int j = 0; j < attributeCount; j++)
+            {
+                final String attributeName = utf8Constants[in.readUnsignedShort()];
+                final int attributeLength = in.readInt();
+                if ("Code".equals(attributeName))
+                {
+                    in.skipBytes(4); // max stack and max locals
+                    final int codeLength = in.readInt();
+                    codeLengths.merge(name, codeLength, Math::max);
+                    in.skipBytes(attributeLength - CODE_ATTRIBUTE_HEADER_LENGTH);
+                }
+                else
+                {
+                    in.skipBytes(attributeLength);
+                }
+            }
+        }
+
+        return codeLengths;
+    }
+
+    private static void skipAttributes(final DataInputStream in) throws IOException
+    {
+        final int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++)
+        {
+            in.skipBytes(2);
+            in.skipBytes(in.readInt());
+        }
+    }
+
+    private static final class ClassFileLoader extends ClassLoader
+    {
+        private final Map<String, byte[]> classFiles;
+
+        ClassFileLoader(final Map<String, byte[]> classFiles)
+        {
+            super(DecoderGeneratorMethodSizeTest.class.getClassLoader());
+            this.classFiles = classFiles;
+        }
+
+        protected Class<?> findClass(final String name) throws ClassNotFoundException
+        {
+            final byte[] classFile = classFiles.get(name);
+            if (classFile == null)
+            {
+                throw new ClassNotFoundException(name);
+            }
+
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
@@ -30,6 +30,7 @@ import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 import uk.co.real_logic.artio.util.Reflection;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Map;
 
 import static java.lang.reflect.Modifier.isAbstract;
@@ -141,6 +142,20 @@ public class EncoderGeneratorTest
         assertTestReqIdLength(0, encoder);
     }
 
+    @Test
+    public void shouldBoundEncodedLengthWhenDataFieldIsUnset() throws Exception
+    {
+        final Encoder encoder = newHeartbeat();
+        setRequiredFields(encoder);
+        setByteArray(encoder, DATA_FIELD, null);
+
+        final int maxLengthWithoutData = encoder.maxEncodedLength();
+
+        setByteArray(encoder, DATA_FIELD, new byte[]{ '1', '2', '3' });
+
+        assertThat(encoder.maxEncodedLength(), greaterThan(maxLengthWithoutData));
+    }
+
     @Test
     public void stringSettersResizeByteArray() throws Exception
     {
@@ -529,6 +544,56 @@ public class EncoderGeneratorTest
         assertEncodesTo(encoder, NO_OPTIONAL_MESSAGE);
     }
 
+    @Test
+    public void shouldEncodeChecksumOfEveryWrittenByte() throws Exception
+    {
+        final Encoder encoder = newHeartbeat();
+        setRequiredFields(encoder);
+        setupHeader(encoder, "FIXT.1.1");
+        setupTrailer(encoder, "Good to go!");
+        setOptionalFields(encoder);
+        setDataFieldLength(encoder);
+
+        final Object egGroup = getEgGroup(encoder, 2);
+        setGroupField(egGroup, 1);
+        setNestedField(egGroup);
+        setGroupField(next(egGroup), 2);
+
+        final long result = encoder.encode(buffer, 1);
+        final int offset = Encoder.offset(result);
+        final int checkSumStart = offset + Encoder.length(result) - "10=000\001".length();
+
+        assertEquals("10=", buffer.getAscii(checkSumStart, 3));
+        assertEquals(
+            buffer.computeChecksum(offset, checkSumStart),
+            buffer.getNatural(checkSumStart + 3, checkSumStart + 6));
+    }
+
+    @Test
+    public void shouldEncodeChecksumOfNonAsciiBytes() throws Exception
+    {
+        final Encoder encoder = newHeartbeat();
+        setRequiredFields(encoder);
+        setupHeader(encoder);
+        setupTrailer(encoder);
+
+        // Enough bytes with their top bit set that summing them as signed values gives a negative total.
+        final byte[] testReqId = new byte[64];
+        Arrays.fill(testReqId, (byte)0x80);
+        heartbeat
+            .getMethod(TEST_REQ_ID, byte[].class)
+            .invoke(encoder, (Object)testReqId);
+
+        final long result = encoder.encode(buffer, 1);
+        final int offset = Encoder.offset(result);
+        final int checkSumStart = offset + Encoder.length(result) - "10=000\001".length();
+
+        assertEquals("10=", buffer.getAscii(checkSumStart, 3));
+        assertEquals(
+            buffer.computeChecksum(offset, checkSumStart) & 0xFF,
+            buffer.getNatural(checkSumStart + 3, checkSumStart + 6));
+    }
+
     @Test
     public void shouldEncodeGroupsOfSizeZero() throws Exception
     {
@@ -153,6 +153,38 @@ public class EnumGeneratorTest
         assertEquals(values[2], decode.invoke(null, wrapper));
     }
 
+    @Test
+    public void generatesCharArrayDecodeWithoutAWrapper() throws Exception
+    {
+        final Enum[] values = getStringEnumConstants();
+        final Method decode = stringEnumClass.getMethod("decode", char[].class, int.class, int.class);
+        final char[] value = " 0 A AA ABCDEFGH ABCDEFGHI ".toCharArray();
+
+        assertEquals(values[0], decode.invoke(null, value, 1, 1));
+        assertEquals(values[1], decode.invoke(null, value, 3, 1));
+        assertEquals(values[2], decode.invoke(null, value, 5, 2));
+        assertEquals(values[3], decode.invoke(null, value, 8, 8));
+        assertEquals(values[4], decode.invoke(null, value, 17, 9));
+    }
+
+    @Test
+    public void shouldReturnSentinelValueWhenDecodingUnknownCharArray() throws Exception
+    {
+        final Enum[] values = getStringEnumConstants();
+        final Enum unknown = values[values.length - 1];
+        final Method decode = stringEnumClass.getMethod("decode", char[].class, int.class, int.class);
+        final Method isValid = stringEnumClass.getMethod("isValid", char[].class, int.class, int.class);
+
+        for (final String representation : new String[]{ "B", "AB", "ABCDEFGX", "ABCDEFGHX", "\u0100", "" })
+        {
+            final char[] value = representation.toCharArray();
+            assertEquals(representation, unknown, decode.invoke(null, value, 0, value.length));
+            assertFalse(representation, (Boolean)isValid.invoke(null, value, 0, value.length));
+        }
+
+        assertTrue((Boolean)isValid.invoke(null, "AA".toCharArray(), 0, 2));
+    }
+
     @Test
     public void shouldReturnSentinelValueWhenDecodingUnknownRepresentation() throws Exception
     {
@@ -15,12 +15,18 @@
  */
 package uk.co.real_logic.artio.util;
 
+import org.junit.Test;
 import org.junit.experimental.theories.DataPoints;
 import org.junit.experimental.theories.Theories;
 import org.junit.experimental.theories.Theory;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static uk.co.real_logic.artio.util.AsciiBuffer.UNKNOWN_INDEX;
 
 @RunWith(Theories.class)
 public class MutableAsciiBufferTest
@@ -55,4 +61,184 @@ public class MutableAsciiBufferTest
         assertEquals("Wrong length for " + value, length, MutableAsciiBuffer.lengthInAscii(value));
     }
 
+    @Test
+    public void shouldScanForEveryPositionOfTerminator()
+    {
+        final byte[] bytes = "35=D\u000149=initiator\u000156=acceptor\u000134=1\u0001".getBytes(US_ASCII);
+        final MutableAsciiBuffer buffer = new MutableAsciiBuffer(bytes);
+
+        for (int start = 0; start < bytes.length; start++)
+        {
+            for (int end = start; end < bytes.length; end++)
+            {
+                assertEquals(
+                    "scan(" + start + ", " + end + ")",
+                    slowScan(bytes, start, end, (byte)'='),
+                    buffer.scan(start, end, '='));
+
+                assertEquals(
+                    "scanBack(" + end + ", " + start + ")",
+                    slowScanBack(bytes, end, start, (byte)'\u0001'),
+                    buffer.scanBack(end, start, '\u0001'));
+            }
+        }
+    }
+
+    @Test
+    public void shouldScanPastTheEndOfTheBufferIfTerminatorFoundFirst()
+    {
+        final MutableAsciiBuffer buffer = new MutableAsciiBuffer("8=FIX.4.4\u0001".getBytes(US_ASCII));
+
+        assertEquals(9, buffer.scan(0, 100, '\u0001'));
+    }
+
+    @Test
+    public void shouldComputeChecksumOfEveryRangeIncludingNonAsciiBytes()
+    {
+        final byte[] bytes = new byte[40];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = (byte)(i * 37 + 11);
+        }
+        final MutableAsciiBuffer buffer = new MutableAsciiBuffer(bytes);
+
+        for (int offset = 0; offset < bytes.length; offset++)
+        {
+            for (int end = offset; end <= bytes.length; end++)
+            {
+                assertEquals(
+                    "computeChecksum(" + offset + ", " + end + ")",
+                    slowChecksum(bytes, offset, end),
+                    buffer.computeChecksum(offset, end));
+            }
+        }
+    }
+
+    @Test
+    public void shouldPutBytesWithChecksumOfEveryRangeIncludingNonAsciiBytes()
+    {
+        final byte[] bytes = new byte[40];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = (byte)(i * 37 + 11);
+        }
+
+        for (int offset = 0; offset < bytes.length; offset++)
+        {
+            for (int end = offset; end <= bytes.length; end++)
+            {
+                final int length = end - offset;
+                final MutableAsciiBuffer buffer = new MutableAsciiBuffer(new byte[length + 2]);
+                final int checkSum = buffer.putBytesWithCheckSum(1, bytes, offset, length);
+
+                final byte[] written = new byte[length];
+                buffer.getBytes(1, written);
+                assertArrayEquals(Arrays.copyOfRange(bytes, offset, end), written);
+                assertEquals("putBytesWithCheckSum(" + offset + ", " + length + ")",
+                    slowChecksum(bytes, offset, end), checkSum % 256);
+            }
+        }
+    }
+
+    @Test
+    public void shouldPutIntsWithChecksum()
+    {
+        final int[] values = {0, 1, -1, 9, 10, -10, 99, 123456, -654321, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (final int value : values)
+        {
+            final long result = string.putIntAsciiWithCheckSum(1, value);
+
+            assertPutWithChecksum(String.valueOf(value), 1, result);
+        }
+    }
+
+    @Test
+    public void shouldPutFloatsWithChecksum()
+    {
+        final long[][] valuesAndScales =
+        {
+            {0, 0},
+            {0, 3},
+            {1, 3},
+            {-1, 3},
+            {12345, 2},
+            {-12345, 2},
+            {7, -2},
+            {-7, -2},
+            {Long.MAX_VALUE, 0},
+            {Long.MIN_VALUE + 1, 5},
+        };
+        for (final long[] valueAndScale : valuesAndScales)
+        {
+            final long value = valueAndScale[0];
+            final int scale = (int)valueAndScale[1];
+            final int expectedLength = string.putFloatAscii(1, value, scale);
+            final String expected = string.getAscii(1, expectedLength);
+
+            final long result = string.putFloatAsciiWithCheckSum(1, value, scale);
+
+            assertPutWithChecksum(expected, 1, result);
+        }
+    }
+
+    @Test
+    public void shouldPutNaturalIntsFromEndWithChecksum()
+    {
+        final int end = 20;
+        final int[] values = {0, 5, 10, 123, Integer.MAX_VALUE};
+        for (final int value : values)
+        {
+            final long result = string.putNaturalIntAsciiFromEndWithCheckSum(value, end);
+
+            assertPutWithChecksum(String.valueOf(value), end - MutableAsciiBuffer.length(result), result);
+        }
+    }
+
+    private void assertPutWithChecksum(final String expected, final int offset, final long result)
+    {
+        final int length = MutableAsciiBuffer.length(result);
+        assertEquals(expected, string.getAscii(offset, length));
+        assertEquals(
+            "checksum of " + expected,
+            string.computeChecksum(offset, offset + length),
+            MutableAsciiBuffer.checkSum(result) % 256);
+    }
+
+    private static int slowScan(final byte[] bytes, final int startInclusive, final int endInclusive, final byte value)
+    {
+        for (int i = startInclusive; i <= endInclusive; i++)
+        {
+            if (bytes[i] == value)
+            {
+                return i;
+            }
+        }
+
+        return UNKNOWN_INDEX;
+    }
+
+    private static int slowScanBack(
+        final byte[] bytes, final int startInclusive, final int endInclusive, final byte value)
+    {
+        for (int i = startInclusive; i >= endInclusive; i--)
+        {
+            if (bytes[i] == value)
+            {
+                return i;
+            }
+        }
+
+        return UNKNOWN_INDEX;
+    }
+
+    private static int slowChecksum(final byte[] bytes, final int offset, final int end)
+    {
+        int total = 0;
+        for (int i = offset; i < end; i++)
+        {
+            total += bytes[i];
+        }
+
+        return total % 256;
+    }
 }
@@ -204,6 +204,7 @@ public class CommonConfiguration
 
     public static final int DEFAULT_INBOUND_LIBRARY_STREAM = 1;
     public static final int DEFAULT_OUTBOUND_LIBRARY_STREAM = 2;
+    public static final int DEFAULT_INBOUND_LIBRARY_DELIVERY_STREAM = 6;
 
     private long reasonableTransmissionTimeInMs = DEFAULT_REASONABLE_TRANSMISSION_TIME_IN_MS;
     private boolean printAeronStreamIdentifiers = DEFAULT_PRINT_AERON_STREAM_IDENTIFIERS;
@@ -232,6 +233,7 @@ public class CommonConfiguration
     private String agentNamePrefix = DEFAULT_NAME_PREFIX;
     private int inboundLibraryStream = DEFAULT_INBOUND_LIBRARY_STREAM;
     private int outboundLibraryStream = DEFAULT_OUTBOUND_LIBRARY_STREAM;
+    private int inboundLibraryDeliveryStream = DEFAULT_INBOUND_LIBRARY_DELIVERY_STREAM;
     private boolean gracefulShutdown = true;
 
     private final AtomicBoolean isConcluded = new AtomicBoolean(false);
@@ -490,6 +492,21 @@ public class CommonConfiguration
         return this;
     }
 
+    /**
+     * Sets the stream that the engine delivers each library's inbound messages to it on. The engine copies the
+     * messages for a library from the inbound library stream onto a publication of its own on this stream, whose
+     * Aeron session id is the library's id, so a library only reads its own messages. Only the inbound library
+     * stream is archived.
+     *
+     * @param inboundLibraryDeliveryStream the stream id of the delivery stream.
+     * @return this
+     */
+    public CommonConfiguration inboundLibraryDeliveryStream(final int inboundLibraryDeliveryStream)
+    {
+        this.inboundLibraryDeliveryStream = inboundLibraryDeliveryStream;
+        return this;
+    }
+
     /**
      * Sets factory for threads such as framer, archivingRunner, etc in EngineScheduler
      * @param threadFactory factory for custom thread creating
@@ -677,6 +694,11 @@ public class CommonConfiguration
         return outboundLibraryStream;
     }
 
+    public int inboundLibraryDeliveryStream()
+    {
+        return inboundLibraryDeliveryStream;
+    }
+
     public ThreadFactory threadFactory()
     {
         return threadFactory;
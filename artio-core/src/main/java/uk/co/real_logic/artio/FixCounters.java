@@ -35,6 +35,8 @@ public class FixCounters implements AutoCloseable
     private static final int INVALID_LIBRARY_ATTEMPTS_TYPE_ID = 10_005;
     private static final int SENT_MSG_SEQ_NO_TYPE_ID = 10_006;
     private static final int RECV_MSG_SEQ_NO_TYPE_ID = 10_007;
+    private static final int INDEX_CATCHUP_BYTES_REMAINING_TYPE_ID = 10_008;
+    private static final int INDEX_CATCHUP_ESTIMATED_MS_REMAINING_TYPE_ID = 10_009;
 
     private final List<Counter> counters = new ArrayList<>();
     private final AtomicCounter failedInboundPublications;
@@ -91,6 +93,16 @@ public class FixCounters implements AutoCloseable
         return newCounter(RECV_MSG_SEQ_NO_TYPE_ID, "Last Received MsgSeqNo for " + connectionId);
     }
 
+    public AtomicCounter indexCatchupBytesRemaining()
+    {
+        return newCounter(INDEX_CATCHUP_BYTES_REMAINING_TYPE_ID, "Bytes remaining to catch up indices");
+    }
+
+    public AtomicCounter indexCatchupEstimatedMsRemaining()
+    {
+        return newCounter(INDEX_CATCHUP_ESTIMATED_MS_REMAINING_TYPE_ID, "Estimated ms remaining to catch up indices");
+    }
+
     private AtomicCounter newCounter(final int typeId, final String label)
     {
         final Counter counter = aeron.addCounter(typeId, label);
@@ -21,6 +21,9 @@ import org.agrona.concurrent.Agent;
 import org.agrona.concurrent.AgentRunner;
 import uk.co.real_logic.artio.dictionary.generation.Exceptions;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ThreadFactory;
 
 import static org.agrona.concurrent.AgentRunner.startOnThread;
@@ -31,7 +34,9 @@ import static org.agrona.concurrent.AgentRunner.startOnThread;
 public class DefaultEngineScheduler implements EngineScheduler
 {
     private AgentRunner framerRunner;
+    private final List<AgentRunner> framerShardRunners = new ArrayList<>();
     private AgentRunner archivingRunner;
+    private final List<AgentRunner> indexerRunners = new ArrayList<>();
     private AgentRunner monitoringRunner;
     private RecordingCoordinator recordingCoordinator;
 
@@ -43,6 +48,50 @@ public class DefaultEngineScheduler implements EngineScheduler
         final Agent monitoringAgent,
         final Agent conductorAgent,
         final RecordingCoordinator recordingCoordinator)
+    {
+        launch(
+            configuration,
+            errorHandler,
+            framer,
+            Collections.emptyList(),
+            indexingAgent,
+            monitoringAgent,
+            conductorAgent,
+            recordingCoordinator);
+    }
+
+    public void launch(
+        final EngineConfiguration configuration,
+        final ErrorHandler errorHandler,
+        final Agent framer,
+        final List<Agent> framerShards,
+        final Agent indexingAgent,
+        final Agent monitoringAgent,
+        final Agent conductorAgent,
+        final RecordingCoordinator recordingCoordinator)
+    {
+        launch(
+            configuration,
+            errorHandler,
+            framer,
+            framerShards,
+            indexingAgent,
+            Collections.emptyList(),
+            monitoringAgent,
+            conductorAgent,
+            recordingCoordinator);
+    }
+
+    public void launch(
+        final EngineConfiguration configuration,
+        final ErrorHandler errorHandler,
+        final Agent framer,
+        final List<Agent> framerShards,
+        final Agent indexingAgent,
+        final List<Agent> indexers,
+        final Agent monitoringAgent,
+        final Agent conductorAgent,
+        final RecordingCoordinator recordingCoordinator)
     {
         this.recordingCoordinator = recordingCoordinator;
         if (framerRunner != null)
@@ -59,6 +108,22 @@ public class DefaultEngineScheduler implements EngineScheduler
         startOnThread(framerRunner, threadFactory);
         startOnThread(archivingRunner, threadFactory);
 
+        for (final Agent framerShard : framerShards)
+        {
+            final AgentRunner framerShardRunner = new AgentRunner(
+                configuration.newFramerShardIdleStrategy(), errorHandler, null, framerShard);
+            framerShardRunners.add(framerShardRunner);
+            startOnThread(framerShardRunner, threadFactory);
+        }
+
+        for (final Agent indexer : indexers)
+        {
+            final AgentRunner indexerRunner = new AgentRunner(
+                configuration.newIndexerIdleStrategy(), errorHandler, null, indexer);
+            indexerRunners.add(indexerRunner);
+            startOnThread(indexerRunner, threadFactory);
+        }
+
         if (monitoringAgent != null)
         {
             monitoringRunner = new AgentRunner(
@@ -75,8 +140,18 @@ public class DefaultEngineScheduler implements EngineScheduler
         EngineScheduler.awaitRunnerStart(framerRunner);
         EngineScheduler.awaitRunnerStart(archivingRunner);
         EngineScheduler.awaitRunnerStart(monitoringRunner);
+        framerShardRunners.forEach(EngineScheduler::awaitRunnerStart);
+        indexerRunners.forEach(EngineScheduler::awaitRunnerStart);
 
-        Exceptions.closeAll(framerRunner, archivingRunner, recordingCoordinator, monitoringRunner);
+        // The Framer reclaims its shards' end points when it closes, so the shards are closed after it.
+        final List<AutoCloseable> closeables = new ArrayList<>();
+        closeables.add(framerRunner);
+        closeables.addAll(framerShardRunners);
+        closeables.add(archivingRunner);
+        closeables.addAll(indexerRunners);
+        closeables.add(recordingCoordinator);
+        closeables.add(monitoringRunner);
+        Exceptions.closeAll(closeables);
     }
 
     public void configure(final Aeron.Context aeronContext)
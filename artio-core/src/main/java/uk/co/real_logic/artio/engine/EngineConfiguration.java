@@ -28,6 +28,8 @@ import uk.co.real_logic.artio.dictionary.FixDictionary;
 import uk.co.real_logic.artio.dictionary.SessionConstants;
 import uk.co.real_logic.artio.engine.framer.DefaultTcpChannelSupplier;
 import uk.co.real_logic.artio.engine.framer.TcpChannelSupplier;
+import uk.co.real_logic.artio.engine.logger.ArchivingPolicy;
+import uk.co.real_logic.artio.engine.logger.ReplayIndexRetentionPolicy;
 import uk.co.real_logic.artio.library.SessionConfiguration;
 import uk.co.real_logic.artio.validation.AuthenticationStrategy;
 import uk.co.real_logic.artio.validation.SessionPersistenceStrategy;
@@ -39,6 +41,7 @@ import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static java.lang.Integer.getInteger;
 import static java.lang.System.getProperty;
@@ -68,7 +71,7 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
      */
     public static final String LOG_FILE_DIR_PROP = "logging.dir";
     /**
-     * Property name for size of logging index files
+     * Property name for size of each segment of the logging index files
      */
     public static final String REPLAY_INDEX_FILE_SIZE_PROP = "logging.index.size";
 
@@ -85,6 +88,10 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
      * Property name for the max number of messages to read from replayer.
      */
     public static final String REPLAY_FRAGMENT_LIMIT_PROP = "fix.core.replay_fragment_limit";
+    /**
+     * Property name for the max number of messages to deliver from the inbound library stream to libraries.
+     */
+    public static final String INBOUND_LIBRARY_FRAGMENT_LIMIT_PROP = "fix.core.inbound_fragment_limit";
     /**
      * Property name for the max number of bytes to read from all TCP Connections.
      */
@@ -117,18 +124,31 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
      * Property name for the timeout before a connection that hasn't sent a logon is disconnected
      */
     public static final String NO_LOGON_DISCONNECT_TIMEOUT_PROP = "fix.core.no_logon_disconnect";
+    /**
+     * Property name for the number of framer shards that TCP connections are partitioned across.
+     */
+    public static final String FRAMER_SHARD_COUNT_PROP = "fix.core.framer_shard_count";
 
     // ------------------------------------------------
     //          Configuration Defaults
     // ------------------------------------------------
 
     public static final String DEFAULT_LOG_FILE_DIR = "logs";
-    public static final int DEFAULT_REPLAY_INDEX_FILE_SIZE = 2 * 1024 * 1024 + INITIAL_RECORD_OFFSET;
+    public static final int DEFAULT_REPLAY_INDEX_FILE_SIZE = 256 * 1024 + INITIAL_RECORD_OFFSET;
+    public static final int DEFAULT_REPLAY_INDEX_RETAINED_SEGMENTS = 16;
+    public static final int DEFAULT_SHARED_REPLAY_INDEX_SEGMENT_COUNT = 4 * 1024;
+    public static final int DEFAULT_SHARED_REPLAY_INDEX_SESSION_CAPACITY = 1024;
     public static final int DEFAULT_LOGGER_CACHE_NUM_SETS = 8;
+    public static final int NO_RESEND_CACHE = 0;
+    public static final int DEFAULT_RESEND_CACHE_MAX_MESSAGE_LENGTH = 2 * 1024;
+    public static final int DEFAULT_TIMESTAMP_INDEX_INTERVAL = 1024 * 1024;
+    public static final int DEFAULT_TAG_INDEX_BUCKET_COUNT = 64 * 1024;
+    public static final int DEFAULT_TAG_INDEX_ENTRY_CAPACITY = 64 * 1024 * 1024;
     public static final int DEFAULT_LOGGER_CACHE_SET_SIZE = 4;
 
     public static final int DEFAULT_OUTBOUND_LIBRARY_FRAGMENT_LIMIT = 20;
     public static final int DEFAULT_REPLAY_FRAGMENT_LIMIT = 5;
+    public static final int DEFAULT_INBOUND_LIBRARY_FRAGMENT_LIMIT = 20;
     public static final int DEFAULT_INBOUND_BYTES_RECEIVED_LIMIT = 8 * 1024;
     public static final int DEFAULT_RECEIVER_BUFFER_SIZE = 16 * 1024;
     public static final int DEFAULT_RECEIVER_SOCKET_BUFFER_SIZE = 1024 * 1024;
@@ -137,6 +157,7 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
     public static final int DEFAULT_SESSION_ID_BUFFER_SIZE = 4 * 1024 * 1024;
     public static final int DEFAULT_SENDER_MAX_BYTES_IN_BUFFER = 4 * 1024 * 1024;
     public static final int DEFAULT_NO_LOGON_DISCONNECT_TIMEOUT = (int)SECONDS.toMillis(5);
+    public static final int DEFAULT_FRAMER_SHARD_COUNT = 1;
     public static final String DEFAULT_SESSION_ID_FILE = "session_id_buffer";
     public static final String DEFAULT_SEQUENCE_NUMBERS_SENT_FILE = "sequence_numbers_sent";
     public static final String DEFAULT_SEQUENCE_NUMBERS_RECEIVED_FILE = "sequence_numbers_received";
@@ -149,6 +170,7 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
     /** Unmodifiable set of defaults, please make a copy if you wish to modify them. */
     public static final Set<String> DEFAULT_GAPFILL_ON_REPLAY_MESSAGE_TYPES;
     public static final long DEFAULT_INDEX_FILE_STATE_FLUSH_TIMEOUT_IN_MS = 10_000;
+    public static final long DEFAULT_SESSION_ID_SNAPSHOT_INTERVAL_IN_MS = 10_000;
     public static final long DEFAULT_AUTHENTICATION_TIMEOUT_IN_MS = 60_000;
 
     static
@@ -166,10 +188,16 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
     public static final int DEFAULT_OUTBOUND_REPLAY_STREAM = 3;
     public static final int DEFAULT_ARCHIVE_REPLAY_STREAM = 4;
     public static final int DEFAULT_ARCHIVE_SCANNER_STREAM = 5;
+    public static final int DEFAULT_INBOUND_LIBRARY_UNRECORDED_STREAM = 7;
 
     private String host = null;
     private int port;
     private int replayIndexFileSize = getInteger(REPLAY_INDEX_FILE_SIZE_PROP, DEFAULT_REPLAY_INDEX_FILE_SIZE);
+    private ReplayIndexRetentionPolicy replayIndexRetentionPolicy =
+        ReplayIndexRetentionPolicy.retainSegments(DEFAULT_REPLAY_INDEX_RETAINED_SEGMENTS);
+    private boolean sharedReplayIndexStore = false;
+    private int sharedReplayIndexSegmentCount = DEFAULT_SHARED_REPLAY_INDEX_SEGMENT_COUNT;
+    private int sharedReplayIndexSessionCapacity = DEFAULT_SHARED_REPLAY_INDEX_SESSION_CAPACITY;
     private String logFileDir = getProperty(LOG_FILE_DIR_PROP, DEFAULT_LOG_FILE_DIR);
     private int loggerCacheNumSets = DEFAULT_LOGGER_CACHE_NUM_SETS;
     private int loggerCacheSetSize = DEFAULT_LOGGER_CACHE_SET_SIZE;
@@ -184,6 +212,7 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
     private MappedFile receivedSequenceNumberIndex;
     private MappedFile sessionIdBuffer;
     private Set<String> gapfillOnReplayMessageTypes = new HashSet<>(DEFAULT_GAPFILL_ON_REPLAY_MESSAGE_TYPES);
+    private ArchivingPolicy archivingPolicy = null;
     private final AeronArchive.Context archiveContext = new AeronArchive.Context();
     private AeronArchive.Context archiveContextClone;
     private Aeron.Context aeronContextClone;
@@ -192,6 +221,8 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         getInteger(OUTBOUND_LIBRARY_FRAGMENT_LIMIT_PROP, DEFAULT_OUTBOUND_LIBRARY_FRAGMENT_LIMIT);
     private int replayFragmentLimit =
         getInteger(REPLAY_FRAGMENT_LIMIT_PROP, DEFAULT_REPLAY_FRAGMENT_LIMIT);
+    private int inboundLibraryFragmentLimit =
+        getInteger(INBOUND_LIBRARY_FRAGMENT_LIMIT_PROP, DEFAULT_INBOUND_LIBRARY_FRAGMENT_LIMIT);
     private int inboundBytesReceivedLimit =
         getInteger(INBOUND_BYTES_RECEIVED_LIMIT_PROP, DEFAULT_INBOUND_BYTES_RECEIVED_LIMIT);
     private int receiverBufferSize =
@@ -208,6 +239,12 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         getInteger(SENDER_MAX_BYTES_IN_BUFFER_PROP, DEFAULT_SENDER_MAX_BYTES_IN_BUFFER);
     private int noLogonDisconnectTimeoutInMs =
         getInteger(NO_LOGON_DISCONNECT_TIMEOUT_PROP, DEFAULT_NO_LOGON_DISCONNECT_TIMEOUT);
+    private int framerShardCount =
+        getInteger(FRAMER_SHARD_COUNT_PROP, DEFAULT_FRAMER_SHARD_COUNT);
+    private Supplier<IdleStrategy> framerShardIdleStrategySupplier = CommonConfiguration::backoffIdleStrategy;
+    private boolean separateIndexerThreads = false;
+    private Supplier<IdleStrategy> indexerIdleStrategySupplier = CommonConfiguration::backoffIdleStrategy;
+    private int indexCatchupThreadCount = Runtime.getRuntime().availableProcessors();
 
     private String libraryAeronChannel = null;
     private Function<EngineConfiguration, TcpChannelSupplier> channelSupplierFactory = DefaultTcpChannelSupplier::new;
@@ -215,8 +252,16 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
     private long slowConsumerTimeoutInMs = DEFAULT_SLOW_CONSUMER_TIMEOUT_IN_MS;
     private EngineScheduler scheduler = new DefaultEngineScheduler();
     private ReplayHandler replayHandler = DEFAULT_REPLAY_HANDLER;
+    private int resendCacheMessageCapacity = NO_RESEND_CACHE;
+    private int resendCacheMaxMessageLength = DEFAULT_RESEND_CACHE_MAX_MESSAGE_LENGTH;
+    private boolean timestampIndex = false;
+    private int timestampIndexInterval = DEFAULT_TIMESTAMP_INDEX_INTERVAL;
+    private int[] tagIndexTags = new int[0];
+    private int tagIndexBucketCount = DEFAULT_TAG_INDEX_BUCKET_COUNT;
+    private int tagIndexEntryCapacity = DEFAULT_TAG_INDEX_ENTRY_CAPACITY;
     private int outboundReplayStream = DEFAULT_OUTBOUND_REPLAY_STREAM;
     private int archiveReplayStream = DEFAULT_ARCHIVE_REPLAY_STREAM;
+    private int inboundLibraryUnrecordedStream = DEFAULT_INBOUND_LIBRARY_UNRECORDED_STREAM;
     private boolean acceptedSessionClosedResendInterval = DEFAULT_CLOSED_RESEND_INTERVAL;
     private int acceptedSessionResendRequestChunkSize = NO_RESEND_REQUEST_CHUNK_SIZE;
     private boolean acceptedSessionSendRedundantResendRequests = DEFAULT_SEND_REDUNDANT_RESEND_REQUESTS;
@@ -224,6 +269,7 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
     private InitialAcceptedSessionOwner initialAcceptedSessionOwner = InitialAcceptedSessionOwner.ENGINE;
     private AuthenticationStrategy authenticationStrategy = AuthenticationStrategy.none();
     private long indexFileStateFlushTimeoutInMs = DEFAULT_INDEX_FILE_STATE_FLUSH_TIMEOUT_IN_MS;
+    private long sessionIdSnapshotIntervalInMs = DEFAULT_SESSION_ID_SNAPSHOT_INTERVAL_IN_MS;
     private FixDictionary acceptorfixDictionary;
     private boolean deleteLogFileDirOnStart = false;
     private long authenticationTimeoutInMs = DEFAULT_AUTHENTICATION_TIMEOUT_IN_MS;
@@ -314,9 +360,14 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
     }
 
     /**
-     * Sets the size of index files. This is the size in bytes for the replay index file that is used for each session.
-     * If you want to size in terms of the last N Fix message fragments that you have received then
-     * use the formula: INITIAL_RECORD_OFFSET + N * ReplayIndexDescriptor.RECORD_LENGTH.
+     * Sets the size of index file segments. Each session's replay index is a chain of segments of this size in bytes,
+     * with a new segment started when the last one fills up. If you want to size in terms of N Fix message
+     * fragments per segment then use the formula: INITIAL_RECORD_OFFSET + N * ReplayIndexDescriptor.RECORD_LENGTH.
+     *
+     * When upgrading from a version whose replay index was a single ring buffer file per session, the engine
+     * converts each session's ring into segments of this size when it starts, and deletes the ring buffer file. A
+     * ring buffer file that can't be converted is renamed with a ".unconverted" suffix and reported to the error
+     * handler; the messages that it indexed can't be resent.
      *
      * @param indexFileSize the size of index files.
      * @return this
@@ -329,6 +380,63 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets the policy for deleting old segments of each session's replay index. Messages can only be replayed if
+     * they're in a retained segment.
+     *
+     * @param replayIndexRetentionPolicy the policy for deleting old segments of the replay index.
+     * @return this
+     * @see EngineConfiguration#DEFAULT_REPLAY_INDEX_RETAINED_SEGMENTS
+     */
+    public EngineConfiguration replayIndexRetentionPolicy(final ReplayIndexRetentionPolicy replayIndexRetentionPolicy)
+    {
+        this.replayIndexRetentionPolicy = replayIndexRetentionPolicy;
+        return this;
+    }
+
+    /**
+     * Sets whether the replay index of each stream is stored in a single file that's shared between all sessions,
+     * rather than in a file per segment. The shared file is mapped once on startup, so sessions rolling onto new
+     * segments don't create or destroy any mappings. It has a fixed capacity though, see
+     * {@link #sharedReplayIndexSegmentCount(int)} and {@link #sharedReplayIndexSessionCapacity(int)}, and messages
+     * aren't indexed for replay once it is full.
+     *
+     * @param sharedReplayIndexStore true to store the replay index of each stream in a single file.
+     * @return this
+     */
+    public EngineConfiguration sharedReplayIndexStore(final boolean sharedReplayIndexStore)
+    {
+        this.sharedReplayIndexStore = sharedReplayIndexStore;
+        return this;
+    }
+
+    /**
+     * Sets the number of segments, of {@link #replayIndexFileSize(int)} bytes each, that a shared replay index file
+     * has space for. These are shared between all sessions and the whole file must fit within 2GB.
+     *
+     * @param sharedReplayIndexSegmentCount the number of segments in a shared replay index file.
+     * @return this
+     * @see EngineConfiguration#sharedReplayIndexStore(boolean)
+     */
+    public EngineConfiguration sharedReplayIndexSegmentCount(final int sharedReplayIndexSegmentCount)
+    {
+        this.sharedReplayIndexSegmentCount = sharedReplayIndexSegmentCount;
+        return this;
+    }
+
+    /**
+     * Sets the number of sessions that a shared replay index file has space for.
+     *
+     * @param sharedReplayIndexSessionCapacity the number of sessions in a shared replay index file.
+     * @return this
+     * @see EngineConfiguration#sharedReplayIndexStore(boolean)
+     */
+    public EngineConfiguration sharedReplayIndexSessionCapacity(final int sharedReplayIndexSessionCapacity)
+    {
+        this.sharedReplayIndexSessionCapacity = sharedReplayIndexSessionCapacity;
+        return this;
+    }
+
     /**
      * Sets the set size of the logger's caches.
      * <p>
@@ -398,6 +506,52 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets whether each index is built by an indexer agent of its own rather than by the archiving agent. Each
+     * indexer has its own subscription and catches up with the archive on its own, so the default
+     * {@link DefaultEngineScheduler} can run them on separate threads. For example, a replay index that stalls on
+     * a page fault doesn't hold up the sequence number indices that logons wait on.
+     * <p>
+     * Default: false, which means that every index is built on the archiving agent.
+     *
+     * @param separateIndexerThreads true to build each index on an indexer agent of its own.
+     * @return this
+     */
+    public EngineConfiguration separateIndexerThreads(final boolean separateIndexerThreads)
+    {
+        this.separateIndexerThreads = separateIndexerThreads;
+        return this;
+    }
+
+    /**
+     * Sets the factory for the idle strategies of indexer threads. Each indexer runs on its own thread, so each
+     * one needs a new idle strategy.
+     *
+     * @param indexerIdleStrategySupplier the factory for the idle strategies of indexer threads.
+     * @return this
+     * @see #separateIndexerThreads(boolean)
+     */
+    public EngineConfiguration indexerIdleStrategySupplier(final Supplier<IdleStrategy> indexerIdleStrategySupplier)
+    {
+        this.indexerIdleStrategySupplier = indexerIdleStrategySupplier;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of threads used to catch indices up with the archive when the engine starts. Each
+     * index is caught up on a single thread, so no more threads than there are indices that are behind are used.
+     * <p>
+     * Default: the number of available processors.
+     *
+     * @param indexCatchupThreadCount the maximum number of threads used to catch indices up on startup.
+     * @return this
+     */
+    public EngineConfiguration indexCatchupThreadCount(final int indexCatchupThreadCount)
+    {
+        this.indexCatchupThreadCount = indexCatchupThreadCount;
+        return this;
+    }
+
     public EngineConfiguration printStartupWarnings(final boolean printStartupWarnings)
     {
         this.printStartupWarnings = printStartupWarnings;
@@ -416,6 +570,40 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets the number of shards that the Framer's TCP connections are partitioned across. Each shard beyond the
+     * first runs on its own thread and performs the socket reads, framing, validation and publication of the
+     * inbound messages for the connections that hash to it. Connections are only moved to a shard whilst they are
+     * owned by a library, library management and engine managed sessions always stay on the Framer itself. Outbound
+     * messages are always written to the connections by the Framer.
+     * <p>
+     * Default: 1, which means that the Framer handles all connections.
+     *
+     * @param framerShardCount the number of shards that the Framer's TCP connections are partitioned across.
+     * @return this
+     * @see EngineConfiguration#FRAMER_SHARD_COUNT_PROP
+     */
+    public EngineConfiguration framerShardCount(final int framerShardCount)
+    {
+        this.framerShardCount = framerShardCount;
+        return this;
+    }
+
+    /**
+     * Sets the factory for the idle strategies of framer shard threads, a new idle strategy is needed for each
+     * shard as they run on their own threads.
+     *
+     * @param framerShardIdleStrategySupplier the factory for the idle strategies of framer shard threads.
+     * @return this
+     * @see #framerShardCount(int)
+     */
+    public EngineConfiguration framerShardIdleStrategySupplier(
+        final Supplier<IdleStrategy> framerShardIdleStrategySupplier)
+    {
+        this.framerShardIdleStrategySupplier = framerShardIdleStrategySupplier;
+        return this;
+    }
+
     /**
      * Sets the idle strategy for the Logger thread.
      *
@@ -454,6 +642,19 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets the fragment limit for delivering messages from the inbound library stream to libraries.
+     *
+     * @param inboundLibraryFragmentLimit the fragment limit for delivering inbound messages to libraries.
+     * @return this
+     * @see EngineConfiguration#INBOUND_LIBRARY_FRAGMENT_LIMIT_PROP
+     */
+    public EngineConfiguration inboundLibraryFragmentLimit(final int inboundLibraryFragmentLimit)
+    {
+        this.inboundLibraryFragmentLimit = inboundLibraryFragmentLimit;
+        return this;
+    }
+
     /**
      * Sets the bytes limit for receiving inbound messages.
      *
@@ -530,6 +731,26 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets a policy for which messages are kept for replay, for example to skip high volume market data messages.
+     * Skipped messages are left out of the replay index, so a resend request gap fills over them in the same way
+     * as the {@link #gapfillOnReplayMessageTypes(Set)}. Sequence numbers are still tracked for skipped messages.
+     *
+     * Skipped inbound messages aren't recorded at all: they're published on the
+     * {@link #inboundLibraryUnrecordedStream(int)} instead of the inbound library stream. Outbound messages are
+     * published by libraries, so skipped outbound messages are still recorded but not indexed for replay.
+     *
+     * By default every message is kept.
+     *
+     * @param archivingPolicy the policy for keeping messages, or null to keep every message.
+     * @return this
+     */
+    public EngineConfiguration archivingPolicy(final ArchivingPolicy archivingPolicy)
+    {
+        this.archivingPolicy = archivingPolicy;
+        return this;
+    }
+
     /**
      * Sets a handler that will be invoked when a message is replayed.
      *
@@ -542,6 +763,110 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets the number of recent messages per session that are cached in memory so that they can be resent without
+     * replaying them from the archive. Each session's cache is allocated off-heap when it first sends a message and
+     * takes up roughly resendCacheMessageCapacity * resendCacheMaxMessageLength bytes. Resend requests that aren't
+     * entirely covered by the cache are replayed from the archive as normal.
+     *
+     * @param resendCacheMessageCapacity the number of messages to cache per session, or {@link #NO_RESEND_CACHE}
+     *                                   to disable the cache.
+     * @return this
+     * @see EngineConfiguration#resendCacheMaxMessageLength(int)
+     */
+    public EngineConfiguration resendCacheMessageCapacity(final int resendCacheMessageCapacity)
+    {
+        this.resendCacheMessageCapacity = resendCacheMessageCapacity;
+        return this;
+    }
+
+    /**
+     * Sets the maximum length of a message, including Artio's framing, that is cached in the resend cache.
+     *
+     * @param resendCacheMaxMessageLength the maximum length of a cached message.
+     * @return this
+     * @see EngineConfiguration#resendCacheMessageCapacity(int)
+     */
+    public EngineConfiguration resendCacheMaxMessageLength(final int resendCacheMaxMessageLength)
+    {
+        this.resendCacheMaxMessageLength = resendCacheMaxMessageLength;
+        return this;
+    }
+
+    /**
+     * Sets whether the timestamps of archived messages are indexed. The index is written to the log file directory
+     * and lets a {@link uk.co.real_logic.artio.engine.logger.FixArchiveScanner} that is scanning for a time range
+     * skip the parts of the archive that are outside of it.
+     *
+     * @param timestampIndex true to index the timestamps of archived messages.
+     * @return this
+     * @see EngineConfiguration#timestampIndexInterval(int)
+     */
+    public EngineConfiguration timestampIndex(final boolean timestampIndex)
+    {
+        this.timestampIndex = timestampIndex;
+        return this;
+    }
+
+    /**
+     * Sets the number of bytes of a recording between each checkpoint of the timestamp index. Smaller intervals let
+     * scans skip more precisely at the cost of a larger index.
+     *
+     * @param timestampIndexInterval the number of bytes of a recording between each checkpoint.
+     * @return this
+     * @see EngineConfiguration#timestampIndex(boolean)
+     */
+    public EngineConfiguration timestampIndexInterval(final int timestampIndexInterval)
+    {
+        this.timestampIndexInterval = timestampIndexInterval;
+        return this;
+    }
+
+    /**
+     * Sets the tags whose values are indexed in archived messages, for example ClOrdID (11) or OrderID (37). The
+     * index is written to the log file directory and lets a
+     * {@link uk.co.real_logic.artio.engine.logger.FixArchiveScanner} look up messages by the value of one of these
+     * tags without scanning the archive. No tags are indexed by default.
+     *
+     * @param tagIndexTags the tags whose values are indexed.
+     * @return this
+     * @see EngineConfiguration#tagIndexBucketCount(int)
+     * @see EngineConfiguration#tagIndexEntryCapacity(int)
+     */
+    public EngineConfiguration tagIndexTags(final int... tagIndexTags)
+    {
+        this.tagIndexTags = tagIndexTags;
+        return this;
+    }
+
+    /**
+     * Sets the number of hash buckets in a tag index, must be a power of two. This only applies when the index is
+     * created, an existing index keeps its size.
+     *
+     * @param tagIndexBucketCount the number of hash buckets in a tag index.
+     * @return this
+     * @see EngineConfiguration#tagIndexTags(int...)
+     */
+    public EngineConfiguration tagIndexBucketCount(final int tagIndexBucketCount)
+    {
+        this.tagIndexBucketCount = tagIndexBucketCount;
+        return this;
+    }
+
+    /**
+     * Sets the number of bytes of entries in a tag index, once it's full the oldest entries are overwritten. This
+     * only applies when the index is created, an existing index keeps its size.
+     *
+     * @param tagIndexEntryCapacity the number of bytes of entries in a tag index.
+     * @return this
+     * @see EngineConfiguration#tagIndexTags(int...)
+     */
+    public EngineConfiguration tagIndexEntryCapacity(final int tagIndexEntryCapacity)
+    {
+        this.tagIndexEntryCapacity = tagIndexEntryCapacity;
+        return this;
+    }
+
     public EngineConfiguration outboundReplayStream(final int outboundReplayStream)
     {
         this.outboundReplayStream = outboundReplayStream;
@@ -554,6 +879,19 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets the stream that inbound messages which the {@link #archivingPolicy(ArchivingPolicy)} doesn't keep are
+     * published on. This stream is never recorded.
+     *
+     * @param inboundLibraryUnrecordedStream the stream id of the unrecorded stream.
+     * @return this
+     */
+    public EngineConfiguration inboundLibraryUnrecordedStream(final int inboundLibraryUnrecordedStream)
+    {
+        this.inboundLibraryUnrecordedStream = inboundLibraryUnrecordedStream;
+        return this;
+    }
+
     /**
      * Sets the {@link SessionConfiguration#closedResendInterval()} property for accepted Sessions.
      *
@@ -658,6 +996,20 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets the interval between snapshots of the session id file. A snapshot is only taken if sessions have been
+     * added since the last one, and one is always taken when the engine closes. On startup only the sessions added
+     * after the last snapshot are loaded from the session id file, the others are looked up when they first log on.
+     *
+     * @param sessionIdSnapshotIntervalInMs the interval between snapshots of the session id file.
+     * @return this
+     */
+    public EngineConfiguration sessionIdSnapshotIntervalInMs(final long sessionIdSnapshotIntervalInMs)
+    {
+        this.sessionIdSnapshotIntervalInMs = sessionIdSnapshotIntervalInMs;
+        return this;
+    }
+
     public EngineConfiguration acceptorfixDictionary(final Class<? extends FixDictionary> acceptorfixDictionary)
     {
         this.acceptorfixDictionary = FixDictionary.of(acceptorfixDictionary);
@@ -716,6 +1068,26 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return replayIndexFileSize;
     }
 
+    public ReplayIndexRetentionPolicy replayIndexRetentionPolicy()
+    {
+        return replayIndexRetentionPolicy;
+    }
+
+    public boolean sharedReplayIndexStore()
+    {
+        return sharedReplayIndexStore;
+    }
+
+    public int sharedReplayIndexSegmentCount()
+    {
+        return sharedReplayIndexSegmentCount;
+    }
+
+    public int sharedReplayIndexSessionCapacity()
+    {
+        return sharedReplayIndexSessionCapacity;
+    }
+
     public int loggerCacheSetSize()
     {
         return loggerCacheSetSize;
@@ -761,6 +1133,31 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return archiverIdleStrategy;
     }
 
+    public int framerShardCount()
+    {
+        return framerShardCount;
+    }
+
+    public IdleStrategy newFramerShardIdleStrategy()
+    {
+        return framerShardIdleStrategySupplier.get();
+    }
+
+    public boolean separateIndexerThreads()
+    {
+        return separateIndexerThreads;
+    }
+
+    public IdleStrategy newIndexerIdleStrategy()
+    {
+        return indexerIdleStrategySupplier.get();
+    }
+
+    public int indexCatchupThreadCount()
+    {
+        return indexCatchupThreadCount;
+    }
+
     public int outboundLibraryFragmentLimit()
     {
         return outboundLibraryFragmentLimit;
@@ -771,6 +1168,11 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return replayFragmentLimit;
     }
 
+    public int inboundLibraryFragmentLimit()
+    {
+        return inboundLibraryFragmentLimit;
+    }
+
     public int inboundBytesReceivedLimit()
     {
         return inboundBytesReceivedLimit;
@@ -806,6 +1208,11 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return gapfillOnReplayMessageTypes;
     }
 
+    public ArchivingPolicy archivingPolicy()
+    {
+        return archivingPolicy;
+    }
+
     public int senderMaxBytesInBuffer()
     {
         return senderMaxBytesInBuffer;
@@ -836,6 +1243,41 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return replayHandler;
     }
 
+    public int resendCacheMessageCapacity()
+    {
+        return resendCacheMessageCapacity;
+    }
+
+    public int resendCacheMaxMessageLength()
+    {
+        return resendCacheMaxMessageLength;
+    }
+
+    public boolean timestampIndex()
+    {
+        return timestampIndex;
+    }
+
+    public int timestampIndexInterval()
+    {
+        return timestampIndexInterval;
+    }
+
+    public int[] tagIndexTags()
+    {
+        return tagIndexTags;
+    }
+
+    public int tagIndexBucketCount()
+    {
+        return tagIndexBucketCount;
+    }
+
+    public int tagIndexEntryCapacity()
+    {
+        return tagIndexEntryCapacity;
+    }
+
     public InitialAcceptedSessionOwner initialAcceptedSessionOwner()
     {
         return initialAcceptedSessionOwner;
@@ -851,6 +1293,11 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return indexFileStateFlushTimeoutInMs;
     }
 
+    public long sessionIdSnapshotIntervalInMs()
+    {
+        return sessionIdSnapshotIntervalInMs;
+    }
+
     public FixDictionary acceptorfixDictionary()
     {
         return acceptorfixDictionary;
@@ -938,6 +1385,15 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public EngineConfiguration inboundLibraryDeliveryStream(final int inboundLibraryDeliveryStream)
+    {
+        super.inboundLibraryDeliveryStream(inboundLibraryDeliveryStream);
+        return this;
+    }
+
     public AeronArchive.Context aeronArchiveContext()
     {
         return archiveContext;
@@ -963,6 +1419,11 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return archiveReplayStream;
     }
 
+    public int inboundLibraryUnrecordedStream()
+    {
+        return inboundLibraryUnrecordedStream;
+    }
+
     public boolean acceptedSessionClosedResendInterval()
     {
         return acceptedSessionClosedResendInterval;
@@ -1001,6 +1462,12 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
                 sessionBufferSize()));
         }
 
+        if (framerShardCount() < 1)
+        {
+            throw new IllegalArgumentException(String.format(
+                "You cannot set the framerShardCount(%d) < 1.", framerShardCount()));
+        }
+
         if (deleteLogFileDirOnStart())
         {
             final File logFileDir = new File(logFileDir());
@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static uk.co.real_logic.artio.dictionary.generation.Exceptions.suppressingClose;
 
 public class EngineContext implements AutoCloseable
@@ -55,11 +56,12 @@ public class EngineContext implements AutoCloseable
     private final CompletionPosition outboundClusterCompletionPosition = new CompletionPosition();
 
     private Streams inboundLibraryStreams;
+    private Streams inboundLibraryDeliveryStreams;
+    private Streams inboundLibraryUnrecordedStreams;
     private Streams outboundLibraryStreams;
 
-    // Indexers are owned by the indexingAgent
-    private Indexer inboundIndexer;
-    private Indexer outboundIndexer;
+    // Indexers are owned by the indexingAgent, unless they're run separately
+    private final List<Agent> indexers = new ArrayList<>();
     private Agent indexingAgent;
 
     EngineContext(
@@ -90,7 +92,7 @@ public class EngineContext implements AutoCloseable
                 configuration.sentSequenceNumberIndex(),
                 errorHandler,
                 configuration.outboundLibraryStream(),
-                recordingCoordinator.outboundRecordingIdLookup(),
+                recordingIdLookup(recordingCoordinator.outboundRecordingIdLookup()),
                 configuration.indexFileStateFlushTimeoutInMs(),
                 epochClock
             );
@@ -99,7 +101,7 @@ public class EngineContext implements AutoCloseable
                 configuration.receivedSequenceNumberIndex(),
                 errorHandler,
                 configuration.inboundLibraryStream(),
-                recordingCoordinator.inboundRecordingIdLookup(),
+                recordingIdLookup(recordingCoordinator.inboundRecordingIdLookup()),
                 configuration.indexFileStateFlushTimeoutInMs(),
                 epochClock
             );
@@ -131,6 +133,27 @@ public class EngineContext implements AutoCloseable
             clock,
             configuration.inboundMaxClaimAttempts(),
             recordingCoordinator);
+        inboundLibraryDeliveryStreams = new Streams(
+            aeron,
+            libraryAeronChannel,
+            printAeronStreamIdentifiers,
+            fixCounters.failedInboundPublications(),
+            configuration.inboundLibraryDeliveryStream(),
+            clock,
+            configuration.inboundMaxClaimAttempts(),
+            null);
+        if (configuration.archivingPolicy() != null && configuration.logInboundMessages())
+        {
+            inboundLibraryUnrecordedStreams = new Streams(
+                aeron,
+                libraryAeronChannel,
+                printAeronStreamIdentifiers,
+                fixCounters.failedInboundPublications(),
+                configuration.inboundLibraryUnrecordedStream(),
+                clock,
+                configuration.inboundMaxClaimAttempts(),
+                null);
+        }
         outboundLibraryStreams = new Streams(
             aeron,
             libraryAeronChannel,
@@ -142,6 +165,12 @@ public class EngineContext implements AutoCloseable
             recordingCoordinator);
     }
 
+    private RecordingIdLookup recordingIdLookup(final RecordingIdLookup sharedLookup)
+    {
+        return configuration.separateIndexerThreads() ?
+            recordingCoordinator.newRecordingIdLookup(configuration.newIndexerIdleStrategy()) : sharedLookup;
+    }
+
     private ReplayIndex newReplayIndex(
         final int cacheSetSize,
         final int cacheNumSets,
@@ -152,16 +181,59 @@ public class EngineContext implements AutoCloseable
         return new ReplayIndex(
             logFileDir,
             streamId,
-            configuration.replayIndexFileSize(),
             cacheNumSets,
             cacheSetSize,
-            LoggerUtil::map,
+            newReplayIndexStore(logFileDir, streamId),
             ReplayIndexDescriptor.replayPositionBuffer(logFileDir, streamId),
             errorHandler,
+            recordingIdLookup,
+            configuration.replayIndexRetentionPolicy(),
+            configuration.archivingPolicy(),
+            new SystemEpochClock());
+    }
+
+    private TagIndex newTagIndex(
+        final String logFileDir, final int streamId, final RecordingIdLookup recordingIdLookup)
+    {
+        return new TagIndex(
+            logFileDir,
+            streamId,
+            configuration.tagIndexTags(),
+            configuration.tagIndexBucketCount(),
+            configuration.tagIndexEntryCapacity(),
+            errorHandler,
             recordingIdLookup);
     }
 
-    private ReplayQuery newReplayQuery(final IdleStrategy idleStrategy, final int streamId)
+    private ReplayIndexStore newReplayIndexStore(final String logFileDir, final int streamId)
+    {
+        final int indexFileSize = configuration.replayIndexFileSize();
+        if (configuration.sharedReplayIndexStore())
+        {
+            return new SharedReplayIndexStore(
+                ReplayIndexDescriptor.replayIndexStoreFile(logFileDir, streamId),
+                indexFileSize,
+                configuration.sharedReplayIndexSegmentCount(),
+                configuration.sharedReplayIndexSessionCapacity(),
+                LoggerUtil::map);
+        }
+
+        return new FileReplayIndexStore(logFileDir, streamId, indexFileSize, LoggerUtil::map, errorHandler);
+    }
+
+    private ReplayIndexStore newReplayQueryStore(final String logFileDir, final int streamId)
+    {
+        if (configuration.sharedReplayIndexStore())
+        {
+            return new SharedReplayIndexStore(
+                ReplayIndexDescriptor.replayIndexStoreFile(logFileDir, streamId),
+                LoggerUtil::mapExistingFile);
+        }
+
+        return new FileReplayIndexStore(logFileDir, streamId, LoggerUtil::mapExistingFile, errorHandler);
+    }
+
+    private ReplayQuery newReplayQuery(final int streamId)
     {
         final String logFileDir = configuration.logFileDir();
         final int cacheSetSize = configuration.loggerCacheSetSize();
@@ -172,9 +244,8 @@ public class EngineContext implements AutoCloseable
             logFileDir,
             cacheNumSets,
             cacheSetSize,
-            LoggerUtil::mapExistingFile,
+            newReplayQueryStore(logFileDir, streamId),
             streamId,
-            idleStrategy,
             aeronArchive,
             errorHandler,
             archiveReplayStream);
@@ -184,7 +255,8 @@ public class EngineContext implements AutoCloseable
         final ExclusivePublication replayPublication)
     {
         return new Replayer(
-            newReplayQuery(configuration.archiverIdleStrategy(), configuration.outboundLibraryStream()),
+            newReplayQuery(configuration.outboundLibraryStream()),
+            newResendCache(),
             replayPublication,
             new BufferClaim(),
             configuration.archiverIdleStrategy(),
@@ -194,68 +266,166 @@ public class EngineContext implements AutoCloseable
             configuration.agentNamePrefix(),
             new SystemEpochClock(),
             configuration.gapfillOnReplayMessageTypes(),
+            configuration.archivingPolicy() != null,
             configuration.replayHandler(),
             senderSequenceNumbers,
             new FixSessionCodecsFactory());
     }
 
-    private void newIndexers()
+    private ResendCache newResendCache()
+    {
+        final int messageCapacity = configuration.resendCacheMessageCapacity();
+        if (messageCapacity == EngineConfiguration.NO_RESEND_CACHE)
+        {
+            return null;
+        }
+
+        return new ResendCache(
+            outboundLibraryStreams.subscription("resendCache"),
+            messageCapacity,
+            configuration.resendCacheMaxMessageLength(),
+            errorHandler);
+    }
+
+    private List<Indexer> newIndexers()
     {
         final int cacheSetSize = configuration.loggerCacheSetSize();
         final int cacheNumSets = configuration.loggerCacheNumSets();
         final String logFileDir = configuration.logFileDir();
+        final int inboundLibraryStream = configuration.inboundLibraryStream();
+        final int outboundLibraryStream = configuration.outboundLibraryStream();
+        final RecordingIdLookup inboundRecordingIdLookup =
+            recordingIdLookup(recordingCoordinator.inboundRecordingIdLookup());
+        final RecordingIdLookup outboundRecordingIdLookup =
+            recordingIdLookup(recordingCoordinator.outboundRecordingIdLookup());
+
+        // Replay indices are combined with the optional timestamp and tag indices of the same stream.
+        final List<Index> inboundArchiveIndices = new ArrayList<>();
+        inboundArchiveIndices.add(newReplayIndex(
+            cacheSetSize, cacheNumSets, logFileDir, inboundLibraryStream, inboundRecordingIdLookup));
+
+        final List<Index> outboundArchiveIndices = new ArrayList<>();
+        outboundArchiveIndices.add(newReplayIndex(
+            cacheSetSize, cacheNumSets, logFileDir, outboundLibraryStream, outboundRecordingIdLookup));
+
+        if (configuration.timestampIndex())
+        {
+            final int interval = configuration.timestampIndexInterval();
+            inboundArchiveIndices.add(new TimestampIndex(
+                logFileDir, inboundLibraryStream, interval, errorHandler, inboundRecordingIdLookup));
+            outboundArchiveIndices.add(new TimestampIndex(
+                logFileDir, outboundLibraryStream, interval, errorHandler, outboundRecordingIdLookup));
+        }
 
-        final ReplayIndex inboundReplayIndex = newReplayIndex(
-            cacheSetSize,
-            cacheNumSets,
-            logFileDir,
-            configuration.inboundLibraryStream(),
-            recordingCoordinator.inboundRecordingIdLookup());
+        final int[] tagIndexTags = configuration.tagIndexTags();
+        if (tagIndexTags.length > 0)
+        {
+            inboundArchiveIndices.add(newTagIndex(logFileDir, inboundLibraryStream, inboundRecordingIdLookup));
+            outboundArchiveIndices.add(newTagIndex(logFileDir, outboundLibraryStream, outboundRecordingIdLookup));
+        }
 
-        inboundIndexer = new Indexer(
-            asList(inboundReplayIndex, receivedSequenceNumberIndex),
-            inboundLibraryStreams.subscription("inboundIndexer"),
-            configuration.agentNamePrefix(),
-            inboundCompletionPosition,
-            aeronArchive,
-            errorHandler,
-            configuration.archiveReplayStream(),
-            configuration.gracefulShutdown());
+        // Sent positions are sent once the sent sequence number index is up to date, so they're indexed together.
+        final List<Index> sentSequenceNumberIndices = asList(
+            sentSequenceNumberIndex, new PositionSender(inboundPublication()));
 
-        final List<Index> outboundIndices = new ArrayList<>();
-        outboundIndices.add(newReplayIndex(
-            cacheSetSize,
-            cacheNumSets,
-            logFileDir,
-            configuration.outboundLibraryStream(),
-            recordingCoordinator.outboundRecordingIdLookup()));
-        outboundIndices.add(sentSequenceNumberIndex);
-        outboundIndices.add(new PositionSender(inboundPublication()));
+        final List<Indexer> indexers = new ArrayList<>();
+        if (configuration.separateIndexerThreads())
+        {
+            indexers.add(newIndexer(
+                singletonList(receivedSequenceNumberIndex),
+                inboundLibraryStreams,
+                "receivedSequenceNumber",
+                inboundCompletionPosition));
+            indexers.add(newIndexer(
+                sentSequenceNumberIndices,
+                outboundLibraryStreams,
+                "sentSequenceNumber",
+                outboundLibraryCompletionPosition));
+            indexers.add(newIndexer(
+                inboundArchiveIndices,
+                inboundLibraryStreams,
+                "inboundReplay",
+                inboundCompletionPosition));
+            indexers.add(newIndexer(
+                outboundArchiveIndices,
+                outboundLibraryStreams,
+                "outboundReplay",
+                outboundLibraryCompletionPosition));
+        }
+        else
+        {
+            final List<Index> inboundIndices = new ArrayList<>(inboundArchiveIndices);
+            inboundIndices.add(receivedSequenceNumberIndex);
+            indexers.add(newIndexer(
+                inboundIndices,
+                inboundLibraryStreams,
+                "inbound",
+                inboundCompletionPosition));
+
+            final List<Index> outboundIndices = new ArrayList<>(outboundArchiveIndices);
+            outboundIndices.addAll(sentSequenceNumberIndices);
+            indexers.add(newIndexer(
+                outboundIndices,
+                outboundLibraryStreams,
+                "outbound",
+                outboundLibraryCompletionPosition));
+        }
 
-        outboundIndexer = new Indexer(
-            outboundIndices,
-            outboundLibraryStreams.subscription("outboundIndexer"),
-            configuration.agentNamePrefix(),
-            outboundLibraryCompletionPosition,
+        newIndexCatchup().catchUp(indexers);
+
+        return indexers;
+    }
+
+    private IndexCatchup newIndexCatchup()
+    {
+        return new IndexCatchup(
             aeronArchive,
             errorHandler,
-            configuration.archiveReplayStream(), configuration.gracefulShutdown());
+            configuration.archiveReplayStream(),
+            configuration.indexCatchupThreadCount(),
+            configuration.threadFactory(),
+            new SystemEpochClock(),
+            fixCounters.indexCatchupBytesRemaining(),
+            fixCounters.indexCatchupEstimatedMsRemaining());
+    }
+
+    private Indexer newIndexer(
+        final List<Index> indices,
+        final Streams streams,
+        final String name,
+        final CompletionPosition completionPosition)
+    {
+        final String agentNamePrefix = configuration.separateIndexerThreads() ?
+            configuration.agentNamePrefix() + name + "-" : configuration.agentNamePrefix();
+
+        return new Indexer(
+            indices,
+            streams.subscription(name + "Indexer"),
+            agentNamePrefix,
+            completionPosition,
+            configuration.gracefulShutdown());
     }
 
     private void newArchivingAgent()
     {
         if (configuration.logOutboundMessages())
         {
-            newIndexers();
+            final List<Indexer> indexers = newIndexers();
 
             final Replayer replayer = newReplayer(replayPublication);
 
-            final List<Agent> agents = new ArrayList<>();
-            agents.add(inboundIndexer);
-            agents.add(outboundIndexer);
-            agents.add(replayer);
-
-            indexingAgent = new CompositeAgent(agents);
+            if (configuration.separateIndexerThreads())
+            {
+                this.indexers.addAll(indexers);
+                indexingAgent = replayer;
+            }
+            else
+            {
+                final List<Agent> agents = new ArrayList<>(indexers);
+                agents.add(replayer);
+
+                indexingAgent = new CompositeAgent(agents);
+            }
         }
         else
         {
@@ -274,6 +444,26 @@ public class EngineContext implements AutoCloseable
         }
     }
 
+    public Streams inboundLibraryStreams()
+    {
+        return inboundLibraryStreams;
+    }
+
+    public Streams inboundLibraryDeliveryStreams()
+    {
+        return inboundLibraryDeliveryStreams;
+    }
+
+    /**
+     * Get the streams that inbound messages which the archiving policy doesn't keep are published on.
+     *
+     * @return the streams, or null if every inbound message is published on the inbound library stream.
+     */
+    public Streams inboundLibraryUnrecordedStreams()
+    {
+        return inboundLibraryUnrecordedStreams;
+    }
+
     public Streams outboundLibraryStreams()
     {
         return outboundLibraryStreams;
@@ -299,7 +489,7 @@ public class EngineContext implements AutoCloseable
             return null;
         }
 
-        return newReplayQuery(configuration.framerIdleStrategy(), configuration.inboundLibraryStream());
+        return newReplayQuery(configuration.inboundLibraryStream());
     }
 
     public GatewayPublication inboundPublication()
@@ -308,6 +498,11 @@ public class EngineContext implements AutoCloseable
             configuration.framerIdleStrategy(), "inboundPublication");
     }
 
+    public GatewayPublication sharedInboundPublication(final IdleStrategy idleStrategy, final String name)
+    {
+        return inboundLibraryStreams.sharedGatewayPublication(idleStrategy, name);
+    }
+
     public CompletionPosition inboundCompletionPosition()
     {
         return inboundCompletionPosition;
@@ -330,6 +525,11 @@ public class EngineContext implements AutoCloseable
         return indexingAgent;
     }
 
+    List<Agent> indexers()
+    {
+        return indexers;
+    }
+
     public SenderSequenceNumbers senderSequenceNumbers()
     {
         return senderSequenceNumbers;
@@ -19,6 +19,10 @@ import io.aeron.Aeron;
 import org.agrona.ErrorHandler;
 import org.agrona.concurrent.Agent;
 import org.agrona.concurrent.AgentRunner;
+import org.agrona.concurrent.CompositeAgent;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Interface for determining how an Engine's Agents are allocated to threads.
@@ -45,6 +49,95 @@ public interface EngineScheduler extends AutoCloseable
         Agent conductorAgent,
         RecordingCoordinator recordingCoordinator);
 
+    /**
+     * Invoked by the FIX Engine to start the threads when the framer is sharded, see
+     * {@link EngineConfiguration#framerShardCount(int)}. By default the framer shards are run on the framer's thread,
+     * schedulers that want to run each shard on its own thread should override this method.
+     *
+     * @param configuration the engine's configuration object.
+     * @param errorHandler the ErrorHandler used by the engine.
+     * @param framer the framer agent to schedule.
+     * @param framerShards the framer shard agents to schedule, empty if the framer isn't sharded.
+     * @param indexingAgent the archiver agent to schedule.
+     * @param monitoringAgent the monitoring agent to schedule.
+     * @param conductorAgent if aeron has useConductorInvoker enable it
+     * @param recordingCoordinator must be shut down after the Framer but before the conductorAgent.
+     */
+    default void launch(
+        EngineConfiguration configuration,
+        ErrorHandler errorHandler,
+        Agent framer,
+        List<Agent> framerShards,
+        Agent indexingAgent,
+        Agent monitoringAgent,
+        Agent conductorAgent,
+        RecordingCoordinator recordingCoordinator)
+    {
+        Agent framerAgent = framer;
+        if (!framerShards.isEmpty())
+        {
+            final List<Agent> agents = new ArrayList<>(framerShards.size() + 1);
+            agents.add(framer);
+            agents.addAll(framerShards);
+            framerAgent = new CompositeAgent(agents);
+        }
+
+        launch(
+            configuration,
+            errorHandler,
+            framerAgent,
+            indexingAgent,
+            monitoringAgent,
+            conductorAgent,
+            recordingCoordinator);
+    }
+
+    /**
+     * Invoked by the FIX Engine to start the threads when indices are built by indexer agents of their own, see
+     * {@link EngineConfiguration#separateIndexerThreads(boolean)}. By default the indexers are run on the archiving
+     * thread, schedulers that want to run each indexer on its own thread should override this method.
+     *
+     * @param configuration the engine's configuration object.
+     * @param errorHandler the ErrorHandler used by the engine.
+     * @param framer the framer agent to schedule.
+     * @param framerShards the framer shard agents to schedule, empty if the framer isn't sharded.
+     * @param indexingAgent the archiver agent to schedule.
+     * @param indexers the indexer agents to schedule, empty if indices are built by the archiver agent.
+     * @param monitoringAgent the monitoring agent to schedule.
+     * @param conductorAgent if aeron has useConductorInvoker enable it
+     * @param recordingCoordinator must be shut down after the Framer but before the conductorAgent.
+     */
+    default void launch(
+        EngineConfiguration configuration,
+        ErrorHandler errorHandler,
+        Agent framer,
+        List<Agent> framerShards,
+        Agent indexingAgent,
+        List<Agent> indexers,
+        Agent monitoringAgent,
+        Agent conductorAgent,
+        RecordingCoordinator recordingCoordinator)
+    {
+        Agent archivingAgent = indexingAgent;
+        if (!indexers.isEmpty())
+        {
+            final List<Agent> agents = new ArrayList<>(indexers.size() + 1);
+            agents.addAll(indexers);
+            agents.add(indexingAgent);
+            archivingAgent = new CompositeAgent(agents);
+        }
+
+        launch(
+            configuration,
+            errorHandler,
+            framer,
+            framerShards,
+            archivingAgent,
+            monitoringAgent,
+            conductorAgent,
+            recordingCoordinator);
+    }
+
     /**
      * Invoked by the FIX Engine to stop the threads. Should only return once they are completed stopped.
      */
@@ -316,7 +316,9 @@ public final class FixEngine extends GatewayProcess
             configuration,
             errorHandler,
             framerContext.framer(),
+            framerContext.framerShards(),
             engineContext.indexingAgent(),
+            engineContext.indexers(),
             monitoringAgent,
             conductorAgent(),
             recordingCoordinator);
@@ -274,4 +274,10 @@ public class RecordingCoordinator implements AutoCloseable
     {
         return outboundLookup;
     }
+
+    // Lookups aren't thread safe, so an index that is built on a thread of its own needs its own lookup.
+    RecordingIdLookup newRecordingIdLookup(final IdleStrategy idleStrategy)
+    {
+        return counters == null ? null : new RecordingIdLookup(idleStrategy, counters);
+    }
 }
@@ -294,7 +294,13 @@ public class CatchupReplayer implements ControlledFragmentHandler, Continuation
         {
             case AWAITING_INDEX:
             {
-                final long indexedPosition = receivedSequenceNumberIndex.indexedPosition(inboundPublication.id());
+                long indexedPosition = receivedSequenceNumberIndex.indexedPosition(inboundPublication.id());
+                if (!notLoggingInboundMessages())
+                {
+                    // The replay index may be built on a different thread to the sequence number index.
+                    indexedPosition = Math.min(
+                        indexedPosition, inboundMessages.indexedPosition(inboundPublication.id()));
+                }
 
                 if (indexedPosition >= requiredPosition)
                 {
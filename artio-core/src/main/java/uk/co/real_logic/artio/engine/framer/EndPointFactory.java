@@ -26,6 +26,7 @@ class EndPointFactory
     private final EngineConfiguration configuration;
     private final SessionContexts sessionContexts;
     private final GatewayPublication inboundLibraryPublication;
+    private final GatewayPublication unrecordedPublication;
     private final FixCounters fixCounters;
     private final ErrorHandler errorHandler;
     private final GatewaySessions gatewaySessions;
@@ -37,6 +38,7 @@ class EndPointFactory
         final EngineConfiguration configuration,
         final SessionContexts sessionContexts,
         final GatewayPublication inboundLibraryPublication,
+        final GatewayPublication unrecordedPublication,
         final FixCounters fixCounters,
         final ErrorHandler errorHandler,
         final GatewaySessions gatewaySessions,
@@ -45,6 +47,7 @@ class EndPointFactory
         this.configuration = configuration;
         this.sessionContexts = sessionContexts;
         this.inboundLibraryPublication = inboundLibraryPublication;
+        this.unrecordedPublication = unrecordedPublication;
         this.fixCounters = fixCounters;
         this.errorHandler = errorHandler;
         this.gatewaySessions = gatewaySessions;
@@ -63,6 +66,8 @@ class EndPointFactory
             channel,
             configuration.receiverBufferSize(),
             inboundLibraryPublication,
+            unrecordedPublication,
+            configuration.archivingPolicy(),
             connectionId,
             sessionId,
             sequenceIndex,
@@ -64,6 +64,7 @@ import java.util.function.Predicate;
 import static io.aeron.Publication.BACK_PRESSURED;
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
+import static io.aeron.logbuffer.FrameDescriptor.UNFRAGMENTED;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.agrona.collections.CollectionUtil.removeIf;
 import static uk.co.real_logic.artio.GatewayProcess.NO_CONNECTION_ID;
@@ -113,6 +114,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
     private final ControlledFragmentHandler replaySlowSubscriber;
 
     private final ReceiverEndPoints receiverEndPoints;
+    private final FramerShards framerShards;
     private final ControlledFragmentAssembler senderEndPointAssembler;
     private final SenderEndPoints senderEndPoints;
 
@@ -124,6 +126,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
     private final SlowPeeker replaySlowPeeker;
     private final BlockablePosition engineBlockablePosition;
     private final GatewayPublication inboundPublication;
+    private final LibraryDemultiplexer libraryDemultiplexer;
     private final String agentNamePrefix;
     private final CompletionPosition inboundCompletionPosition;
     private final CompletionPosition outboundLibraryCompletionPosition;
@@ -173,6 +176,9 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         final ReplayQuery inboundMessages,
         final GatewayPublication outboundPublication,
         final GatewayPublication inboundPublication,
+        final GatewayPublication[] shardInboundPublications,
+        final GatewayPublication[] shardUnrecordedPublications,
+        final LibraryDemultiplexer libraryDemultiplexer,
         final QueuedPipe<AdminCommand> adminCommands,
         final SessionIdStrategy sessionIdStrategy,
         final SessionContexts sessionContexts,
@@ -199,6 +205,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         this.errorHandler = errorHandler;
         this.outboundPublication = outboundPublication;
         this.inboundPublication = inboundPublication;
+        this.libraryDemultiplexer = libraryDemultiplexer;
         this.agentNamePrefix = agentNamePrefix;
         this.inboundCompletionPosition = inboundCompletionPosition;
         this.outboundLibraryCompletionPosition = outboundLibraryCompletionPosition;
@@ -217,6 +224,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         acceptorHeaderDecoder = configuration.acceptorfixDictionary().makeHeaderDecoder();
 
         receiverEndPoints = new ReceiverEndPoints(errorHandler);
+        framerShards = new FramerShards(
+            configuration, receiverEndPoints, shardInboundPublications, shardUnrecordedPublications, errorHandler);
 
         this.librarySlowPeeker = new SubscriptionSlowPeeker(slowSubscription, librarySubscription);
 
@@ -229,8 +238,15 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
 
         engineBlockablePosition = getOutboundSlowPeeker(outboundPublication);
+        final ControlledFragmentHandler libraryProtocolSubscription =
+            ProtocolSubscription.of(this, new EngineProtocolSubscription(this));
         librarySubscriber = new ControlledFragmentAssembler(
-            ProtocolSubscription.of(this, new EngineProtocolSubscription(this)),
+            (buffer, offset, length, header) ->
+            {
+                // Reassembled messages are in the assembler's buffer, which is reused, so can't be batched.
+                senderEndPoints.batchWrites((header.flags() & UNFRAGMENTED) == UNFRAGMENTED);
+                return libraryProtocolSubscription.onFragment(buffer, offset, length, header);
+            },
             0,
             true);
         nonLoggingPositionSender = configuration.logOutboundMessages() ?
@@ -322,10 +338,13 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             sendOutboundMessages() +
             sendReplayMessages() +
             pollEndPoints() +
+            framerShards.poll(performingCloseOperation) +
             pollNewConnections(timeInMs) +
             pollLibraries(timeInMs) +
+            libraryDemultiplexer.poll() +
             gatewaySessions.pollSessions(timeInMs) +
             senderEndPoints.checkTimeouts(timeInMs) +
+            sessionContexts.doWork(timeInMs) +
             adminCommands.drain(onAdminCommand) +
             checkDutyCycle();
     }
@@ -369,6 +388,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
     private int sendOutboundMessages()
     {
         int messagesRead = librarySubscription.controlledPoll(librarySubscriber, outboundLibraryFragmentLimit);
+        // Flushed before the term buffer can be re-used and before the slow consumers are retried.
+        senderEndPoints.flushBatchedMessages();
         messagesRead += librarySlowPeeker.peek(senderEndPointAssembler);
 
         if (nonLoggingPositionSender != null)
@@ -392,6 +413,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
                 DebugLogger.log(LIBRARY_MANAGEMENT, "Timing out connection to library %s%n", library.libraryId());
 
                 iterator.remove();
+                libraryDemultiplexer.removeLibrary(library.libraryId());
                 library.releaseSlowPeeker();
                 tryAcquireLibrarySessions(library);
                 saveLibraryTimeout(library);
@@ -996,8 +1018,21 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
     public Action onDisconnect(final int libraryId, final long connectionId, final DisconnectReason reason)
     {
-        receiverEndPoints.removeConnection(connectionId, reason);
+        schedule(() -> disconnect(libraryId, connectionId, reason));
+        return CONTINUE;
+    }
+
+    private long disconnect(final int libraryId, final long connectionId, final DisconnectReason reason)
+    {
+        // Retried until the receiver end point has been reclaimed if it's handed over to a framer shard.
+        if (!framerShards.reclaim(connectionId))
+        {
+            return BACK_PRESSURED;
+        }
+
+        // The sender end point writes out any batched messages, eg: a logout, before the channel is closed.
         senderEndPoints.removeConnection(connectionId);
+        receiverEndPoints.removeConnection(connectionId, reason);
         gatewaySessions.releaseByConnectionId(connectionId);
 
         final LiveLibraryInfo library = idToLibrary.get(libraryId);
@@ -1008,7 +1043,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
 
 
-        return CONTINUE;
+        return COMPLETE;
     }
 
     public Action onLibraryConnect(
@@ -1042,6 +1077,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             logSoleLibraryError();
         }
 
+        libraryDemultiplexer.addLibrary(libraryId);
+
         // Send an empty control notification if you've never seen this library before
         // Since it may have connected to another gateway node if you're clustered.
         if (Pressure.isBackPressured(
@@ -1624,13 +1661,15 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
     {
         performingCloseOperation = true;
 
-        schedule(new CloseOperation(
-            inboundPublication,
-            new ArrayList<>(idToLibrary.values()),
-            // Take a copy to avoid library sessions being acquired causing issues
-            new ArrayList<>(gatewaySessions.sessions()),
-            receiverEndPoints,
-            startCloseCommand));
+        schedule(new UnitOfWork(
+            () -> framerShards.reclaimAll() ? COMPLETE : BACK_PRESSURED,
+            new CloseOperation(
+                inboundPublication,
+                new ArrayList<>(idToLibrary.values()),
+                // Take a copy to avoid library sessions being acquired causing issues
+                new ArrayList<>(gatewaySessions.sessions()),
+                receiverEndPoints,
+                startCloseCommand)));
     }
 
     void onResetSequenceNumber(final ResetSequenceNumberCommand reply)
@@ -1679,15 +1718,30 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
                 this::quiesce,
                 retryManager,
                 inboundMessages,
-                receiverEndPoints,
+                this::reclaimShardEndPoints,
                 senderEndPoints,
-                channelSupplier);
+                receiverEndPoints,
+                libraryDemultiplexer,
+                channelSupplier,
+                sessionContexts);
         }
         else
         {
             closeAll(
                 inboundMessages,
-                channelSupplier);
+                libraryDemultiplexer,
+                channelSupplier,
+                sessionContexts);
+        }
+    }
+
+    // Reclaiming only waits for a shard to finish its current poll of an end point, so it completes quickly and the
+    // end points that were handed over are then closed along with the Framer's own.
+    private void reclaimShardEndPoints()
+    {
+        while (!framerShards.reclaimAll())
+        {
+            Thread.yield();
         }
     }
 
@@ -1757,7 +1811,26 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
     void receiverEndPointPollingOptional(final long connectionId)
     {
-        receiverEndPoints.receiverEndPointPollingOptional(connectionId);
+        final ReceiverEndPoint receiverEndPoint = receiverEndPoints.receiverEndPointPollingOptional(connectionId);
+        if (receiverEndPoint != null)
+        {
+            framerShards.onPlay(receiverEndPoint);
+        }
+    }
+
+    void onReceiverEndPointPlay(final ReceiverEndPoint receiverEndPoint)
+    {
+        framerShards.onPlay(receiverEndPoint);
+    }
+
+    void reclaimReceiverEndPoint(final ReceiverEndPoint receiverEndPoint)
+    {
+        framerShards.reclaim(receiverEndPoint);
+    }
+
+    List<Agent> shardAgents()
+    {
+        return framerShards.agents();
     }
 
     void onBind(final BindCommand bindCommand)
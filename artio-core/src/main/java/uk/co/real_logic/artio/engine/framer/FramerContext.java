@@ -35,6 +35,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
+import static uk.co.real_logic.artio.engine.framer.FramerShard.FRAMER_SHARD_ID;
+
 /**
  * Context that injects all the necessary information into different Framer classes.
  *
@@ -78,9 +80,16 @@ public class FramerContext
         final SystemEpochClock epochClock = new SystemEpochClock();
 
         this.sessionContexts = new SessionContexts(
-            configuration.sessionIdBuffer(), sessionIdStrategy, errorHandler);
+            configuration.sessionIdBuffer(),
+            sessionIdStrategy,
+            errorHandler,
+            configuration.sessionIdSnapshotIntervalInMs());
 
-        this.inboundPublication = engineContext.inboundPublication();
+        final GatewayPublication[] shardInboundPublications = shardInboundPublications(configuration, engineContext);
+        this.inboundPublication = shardInboundPublications[FRAMER_SHARD_ID];
+        final Streams unrecordedStreams = engineContext.inboundLibraryUnrecordedStreams();
+        final GatewayPublication[] shardUnrecordedPublications =
+            shardUnrecordedPublications(configuration, unrecordedStreams);
         this.outboundPublication = outboundLibraryStreams.gatewayPublication(idleStrategy, "outboundPublication");
 
         sentSequenceNumberIndex = new SequenceNumberIndexReader(
@@ -111,6 +120,7 @@ public class FramerContext
             configuration,
             sessionContexts,
             inboundPublication,
+            shardUnrecordedPublications == null ? null : shardUnrecordedPublications[FRAMER_SHARD_ID],
             fixCounters,
             errorHandler,
             gatewaySessions,
@@ -134,6 +144,14 @@ public class FramerContext
             engineContext.inboundReplayQuery(),
             outboundPublication,
             inboundPublication,
+            shardInboundPublications,
+            shardUnrecordedPublications,
+            new LibraryDemultiplexer(
+                engineContext.inboundLibraryStreams().subscription("libraryDemultiplexer"),
+                unrecordedStreams == null ? null : unrecordedStreams.subscription("unrecordedLibraryDemultiplexer"),
+                engineContext.inboundLibraryDeliveryStreams(),
+                errorHandler,
+                configuration.inboundLibraryFragmentLimit()),
             adminCommands,
             sessionIdStrategy,
             sessionContexts,
@@ -149,11 +167,64 @@ public class FramerContext
             recordingCoordinator);
     }
 
+    // Framer shards publish the messages that they frame alongside the Framer, onto a shared publication, so that
+    // all of a connection's inbound messages stay on the one publication.
+    private static GatewayPublication[] shardInboundPublications(
+        final EngineConfiguration configuration, final EngineContext engineContext)
+    {
+        final int shardCount = configuration.framerShardCount();
+        final GatewayPublication[] publications = new GatewayPublication[shardCount];
+        if (shardCount <= 1)
+        {
+            publications[FRAMER_SHARD_ID] = engineContext.inboundPublication();
+            return publications;
+        }
+
+        publications[FRAMER_SHARD_ID] = engineContext.sharedInboundPublication(
+            configuration.framerIdleStrategy(), "inboundPublication");
+        for (int shardId = FRAMER_SHARD_ID + 1; shardId < shardCount; shardId++)
+        {
+            publications[shardId] = engineContext.sharedInboundPublication(
+                configuration.newFramerShardIdleStrategy(), "inboundShardPublication-" + shardId);
+        }
+
+        return publications;
+    }
+
+    // Messages that the archiving policy doesn't keep are published on the unrecorded stream by the thread that frames
+    // them, each thread has a publication of its own so that their order matches the order of their markers on the
+    // inbound publication.
+    private static GatewayPublication[] shardUnrecordedPublications(
+        final EngineConfiguration configuration, final Streams unrecordedStreams)
+    {
+        if (unrecordedStreams == null)
+        {
+            return null;
+        }
+
+        final int shardCount = configuration.framerShardCount();
+        final GatewayPublication[] publications = new GatewayPublication[shardCount];
+        publications[FRAMER_SHARD_ID] = unrecordedStreams.gatewayPublication(
+            configuration.framerIdleStrategy(), "unrecordedInboundPublication");
+        for (int shardId = FRAMER_SHARD_ID + 1; shardId < shardCount; shardId++)
+        {
+            publications[shardId] = unrecordedStreams.gatewayPublication(
+                configuration.newFramerShardIdleStrategy(), "unrecordedInboundShardPublication-" + shardId);
+        }
+
+        return publications;
+    }
+
     public Agent framer()
     {
         return framer;
     }
 
+    public List<Agent> framerShards()
+    {
+        return framer.shardAgents();
+    }
+
     public Reply<List<LibraryInfo>> libraries()
     {
         final QueryLibrariesCommand reply = new QueryLibrariesCommand();
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import org.agrona.ErrorHandler;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.ManyToOneConcurrentLinkedQueue;
+import uk.co.real_logic.artio.protocol.GatewayPublication;
+
+/**
+ * A framer shard performs the socket reads, framing and validation of the inbound messages for a subset of the
+ * engine's TCP connections on its own thread.
+ *
+ * Framed messages are published straight onto the shard's own inbound publication, which shares its Aeron
+ * publication with the Framer's, so all the inbound messages for a connection are on the same Aeron stream and
+ * image as the messages that the Framer itself publishes about that connection. Messages that the archiving policy
+ * doesn't keep are published on the shard's own unrecorded publication instead. The Framer only hands over receiver
+ * end points whilst they are owned by a library and takes them back before their ownership changes, see
+ * {@link FramerShards}.
+ */
+class FramerShard implements Agent
+{
+    static final int FRAMER_SHARD_ID = 0;
+
+    // Written by the Framer thread, read by the shard thread. End points that have been handed over to, or reclaimed
+    // from, this shard. The shard checks which of those the end point currently is when it reads it, so an end point
+    // that is reclaimed and then handed over again before the shard gets to it is only polled once.
+    private final ManyToOneConcurrentLinkedQueue<ReceiverEndPoint> transferredEndPoints =
+        new ManyToOneConcurrentLinkedQueue<>();
+
+    // Written by the shard thread, read by the Framer thread.
+    private final ManyToOneConcurrentLinkedQueue<ReceiverEndPoint> returnedEndPoints =
+        new ManyToOneConcurrentLinkedQueue<>();
+
+    private final int shardId;
+    private final GatewayPublication inboundPublication;
+    private final GatewayPublication unrecordedPublication;
+    private final String agentNamePrefix;
+    private final int inboundBytesReceivedLimit;
+    private final ReceiverEndPoints receiverEndPoints;
+
+    FramerShard(
+        final int shardId,
+        final GatewayPublication inboundPublication,
+        final GatewayPublication unrecordedPublication,
+        final int inboundBytesReceivedLimit,
+        final ErrorHandler errorHandler,
+        final String agentNamePrefix)
+    {
+        this.shardId = shardId;
+        this.inboundPublication = inboundPublication;
+        this.unrecordedPublication = unrecordedPublication;
+        this.agentNamePrefix = agentNamePrefix;
+        this.inboundBytesReceivedLimit = inboundBytesReceivedLimit;
+
+        receiverEndPoints = new ReceiverEndPoints(errorHandler, shardId);
+    }
+
+    int shardId()
+    {
+        return shardId;
+    }
+
+    // Only used on the shard thread
+    GatewayPublication inboundPublication()
+    {
+        return inboundPublication;
+    }
+
+    // Only used on the shard thread, null if every inbound message is recorded.
+    GatewayPublication unrecordedPublication()
+    {
+        return unrecordedPublication;
+    }
+
+    public int doWork()
+    {
+        return drainTransferredEndPoints() + pollEndPoints();
+    }
+
+    private int drainTransferredEndPoints()
+    {
+        int work = 0;
+        ReceiverEndPoint endPoint;
+        while ((endPoint = transferredEndPoints.poll()) != null)
+        {
+            if (endPoint.isHandedOverTo(shardId))
+            {
+                receiverEndPoints.addHandedOverEndPoint(endPoint);
+            }
+            else
+            {
+                receiverEndPoints.removeHandedOverEndPoint(endPoint);
+            }
+            work++;
+        }
+
+        return work;
+    }
+
+    private int pollEndPoints()
+    {
+        final int inboundBytesReceivedLimit = this.inboundBytesReceivedLimit;
+
+        int totalBytesReceived = 0;
+        int bytesReceived;
+        do
+        {
+            bytesReceived = receiverEndPoints.pollEndPoints();
+            totalBytesReceived += bytesReceived;
+        }
+        while (bytesReceived > 0 && totalBytesReceived < inboundBytesReceivedLimit);
+
+        return totalBytesReceived;
+    }
+
+    // Called on the shard thread, when the end point has detected a disconnect or has a message that has to be
+    // framed on the Framer thread.
+    void returnToFramer(final ReceiverEndPoint endPoint)
+    {
+        returnedEndPoints.offer(endPoint);
+    }
+
+    // Called on the Framer thread
+    void handOver(final ReceiverEndPoint endPoint)
+    {
+        transferredEndPoints.offer(endPoint);
+    }
+
+    // Called on the Framer thread
+    void reclaim(final ReceiverEndPoint endPoint)
+    {
+        transferredEndPoints.offer(endPoint);
+    }
+
+    // Called on the Framer thread
+    ReceiverEndPoint pollReturnedEndPoint()
+    {
+        return returnedEndPoints.poll();
+    }
+
+    public void onClose()
+    {
+        // Receiver end points are reclaimed and closed by the Framer.
+        receiverEndPoints.closeSelector();
+        inboundPublication.close();
+        if (unrecordedPublication != null)
+        {
+            unrecordedPublication.close();
+        }
+    }
+
+    public String roleName()
+    {
+        return agentNamePrefix + "FramerShard-" + shardId;
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import org.agrona.ErrorHandler;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.concurrent.Agent;
+import uk.co.real_logic.artio.engine.EngineConfiguration;
+import uk.co.real_logic.artio.protocol.GatewayPublication;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.agrona.collections.CollectionUtil.removeIf;
+import static uk.co.real_logic.artio.engine.FixEngine.ENGINE_LIBRARY_ID;
+import static uk.co.real_logic.artio.engine.framer.FramerShard.FRAMER_SHARD_ID;
+
+/**
+ * The Framer's view of its shards.
+ *
+ * Receiver end points are handed over to the shard selected by their connection id once they are authenticated,
+ * owned by a library and not paused. Shard 0 is the Framer itself, so its end points are never handed over. An end
+ * point is reclaimed before its owner changes, it is paused or it is disconnected. Reclaiming never blocks the
+ * Framer: it completes once the shard isn't part way through polling the end point, by which point everything that
+ * the shard framed for it has been published, and until then it is retried on each duty cycle.
+ */
+class FramerShards
+{
+    private final List<ReceiverEndPoint> pendingHandOvers = new ArrayList<>();
+    private final Long2ObjectHashMap<ReceiverEndPoint> connectionIdToHandedOverEndPoint = new Long2ObjectHashMap<>();
+    private final List<ReceiverEndPoint> reclaimingEndPoints = new ArrayList<>();
+
+    private final FramerShard[] shards;
+    private final ReceiverEndPoints receiverEndPoints;
+
+    FramerShards(
+        final EngineConfiguration configuration,
+        final ReceiverEndPoints receiverEndPoints,
+        final GatewayPublication[] shardInboundPublications,
+        final GatewayPublication[] shardUnrecordedPublications,
+        final ErrorHandler errorHandler)
+    {
+        this.receiverEndPoints = receiverEndPoints;
+
+        final int shardCount = configuration.framerShardCount();
+        shards = new FramerShard[shardCount];
+        for (int shardId = FRAMER_SHARD_ID + 1; shardId < shardCount; shardId++)
+        {
+            shards[shardId] = new FramerShard(
+                shardId,
+                shardInboundPublications[shardId],
+                shardUnrecordedPublications == null ? null : shardUnrecordedPublications[shardId],
+                configuration.inboundBytesReceivedLimit(),
+                errorHandler,
+                configuration.agentNamePrefix());
+        }
+    }
+
+    List<Agent> agents()
+    {
+        if (shards.length <= 1)
+        {
+            return Collections.emptyList();
+        }
+
+        return new ArrayList<>(Arrays.asList(shards).subList(FRAMER_SHARD_ID + 1, shards.length));
+    }
+
+    boolean isSharded()
+    {
+        return shards.length > 1;
+    }
+
+    void onPlay(final ReceiverEndPoint endPoint)
+    {
+        if (isSharded())
+        {
+            pendingHandOvers.add(endPoint);
+        }
+    }
+
+    int poll(final boolean performingCloseOperation)
+    {
+        if (!isSharded())
+        {
+            return 0;
+        }
+
+        int work = 0;
+        if (!performingCloseOperation)
+        {
+            work += handOverPendingEndPoints();
+        }
+        else
+        {
+            pendingHandOvers.clear();
+        }
+
+        final FramerShard[] shards = this.shards;
+        for (int shardId = FRAMER_SHARD_ID + 1; shardId < shards.length; shardId++)
+        {
+            work += reclaimReturnedEndPoints(shards[shardId]);
+        }
+
+        if (!reclaimingEndPoints.isEmpty())
+        {
+            work += removeIf(reclaimingEndPoints, this::attemptReclaim);
+        }
+
+        return work;
+    }
+
+    // Done at the end of the Framer's duty cycle, rather than on play, to avoid handing over an end point that the
+    // Framer is currently polling.
+    private int handOverPendingEndPoints()
+    {
+        final List<ReceiverEndPoint> pendingHandOvers = this.pendingHandOvers;
+        final int size = pendingHandOvers.size();
+        for (int i = 0; i < size; i++)
+        {
+            final ReceiverEndPoint endPoint = pendingHandOvers.get(i);
+            final FramerShard shard = shards[shardIndex(endPoint.connectionId())];
+            if (shard != null && canHandOver(endPoint) && receiverEndPoints.removeHandedOverEndPoint(endPoint))
+            {
+                connectionIdToHandedOverEndPoint.put(endPoint.connectionId(), endPoint);
+                endPoint.handOverTo(shard);
+                shard.handOver(endPoint);
+            }
+        }
+        pendingHandOvers.clear();
+
+        return size;
+    }
+
+    private boolean canHandOver(final ReceiverEndPoint endPoint)
+    {
+        return endPoint.shard() == null &&
+            !endPoint.isPaused() &&
+            !endPoint.hasDisconnected() &&
+            !endPoint.requiresAuthentication() &&
+            !endPoint.hasMessageForFramer() &&
+            endPoint.libraryId() != ENGINE_LIBRARY_ID;
+    }
+
+    private int shardIndex(final long connectionId)
+    {
+        return (int)((connectionId & Long.MAX_VALUE) % shards.length);
+    }
+
+    private int reclaimReturnedEndPoints(final FramerShard shard)
+    {
+        int work = 0;
+        ReceiverEndPoint endPoint;
+        while ((endPoint = shard.pollReturnedEndPoint()) != null)
+        {
+            if (endPoint.shard() == shard)
+            {
+                reclaim(endPoint);
+            }
+
+            work++;
+        }
+
+        return work;
+    }
+
+    // Returns true if the end point of the connection isn't handed over to a shard, or has now been reclaimed.
+    boolean reclaim(final long connectionId)
+    {
+        final ReceiverEndPoint endPoint = connectionIdToHandedOverEndPoint.get(connectionId);
+        return endPoint == null || reclaim(endPoint);
+    }
+
+    // Returns the end point to the Framer's own receiver end points, returns true if that has completed. Otherwise it
+    // is retried by later polls.
+    boolean reclaim(final ReceiverEndPoint endPoint)
+    {
+        final FramerShard shard = endPoint.shard();
+        if (shard == null)
+        {
+            return true;
+        }
+
+        final boolean isReclaiming = reclaimingEndPoints.contains(endPoint);
+        if (!isReclaiming)
+        {
+            shard.reclaim(endPoint);
+        }
+
+        if (attemptReclaim(endPoint))
+        {
+            if (isReclaiming)
+            {
+                reclaimingEndPoints.remove(endPoint);
+            }
+
+            return true;
+        }
+
+        if (!isReclaiming)
+        {
+            reclaimingEndPoints.add(endPoint);
+        }
+
+        return false;
+    }
+
+    // Returns true once every end point has been reclaimed.
+    boolean reclaimAll()
+    {
+        if (connectionIdToHandedOverEndPoint.isEmpty())
+        {
+            return true;
+        }
+
+        boolean reclaimedAll = true;
+        final List<ReceiverEndPoint> endPoints = new ArrayList<>(connectionIdToHandedOverEndPoint.values());
+        for (final ReceiverEndPoint endPoint : endPoints)
+        {
+            reclaimedAll &= reclaim(endPoint);
+        }
+
+        return reclaimedAll;
+    }
+
+    private boolean attemptReclaim(final ReceiverEndPoint endPoint)
+    {
+        // Fails whilst the shard is part way through polling the end point.
+        if (!endPoint.tryReclaimFromShard())
+        {
+            return false;
+        }
+
+        connectionIdToHandedOverEndPoint.remove(endPoint.connectionId());
+        if (endPoint.onReclaimed())
+        {
+            endPoint.onShardDisconnectDetected();
+        }
+        else
+        {
+            receiverEndPoints.add(endPoint);
+            if (!endPoint.isPaused())
+            {
+                // A play whilst the end point was being reclaimed couldn't hand it over again.
+                onPlay(endPoint);
+            }
+        }
+
+        return true;
+    }
+}
@@ -29,8 +29,9 @@ import java.util.function.Consumer;
 import static uk.co.real_logic.artio.LogTag.FIX_MESSAGE;
 import static uk.co.real_logic.artio.LogTag.GATEWAY_MESSAGE;
 import static uk.co.real_logic.artio.engine.FixEngine.ENGINE_LIBRARY_ID;
+import static uk.co.real_logic.artio.session.SessionPollTimers.NO_POLL_DEADLINE;
 
-class GatewaySession implements SessionInfo
+class GatewaySession implements SessionInfo, SessionPollTimers.Pollable
 {
     private static final int NO_TIMEOUT = -1;
 
@@ -44,6 +45,7 @@ class GatewaySession implements SessionInfo
     private final boolean enableLastMsgSeqNumProcessed;
     private final FixDictionary fixDictionary;
     private final long authenticationTimeoutInMs;
+    private final SessionPollTimers.Timer pollTimer = new SessionPollTimers.Timer(this);
 
     private ReceiverEndPoint receiverEndPoint;
     private SenderEndPoint senderEndPoint;
@@ -125,6 +127,8 @@ class GatewaySession implements SessionInfo
         this.sessionParser = sessionParser;
         this.session = session;
         this.session.logonListener(logonListener);
+        this.session.pollTimer(pollTimer);
+        pollTimer.reschedule();
         receiverEndPoint.libraryId(ENGINE_LIBRARY_ID);
         senderEndPoint.libraryId(ENGINE_LIBRARY_ID, blockablePosition);
     }
@@ -155,12 +159,28 @@ class GatewaySession implements SessionInfo
         receiverEndPoint.play();
     }
 
-    int poll(final long timeInMs)
+    public int poll(final long timeInMs)
     {
         final int events = session != null ? session.poll(timeInMs) : 0;
         return events + checkNoLogonDisconnect(timeInMs);
     }
 
+    public long nextPollTimeInMs()
+    {
+        final long sessionPollTimeInMs = session != null ? session.nextPollTimeInMs() : NO_POLL_DEADLINE;
+        if (disconnectTimeInMs == NO_TIMEOUT || receiverEndPoint.hasDisconnected())
+        {
+            return sessionPollTimeInMs;
+        }
+
+        return Math.min(sessionPollTimeInMs, disconnectTimeInMs);
+    }
+
+    SessionPollTimers.Timer pollTimer()
+    {
+        return pollTimer;
+    }
+
     private int checkNoLogonDisconnect(final long timeInMs)
     {
         if (disconnectTimeInMs == NO_TIMEOUT)
@@ -188,6 +208,7 @@ class GatewaySession implements SessionInfo
     {
         hasStartedAuthentication = true;
         disconnectTimeInMs = timeInMs + authenticationTimeoutInMs;
+        pollTimer.reschedule();
     }
 
     void onAuthenticationResult()
@@ -301,6 +322,7 @@ class GatewaySession implements SessionInfo
     void disconnectAt(final long disconnectTimeout)
     {
         this.disconnectTimeInMs = disconnectTimeout;
+        pollTimer.reschedule();
     }
 
     public long bytesInBuffer()
@@ -56,6 +56,7 @@ import static uk.co.real_logic.artio.validation.SessionPersistenceStrategy.reset
 class GatewaySessions
 {
     private final List<GatewaySession> sessions = new ArrayList<>();
+    private final SessionPollTimers sessionPollTimers;
     private final Map<FixDictionary, UserRequestExtractor> dictionaryToUserRequestExtractor = new HashMap<>();
 
     private final EpochClock epochClock;
@@ -113,6 +114,7 @@ class GatewaySessions
         this.sessionPersistenceStrategy = sessionPersistenceStrategy;
         this.sentSequenceNumberIndex = sentSequenceNumberIndex;
         this.receivedSequenceNumberIndex = receivedSequenceNumberIndex;
+        this.sessionPollTimers = new SessionPollTimers(epochClock.time());
     }
 
     static GatewaySession removeSessionByConnectionId(final long connectionId, final List<GatewaySession> sessions)
@@ -193,6 +195,7 @@ class GatewaySessions
         if (!sessions.contains(gatewaySession))
         {
             sessions.add(gatewaySession);
+            sessionPollTimers.add(gatewaySession.pollTimer());
         }
         gatewaySession.manage(sessionParser, session, engineBlockablePosition);
 
@@ -213,7 +216,9 @@ class GatewaySessions
             return null;
         }
 
-        return sessions.remove(index);
+        final GatewaySession gatewaySession = sessions.remove(index);
+        sessionPollTimers.remove(gatewaySession.pollTimer());
+        return gatewaySession;
     }
 
     GatewaySession sessionById(final long sessionId)
@@ -248,29 +253,14 @@ class GatewaySessions
         final GatewaySession session = removeSessionByConnectionId(connectionId, sessions);
         if (session != null)
         {
+            sessionPollTimers.remove(session.pollTimer());
             session.close();
         }
     }
 
     int pollSessions(final long time)
     {
-        final List<GatewaySession> sessions = this.sessions;
-
-        int eventsProcessed = 0;
-        for (int i = 0, size = sessions.size(); i < size;)
-        {
-            final GatewaySession session = sessions.get(i);
-            eventsProcessed += session.poll(time);
-            if (session.hasDisconnected())
-            {
-                size--;
-            }
-            else
-            {
-                i++;
-            }
-        }
-        return eventsProcessed;
+        return sessionPollTimers.poll(time);
     }
 
     List<GatewaySession> sessions()
@@ -326,6 +316,7 @@ class GatewaySessions
     public void track(final GatewaySession gatewaySession)
     {
         sessions.add(gatewaySession);
+        sessionPollTimers.add(gatewaySession.pollTimer());
     }
 
     enum AuthenticationState
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import io.aeron.ControlledFragmentAssembler;
+import io.aeron.ExclusivePublication;
+import io.aeron.Image;
+import io.aeron.Publication;
+import io.aeron.Subscription;
+import io.aeron.logbuffer.ControlledFragmentHandler;
+import io.aeron.logbuffer.Header;
+import org.agrona.DirectBuffer;
+import org.agrona.ErrorHandler;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntHashSet;
+import uk.co.real_logic.artio.messages.*;
+import uk.co.real_logic.artio.protocol.Streams;
+
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
+import static uk.co.real_logic.artio.engine.FixEngine.ENGINE_LIBRARY_ID;
+
+/**
+ * Delivers the messages on the inbound library stream to the libraries that they're addressed to.
+ *
+ * Everything that the engine sends to libraries is published on the inbound library stream, so all of the recorded
+ * messages of a session are on a single publication, whichever library owns it. Each library has a publication of
+ * its own on the delivery stream, whose Aeron session id is the library's id, and the messages that a library reads
+ * are copied onto it. So a library only reads its own messages, rather than reading and discarding every other
+ * library's. Notifications that a session is available to be requested are copied to every library.
+ *
+ * The delivery stream isn't recorded and only has these publications on it, so their session ids can't clash with
+ * session ids that Aeron assigns.
+ *
+ * Inbound messages that the archiving policy doesn't keep are published on the unrecorded stream instead, with a
+ * marker in their place on the inbound library stream. When the demultiplexer reaches a marker it delivers the
+ * message that the marker refers to from the unrecorded stream, so messages are delivered in the order that they
+ * were received in.
+ *
+ * Only used on the Framer thread.
+ */
+class LibraryDemultiplexer implements ControlledFragmentHandler, AutoCloseable
+{
+    private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
+    private final FixMessageDecoder fixMessage = new FixMessageDecoder();
+    private final DisconnectDecoder disconnect = new DisconnectDecoder();
+    private final ManageSessionDecoder manageSession = new ManageSessionDecoder();
+    private final ErrorDecoder error = new ErrorDecoder();
+    private final ApplicationHeartbeatDecoder applicationHeartbeat = new ApplicationHeartbeatDecoder();
+    private final ReleaseSessionReplyDecoder releaseSessionReply = new ReleaseSessionReplyDecoder();
+    private final RequestSessionReplyDecoder requestSessionReply = new RequestSessionReplyDecoder();
+    private final NewSentPositionDecoder newSentPosition = new NewSentPositionDecoder();
+    private final ControlNotificationDecoder controlNotification = new ControlNotificationDecoder();
+    private final SlowStatusNotificationDecoder slowStatusNotification = new SlowStatusNotificationDecoder();
+    private final ResetLibrarySequenceNumberDecoder resetLibrarySequenceNumber =
+        new ResetLibrarySequenceNumberDecoder();
+    private final FollowerSessionReplyDecoder followerSessionReply = new FollowerSessionReplyDecoder();
+    private final EndOfDayDecoder endOfDay = new EndOfDayDecoder();
+    private final UnrecordedFixMessageDecoder unrecordedFixMessage = new UnrecordedFixMessageDecoder();
+
+    private final Int2ObjectHashMap<ExclusivePublication> libraryIdToPublication = new Int2ObjectHashMap<>();
+    // The libraries that the message being broadcast has been copied to, if it was back pressured part way through.
+    private final IntHashSet broadcastLibraryIds = new IntHashSet();
+    private final ControlledFragmentAssembler assembler = new ControlledFragmentAssembler(this);
+    private final ControlledFragmentAssembler unrecordedAssembler =
+        new ControlledFragmentAssembler(this::onUnrecordedFragment);
+
+    private final Subscription inboundSubscription;
+    private final Subscription unrecordedSubscription;
+    private final Streams deliveryStreams;
+    private final ErrorHandler errorHandler;
+    private final int fragmentLimit;
+
+    // The position on the unrecorded stream of the end of the message that's being delivered.
+    private long unrecordedPosition;
+
+    LibraryDemultiplexer(
+        final Subscription inboundSubscription,
+        final Subscription unrecordedSubscription,
+        final Streams deliveryStreams,
+        final ErrorHandler errorHandler,
+        final int fragmentLimit)
+    {
+        this.inboundSubscription = inboundSubscription;
+        this.unrecordedSubscription = unrecordedSubscription;
+        this.deliveryStreams = deliveryStreams;
+        this.errorHandler = errorHandler;
+        this.fragmentLimit = fragmentLimit;
+    }
+
+    int poll()
+    {
+        return inboundSubscription.controlledPoll(assembler, fragmentLimit);
+    }
+
+    /**
+     * Add the publication of a connecting library. The library subscribes to its publication before connecting, so
+     * it receives every message from the reply to its connect onwards.
+     *
+     * @param libraryId the id of the library.
+     */
+    void addLibrary(final int libraryId)
+    {
+        if (!libraryIdToPublication.containsKey(libraryId))
+        {
+            libraryIdToPublication.put(
+                libraryId, deliveryStreams.dataPublication("inboundDeliveryPublication-" + libraryId, libraryId));
+        }
+    }
+
+    void removeLibrary(final int libraryId)
+    {
+        final ExclusivePublication publication = libraryIdToPublication.remove(libraryId);
+        if (publication != null)
+        {
+            publication.close();
+        }
+    }
+
+    public Action onFragment(final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        messageHeader.wrap(buffer, offset);
+
+        final int blockLength = messageHeader.blockLength();
+        final int version = messageHeader.version();
+        final int messageOffset = offset + MessageHeaderDecoder.ENCODED_LENGTH;
+
+        final int libraryId;
+        switch (messageHeader.templateId())
+        {
+            case FixMessageDecoder.TEMPLATE_ID:
+                libraryId = fixMessage.wrap(buffer, messageOffset, blockLength, version).libraryId();
+                break;
+
+            case DisconnectDecoder.TEMPLATE_ID:
+                libraryId = disconnect.wrap(buffer, messageOffset, blockLength, version).libraryId();
+                break;
+
+            case ManageSessionDecoder.TEMPLATE_ID:
+                libraryId = manageSession.wrap(buffer, messageOffset, blockLength, version).libraryId();
+                if (libraryId == ENGINE_LIBRARY_ID)
+                {
+                    return broadcast(buffer, offset, length);
+                }
+                break;
+
+            case ErrorDecoder.TEMPLATE_ID:
+                libraryId = error.wrap(buffer, messageOffset, blockLength, version).libraryId();
+                break;
+
+            case ApplicationHeartbeatDecoder.TEMPLATE_ID:
+                libraryId = applicationHeartbeat.wrap(buffer, messageOffset, blockLength, version).libraryId();
+                break;
+
+            case ReleaseSessionReplyDecoder.TEMPLATE_ID:
+                libraryId = releaseSessionReply.wrap(buffer, messageOffset, blockLength, version).libraryId();
+                break;
+
+            case RequestSessionReplyDecoder.TEMPLATE_ID:
+                libraryId = requestSessionReply.wrap(buffer, messageOffset, blockLength, version).libraryId();
+                break;
+
+            case NewSentPositionDecoder.TEMPLATE_ID:
+                libraryId = newSentPosition.wrap(buffer, messageOffset, blockLength, version).libraryId();
+                break;
+
+            case ControlNotificationDecoder.TEMPLATE_ID:
+                libraryId = controlNotification.wrap(buffer, messageOffset, blockLength, version).libraryId();
+                break;
+
+            case SlowStatusNotificationDecoder.TEMPLATE_ID:
+                libraryId = slowStatusNotification.wrap(buffer, messageOffset, blockLength, version).libraryId();
+                break;
+
+            case ResetLibrarySequenceNumberDecoder.TEMPLATE_ID:
+                libraryId = resetLibrarySequenceNumber.wrap(buffer, messageOffset, blockLength, version).libraryId();
+                break;
+
+            case FollowerSessionReplyDecoder.TEMPLATE_ID:
+                libraryId = followerSessionReply.wrap(buffer, messageOffset, blockLength, version).libraryId();
+                break;
+
+            case EndOfDayDecoder.TEMPLATE_ID:
+                libraryId = endOfDay.wrap(buffer, messageOffset, blockLength, version).libraryId();
+                break;
+
+            case UnrecordedFixMessageDecoder.TEMPLATE_ID:
+                unrecordedFixMessage.wrap(buffer, messageOffset, blockLength, version);
+                return deliverUnrecordedMessage(
+                    unrecordedFixMessage.unrecordedSessionId(), unrecordedFixMessage.unrecordedPosition());
+
+            default:
+                // Libraries don't read the engine's own messages, such as connects or session id resets.
+                return CONTINUE;
+        }
+
+        return deliver(libraryId, buffer, offset, length);
+    }
+
+    private Action deliver(final int libraryId, final DirectBuffer buffer, final int offset, final int length)
+    {
+        final ExclusivePublication publication = libraryIdToPublication.get(libraryId);
+        if (publication == null)
+        {
+            // Engine managed sessions or a library that has timed out.
+            return CONTINUE;
+        }
+
+        return offer(publication, buffer, offset, length) ? CONTINUE : ABORT;
+    }
+
+    // The marker is retried until its message has been delivered, the unrecorded message might not be visible yet
+    // or the library might be back pressured.
+    private Action deliverUnrecordedMessage(final int unrecordedSessionId, final long unrecordedPosition)
+    {
+        final Image image = unrecordedSubscription == null ?
+            null : unrecordedSubscription.imageBySessionId(unrecordedSessionId);
+        if (image == null)
+        {
+            return ABORT;
+        }
+
+        this.unrecordedPosition = unrecordedPosition;
+        while (image.position() < unrecordedPosition)
+        {
+            // One fragment at a time so that the messages of later markers are left on the image.
+            if (image.controlledPoll(unrecordedAssembler, 1) == 0)
+            {
+                return ABORT;
+            }
+        }
+
+        return CONTINUE;
+    }
+
+    private Action onUnrecordedFragment(
+        final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        // An end point that disconnects whilst its marker is back pressured leaves a message without a marker behind.
+        if (header.position() != unrecordedPosition)
+        {
+            return CONTINUE;
+        }
+
+        messageHeader.wrap(buffer, offset);
+        final int libraryId = fixMessage.wrap(
+            buffer,
+            offset + MessageHeaderDecoder.ENCODED_LENGTH,
+            messageHeader.blockLength(),
+            messageHeader.version()).libraryId();
+
+        return deliver(libraryId, buffer, offset, length);
+    }
+
+    private Action broadcast(final DirectBuffer buffer, final int offset, final int length)
+    {
+        final IntHashSet broadcastLibraryIds = this.broadcastLibraryIds;
+        for (final ExclusivePublication publication : libraryIdToPublication.values())
+        {
+            // The session id of a library's publication is its library id.
+            final int libraryId = publication.sessionId();
+            if (!broadcastLibraryIds.contains(libraryId))
+            {
+                if (!offer(publication, buffer, offset, length))
+                {
+                    return ABORT;
+                }
+
+                broadcastLibraryIds.add(libraryId);
+            }
+        }
+
+        broadcastLibraryIds.clear();
+        return CONTINUE;
+    }
+
+    // Returns false if the message should be retried.
+    private boolean offer(
+        final ExclusivePublication publication, final DirectBuffer buffer, final int offset, final int length)
+    {
+        final long position = publication.offer(buffer, offset, length);
+        if (position > 0)
+        {
+            return true;
+        }
+
+        if (position == Publication.BACK_PRESSURED || position == Publication.ADMIN_ACTION)
+        {
+            return false;
+        }
+
+        if (position == Publication.MAX_POSITION_EXCEEDED)
+        {
+            errorHandler.onError(new IllegalStateException(
+                "Unable to deliver message to library, max position exceeded: " + publication.sessionId()));
+        }
+
+        // Not connected or closed means that the library has gone away, so its messages are dropped.
+        return true;
+    }
+
+    public void close()
+    {
+        libraryIdToPublication.values().forEach(ExclusivePublication::close);
+        libraryIdToPublication.clear();
+        inboundSubscription.close();
+        if (unrecordedSubscription != null)
+        {
+            unrecordedSubscription.close();
+        }
+    }
+}
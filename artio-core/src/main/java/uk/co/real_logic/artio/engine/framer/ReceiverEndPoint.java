@@ -26,7 +26,10 @@ import uk.co.real_logic.artio.dictionary.FixDictionary;
 import uk.co.real_logic.artio.dictionary.SessionConstants;
 import uk.co.real_logic.artio.dictionary.generation.Exceptions;
 import uk.co.real_logic.artio.engine.ByteBufferUtil;
+import uk.co.real_logic.artio.engine.SequenceNumberExtractor;
+import uk.co.real_logic.artio.engine.logger.ArchivingPolicy;
 import uk.co.real_logic.artio.messages.DisconnectReason;
+import uk.co.real_logic.artio.messages.MessageStatus;
 import uk.co.real_logic.artio.protocol.GatewayPublication;
 import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
@@ -36,11 +39,13 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.nio.channels.SelectionKey.OP_READ;
 import static uk.co.real_logic.artio.LogTag.FIX_MESSAGE;
 import static uk.co.real_logic.artio.LogTag.FIX_MESSAGE_TCP;
 import static uk.co.real_logic.artio.dictionary.SessionConstants.*;
+import static uk.co.real_logic.artio.engine.framer.FramerShard.FRAMER_SHARD_ID;
 import static uk.co.real_logic.artio.messages.DisconnectReason.AUTHENTICATION_TIMEOUT;
 import static uk.co.real_logic.artio.messages.DisconnectReason.NO_LOGON;
 import static uk.co.real_logic.artio.messages.DisconnectReason.REMOTE_DISCONNECT;
@@ -55,6 +60,16 @@ import static uk.co.real_logic.artio.util.AsciiBuffer.UNKNOWN_INDEX;
  * The receiver end point frames the TCP FIX messages into Aeron fragments.
  * It also handles backpressure coming from the Aeron stream and applies it to
  * its own TCP connections.
+ * <p>
+ * Whilst handed over to a {@link FramerShard} the end point is polled on the shard's thread and its framed messages
+ * are published through the shard's inbound publication. Ownership is tracked by {@code shardOwnership}: the Framer's
+ * id when owned by the Framer, the shard's id when idle on a shard, and the negated shard's id whilst the shard polls
+ * it.
+ * <p>
+ * Messages that the {@link ArchivingPolicy} doesn't keep are published on the unrecorded stream, by the thread that
+ * frames them, and a marker carrying their sequence number is published on the inbound stream in their place. The
+ * marker keeps the received sequence number index up to date and tells the {@link LibraryDemultiplexer} where to
+ * deliver the message in amongst the recorded ones.
  */
 class ReceiverEndPoint
 {
@@ -76,10 +91,18 @@ class ReceiverEndPoint
 
     private static final int UNKNOWN_INDEX_BACKPRESSURED = -2;
 
+    private static final long NO_UNRECORDED_POSITION = -1;
+
+    // Unframed data is only moved to the start of the buffer once less than this fraction of it is free to read into.
+    private static final int COMPACTION_THRESHOLD_DIVISOR = 4;
+
     private final AbstractLogonDecoder acceptorLogon;
 
     private final TcpChannel channel;
     private final GatewayPublication publication;
+    private final GatewayPublication unrecordedPublication;
+    private final ArchivingPolicy archivingPolicy;
+    private final SequenceNumberExtractor sequenceNumberExtractor;
     private final long connectionId;
     private final SessionContexts sessionContexts;
     private final AtomicCounter messagesRead;
@@ -88,17 +111,33 @@ class ReceiverEndPoint
     private final PasswordCleaner passwordCleaner = new PasswordCleaner();
     private final MutableAsciiBuffer buffer;
     private final ByteBuffer byteBuffer;
+    private final int compactionThreshold;
     private final GatewaySessions gatewaySessions;
     private final Clock clock;
+    private final AtomicInteger shardOwnership = new AtomicInteger(FRAMER_SHARD_ID);
 
     private int libraryId;
     private GatewaySession gatewaySession;
     private long sessionId;
     private int sequenceIndex;
+    // Data in the buffer before this offset has already been framed.
+    private int startOfUnframedData = 0;
     private int usedBufferData = 0;
     private boolean hasDisconnected = false;
     private SelectionKey selectionKey;
     private boolean isPaused = false;
+    private FramerShard shard;
+    // Set on the shard thread once it has returned the end point to the Framer, until it has been reclaimed.
+    private boolean hasReturnedToFramer = false;
+    private boolean hasDetectedDisconnectOnShard = false;
+    // A message that has to be framed on the Framer thread, the end point isn't handed over again until it has been.
+    private boolean hasMessageForFramer = false;
+    // An owner that takes over once this end point has been reclaimed from its shard.
+    private boolean hasPendingLibraryId = false;
+    private int pendingLibraryId;
+    // An unrecorded message that has been published, but whose marker on the inbound stream was back pressured.
+    private long pendingUnrecordedPosition = NO_UNRECORDED_POSITION;
+    private int pendingUnrecordedSessionId;
 
     private AcceptorLogonResult pendingAcceptorLogon;
     private boolean hasNotifiedFramerOfLogonMessageReceived;
@@ -110,6 +149,8 @@ class ReceiverEndPoint
         final TcpChannel channel,
         final int bufferSize,
         final GatewayPublication publication,
+        final GatewayPublication unrecordedPublication,
+        final ArchivingPolicy archivingPolicy,
         final long connectionId,
         final long sessionId,
         final int sequenceIndex,
@@ -129,6 +170,9 @@ class ReceiverEndPoint
 
         this.channel = channel;
         this.publication = publication;
+        this.unrecordedPublication = unrecordedPublication;
+        this.archivingPolicy = unrecordedPublication == null ? null : archivingPolicy;
+        this.sequenceNumberExtractor = this.archivingPolicy == null ? null : new SequenceNumberExtractor(errorHandler);
         this.connectionId = connectionId;
         this.sessionId = sessionId;
         this.sequenceIndex = sequenceIndex;
@@ -143,6 +187,7 @@ class ReceiverEndPoint
 
         byteBuffer = ByteBuffer.allocateDirect(bufferSize);
         buffer = new MutableAsciiBuffer(byteBuffer);
+        compactionThreshold = bufferSize / COMPACTION_THRESHOLD_DIVISOR;
     }
 
     public long connectionId()
@@ -152,7 +197,7 @@ class ReceiverEndPoint
 
     int poll()
     {
-        if (isPaused || hasDisconnected())
+        if (isPaused || hasDisconnected() || hasReturnedToFramer)
         {
             return 0;
         }
@@ -228,7 +273,7 @@ class ReceiverEndPoint
         // the new session in initialAcceptedSessionOwner=SOLE_LIBRARY
         if (isPaused)
         {
-            moveRemainingDataToBufferStart(offset);
+            consumeBufferDataTo(offset);
             return offset;
         }
 
@@ -244,9 +289,9 @@ class ReceiverEndPoint
 
             framer.receiverEndPointPollingOptional(connectionId);
 
-            // Move any data received after the logon message.
+            // Any data received after the logon message is framed on the next poll.
             offset += length;
-            moveRemainingDataToBufferStart(offset);
+            consumeBufferDataTo(offset);
             return offset;
         }
         else
@@ -262,7 +307,7 @@ class ReceiverEndPoint
         {
             if (dataRead > 0)
             {
-                DebugLogger.log(FIX_MESSAGE_TCP, "Read     %s%n", buffer, 0, dataRead);
+                DebugLogger.log(FIX_MESSAGE_TCP, "Read     %s%n", buffer, usedBufferData, dataRead);
             }
             usedBufferData += dataRead;
         }
@@ -279,12 +324,105 @@ class ReceiverEndPoint
         return frameMessages(lastReadTimestamp);
     }
 
+    // Called on the shard thread, the Framer may have reclaimed this end point since the shard last polled it.
+    int pollOnShard(final int shardId)
+    {
+        if (!shardOwnership.compareAndSet(shardId, -shardId))
+        {
+            return 0;
+        }
+
+        try
+        {
+            return poll();
+        }
+        finally
+        {
+            shardOwnership.set(shardId);
+        }
+    }
+
+    // Called on the shard thread
+    boolean retryFrameMessagesOnShard(final int shardId)
+    {
+        if (hasReturnedToFramer || !shardOwnership.compareAndSet(shardId, -shardId))
+        {
+            return true;
+        }
+
+        try
+        {
+            return retryFrameMessages();
+        }
+        finally
+        {
+            shardOwnership.set(shardId);
+        }
+    }
+
+    // Called on the Framer thread
+    void handOverTo(final FramerShard shard)
+    {
+        this.shard = shard;
+        shardOwnership.set(shard.shardId());
+    }
+
+    // Called on the shard thread
+    boolean isHandedOverTo(final int shardId)
+    {
+        return shardOwnership.get() == shardId;
+    }
+
+    // Called on the Framer thread, returns false if the shard is part way through polling this end point. Once it
+    // succeeds everything that the shard framed for this end point has been published.
+    boolean tryReclaimFromShard()
+    {
+        return shardOwnership.compareAndSet(shard.shardId(), FRAMER_SHARD_ID);
+    }
+
+    // Called on the Framer thread once reclaimed, returns true if the shard had detected a disconnect.
+    boolean onReclaimed()
+    {
+        final boolean hasDetectedDisconnectOnShard = this.hasDetectedDisconnectOnShard;
+        shard = null;
+        hasReturnedToFramer = false;
+        this.hasDetectedDisconnectOnShard = false;
+
+        if (hasPendingLibraryId)
+        {
+            hasPendingLibraryId = false;
+            libraryId(pendingLibraryId);
+        }
+
+        return hasDetectedDisconnectOnShard;
+    }
+
+    FramerShard shard()
+    {
+        return shard;
+    }
+
+    boolean hasMessageForFramer()
+    {
+        return hasMessageForFramer;
+    }
+
+    // Called on the shard thread
+    private void returnToFramer()
+    {
+        if (!hasReturnedToFramer)
+        {
+            hasReturnedToFramer = true;
+            shard.returnToFramer(this);
+        }
+    }
+
     // true - no more framed messages in the buffer data to process. This could mean no more messages, or some data
     // that is an incomplete message.
     // false - needs to be retried, aka back-pressured
     private boolean frameMessages(final long readTimestamp)
     {
-        int offset = 0;
+        int offset = startOfUnframedData;
         while (true)
         {
             if (usedBufferData < offset + SessionConstants.MIN_MESSAGE_SIZE) // Need more data
@@ -374,7 +512,7 @@ class ReceiverEndPoint
             }
         }
 
-        moveRemainingDataToBufferStart(offset);
+        consumeBufferDataTo(offset);
         return true;
     }
 
@@ -399,13 +537,13 @@ class ReceiverEndPoint
             return BREAK;
         }
 
-        if (saveInvalidMessage(offset, endOfMessage, readTimestamp))
+        if (saveInvalidMessage(offset, endOfMessage - offset, readTimestamp))
         {
             DebugLogger.log(FIX_MESSAGE, "Invalidated: %s%n", buffer, offset, endOfMessage - offset);
             return offset;
         }
 
-        moveRemainingDataToBufferStart(endOfMessage);
+        consumeBufferDataTo(endOfMessage);
         return offset;
     }
 
@@ -490,36 +628,117 @@ class ReceiverEndPoint
     }
 
     // returns true if back-pressured
-    private boolean stashIfBackPressured(final int offset, final long position)
+    private boolean saveInvalidOrStash(
+        final int offset,
+        final int length,
+        final long messageType,
+        final MessageStatus status,
+        final long readTimestamp)
     {
-        final boolean backPressured = Pressure.isBackPressured(position);
+        final boolean backPressured = !saveStatusMessage(buffer, offset, length, messageType, status, readTimestamp);
         if (backPressured)
         {
-            moveRemainingDataToBufferStart(offset);
+            consumeBufferDataTo(offset);
         }
 
         return backPressured;
     }
 
+    // returns false if back-pressured
+    private boolean saveStatusMessage(
+        final DirectBuffer buffer,
+        final int offset,
+        final int length,
+        final long messageType,
+        final MessageStatus status,
+        final long readTimestamp)
+    {
+        final long position = publication().saveMessage(
+            buffer,
+            offset,
+            length,
+            libraryId,
+            messageType,
+            sessionId,
+            sequenceIndex,
+            connectionId,
+            status,
+            0,
+            readTimestamp);
+
+        return !Pressure.isBackPressured(position);
+    }
+
     private boolean saveMessage(final int offset, final long messageType, final int length, final long readTimestamp)
     {
-        return saveMessage(offset, messageType, length, sessionId, sequenceIndex, readTimestamp);
+        if (shard != null && messageType == USER_REQUEST_MESSAGE_TYPE)
+        {
+            // User requests are handed to the authentication strategy, which is only called on the Framer thread, so
+            // the end point is returned to the Framer to frame it. Treated like back pressure until then.
+            hasMessageForFramer = true;
+            returnToFramer();
+            consumeBufferDataTo(offset);
+            return false;
+        }
+
+        if (!saveMessage(offset, messageType, length, sessionId, sequenceIndex, readTimestamp))
+        {
+            return false;
+        }
+
+        if (hasMessageForFramer)
+        {
+            hasMessageForFramer = false;
+            if (!isPaused)
+            {
+                framer.onReceiverEndPointPlay(this);
+            }
+        }
+
+        return true;
     }
 
     private boolean saveMessage(
-        final int messageOffset,
+        final int offset,
         final long messageType,
+        final int length,
+        final long sessionId,
+        final int sequenceIndex,
+        final long readTimestamp)
+    {
+        if (publishMessage(buffer, offset, length, messageType, sessionId, sequenceIndex, readTimestamp))
+        {
+            return true;
+        }
+
+        consumeBufferDataTo(offset);
+        return false;
+    }
+
+    // Whilst handed over to a shard its publication is used, which shares the Framer's Aeron publication.
+    private GatewayPublication publication()
+    {
+        final FramerShard shard = this.shard;
+        return shard != null ? shard.inboundPublication() : publication;
+    }
+
+    // returns false if back-pressured
+    private boolean publishMessage(
+        final DirectBuffer messageBuffer,
+        final int messageOffset,
         final int messageLength,
+        final long messageType,
         final long sessionId,
         final int sequenceIndex,
         final long readTimestamp)
     {
-        DirectBuffer buffer = this.buffer;
+        DirectBuffer buffer = messageBuffer;
         int offset = messageOffset;
         int length = messageLength;
 
         final boolean isUserRequest = messageType == USER_REQUEST_MESSAGE_TYPE;
-        if (messageType == LOGON_MESSAGE_TYPE || isUserRequest)
+        final boolean isLogonOrUserRequest = messageType == LOGON_MESSAGE_TYPE || isUserRequest;
+        if (isLogonOrUserRequest)
         {
             if (isUserRequest)
             {
@@ -534,31 +753,122 @@ class ReceiverEndPoint
             length = passwordCleaner.cleanedLength();
         }
 
-        final long position = publication.saveMessage(
-            buffer,
-            offset,
-            length,
-            libraryId,
-            messageType,
-            sessionId,
-            sequenceIndex,
-            connectionId,
-            OK,
-            0,
-            readTimestamp);
+        final FramerShard shard = this.shard;
+        final GatewayPublication publication = shard != null ? shard.inboundPublication() : this.publication;
+        final long position;
+        if (!isLogonOrUserRequest && isUnrecorded(messageType, sessionId))
+        {
+            position = saveUnrecordedMessage(
+                publication, buffer, offset, length, messageType, sessionId, sequenceIndex, readTimestamp);
+        }
+        else
+        {
+            position = publication.saveMessage(
+                buffer,
+                offset,
+                length,
+                libraryId,
+                messageType,
+                sessionId,
+                sequenceIndex,
+                connectionId,
+                OK,
+                0,
+                readTimestamp);
+        }
 
         if (Pressure.isBackPressured(position))
         {
-            moveRemainingDataToBufferStart(offset);
             return false;
         }
         else
         {
-            gatewaySession.onMessage(buffer, offset, length, messageType, sessionId);
+            // Engine managed sessions, the only ones that parse their messages here, are never handed over to a shard.
+            if (shard == null)
+            {
+                gatewaySession.onMessage(buffer, offset, length, messageType, sessionId);
+            }
             return true;
         }
     }
 
+    private boolean isUnrecorded(final long messageType, final long sessionId)
+    {
+        // A message whose marker is pending is retried as an unrecorded message, whatever the policy says.
+        return pendingUnrecordedPosition != NO_UNRECORDED_POSITION ||
+            (archivingPolicy != null && !archivingPolicy.shouldArchive(sessionId, messageType));
+    }
+
+    private long saveUnrecordedMessage(
+        final GatewayPublication publication,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length,
+        final long messageType,
+        final long sessionId,
+        final int sequenceIndex,
+        final long readTimestamp)
+    {
+        if (pendingUnrecordedPosition == NO_UNRECORDED_POSITION)
+        {
+            final FramerShard shard = this.shard;
+            final GatewayPublication unrecordedPublication =
+                shard != null ? shard.unrecordedPublication() : this.unrecordedPublication;
+            final long unrecordedPosition = unrecordedPublication.saveMessage(
+                buffer,
+                offset,
+                length,
+                libraryId,
+                messageType,
+                sessionId,
+                sequenceIndex,
+                connectionId,
+                OK,
+                0,
+                readTimestamp);
+
+            if (Pressure.isBackPressured(unrecordedPosition))
+            {
+                return unrecordedPosition;
+            }
+
+            if (unrecordedPosition < 0)
+            {
+                // Nothing is reading the unrecorded stream yet, so the message is recorded like any other.
+                return publication.saveMessage(
+                    buffer,
+                    offset,
+                    length,
+                    libraryId,
+                    messageType,
+                    sessionId,
+                    sequenceIndex,
+                    connectionId,
+                    OK,
+                    0,
+                    readTimestamp);
+            }
+
+            pendingUnrecordedSessionId = unrecordedPublication.id();
+            pendingUnrecordedPosition = unrecordedPosition;
+        }
+
+        final long position = publication.saveUnrecordedFixMessage(
+            sessionId,
+            sequenceIndex,
+            sequenceNumberExtractor.extract(buffer, offset, length),
+            messageType,
+            pendingUnrecordedSessionId,
+            pendingUnrecordedPosition);
+
+        if (!Pressure.isBackPressured(position))
+        {
+            pendingUnrecordedPosition = NO_UNRECORDED_POSITION;
+        }
+
+        return position;
+    }
+
     private boolean validateBodyLength(final int startOfChecksumTag)
     {
         return isStartOfChecksum(startOfChecksumTag);
@@ -600,12 +910,35 @@ class ReceiverEndPoint
         }
     }
 
-    private void moveRemainingDataToBufferStart(final int offset)
+    // Partial messages are left where they are, rather than being copied to the start of the buffer after every
+    // read, until the space left to read into gets low.
+    private void consumeBufferDataTo(final int offset)
     {
-        usedBufferData -= offset;
-        buffer.putBytes(0, buffer, offset, usedBufferData);
+        final int usedBufferData = this.usedBufferData;
+        if (offset == usedBufferData)
+        {
+            startOfUnframedData = 0;
+            this.usedBufferData = 0;
+        }
+        else if (byteBuffer.capacity() - usedBufferData < compactionThreshold)
+        {
+            final int remainingData = usedBufferData - offset;
+            buffer.putBytes(0, buffer, offset, remainingData);
+            if (pendingAcceptorLogon != null)
+            {
+                pendingAcceptorLogonMsgOffset -= offset;
+            }
+
+            startOfUnframedData = 0;
+            this.usedBufferData = remainingData;
+        }
+        else
+        {
+            startOfUnframedData = offset;
+        }
+
         // position set to ensure that back pressure is applied to TCP when read(byteBuffer) called.
-        ByteBufferUtil.position(byteBuffer, usedBufferData);
+        ByteBufferUtil.position(byteBuffer, this.usedBufferData);
     }
 
     // returns true if back-pressured
@@ -615,41 +948,16 @@ class ReceiverEndPoint
         return saveInvalidMessage(offset, readTimestamp);
     }
 
-    private boolean saveInvalidMessage(final int offset, final int startOfChecksumTag, final long readTimestamp)
+    private boolean saveInvalidMessage(final int offset, final int length, final long readTimestamp)
     {
-        final long position = publication.saveMessage(
-            buffer,
-            offset,
-            startOfChecksumTag,
-            libraryId,
-            UNKNOWN_MESSAGE_TYPE,
-            sessionId,
-            sequenceIndex,
-            connectionId,
-            INVALID_BODYLENGTH,
-            0,
-            readTimestamp);
-
-        return stashIfBackPressured(offset, position);
+        return saveInvalidOrStash(offset, length, UNKNOWN_MESSAGE_TYPE, INVALID_BODYLENGTH, readTimestamp);
     }
 
     // returns true if back-pressured
     private boolean saveInvalidMessage(final int offset, final long readTimestamp)
     {
-        final long position = publication.saveMessage(
-            buffer,
-            offset,
-            usedBufferData,
-            libraryId,
-            INVALID_MESSAGE_TYPE,
-            sessionId,
-            sequenceIndex,
-            connectionId,
-            INVALID,
-            0,
-            readTimestamp);
-
-        final boolean backPressured = stashIfBackPressured(offset, position);
+        final boolean backPressured = saveInvalidOrStash(
+            offset, usedBufferData - offset, INVALID_MESSAGE_TYPE, INVALID, readTimestamp);
 
         if (!backPressured)
         {
@@ -661,26 +969,13 @@ class ReceiverEndPoint
 
     private void clearBuffer()
     {
-        moveRemainingDataToBufferStart(usedBufferData);
+        consumeBufferDataTo(usedBufferData);
     }
 
     private boolean saveInvalidChecksumMessage(
         final int offset, final long messageType, final int length, final long readTimestamp)
     {
-        final long position = publication.saveMessage(
-            buffer,
-            offset,
-            length,
-            libraryId,
-            messageType,
-            sessionId,
-            sequenceIndex,
-            connectionId,
-            INVALID_CHECKSUM,
-            0,
-            readTimestamp);
-
-        return stashIfBackPressured(offset, position);
+        return saveInvalidOrStash(offset, length, messageType, INVALID_CHECKSUM, readTimestamp);
     }
 
     public void close(final DisconnectReason reason)
@@ -712,8 +1007,25 @@ class ReceiverEndPoint
     }
 
     private void onDisconnectDetected()
+    {
+        final FramerShard shard = this.shard;
+        if (shard != null)
+        {
+            // The Framer completes the disconnect once it has reclaimed this end point.
+            hasDetectedDisconnectOnShard = true;
+            returnToFramer();
+        }
+        else
+        {
+            completeDisconnect(REMOTE_DISCONNECT);
+        }
+    }
+
+    // Called on the Framer thread after reclaiming an end point whose shard detected a disconnect.
+    void onShardDisconnectDetected()
     {
         completeDisconnect(REMOTE_DISCONNECT);
+        closeResources();
     }
 
     void onNoLogonDisconnect()
@@ -755,6 +1067,21 @@ class ReceiverEndPoint
         selectionKey = channel.register(selector, OP_READ, this);
     }
 
+    // The selection key field belongs to the Framer's selector, shards cancel their key through deregister.
+    void registerOnShard(final Selector selector) throws IOException
+    {
+        channel.register(selector, OP_READ, this);
+    }
+
+    void deregister(final Selector selector)
+    {
+        final SelectionKey key = channel.keyFor(selector);
+        if (key != null)
+        {
+            key.cancel();
+        }
+    }
+
     public int libraryId()
     {
         return libraryId;
@@ -762,6 +1089,15 @@ class ReceiverEndPoint
 
     public void libraryId(final int libraryId)
     {
+        if (shard != null)
+        {
+            // Messages that the shard has already framed are published to the current owner.
+            hasPendingLibraryId = true;
+            pendingLibraryId = libraryId;
+            framer.reclaimReceiverEndPoint(this);
+            return;
+        }
+
         this.libraryId = libraryId;
     }
 
@@ -772,12 +1108,27 @@ class ReceiverEndPoint
 
     void pause()
     {
+        reclaimFromShardIfHandedOver();
         isPaused = true;
     }
 
     void play()
     {
         isPaused = false;
+        framer.onReceiverEndPointPlay(this);
+    }
+
+    boolean isPaused()
+    {
+        return isPaused;
+    }
+
+    private void reclaimFromShardIfHandedOver()
+    {
+        if (shard != null)
+        {
+            framer.reclaimReceiverEndPoint(this);
+        }
     }
 
     public String toString()
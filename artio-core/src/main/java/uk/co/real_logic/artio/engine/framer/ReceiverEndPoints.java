@@ -26,11 +26,13 @@ import java.nio.channels.SelectionKey;
 import java.util.stream.Stream;
 
 import static org.agrona.collections.ArrayUtil.UNKNOWN_INDEX;
+import static uk.co.real_logic.artio.engine.framer.FramerShard.FRAMER_SHARD_ID;
 import static uk.co.real_logic.artio.messages.DisconnectReason.ENGINE_SHUTDOWN;
 
 class ReceiverEndPoints extends TransportPoller
 {
     private final ErrorHandler errorHandler;
+    private final int shardId;
 
     // Authentication flow requires periodic polling of the receiver end points until the authentication is
     // complete, so these endpoints are always polled, rather than using the selector.
@@ -41,8 +43,14 @@ class ReceiverEndPoints extends TransportPoller
     private ReceiverEndPoint backpressuredEndPoint = null;
 
     ReceiverEndPoints(final ErrorHandler errorHandler)
+    {
+        this(errorHandler, FRAMER_SHARD_ID);
+    }
+
+    ReceiverEndPoints(final ErrorHandler errorHandler, final int shardId)
     {
         this.errorHandler = errorHandler;
+        this.shardId = shardId;
     }
 
     void add(final ReceiverEndPoint endPoint)
@@ -62,7 +70,14 @@ class ReceiverEndPoints extends TransportPoller
         try
         {
             endPoints = ArrayUtil.add(endPoints, endPoint);
-            endPoint.register(selector);
+            if (shardId == FRAMER_SHARD_ID)
+            {
+                endPoint.register(selector);
+            }
+            else
+            {
+                endPoint.registerOnShard(selector);
+            }
         }
         catch (final IOException ex)
         {
@@ -88,7 +103,39 @@ class ReceiverEndPoints extends TransportPoller
         selectNowToForceProcessing();
     }
 
-    void receiverEndPointPollingOptional(final long connectionId)
+    // Adds an end point that is being handed over to a framer shard, unless the shard already polls it.
+    void addHandedOverEndPoint(final ReceiverEndPoint endPoint)
+    {
+        if (ArrayUtil.indexOf(endPoints, endPoint) == UNKNOWN_INDEX)
+        {
+            addToNormalEndpoints(endPoint);
+        }
+    }
+
+    // Removes an end point that is being handed over to, or reclaimed from, a framer shard without closing it.
+    boolean removeHandedOverEndPoint(final ReceiverEndPoint endPoint)
+    {
+        final ReceiverEndPoint[] endPoints = this.endPoints;
+        final int index = ArrayUtil.indexOf(endPoints, endPoint);
+        if (index == UNKNOWN_INDEX)
+        {
+            return false;
+        }
+
+        this.endPoints = ArrayUtil.remove(endPoints, index);
+        if (backpressuredEndPoint == endPoint)
+        {
+            backpressuredEndPoint = null;
+        }
+
+        // Flush the cancelled key so that the channel can be registered with this selector again later.
+        endPoint.deregister(selector);
+        selectNowToForceProcessing();
+
+        return true;
+    }
+
+    ReceiverEndPoint receiverEndPointPollingOptional(final long connectionId)
     {
         final ReceiverEndPoint[] requiredPollingEndPoints = this.requiredPollingEndPoints;
         final int index = findEndPoint(connectionId, requiredPollingEndPoints);
@@ -97,12 +144,14 @@ class ReceiverEndPoints extends TransportPoller
             final ReceiverEndPoint endPoint = requiredPollingEndPoints[index];
             this.requiredPollingEndPoints = ArrayUtil.remove(requiredPollingEndPoints, index);
             addToNormalEndpoints(endPoint);
+            return endPoint;
         }
         else
         {
             errorHandler.onError(new Exception(String.format(
                 "Unable to make endpoint no longer required for polling due to it not being found, connectionId=%d",
                 connectionId)));
+            return null;
         }
     }
 
@@ -158,7 +207,7 @@ class ReceiverEndPoints extends TransportPoller
 
             if (backpressuredEndPoint != null)
             {
-                if (backpressuredEndPoint.retryFrameMessages())
+                if (retryFrameMessages(backpressuredEndPoint))
                 {
                     this.backpressuredEndPoint = null;
 
@@ -200,7 +249,7 @@ class ReceiverEndPoints extends TransportPoller
             for (i = 0; i < size; i++)
             {
                 final ReceiverEndPoint endPoint = (ReceiverEndPoint)keys[i].attachment();
-                final int polledBytes = endPoint.poll();
+                final int polledBytes = poll(endPoint);
                 if (polledBytes < 0)
                 {
                     backpressuredEndPoint = endPoint;
@@ -226,11 +275,21 @@ class ReceiverEndPoints extends TransportPoller
         int bytesReceived = bytesAlreadyReceived;
         for (int i = numRequiredPollingEndPoints - 1; i >= 0; i--)
         {
-            bytesReceived += endPoints[i].poll();
+            bytesReceived += poll(endPoints[i]);
         }
         return bytesReceived;
     }
 
+    private int poll(final ReceiverEndPoint endPoint)
+    {
+        return shardId == FRAMER_SHARD_ID ? endPoint.poll() : endPoint.pollOnShard(shardId);
+    }
+
+    private boolean retryFrameMessages(final ReceiverEndPoint endPoint)
+    {
+        return shardId == FRAMER_SHARD_ID ? endPoint.retryFrameMessages() : endPoint.retryFrameMessagesOnShard(shardId);
+    }
+
     int size()
     {
         return requiredPollingEndPoints.length + endPoints.length;
@@ -249,6 +308,12 @@ class ReceiverEndPoints extends TransportPoller
         super.close();
     }
 
+    // Used by framer shards, whose end points are always closed by the Framer.
+    void closeSelector()
+    {
+        super.close();
+    }
+
     private void closeAll(final ReceiverEndPoint[] endPoints)
     {
         Stream.of(endPoints).forEach(receiverEndPoint -> receiverEndPoint.close(ENGINE_SHUTDOWN));
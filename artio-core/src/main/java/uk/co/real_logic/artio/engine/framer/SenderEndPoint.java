@@ -41,6 +41,10 @@ class SenderEndPoint
 {
     private static final int HEADER_LENGTH = MessageHeaderDecoder.ENCODED_LENGTH;
 
+    // Kept well below IOV_MAX, and the bytes below the socket's send buffer size.
+    static final int MAX_BATCHED_MESSAGES = 32;
+    static final int MAX_BATCHED_BYTES = 64 * 1024;
+
     private final long connectionId;
     private final TcpChannel channel;
     private final AtomicCounter bytesInBuffer;
@@ -53,6 +57,15 @@ class SenderEndPoint
     private final StreamTracker replayTracker;
     private final SenderSequenceNumber senderSequenceNumber;
 
+    // Outbound messages that are written to the channel with a single gathering write, the views are cached as
+    // the messages are nearly always in one of the same few term buffers.
+    private final ByteBuffer[] batchedViews = new ByteBuffer[MAX_BATCHED_MESSAGES];
+    private final ByteBuffer[] batchedViewSources = new ByteBuffer[MAX_BATCHED_MESSAGES];
+    private final long[] batchedPositions = new long[MAX_BATCHED_MESSAGES];
+    private final int[] batchedLengths = new int[MAX_BATCHED_MESSAGES];
+    private int batchedMessages = 0;
+    private int batchedBytes = 0;
+
     private int libraryId;
     private long sessionId;
     private long sendingTimeoutTimeInMs;
@@ -116,6 +129,123 @@ class SenderEndPoint
         senderSequenceNumber.onNewMessage(sequenceNumber);
     }
 
+    // Only valid for messages whose buffer isn't modified until the batch is flushed, returns true if the message
+    // has started a new batch.
+    boolean onBatchedOutboundMessage(
+        final int libraryId,
+        final DirectBuffer directBuffer,
+        final int offset,
+        final int bodyLength,
+        final int sequenceNumber,
+        final long position,
+        final long timeInMs)
+    {
+        if (isWrongLibraryId(libraryId))
+        {
+            invalidLibraryAttempts.increment();
+            return false;
+        }
+
+        if (batchedMessages == MAX_BATCHED_MESSAGES || batchedBytes + bodyLength > MAX_BATCHED_BYTES)
+        {
+            flushBatch(timeInMs);
+        }
+
+        if (replayPaused)
+        {
+            dropFurtherBehind(bodyLength);
+
+            return false;
+        }
+
+        final boolean startsBatch = batchedMessages == 0;
+        if (isSlowConsumer())
+        {
+            dropFurtherBehind(bodyLength);
+        }
+        else
+        {
+            batchMessage(directBuffer.byteBuffer(), offset, bodyLength, position);
+        }
+
+        senderSequenceNumber.onNewMessage(sequenceNumber);
+
+        return startsBatch && batchedMessages > 0;
+    }
+
+    private void batchMessage(final ByteBuffer source, final int offset, final int bodyLength, final long position)
+    {
+        final int index = batchedMessages;
+        ByteBuffer view = batchedViews[index];
+        if (batchedViewSources[index] != source)
+        {
+            view = source.duplicate();
+            batchedViews[index] = view;
+            batchedViewSources[index] = source;
+        }
+
+        ByteBufferUtil.limit(view, offset + bodyLength);
+        ByteBufferUtil.position(view, offset);
+
+        batchedPositions[index] = position;
+        batchedLengths[index] = bodyLength;
+        batchedMessages = index + 1;
+        batchedBytes += bodyLength;
+    }
+
+    void flushBatch(final long timeInMs)
+    {
+        final int batchedMessages = this.batchedMessages;
+        if (batchedMessages == 0)
+        {
+            return;
+        }
+
+        final int batchedBytes = this.batchedBytes;
+        this.batchedMessages = 0;
+        this.batchedBytes = 0;
+
+        try
+        {
+            final int written = (int)channel.write(batchedViews, 0, batchedMessages);
+            DebugLogger.log(FIX_MESSAGE_TCP, "Written  %d messages, %d bytes%n", batchedMessages, written);
+            updateSendingTimeoutTimeInMs(timeInMs, written);
+
+            if (written != batchedBytes)
+            {
+                becomeSlowConsumerInBatch(written, batchedBytes);
+            }
+            else
+            {
+                outboundTracker.sentPosition = batchedPositions[batchedMessages - 1];
+            }
+        }
+        catch (final IOException ex)
+        {
+            onError(ex);
+        }
+    }
+
+    // The first message that wasn't completely written is partially sent, any later messages in the batch are
+    // behind it in the buffer, as if they had been received whilst this end point was a slow consumer.
+    private void becomeSlowConsumerInBatch(final int written, final int batchedBytes)
+    {
+        final int[] batchedLengths = this.batchedLengths;
+        int writtenOfMessage = written;
+        int index = 0;
+        while (writtenOfMessage >= batchedLengths[index])
+        {
+            writtenOfMessage -= batchedLengths[index];
+            index++;
+        }
+
+        final int remainingBytesOfMessage = batchedLengths[index] - writtenOfMessage;
+        bytesInBuffer.setOrdered(batchedBytes - written);
+        sendSlowStatus(true);
+        outboundTracker.sentPosition = batchedPositions[index] - remainingBytesOfMessage;
+        outboundTracker.partiallySentMessage = true;
+    }
+
     Action onReplayMessage(
         final DirectBuffer directBuffer,
         final int offset,
@@ -272,10 +402,33 @@ class SenderEndPoint
 
     public void close()
     {
+        writeBatchOnClose();
         bytesInBuffer.close();
         invalidLibraryAttempts.close();
     }
 
+    // Messages that were sent before the disconnect are written on a best effort basis, as they were before
+    // writes were batched.
+    private void writeBatchOnClose()
+    {
+        final int batchedMessages = this.batchedMessages;
+        if (batchedMessages > 0)
+        {
+            this.batchedMessages = 0;
+            this.batchedBytes = 0;
+
+            try
+            {
+                channel.write(batchedViews, 0, batchedMessages);
+            }
+            catch (final IOException ex)
+            {
+                errorHandler.onError(new Exception(String.format(
+                    "Exception reported for sessionId=%d,connectionId=%d", sessionId, connectionId), ex));
+            }
+        }
+    }
+
     Action onSlowOutboundMessage(
         final DirectBuffer directBuffer,
         final int offsetAfterHeader,
@@ -24,6 +24,8 @@ import uk.co.real_logic.artio.engine.FixEngine;
 import uk.co.real_logic.artio.messages.FixMessageDecoder;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.LongToIntFunction;
 
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
@@ -37,6 +39,7 @@ class SenderEndPoints implements AutoCloseable, ControlledFragmentHandler
     private final Long2ObjectHashMap<SenderEndPoint> connectionIdToSenderEndpoint = new Long2ObjectHashMap<>();
     private final ErrorHandler errorHandler;
     private final LongToIntFunction libraryLookup = this::libraryLookup;
+    private final List<SenderEndPoint> endPointsWithBatchedMessages = new ArrayList<>();
 
     private int libraryLookup(final long sessionId)
     {
@@ -52,6 +55,7 @@ class SenderEndPoints implements AutoCloseable, ControlledFragmentHandler
     }
 
     private long timeInMs;
+    private boolean batchWrites;
 
     SenderEndPoints(final ErrorHandler errorHandler)
     {
@@ -84,7 +88,41 @@ class SenderEndPoints implements AutoCloseable, ControlledFragmentHandler
         final SenderEndPoint endPoint = connectionIdToSenderEndpoint.get(connectionId);
         if (endPoint != null)
         {
-            endPoint.onOutboundMessage(libraryId, buffer, offset, length, sequenceNumber, position, timeInMs);
+            if (batchWrites)
+            {
+                if (endPoint.onBatchedOutboundMessage(
+                    libraryId, buffer, offset, length, sequenceNumber, position, timeInMs))
+                {
+                    endPointsWithBatchedMessages.add(endPoint);
+                }
+            }
+            else
+            {
+                endPoint.flushBatch(timeInMs);
+                endPoint.onOutboundMessage(libraryId, buffer, offset, length, sequenceNumber, position, timeInMs);
+            }
+        }
+    }
+
+    // Set for each fragment polled from the outbound stream, writes can only be batched if the message's buffer
+    // isn't modified until flushBatchedMessages() is called.
+    void batchWrites(final boolean batchWrites)
+    {
+        this.batchWrites = batchWrites;
+    }
+
+    // Writes each connection's batched messages with a single gathering write.
+    void flushBatchedMessages()
+    {
+        final List<SenderEndPoint> endPointsWithBatchedMessages = this.endPointsWithBatchedMessages;
+        final int size = endPointsWithBatchedMessages.size();
+        if (size > 0)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                endPointsWithBatchedMessages.get(i).flushBatch(timeInMs);
+            }
+            endPointsWithBatchedMessages.clear();
         }
     }
 
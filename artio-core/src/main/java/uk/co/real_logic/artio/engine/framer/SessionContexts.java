@@ -20,6 +20,7 @@ import org.agrona.collections.LongHashSet;
 import org.agrona.concurrent.AtomicBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
 import uk.co.real_logic.artio.engine.ByteBufferUtil;
+import uk.co.real_logic.artio.engine.EngineConfiguration;
 import uk.co.real_logic.artio.engine.MappedFile;
 import uk.co.real_logic.artio.engine.SectorFramer;
 import uk.co.real_logic.artio.engine.logger.LoggerUtil;
@@ -50,8 +51,12 @@ import static uk.co.real_logic.artio.storage.messages.SessionIdEncoder.BLOCK_LEN
  * The session ids table is saved into a file. Records are written out using the {@link SessionIdEncoder}
  * and aren't allowed to span sectors. Each sector has a CRC32 checksum and each checksum is updated after writing
  * each session id record.
+ * <p>
+ * If the session id file is backed by a file then a {@link SessionContextsSnapshot} of its records is also taken at
+ * intervals and on close. On startup only the records written after the snapshot are validated and loaded, the
+ * others are looked up through the snapshot when their session first logs on.
  */
-public class SessionContexts
+public class SessionContexts implements AutoCloseable
 {
 
     static final SessionContext DUPLICATE_SESSION = new SessionContext(-3,
@@ -63,10 +68,13 @@ public class SessionContexts
         Session.UNKNOWN, (int)Session.UNKNOWN, Session.NO_LOGON_TIME, null, OUT_OF_SPACE);
     static final long LOWEST_VALID_SESSION_ID = 1L;
 
+    private static final long NO_SNAPSHOT_TIME = -1;
+
     private static final int HEADER_SIZE = MessageHeaderDecoder.ENCODED_LENGTH;
 
     private static final int ENCODING_BUFFER_SIZE = SECTOR_SIZE - CHECKSUM_SIZE;
     private final UnsafeBuffer compositeKeyBuffer = new UnsafeBuffer(new byte[ENCODING_BUFFER_SIZE]);
+    private final SessionIdDecoder sessionIdDecoder = new SessionIdDecoder();
 
     private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
     private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
@@ -88,14 +96,32 @@ public class SessionContexts
     private final SessionIdStrategy idStrategy;
     private final ErrorHandler errorHandler;
     private final MappedFile mappedFile;
+    private final SessionContextsSnapshot snapshot;
+    private final long snapshotIntervalInMs;
 
     private int filePosition;
     private long counter = LOWEST_VALID_SESSION_ID;
 
+    private int recordCount;
+    private int lastRecordPosition = SessionContextsSnapshot.NO_RECORD;
+    private int lastRecordEnd;
+    private long lastSessionId;
+    private boolean hasNewRecordSinceSnapshot;
+    private long nextSnapshotTimeInMs = NO_SNAPSHOT_TIME;
+
     public SessionContexts(
         final MappedFile mappedFile,
         final SessionIdStrategy idStrategy,
         final ErrorHandler errorHandler)
+    {
+        this(mappedFile, idStrategy, errorHandler, EngineConfiguration.DEFAULT_SESSION_ID_SNAPSHOT_INTERVAL_IN_MS);
+    }
+
+    public SessionContexts(
+        final MappedFile mappedFile,
+        final SessionIdStrategy idStrategy,
+        final ErrorHandler errorHandler,
+        final long snapshotIntervalInMs)
     {
         this.mappedFile = mappedFile;
         this.buffer = mappedFile.buffer();
@@ -103,6 +129,9 @@ public class SessionContexts
         sectorFramer = new SectorFramer(buffer.capacity());
         this.idStrategy = idStrategy;
         this.errorHandler = errorHandler;
+        this.snapshotIntervalInMs = snapshotIntervalInMs;
+        final File file = mappedFile.file();
+        snapshot = file == null ? null : new SessionContextsSnapshot(file, errorHandler);
         loadBuffer();
     }
 
@@ -111,10 +140,48 @@ public class SessionContexts
         checkByteBuffer();
         initialiseBuffer();
 
-        final SessionIdDecoder sessionIdDecoder = new SessionIdDecoder();
-
         int sectorEnd = 0;
         filePosition = HEADER_SIZE;
+        if (loadSnapshot())
+        {
+            filePosition = snapshot.coveredPosition();
+            counter = snapshot.counter();
+            recordCount = snapshot.recordCount();
+            lastRecordPosition = snapshot.lastRecordPosition();
+            lastRecordEnd = filePosition;
+            lastSessionId = snapshot.lastSessionId();
+            // Records may have been appended to the sector that the snapshot ends in, so it's validated again.
+            sectorEnd = nextSectorStart(filePosition) - SECTOR_SIZE;
+        }
+
+        loadRecords(sectorEnd);
+    }
+
+    // Only uses a snapshot if its last record is still in the session id file, it could have been reset since.
+    private boolean loadSnapshot()
+    {
+        if (snapshot == null || !snapshot.load())
+        {
+            return false;
+        }
+
+        final int lastRecordPosition = snapshot.lastRecordPosition();
+        final int coveredPosition = snapshot.coveredPosition();
+        if (lastRecordPosition < HEADER_SIZE ||
+            coveredPosition > buffer.capacity() ||
+            lastRecordPosition + BLOCK_LENGTH > coveredPosition ||
+            wrap(sessionIdDecoder, lastRecordPosition) != snapshot.lastSessionId())
+        {
+            snapshot.close();
+            return false;
+        }
+
+        return true;
+    }
+
+    private void loadRecords(final int firstSectorEnd)
+    {
+        int sectorEnd = firstSectorEnd;
         final int lastRecordStart = buffer.capacity() - BLOCK_LENGTH;
         while (filePosition < lastRecordStart)
         {
@@ -152,11 +219,21 @@ public class SessionContexts
                 new SessionContext(sessionId, sequenceIndex, logonTime, this, filePosition));
             recordedSessions.add(sessionId);
             counter = Math.max(counter, sessionId + 1);
+            onRecord(filePosition, compositeKeyLength, sessionId);
 
             filePosition += BLOCK_LENGTH + compositeKeyLength;
         }
     }
 
+    private void onRecord(final int recordPosition, final int compositeKeyLength, final long sessionId)
+    {
+        recordCount++;
+        lastRecordPosition = recordPosition;
+        lastRecordEnd = recordPosition + BLOCK_LENGTH + compositeKeyLength;
+        lastSessionId = sessionId;
+        hasNewRecordSinceSnapshot = true;
+    }
+
     private long wrap(final SessionIdDecoder sessionIdDecoder, final int nextSectorPeekPosition)
     {
         sessionIdDecoder.wrap(buffer, nextSectorPeekPosition, actingBlockLength, actingVersion);
@@ -230,6 +307,12 @@ public class SessionContexts
 
     private SessionContext onNewLogon(final CompositeKey compositeKey)
     {
+        final SessionContext snapshotContext = lookupSnapshotContext(compositeKey);
+        if (snapshotContext != null)
+        {
+            return snapshotContext;
+        }
+
         final long sessionId = counter++;
         return assignSessionId(compositeKey, sessionId, SessionContext.UNKNOWN_SEQUENCE_INDEX);
     }
@@ -268,6 +351,7 @@ public class SessionContexts
                         .sequenceIndex(sequenceIndex)
                         .logonTime(Session.NO_LOGON_TIME)
                         .compositeKeyLength(compositeKeyLength);
+                    onRecord(filePosition, compositeKeyLength, sessionId);
                     filePosition += BLOCK_LENGTH;
 
                     buffer.putBytes(filePosition, compositeKeyBuffer, 0, compositeKeyLength);
@@ -284,6 +368,7 @@ public class SessionContexts
 
     void sequenceReset(final long sessionId)
     {
+        lookupSnapshotContext(sessionId);
         compositeToContext
             .values()
             .stream()
@@ -320,6 +405,15 @@ public class SessionContexts
         counter = LOWEST_VALID_SESSION_ID;
         currentlyAuthenticatedSessionIds.clear();
         compositeToContext.clear();
+        recordCount = 0;
+        lastRecordPosition = SessionContextsSnapshot.NO_RECORD;
+        lastRecordEnd = 0;
+        lastSessionId = 0;
+        hasNewRecordSinceSnapshot = false;
+        if (snapshot != null)
+        {
+            snapshot.delete();
+        }
 
         if (backupLocation != null)
         {
@@ -346,10 +440,15 @@ public class SessionContexts
 
     long lookupSessionId(final CompositeKey compositeKey)
     {
-        final SessionContext sessionContext = compositeToContext.get(compositeKey);
+        SessionContext sessionContext = compositeToContext.get(compositeKey);
         if (sessionContext == null)
         {
-            return Session.UNKNOWN;
+            sessionContext = lookupSnapshotContext(compositeKey);
+            if (sessionContext == null)
+            {
+                return Session.UNKNOWN;
+            }
+            compositeToContext.put(compositeKey, sessionContext);
         }
         return sessionContext.sessionId();
     }
@@ -361,6 +460,168 @@ public class SessionContexts
 
     boolean isKnownSessionId(final long sessionId)
     {
+        lookupSnapshotContext(sessionId);
         return compositeToContext.values().stream().anyMatch(context -> context.sessionId() == sessionId);
     }
+
+    private SessionContext lookupSnapshotContext(final CompositeKey compositeKey)
+    {
+        if (snapshot == null || !snapshot.isLoaded())
+        {
+            return null;
+        }
+
+        final int compositeKeyLength = idStrategy.save(compositeKey, compositeKeyBuffer, 0);
+        if (compositeKeyLength == INSUFFICIENT_SPACE)
+        {
+            return null;
+        }
+
+        final int keyHash = SessionContextsSnapshot.keyHash(compositeKeyBuffer, 0, compositeKeyLength);
+        final int slotCount = snapshot.slotCount();
+        int slot = SessionContextsSnapshot.homeSlot(keyHash, slotCount);
+        for (int probes = 0; probes < slotCount; probes++)
+        {
+            final int recordPosition = snapshot.recordPosition(slot);
+            if (recordPosition == SessionContextsSnapshot.NO_RECORD)
+            {
+                return null;
+            }
+
+            if (snapshot.keyHash(slot) == keyHash && keyMatches(recordPosition, compositeKeyLength))
+            {
+                return snapshotContext(recordPosition);
+            }
+
+            slot = SessionContextsSnapshot.nextSlot(slot, slotCount);
+        }
+
+        return null;
+    }
+
+    // Looking a session up by its id has to scan the snapshot, but it's only done by admin commands.
+    private void lookupSnapshotContext(final long sessionId)
+    {
+        if (snapshot == null || !snapshot.isLoaded())
+        {
+            return;
+        }
+
+        final int slotCount = snapshot.slotCount();
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            final int recordPosition = snapshot.recordPosition(slot);
+            if (recordPosition != SessionContextsSnapshot.NO_RECORD &&
+                wrap(sessionIdDecoder, recordPosition) == sessionId)
+            {
+                final CompositeKey compositeKey = idStrategy.load(
+                    buffer, recordPosition + BLOCK_LENGTH, sessionIdDecoder.compositeKeyLength());
+                if (compositeKey != null && !compositeToContext.containsKey(compositeKey))
+                {
+                    compositeToContext.put(compositeKey, snapshotContext(recordPosition));
+                }
+                return;
+            }
+        }
+    }
+
+    private boolean keyMatches(final int recordPosition, final int compositeKeyLength)
+    {
+        if (wrap(sessionIdDecoder, recordPosition) == 0 ||
+            sessionIdDecoder.compositeKeyLength() != compositeKeyLength)
+        {
+            return false;
+        }
+
+        final int keyPosition = recordPosition + BLOCK_LENGTH;
+        for (int i = 0; i < compositeKeyLength; i++)
+        {
+            if (buffer.getByte(keyPosition + i) != compositeKeyBuffer.getByte(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private SessionContext snapshotContext(final int recordPosition)
+    {
+        final long sessionId = wrap(sessionIdDecoder, recordPosition);
+        recordedSessions.add(sessionId);
+        return new SessionContext(
+            sessionId, sessionIdDecoder.sequenceIndex(), sessionIdDecoder.logonTime(), this, recordPosition);
+    }
+
+    /**
+     * Takes a snapshot of the session id file if sessions have been added to it since the last one and the snapshot
+     * interval has passed.
+     *
+     * @param timeInMs the current time in milliseconds.
+     * @return the amount of work done.
+     */
+    public int doWork(final long timeInMs)
+    {
+        if (snapshot == null)
+        {
+            return 0;
+        }
+
+        // Starting the interval on the first duty cycle keeps a snapshot off the path to the first logon.
+        if (nextSnapshotTimeInMs == NO_SNAPSHOT_TIME)
+        {
+            nextSnapshotTimeInMs = timeInMs + snapshotIntervalInMs;
+            return 0;
+        }
+
+        if (hasNewRecordSinceSnapshot && timeInMs >= nextSnapshotTimeInMs)
+        {
+            writeSnapshot();
+            nextSnapshotTimeInMs = timeInMs + snapshotIntervalInMs;
+            return 1;
+        }
+
+        return 0;
+    }
+
+    private void writeSnapshot()
+    {
+        if (recordCount > 0)
+        {
+            snapshot.startWrite(recordCount);
+
+            int position = HEADER_SIZE;
+            while (position < lastRecordEnd)
+            {
+                if (wrap(sessionIdDecoder, position) == 0)
+                {
+                    // Records don't span sectors, so the rest of this one is empty.
+                    position = nextSectorStart(position);
+                    continue;
+                }
+
+                final int compositeKeyLength = sessionIdDecoder.compositeKeyLength();
+                final int keyPosition = position + BLOCK_LENGTH;
+                snapshot.put(SessionContextsSnapshot.keyHash(buffer, keyPosition, compositeKeyLength), position);
+                position = keyPosition + compositeKeyLength;
+            }
+
+            snapshot.finishWrite(recordCount, lastRecordEnd, lastRecordPosition, lastSessionId, counter);
+        }
+
+        hasNewRecordSinceSnapshot = false;
+    }
+
+    public void close()
+    {
+        if (snapshot != null)
+        {
+            if (hasNewRecordSinceSnapshot)
+            {
+                writeSnapshot();
+            }
+
+            snapshot.close();
+        }
+    }
 }
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.agrona.collections.Hashing;
+import org.agrona.concurrent.AtomicBuffer;
+import uk.co.real_logic.artio.engine.ByteBufferUtil;
+import uk.co.real_logic.artio.engine.MappedFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+import static uk.co.real_logic.artio.engine.SectorFramer.validateCheckSum;
+
+/**
+ * A snapshot of the session id file's records, so that a restart only has to load the records written since it
+ * was taken.
+ * <p>
+ * The snapshot is an open addressing hash table, with linear probing, from the hash of each record's saved composite
+ * key to the record's position in the session id file. Records are read from the session id file when their composite
+ * key is first looked up. The table is written to a separate file, forced and then atomically renamed over the
+ * previous snapshot, so a crash leaves either the old or the new snapshot in place.
+ * <p>
+ * Header: slot count, record count, covered position, last record position, last session id, next session id and a
+ * CRC32 checksum of the rest of the file. Each slot is the key hash and the record position, a position of
+ * {@link #NO_RECORD} marks an empty slot.
+ */
+class SessionContextsSnapshot
+{
+    static final int NO_RECORD = 0;
+
+    private static final String SNAPSHOT_SUFFIX = "-snapshot";
+    private static final String WRITABLE_SUFFIX = "-snapshot-writable";
+
+    private static final int SLOT_COUNT_OFFSET = 0;
+    private static final int RECORD_COUNT_OFFSET = 4;
+    private static final int COVERED_POSITION_OFFSET = 8;
+    private static final int LAST_RECORD_POSITION_OFFSET = 12;
+    private static final int LAST_SESSION_ID_OFFSET = 16;
+    private static final int COUNTER_OFFSET = 24;
+    private static final int CHECKSUM_OFFSET = 32;
+    private static final int HEADER_LENGTH = 40;
+
+    private static final int KEY_HASH_OFFSET = 0;
+    private static final int RECORD_POSITION_OFFSET = 4;
+    private static final int SLOT_LENGTH = 8;
+
+    private final CRC32 crc32 = new CRC32();
+    private final File snapshotFile;
+    private final File writableFile;
+    private final ErrorHandler errorHandler;
+
+    private MappedFile loadedFile;
+    private AtomicBuffer buffer;
+    private int slotCount;
+
+    private MappedFile writingFile;
+    private AtomicBuffer writingBuffer;
+    private int writingSlotCount;
+
+    SessionContextsSnapshot(final File sessionIdFile, final ErrorHandler errorHandler)
+    {
+        final String path = sessionIdFile.getPath();
+        this.snapshotFile = new File(path + SNAPSHOT_SUFFIX);
+        this.writableFile = new File(path + WRITABLE_SUFFIX);
+        this.errorHandler = errorHandler;
+    }
+
+    static int keyHash(final DirectBuffer buffer, final int offset, final int length)
+    {
+        int hash = 0;
+        for (int i = 0; i < length; i++)
+        {
+            hash = 31 * hash + buffer.getByte(offset + i);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Maps the snapshot file, if there's one and its checksum is valid.
+     *
+     * @return true if a snapshot has been loaded, false otherwise.
+     */
+    boolean load()
+    {
+        close();
+
+        if (!snapshotFile.exists())
+        {
+            return false;
+        }
+
+        final MappedFile file = MappedFile.map(snapshotFile, HEADER_LENGTH);
+        final AtomicBuffer buffer = file.buffer();
+        final int capacity = buffer.capacity();
+        final int slotCount = capacity >= HEADER_LENGTH ? buffer.getInt(SLOT_COUNT_OFFSET) : 0;
+        if (!BitUtil.isPowerOfTwo(slotCount) || HEADER_LENGTH + (long)slotCount * SLOT_LENGTH != capacity)
+        {
+            errorHandler.onError(new IllegalStateException(
+                "Ignoring session id snapshot with an invalid size: " + snapshotFile));
+            file.close();
+            return false;
+        }
+
+        final int savedChecksum = buffer.getInt(CHECKSUM_OFFSET);
+        final int calculatedChecksum = checksum(buffer);
+        if (savedChecksum != calculatedChecksum)
+        {
+            validateCheckSum(
+                "session id snapshot", 0, capacity, savedChecksum, calculatedChecksum, errorHandler);
+            file.close();
+            return false;
+        }
+
+        this.loadedFile = file;
+        this.buffer = buffer;
+        this.slotCount = slotCount;
+        return true;
+    }
+
+    boolean isLoaded()
+    {
+        return buffer != null;
+    }
+
+    int slotCount()
+    {
+        return slotCount;
+    }
+
+    int recordCount()
+    {
+        return buffer.getInt(RECORD_COUNT_OFFSET);
+    }
+
+    int coveredPosition()
+    {
+        return buffer.getInt(COVERED_POSITION_OFFSET);
+    }
+
+    int lastRecordPosition()
+    {
+        return buffer.getInt(LAST_RECORD_POSITION_OFFSET);
+    }
+
+    long lastSessionId()
+    {
+        return buffer.getLong(LAST_SESSION_ID_OFFSET);
+    }
+
+    long counter()
+    {
+        return buffer.getLong(COUNTER_OFFSET);
+    }
+
+    int keyHash(final int slot)
+    {
+        return buffer.getInt(slotOffset(slot) + KEY_HASH_OFFSET);
+    }
+
+    int recordPosition(final int slot)
+    {
+        return buffer.getInt(slotOffset(slot) + RECORD_POSITION_OFFSET);
+    }
+
+    static int homeSlot(final int keyHash, final int slotCount)
+    {
+        return Hashing.hash(keyHash, slotCount - 1);
+    }
+
+    static int nextSlot(final int slot, final int slotCount)
+    {
+        return (slot + 1) & (slotCount - 1);
+    }
+
+    /**
+     * Starts writing a new snapshot into the writable file, sized so that the table is at most half full.
+     *
+     * @param recordCount the number of records that will be put into the snapshot.
+     */
+    void startWrite(final int recordCount)
+    {
+        writingSlotCount = BitUtil.findNextPositivePowerOfTwo(Math.max(2, recordCount * 2));
+        IoUtil.deleteIfExists(writableFile);
+        writingFile = MappedFile.map(writableFile, HEADER_LENGTH + writingSlotCount * SLOT_LENGTH);
+        writingBuffer = writingFile.buffer();
+    }
+
+    void put(final int keyHash, final int recordPosition)
+    {
+        int slot = homeSlot(keyHash, writingSlotCount);
+        while (writingBuffer.getInt(slotOffset(slot) + RECORD_POSITION_OFFSET) != NO_RECORD)
+        {
+            slot = nextSlot(slot, writingSlotCount);
+        }
+
+        final int offset = slotOffset(slot);
+        writingBuffer.putInt(offset + KEY_HASH_OFFSET, keyHash);
+        writingBuffer.putInt(offset + RECORD_POSITION_OFFSET, recordPosition);
+    }
+
+    /**
+     * Saves the header, forces the writable file to disk and then swaps it in as the snapshot. The new snapshot is
+     * loaded in place of the old one.
+     *
+     * @param recordCount the number of records in the snapshot.
+     * @param coveredPosition the position in the session id file just after the last record in the snapshot.
+     * @param lastRecordPosition the position of the last record in the snapshot.
+     * @param lastSessionId the session id of the last record in the snapshot.
+     * @param counter the next session id to allocate.
+     */
+    void finishWrite(
+        final int recordCount,
+        final int coveredPosition,
+        final int lastRecordPosition,
+        final long lastSessionId,
+        final long counter)
+    {
+        final AtomicBuffer writingBuffer = this.writingBuffer;
+        writingBuffer.putInt(SLOT_COUNT_OFFSET, writingSlotCount);
+        writingBuffer.putInt(RECORD_COUNT_OFFSET, recordCount);
+        writingBuffer.putInt(COVERED_POSITION_OFFSET, coveredPosition);
+        writingBuffer.putInt(LAST_RECORD_POSITION_OFFSET, lastRecordPosition);
+        writingBuffer.putLong(LAST_SESSION_ID_OFFSET, lastSessionId);
+        writingBuffer.putLong(COUNTER_OFFSET, counter);
+        writingBuffer.putInt(CHECKSUM_OFFSET, checksum(writingBuffer));
+        writingFile.force();
+        writingFile.close();
+        writingFile = null;
+        this.writingBuffer = null;
+
+        // The old snapshot is unmapped first as a mapped file can't be replaced on Windows.
+        close();
+        try
+        {
+            Files.move(writableFile.toPath(), snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (final IOException ex)
+        {
+            errorHandler.onError(ex);
+        }
+
+        load();
+    }
+
+    void delete()
+    {
+        close();
+        IoUtil.deleteIfExists(snapshotFile);
+    }
+
+    void close()
+    {
+        if (loadedFile != null)
+        {
+            loadedFile.close();
+            loadedFile = null;
+            buffer = null;
+            slotCount = 0;
+        }
+    }
+
+    private int checksum(final AtomicBuffer buffer)
+    {
+        final ByteBuffer byteBuffer = buffer.byteBuffer();
+        crc32.reset();
+        byteBuffer.clear();
+        ByteBufferUtil.limit(byteBuffer, CHECKSUM_OFFSET);
+        crc32.update(byteBuffer);
+        byteBuffer.clear();
+        ByteBufferUtil.position(byteBuffer, HEADER_LENGTH);
+        crc32.update(byteBuffer);
+        return (int)crc32.getValue();
+    }
+
+    private static int slotOffset(final int slot)
+    {
+        return HEADER_LENGTH + slot * SLOT_LENGTH;
+    }
+}
@@ -45,11 +45,21 @@ public class TcpChannel implements AutoCloseable
         return socketChannel.register(sel, ops, att);
     }
 
+    public SelectionKey keyFor(final Selector sel)
+    {
+        return socketChannel.keyFor(sel);
+    }
+
     public int write(final ByteBuffer src) throws IOException
     {
         return socketChannel.write(src);
     }
 
+    public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException
+    {
+        return socketChannel.write(srcs, offset, length);
+    }
+
     public int read(final ByteBuffer dst) throws IOException
     {
         return socketChannel.read(dst);
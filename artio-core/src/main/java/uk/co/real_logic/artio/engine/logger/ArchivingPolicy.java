@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.collections.LongHashSet;
+import uk.co.real_logic.artio.dictionary.generation.GenerationUtil;
+
+import java.util.Set;
+
+/**
+ * Decides which messages are kept for replay. Messages that aren't kept are left out of the replay index, so they're
+ * never read back out of the archive: resend requests gap fill over them and library catchups skip them. They are
+ * still counted by the sequence number indices, so sequence numbers are unaffected.
+ *
+ * Inbound messages are checked as they're framed, on the Framer thread or the framer shard thread that reads their
+ * connection, so a policy has to be thread safe if there are framer shards. Inbound messages that aren't kept are
+ * published on an unrecorded stream, so they're never written to the archive or read by the indexers, only a marker
+ * carrying their sequence number is recorded in their place. Outbound messages are published by libraries, so they
+ * are recorded and are checked as they're indexed.
+ *
+ * @see uk.co.real_logic.artio.engine.EngineConfiguration#inboundLibraryUnrecordedStream(int)
+ */
+@FunctionalInterface
+public interface ArchivingPolicy
+{
+    /**
+     * Decide whether to keep a message for replay.
+     *
+     * @param sessionId the id of the session that the message was sent or received on.
+     * @param messageType the packed message type of the message.
+     * @return true to keep the message, false to gap fill over it when it's replayed.
+     */
+    boolean shouldArchive(long sessionId, long messageType);
+
+    default ArchivingPolicy and(final ArchivingPolicy other)
+    {
+        return (sessionId, messageType) ->
+            shouldArchive(sessionId, messageType) && other.shouldArchive(sessionId, messageType);
+    }
+
+    /**
+     * Skip messages of some types on all sessions, for example market data messages that are never resent.
+     *
+     * @param messageTypes the message types to skip, eg: "W".
+     * @return the policy.
+     */
+    static ArchivingPolicy skipMessageTypes(final Set<String> messageTypes)
+    {
+        final LongHashSet packedMessageTypes = new LongHashSet();
+        messageTypes.forEach(messageType -> packedMessageTypes.add(GenerationUtil.packMessageType(messageType)));
+        return (sessionId, messageType) -> !packedMessageTypes.contains(messageType);
+    }
+
+    /**
+     * Skip messages of some types on a single session.
+     *
+     * @param skippedSessionId the id of the session whose messages are skipped.
+     * @param messageTypes the message types to skip, eg: "W".
+     * @return the policy.
+     */
+    static ArchivingPolicy skipMessageTypes(final long skippedSessionId, final Set<String> messageTypes)
+    {
+        final ArchivingPolicy skipMessageTypes = skipMessageTypes(messageTypes);
+        return (sessionId, messageType) ->
+            sessionId != skippedSessionId || skipMessageTypes.shouldArchive(sessionId, messageType);
+    }
+}
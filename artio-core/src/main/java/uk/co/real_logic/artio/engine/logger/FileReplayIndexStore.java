@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.AtomicBuffer;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.*;
+
+/**
+ * Stores each session's head and each of its segments in a file of its own, mapping them as they're used.
+ *
+ * Replay index files from before the index was segmented are left for {@link ReplayIndex} to convert, the head files
+ * are named so that they can't be mistaken for them.
+ */
+public class FileReplayIndexStore implements ReplayIndexStore
+{
+    private final String logFileDir;
+    private final int streamId;
+    private final int indexFileSize;
+    private final BufferFactory bufferFactory;
+    private final ErrorHandler errorHandler;
+
+    /**
+     * Create a store to write to.
+     *
+     * @param logFileDir the directory that the files are in.
+     * @param streamId the stream that is indexed.
+     * @param indexFileSize the size of new segment files.
+     * @param bufferFactory maps files, creating them if they don't exist.
+     * @param errorHandler handles failures to delete files.
+     */
+    public FileReplayIndexStore(
+        final String logFileDir,
+        final int streamId,
+        final int indexFileSize,
+        final BufferFactory bufferFactory,
+        final ErrorHandler errorHandler)
+    {
+        this.logFileDir = logFileDir;
+        this.streamId = streamId;
+        this.indexFileSize = indexFileSize;
+        this.bufferFactory = bufferFactory;
+        this.errorHandler = errorHandler;
+
+        checkIndexFileSize(indexFileSize);
+    }
+
+    /**
+     * Create a store to read from.
+     *
+     * @param logFileDir the directory that the files are in.
+     * @param streamId the stream that is indexed.
+     * @param bufferFactory maps existing files.
+     * @param errorHandler handles failures to delete files.
+     */
+    public FileReplayIndexStore(
+        final String logFileDir,
+        final int streamId,
+        final ExistingBufferFactory bufferFactory,
+        final ErrorHandler errorHandler)
+    {
+        this.logFileDir = logFileDir;
+        this.streamId = streamId;
+        this.indexFileSize = 0;
+        this.bufferFactory = (file, size) -> bufferFactory.map(file);
+        this.errorHandler = errorHandler;
+    }
+
+    public boolean wrapHead(final long fixSessionId, final AtomicBuffer headBuffer)
+    {
+        final File headFile = replayIndexHeadFile(logFileDir, fixSessionId, streamId);
+        return wrap(headFile, HEAD_FILE_SIZE, HEAD_FILE_SIZE, headBuffer);
+    }
+
+    public void releaseHead(final AtomicBuffer headBuffer)
+    {
+        release(headBuffer);
+    }
+
+    public boolean wrapSegment(final long fixSessionId, final long segment, final AtomicBuffer segmentBuffer)
+    {
+        final File segmentFile = replayIndexSegmentFile(logFileDir, fixSessionId, streamId, segment);
+        return wrap(segmentFile, indexFileSize, INITIAL_RECORD_OFFSET, segmentBuffer);
+    }
+
+    public void releaseSegment(final AtomicBuffer segmentBuffer)
+    {
+        release(segmentBuffer);
+    }
+
+    public void deleteSegment(final long fixSessionId, final long segment)
+    {
+        final File segmentFile = replayIndexSegmentFile(logFileDir, fixSessionId, streamId, segment);
+        if (!segmentFile.delete() && segmentFile.exists())
+        {
+            errorHandler.onError(new IllegalStateException("Unable to delete replay index segment: " + segmentFile));
+        }
+    }
+
+    public void close()
+    {
+    }
+
+    private boolean wrap(final File file, final int size, final int minimumSize, final AtomicBuffer buffer)
+    {
+        final ByteBuffer wrappedBuffer = bufferFactory.map(file, size);
+        buffer.wrap(wrappedBuffer);
+
+        // Reading a file that has never been written to, or has been deleted.
+        if (buffer.capacity() < minimumSize)
+        {
+            release(buffer);
+            return false;
+        }
+
+        return true;
+    }
+
+    private void release(final AtomicBuffer buffer)
+    {
+        final ByteBuffer wrappedBuffer = buffer.byteBuffer();
+        if (wrappedBuffer != null)
+        {
+            IoUtil.unmap(wrappedBuffer);
+        }
+        buffer.wrap(0, 0);
+    }
+}
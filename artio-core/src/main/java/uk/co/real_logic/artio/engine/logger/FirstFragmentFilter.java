@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.logbuffer.Header;
+import org.agrona.DirectBuffer;
+import uk.co.real_logic.artio.messages.FixMessageDecoder;
+import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
+
+import static io.aeron.logbuffer.FrameDescriptor.BEGIN_FRAG_FLAG;
+
+/**
+ * Filters messages on their first fragment, before they're reassembled. The predicate is only given the fixed length
+ * fields of the FixMessage, since the body may be split over later fragments. Every fragment of a rejected message is
+ * rejected, as is every fragment of a message that isn't a FixMessage since the archive scanner ignores them.
+ */
+class FirstFragmentFilter
+{
+    private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
+    private final FixMessageDecoder fixMessage = new FixMessageDecoder();
+    private final FixMessagePredicate fixedFieldPredicate;
+
+    private boolean accepting;
+
+    FirstFragmentFilter(final FixMessagePredicate fixedFieldPredicate)
+    {
+        this.fixedFieldPredicate = fixedFieldPredicate;
+    }
+
+    boolean accept(final DirectBuffer buffer, final int offset, final Header header)
+    {
+        if ((header.flags() & BEGIN_FRAG_FLAG) == BEGIN_FRAG_FLAG)
+        {
+            messageHeader.wrap(buffer, offset);
+            if (messageHeader.templateId() == FixMessageDecoder.TEMPLATE_ID)
+            {
+                fixMessage.wrap(
+                    buffer,
+                    offset + MessageHeaderDecoder.ENCODED_LENGTH,
+                    messageHeader.blockLength(),
+                    messageHeader.version());
+                accepting = fixedFieldPredicate.test(fixMessage);
+            }
+            else
+            {
+                accepting = false;
+            }
+        }
+
+        return accepting;
+    }
+}
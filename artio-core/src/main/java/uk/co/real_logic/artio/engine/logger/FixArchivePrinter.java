@@ -41,9 +41,13 @@ public final class FixArchivePrinter
     {
         String aeronDirectoryName = null;
         String aeronChannel = null;
+        String logFileDir = null;
+        long fromTimestamp = Long.MIN_VALUE;
+        long toTimestamp = Long.MAX_VALUE;
         int queryStreamId = DEFAULT_OUTBOUND_LIBRARY_STREAM;
         int archiveScannerStreamId = DEFAULT_ARCHIVE_SCANNER_STREAM;
-        FixMessagePredicate predicate = FixMessagePredicates.alwaysTrue();
+        // Only reads the fixed length fields of messages, so it's tested before they're reassembled.
+        FixMessagePredicate fixedFieldPredicate = FixMessagePredicates.alwaysTrue();
         boolean follow = false;
         Class<? extends FixDictionary> fixDictionaryType = FixDictionary.findDefault();
 
@@ -74,16 +78,16 @@ public final class FixArchivePrinter
             switch (optionName)
             {
                 case "from":
-                    predicate = from(parseLong(optionValue)).and(predicate);
+                    fromTimestamp = parseLong(optionValue);
                     break;
 
                 case "to":
-                    predicate = to(parseLong(optionValue)).and(predicate);
+                    toTimestamp = parseLong(optionValue);
                     break;
 
                 case "message-types":
                     final String[] messageTypes = optionValue.split(",");
-                    predicate = messageTypeOf(messageTypes).and(predicate);
+                    fixedFieldPredicate = messageTypeOf(messageTypes).and(fixedFieldPredicate);
                     break;
 
                 case "sender-comp-id":
@@ -126,6 +130,10 @@ public final class FixArchivePrinter
                     aeronChannel = optionValue;
                     break;
 
+                case "log-file-dir":
+                    logFileDir = optionValue;
+                    break;
+
                 case "fix-dictionary":
                     fixDictionaryType = FixDictionary.find(optionValue);
                     break;
@@ -135,8 +143,8 @@ public final class FixArchivePrinter
         requiredArgument(aeronDirectoryName, "aeron-dir-name");
         requiredArgument(aeronChannel, "aeron-channel");
 
-        scanArchive(aeronDirectoryName, aeronChannel, queryStreamId, predicate, follow, headerPredicate,
-            archiveScannerStreamId, fixDictionaryType);
+        scanArchive(aeronDirectoryName, aeronChannel, logFileDir, queryStreamId, fromTimestamp, toTimestamp,
+            fixedFieldPredicate, follow, headerPredicate, archiveScannerStreamId, fixDictionaryType);
     }
 
     private static void requiredArgument(final int eqIndex)
@@ -152,29 +160,36 @@ public final class FixArchivePrinter
     private static void scanArchive(
         final String aeronDirectoryName,
         final String aeronChannel,
+        final String logFileDir,
         final int queryStreamId,
-        final FixMessagePredicate otherPredicate,
+        final long fromTimestamp,
+        final long toTimestamp,
+        final FixMessagePredicate fixedFieldPredicate,
         final boolean follow,
         final Predicate<SessionHeaderDecoder> headerPredicate,
         final int archiveScannerStreamId,
         final Class<? extends FixDictionary> fixDictionaryType)
     {
         final FixDictionary fixDictionary = FixDictionary.of(fixDictionaryType);
-        FixMessagePredicate predicate = otherPredicate;
+        FixMessageConsumer consumer = FixArchivePrinter::print;
         if (headerPredicate != null)
         {
-            predicate = whereHeader(fixDictionary, headerPredicate).and(predicate);
+            consumer = filterBy(consumer, whereHeader(fixDictionary, headerPredicate));
         }
 
         final FixArchiveScanner.Context context = new FixArchiveScanner.Context()
             .aeronDirectoryName(aeronDirectoryName)
-            .idleStrategy(CommonConfiguration.backoffIdleStrategy());
+            .idleStrategy(CommonConfiguration.backoffIdleStrategy())
+            .logFileDir(logFileDir);
 
         final FixArchiveScanner scanner = new FixArchiveScanner(context);
         scanner.scan(
             aeronChannel,
             queryStreamId,
-            filterBy(FixArchivePrinter::print, predicate),
+            fromTimestamp,
+            toTimestamp,
+            fixedFieldPredicate,
+            consumer,
             follow,
             archiveScannerStreamId);
     }
@@ -204,6 +219,11 @@ public final class FixArchivePrinter
             "Specifies the aeron channel that was used to by the engine",
             true);
 
+        printOption(
+            "log-file-dir",
+            "Specifies the log file directory of the engine, if its timestamp index is enabled then it's used to " +
+            "only scan the parts of the archive between --from and --to",
+            false);
         printOption(
             "from",
             "Time in precision of CommonConfiguration.clock() that messages are not earlier than",
@@ -18,35 +18,70 @@ package uk.co.real_logic.artio.engine.logger;
 import io.aeron.Aeron;
 import io.aeron.FragmentAssembler;
 import io.aeron.Image;
+import io.aeron.ImageControlledFragmentAssembler;
 import io.aeron.Subscription;
 import io.aeron.archive.client.AeronArchive;
+import io.aeron.logbuffer.ControlledFragmentHandler;
+import io.aeron.logbuffer.FragmentHandler;
+import io.aeron.logbuffer.Header;
+import org.agrona.DirectBuffer;
 import org.agrona.concurrent.IdleStrategy;
+import uk.co.real_logic.artio.messages.FixMessageDecoder;
+import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 
 import static io.aeron.CommonContext.IPC_CHANNEL;
 import static io.aeron.archive.client.AeronArchive.NULL_LENGTH;
 import static io.aeron.archive.client.AeronArchive.NULL_POSITION;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.BREAK;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
 import static java.util.Comparator.comparingLong;
+import static uk.co.real_logic.artio.engine.logger.FixMessagePredicates.between;
 
 /**
  * Scan the archive for fix messages. Can be combined with predicates to create rich queries.
  *
+ * Scans for a time range can use the timestamp index that the engine writes into its log file directory, see
+ * {@link Context#logFileDir(String)}, to only replay the parts of each recording that could hold messages from that
+ * time range.
+ *
+ * Several streams can be scanned at once, in which case their recordings are replayed concurrently and their messages
+ * are either merged into timestamp order, across every recording of the streams, or delivered in the order that
+ * they're replayed in.
+ *
+ * Predicates that only read the fixed length fields of a FixMessage, such as its session, timestamp or message type,
+ * can be given to a scan as a fixed field predicate. They're tested on the first fragment of each message so rejected
+ * messages aren't reassembled or passed to the consumer.
+ *
+ * Messages with a given value of an indexed tag, for example a ClOrdID, can be looked up in the tag index that the
+ * engine writes into its log file directory without scanning whole recordings, see {@link #scanTagIndex}.
+ *
  * @see FixMessageConsumer
  * @see FixMessagePredicate
  * @see FixMessagePredicates
  */
 public class FixArchiveScanner implements AutoCloseable
 {
+    public static final int DEFAULT_MAX_CONCURRENT_REPLAYS = 4;
+
+    private static final int POLL_LIMIT = 10;
+
     private final Aeron aeron;
     private final AeronArchive aeronArchive;
     private final IdleStrategy idleStrategy;
+    private final String logFileDir;
+    private final int maxConcurrentReplays;
 
     public static class Context
     {
         private String aeronDirectoryName;
         private IdleStrategy idleStrategy;
+        private String logFileDir;
+        private int maxConcurrentReplays = DEFAULT_MAX_CONCURRENT_REPLAYS;
 
         public Context()
         {
@@ -73,11 +108,50 @@ public class FixArchiveScanner implements AutoCloseable
         {
             return idleStrategy;
         }
+
+        /**
+         * Sets the log file directory of the engine that wrote the archive. If it's set and the engine had its
+         * timestamp index enabled then scans for a time range use it.
+         *
+         * @param logFileDir the log file directory of the engine.
+         * @return this
+         * @see uk.co.real_logic.artio.engine.EngineConfiguration#timestampIndex(boolean)
+         */
+        public Context logFileDir(final String logFileDir)
+        {
+            this.logFileDir = logFileDir;
+            return this;
+        }
+
+        public String logFileDir()
+        {
+            return logFileDir;
+        }
+
+        /**
+         * Sets the maximum number of recordings that are replayed at the same time by a scan that doesn't need its
+         * messages in timestamp order. Each replay maps its own log buffer, so this bounds the memory used by the scan.
+         *
+         * @param maxConcurrentReplays the maximum number of recordings to replay at the same time.
+         * @return this
+         */
+        public Context maxConcurrentReplays(final int maxConcurrentReplays)
+        {
+            this.maxConcurrentReplays = maxConcurrentReplays;
+            return this;
+        }
+
+        public int maxConcurrentReplays()
+        {
+            return maxConcurrentReplays;
+        }
     }
 
     public FixArchiveScanner(final Context context)
     {
         this.idleStrategy = context.idleStrategy();
+        this.logFileDir = context.logFileDir();
+        this.maxConcurrentReplays = context.maxConcurrentReplays();
 
         final Aeron.Context aeronContext = new Aeron.Context().aeronDirectoryName(context.aeronDirectoryName());
         aeron = Aeron.connect(aeronContext);
@@ -90,9 +164,142 @@ public class FixArchiveScanner implements AutoCloseable
         final FixMessageConsumer handler,
         final boolean follow,
         final int archiveScannerStreamId)
+    {
+        scan(aeronChannel, queryStreamId, null, handler, follow, archiveScannerStreamId);
+    }
+
+    /**
+     * Scan the archive for messages that pass a predicate of their fixed length fields.
+     *
+     * @param aeronChannel the channel that the messages were recorded from.
+     * @param queryStreamId the stream that the messages were recorded from.
+     * @param fixedFieldPredicate the predicate that messages must pass, it may only read the fixed length fields of
+     *                            the message and is tested before the message is reassembled. Null to pass all.
+     * @param handler the consumer of messages that pass the predicate.
+     * @param follow true to carry on scanning messages as they're recorded.
+     * @param archiveScannerStreamId the stream to replay the archive on.
+     */
+    public void scan(
+        final String aeronChannel,
+        final int queryStreamId,
+        final FixMessagePredicate fixedFieldPredicate,
+        final FixMessageConsumer handler,
+        final boolean follow,
+        final int archiveScannerStreamId)
+    {
+        scan(
+            aeronChannel,
+            queryStreamId,
+            fixedFieldPredicate,
+            handler,
+            follow,
+            archiveScannerStreamId,
+            null,
+            Long.MIN_VALUE,
+            Long.MAX_VALUE);
+    }
+
+    /**
+     * Scan the archive for messages with a timestamp within a time range. Only the parts of each recording that the
+     * timestamp index doesn't rule out are replayed.
+     *
+     * @param aeronChannel the channel that the messages were recorded from.
+     * @param queryStreamId the stream that the messages were recorded from.
+     * @param beginTimestampInclusive the message's timestamp must be &gt;= this value.
+     * @param endTimestampExclusive the message's timestamp must be &lt; this value.
+     * @param handler the consumer of messages within the time range.
+     * @param follow true to carry on scanning messages as they're recorded.
+     * @param archiveScannerStreamId the stream to replay the archive on.
+     */
+    public void scan(
+        final String aeronChannel,
+        final int queryStreamId,
+        final long beginTimestampInclusive,
+        final long endTimestampExclusive,
+        final FixMessageConsumer handler,
+        final boolean follow,
+        final int archiveScannerStreamId)
+    {
+        scan(
+            aeronChannel,
+            queryStreamId,
+            beginTimestampInclusive,
+            endTimestampExclusive,
+            null,
+            handler,
+            follow,
+            archiveScannerStreamId);
+    }
+
+    /**
+     * Scan the archive for messages with a timestamp within a time range that also pass a predicate of their fixed
+     * length fields.
+     *
+     * @param aeronChannel the channel that the messages were recorded from.
+     * @param queryStreamId the stream that the messages were recorded from.
+     * @param beginTimestampInclusive the message's timestamp must be &gt;= this value.
+     * @param endTimestampExclusive the message's timestamp must be &lt; this value.
+     * @param fixedFieldPredicate the predicate that messages must pass, it may only read the fixed length fields of
+     *                            the message and is tested before the message is reassembled. Null to pass all.
+     * @param handler the consumer of messages within the time range.
+     * @param follow true to carry on scanning messages as they're recorded.
+     * @param archiveScannerStreamId the stream to replay the archive on.
+     */
+    public void scan(
+        final String aeronChannel,
+        final int queryStreamId,
+        final long beginTimestampInclusive,
+        final long endTimestampExclusive,
+        final FixMessagePredicate fixedFieldPredicate,
+        final FixMessageConsumer handler,
+        final boolean follow,
+        final int archiveScannerStreamId)
+    {
+        final TimestampIndexReader timestampIndex = logFileDir == null ? null :
+            new TimestampIndexReader(TimestampIndexDescriptor.timestampIndexFile(logFileDir, queryStreamId));
+
+        final FixMessagePredicate timeRange = between(beginTimestampInclusive, endTimestampExclusive);
+        scan(
+            aeronChannel,
+            queryStreamId,
+            fixedFieldPredicate == null ? timeRange : timeRange.and(fixedFieldPredicate),
+            handler,
+            follow,
+            archiveScannerStreamId,
+            timestampIndex,
+            beginTimestampInclusive,
+            endTimestampExclusive);
+    }
+
+    private void scan(
+        final String aeronChannel,
+        final int queryStreamId,
+        final FixMessagePredicate fixedFieldPredicate,
+        final FixMessageConsumer handler,
+        final boolean follow,
+        final int archiveScannerStreamId,
+        final TimestampIndexReader timestampIndex,
+        final long beginTimestampInclusive,
+        final long endTimestampExclusive)
     {
         final LogEntryHandler logEntryHandler = new LogEntryHandler(handler);
         final FragmentAssembler fragmentAssembler = new FragmentAssembler(logEntryHandler);
+        final FragmentHandler fragmentHandler;
+        if (fixedFieldPredicate == null)
+        {
+            fragmentHandler = fragmentAssembler;
+        }
+        else
+        {
+            final FirstFragmentFilter filter = new FirstFragmentFilter(fixedFieldPredicate);
+            fragmentHandler = (buffer, offset, length, header) ->
+            {
+                if (filter.accept(buffer, offset, header))
+                {
+                    fragmentAssembler.onFragment(buffer, offset, length, header);
+                }
+            };
+        }
 
         final List<ArchiveLocation> archiveLocations = lookupArchiveLocations(aeronChannel, queryStreamId);
 
@@ -101,49 +308,289 @@ public class FixArchiveScanner implements AutoCloseable
             archiveLocations.forEach(archiveLocation ->
             {
                 final long recordingId = archiveLocation.recordingId;
-                final boolean stillArchiving = archiveLocation.stopPosition == NULL_POSITION;
+                long startPosition = archiveLocation.startPosition;
+                long stopPosition = stopPosition(archiveLocation, follow);
 
-                final long stopPosition;
-                final long length;
-                if (stillArchiving)
+                if (timestampIndex != null)
                 {
-                    if (follow)
+                    startPosition = timestampIndex.startPosition(recordingId, startPosition, beginTimestampInclusive);
+                    if (stopPosition != NULL_POSITION)
                     {
-                        length = NULL_LENGTH;
-                        stopPosition = NULL_POSITION;
+                        stopPosition = timestampIndex.stopPosition(recordingId, stopPosition, endTimestampExclusive);
                     }
-                    else
+                }
+
+                final long length = stopPosition == NULL_POSITION ? NULL_LENGTH : stopPosition - startPosition;
+                if (length == NULL_LENGTH || length > 0)
+                {
+                    final Image image = replay(
+                        replaySubscription, recordingId, startPosition, length, archiveScannerStreamId);
+
+                    while (stopPosition == NULL_POSITION || image.position() < stopPosition)
                     {
-                        stopPosition = aeronArchive.getRecordingPosition(recordingId);
-                        length = stopPosition - archiveLocation.startPosition;
+                        idleStrategy.idle(image.poll(fragmentHandler, POLL_LIMIT));
                     }
                 }
-                else
+            });
+        }
+    }
+
+    /**
+     * Scan the archive for messages from several streams, for example both the inbound and outbound library streams.
+     * The recordings of the streams are replayed concurrently on the archive scanner stream.
+     *
+     * In timestamp order every recording of the streams is replayed concurrently and merged by the timestamp of their
+     * messages, as each publication on a stream, such as each library's, is recorded separately and their recordings
+     * can overlap in time. Messages are read in place from each replay's log buffer, so the merge doesn't buffer any
+     * messages, but every recording maps a log buffer of its own for the duration of the scan. When following, a
+     * recording that has no new messages holds back messages from the other recordings until it does.
+     *
+     * Otherwise up to {@link Context#maxConcurrentReplays(int)} recordings are replayed concurrently and messages are
+     * delivered as they're replayed. Messages from the same recording are still delivered in order.
+     *
+     * @param aeronChannel the channel that the messages were recorded from.
+     * @param queryStreamIds the streams that the messages were recorded from.
+     * @param handler the consumer of messages.
+     * @param follow true to carry on scanning messages as they're recorded.
+     * @param timestampOrdered true to deliver messages in timestamp order, false to deliver them as they're replayed.
+     * @param archiveScannerStreamId the stream to replay the archive on.
+     */
+    public void scan(
+        final String aeronChannel,
+        final int[] queryStreamIds,
+        final FixMessageConsumer handler,
+        final boolean follow,
+        final boolean timestampOrdered,
+        final int archiveScannerStreamId)
+    {
+        scan(aeronChannel, queryStreamIds, null, handler, follow, timestampOrdered, archiveScannerStreamId);
+    }
+
+    /**
+     * Scan the archive for messages from several streams that pass a predicate of their fixed length fields.
+     *
+     * @param aeronChannel the channel that the messages were recorded from.
+     * @param queryStreamIds the streams that the messages were recorded from.
+     * @param fixedFieldPredicate the predicate that messages must pass, it may only read the fixed length fields of
+     *                            the message and is tested before the message is reassembled. Null to pass all.
+     * @param handler the consumer of messages.
+     * @param follow true to carry on scanning messages as they're recorded.
+     * @param timestampOrdered true to deliver messages in timestamp order, false to deliver them as they're replayed.
+     * @param archiveScannerStreamId the stream to replay the archive on.
+     * @see #scan(String, int[], FixMessageConsumer, boolean, boolean, int)
+     */
+    public void scan(
+        final String aeronChannel,
+        final int[] queryStreamIds,
+        final FixMessagePredicate fixedFieldPredicate,
+        final FixMessageConsumer handler,
+        final boolean follow,
+        final boolean timestampOrdered,
+        final int archiveScannerStreamId)
+    {
+        final List<ArchiveLocation> archiveLocations = new ArrayList<>();
+        for (final int queryStreamId : queryStreamIds)
+        {
+            archiveLocations.addAll(lookupArchiveLocations(aeronChannel, queryStreamId));
+        }
+
+        // Uncompleted recordings are started last so that following them doesn't hold up the other recordings.
+        archiveLocations.sort(comparingLong(ArchiveLocation::stopPosition).reversed());
+
+        // Each publication on a stream is recorded separately, so the recordings of a stream can overlap in time and
+        // are each a source of their own.
+        final LogEntryHandler logEntryHandler = new LogEntryHandler(handler);
+        final List<ReplaySource> sources = new ArrayList<>();
+        archiveLocations.forEach(archiveLocation -> sources.add(new ReplaySource(
+            archiveLocation, fixedFieldPredicate, logEntryHandler, timestampOrdered, follow)));
+
+        try (Subscription replaySubscription = aeron.addSubscription(IPC_CHANNEL, archiveScannerStreamId))
+        {
+            if (timestampOrdered)
+            {
+                mergeInTimestampOrder(sources, replaySubscription, archiveScannerStreamId);
+            }
+            else
+            {
+                scanConcurrently(sources, replaySubscription, archiveScannerStreamId);
+            }
+        }
+    }
+
+    /**
+     * Look up the messages with a given value of a tag in the engine's tag index and only replay those messages from
+     * the archive. Requires {@link Context#logFileDir(String)} to be set. Messages are passed to the handler in the
+     * order that they were recorded in.
+     *
+     * @param queryStreamId the stream that the messages were recorded from.
+     * @param tag the tag to look up, it must be one of the tags that the engine indexes.
+     * @param value the value of the tag.
+     * @param handler the consumer of the messages.
+     * @param archiveScannerStreamId the stream to replay the archive on.
+     * @return the number of messages that were replayed.
+     * @see uk.co.real_logic.artio.engine.EngineConfiguration#tagIndexTags(int...)
+     */
+    public int scanTagIndex(
+        final int queryStreamId,
+        final int tag,
+        final String value,
+        final FixMessageConsumer handler,
+        final int archiveScannerStreamId)
+    {
+        if (logFileDir == null)
+        {
+            throw new IllegalStateException("The log file directory must be set in order to use the tag index");
+        }
+
+        final List<ArchiveLocation> messageLocations = new ArrayList<>();
+        try (TagIndexReader reader = new TagIndexReader(TagIndexDescriptor.tagIndexFile(logFileDir, queryStreamId)))
+        {
+            reader.query(tag, value, (recordingId, position, length) ->
+                messageLocations.add(new ArchiveLocation(recordingId, position, position + length)));
+        }
+        messageLocations.sort(
+            comparingLong((ArchiveLocation location) -> location.recordingId)
+            .thenComparingLong(location -> location.startPosition));
+
+        final LogEntryHandler logEntryHandler = new LogEntryHandler(handler);
+        final FragmentAssembler fragmentAssembler = new FragmentAssembler(logEntryHandler);
+        int messageCount = 0;
+        try (Subscription replaySubscription = aeron.addSubscription(IPC_CHANNEL, archiveScannerStreamId))
+        {
+            ArchiveLocation lastLocation = null;
+            for (final ArchiveLocation location : messageLocations)
+            {
+                // A message is indexed again if the engine stopped before recording that it had been indexed.
+                if (lastLocation != null &&
+                    lastLocation.recordingId == location.recordingId &&
+                    lastLocation.startPosition == location.startPosition)
                 {
-                    stopPosition = archiveLocation.stopPosition;
-                    length = stopPosition - archiveLocation.startPosition;
+                    continue;
                 }
+                lastLocation = location;
+
+                final Image image = replay(
+                    replaySubscription,
+                    location.recordingId,
+                    location.startPosition,
+                    location.stopPosition - location.startPosition,
+                    archiveScannerStreamId);
 
-                if (length != 0)
+                while (image.position() < location.stopPosition)
                 {
-                    final int sessionId = (int)aeronArchive.startReplay(
-                        recordingId,
-                        archiveLocation.startPosition,
-                        length,
-                        IPC_CHANNEL,
-                        archiveScannerStreamId);
+                    idleStrategy.idle(image.poll(fragmentAssembler, POLL_LIMIT));
+                }
+                messageCount++;
+            }
+        }
+
+        return messageCount;
+    }
 
-                    final Image image = lookupImage(replaySubscription, sessionId);
+    private void mergeInTimestampOrder(
+        final List<ReplaySource> sources, final Subscription replaySubscription, final int archiveScannerStreamId)
+    {
+        final List<ReplaySource> activeSources = new ArrayList<>(sources);
+        while (!activeSources.isEmpty())
+        {
+            int workCount = 0;
+            boolean hasAllHeads = true;
+            ReplaySource earliestSource = null;
 
-                    while (stopPosition == NULL_POSITION || image.position() < stopPosition)
+            for (int i = activeSources.size() - 1; i >= 0; i--)
+            {
+                final ReplaySource source = activeSources.get(i);
+                if (!source.hasHead)
+                {
+                    if (!source.hasImage(replaySubscription, archiveScannerStreamId))
                     {
-                        idleStrategy.idle(image.poll(fragmentAssembler, 10));
+                        activeSources.remove(i);
+                        continue;
                     }
+
+                    workCount += source.poll();
+                    if (!source.hasHead)
+                    {
+                        hasAllHeads = false;
+                        continue;
+                    }
+                    workCount++;
                 }
-            });
+
+                if (earliestSource == null || source.headTimestamp < earliestSource.headTimestamp)
+                {
+                    earliestSource = source;
+                }
+            }
+
+            // The earliest message can only be delivered once the next message of every recording is known.
+            if (hasAllHeads && earliestSource != null)
+            {
+                workCount += earliestSource.poll();
+            }
+
+            idleStrategy.idle(workCount);
+        }
+    }
+
+    private void scanConcurrently(
+        final List<ReplaySource> sources, final Subscription replaySubscription, final int archiveScannerStreamId)
+    {
+        final ArrayDeque<ReplaySource> pendingSources = new ArrayDeque<>(sources);
+        final List<ReplaySource> activeSources = new ArrayList<>();
+        while (!pendingSources.isEmpty() || !activeSources.isEmpty())
+        {
+            while (activeSources.size() < maxConcurrentReplays && !pendingSources.isEmpty())
+            {
+                activeSources.add(pendingSources.poll());
+            }
+
+            int workCount = 0;
+            for (int i = activeSources.size() - 1; i >= 0; i--)
+            {
+                final ReplaySource source = activeSources.get(i);
+                if (source.hasImage(replaySubscription, archiveScannerStreamId))
+                {
+                    workCount += source.poll();
+                }
+                else
+                {
+                    activeSources.remove(i);
+                }
+            }
+
+            idleStrategy.idle(workCount);
         }
     }
 
+    private long stopPosition(final ArchiveLocation archiveLocation, final boolean follow)
+    {
+        final boolean stillArchiving = archiveLocation.stopPosition == NULL_POSITION;
+        if (stillArchiving)
+        {
+            return follow ? NULL_POSITION : aeronArchive.getRecordingPosition(archiveLocation.recordingId);
+        }
+
+        return archiveLocation.stopPosition;
+    }
+
+    private Image replay(
+        final Subscription replaySubscription,
+        final long recordingId,
+        final long startPosition,
+        final long length,
+        final int archiveScannerStreamId)
+    {
+        final int sessionId = (int)aeronArchive.startReplay(
+            recordingId,
+            startPosition,
+            length,
+            IPC_CHANNEL,
+            archiveScannerStreamId);
+
+        return lookupImage(replaySubscription, sessionId);
+    }
+
     private Image lookupImage(final Subscription replaySubscription, final int sessionId)
     {
         Image image = null;
@@ -189,6 +636,109 @@ public class FixArchiveScanner implements AutoCloseable
         return archiveLocations;
     }
 
+    /**
+     * Replays a recording. In timestamp order the next message of the replay is peeked at by aborting its fragment, so
+     * that its timestamp is known without consuming it.
+     */
+    private final class ReplaySource implements ControlledFragmentHandler
+    {
+        private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
+        private final FixMessageDecoder fixMessage = new FixMessageDecoder();
+        private final ImageControlledFragmentAssembler assembler = new ImageControlledFragmentAssembler(this);
+        private final ControlledFragmentHandler fragmentHandler;
+        private final LogEntryHandler logEntryHandler;
+        private final boolean timestampOrdered;
+        private final boolean follow;
+
+        private ArchiveLocation archiveLocation;
+        private Image image;
+        private long stopPosition;
+        private boolean hasHead;
+        private long headTimestamp;
+
+        ReplaySource(
+            final ArchiveLocation archiveLocation,
+            final FixMessagePredicate fixedFieldPredicate,
+            final LogEntryHandler logEntryHandler,
+            final boolean timestampOrdered,
+            final boolean follow)
+        {
+            if (fixedFieldPredicate == null)
+            {
+                fragmentHandler = assembler;
+            }
+            else
+            {
+                // Rejected messages are consumed, so they're never peeked at.
+                final FirstFragmentFilter filter = new FirstFragmentFilter(fixedFieldPredicate);
+                fragmentHandler = (buffer, offset, length, header) -> filter.accept(buffer, offset, header) ?
+                    assembler.onFragment(buffer, offset, length, header) : CONTINUE;
+            }
+
+            this.archiveLocation = archiveLocation;
+            this.logEntryHandler = logEntryHandler;
+            this.timestampOrdered = timestampOrdered;
+            this.follow = follow;
+        }
+
+        // Starts replaying the recording the first time that it's called, false once it has been read.
+        boolean hasImage(final Subscription replaySubscription, final int archiveScannerStreamId)
+        {
+            final ArchiveLocation archiveLocation = this.archiveLocation;
+            if (archiveLocation != null)
+            {
+                this.archiveLocation = null;
+
+                final long startPosition = archiveLocation.startPosition;
+                stopPosition = stopPosition(archiveLocation, follow);
+                final long length = stopPosition == NULL_POSITION ? NULL_LENGTH : stopPosition - startPosition;
+                if (length == NULL_LENGTH || length > 0)
+                {
+                    image = replay(
+                        replaySubscription, archiveLocation.recordingId, startPosition, length, archiveScannerStreamId);
+                }
+            }
+
+            return image != null && (stopPosition == NULL_POSITION || image.position() < stopPosition);
+        }
+
+        int poll()
+        {
+            return image.controlledPoll(fragmentHandler, POLL_LIMIT);
+        }
+
+        public Action onFragment(final DirectBuffer buffer, final int offset, final int length, final Header header)
+        {
+            if (timestampOrdered)
+            {
+                messageHeader.wrap(buffer, offset);
+                if (messageHeader.templateId() != FixMessageDecoder.TEMPLATE_ID)
+                {
+                    return CONTINUE;
+                }
+
+                if (!hasHead)
+                {
+                    fixMessage.wrap(
+                        buffer,
+                        offset + MessageHeaderDecoder.ENCODED_LENGTH,
+                        messageHeader.blockLength(),
+                        messageHeader.version());
+                    headTimestamp = fixMessage.timestamp();
+                    hasHead = true;
+                    return ABORT;
+                }
+
+                logEntryHandler.onFragment(buffer, offset, length, header);
+                hasHead = false;
+                return BREAK;
+            }
+
+            logEntryHandler.onFragment(buffer, offset, length, header);
+            return CONTINUE;
+        }
+    }
+
     class ArchiveLocation
     {
         final long recordingId;
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.Aeron;
+import io.aeron.ChannelUri;
+import io.aeron.Image;
+import io.aeron.Subscription;
+import io.aeron.archive.client.AeronArchive;
+import io.aeron.archive.client.ArchiveException;
+import io.aeron.logbuffer.FragmentHandler;
+import io.aeron.logbuffer.Header;
+import org.agrona.DirectBuffer;
+import org.agrona.ErrorHandler;
+import org.agrona.concurrent.AgentInvoker;
+import org.agrona.concurrent.EpochClock;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.status.AtomicCounter;
+import uk.co.real_logic.artio.CommonConfiguration;
+import uk.co.real_logic.artio.DebugLogger;
+import uk.co.real_logic.artio.LogTag;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static io.aeron.CommonContext.IPC_CHANNEL;
+
+/**
+ * Catches indices up with the archive on startup, indexing anything that was archived but not indexed before the
+ * engine last stopped.
+ *
+ * Each index is caught up by replaying its gaps one at a time, as an index can only be used by one thread, but
+ * different indices are caught up concurrently on up to threadCount threads. Indices that stopped at the same
+ * positions, for example the indices of a stream after a clean shutdown, share a single replay of their gaps rather
+ * than each reading them from the archive. Progress is exposed through counters of the bytes left to index and an
+ * estimate of the time left.
+ */
+public class IndexCatchup
+{
+    private static final int LIMIT = 20;
+
+    private final AeronArchive aeronArchive;
+    private final Aeron aeron;
+    private final ErrorHandler errorHandler;
+    private final int archiveReplayStream;
+    private final int threadCount;
+    private final ThreadFactory threadFactory;
+    private final EpochClock clock;
+    private final AtomicCounter bytesRemaining;
+    private final AtomicCounter estimatedTimeRemainingInMs;
+    private final AtomicLong bytesIndexed = new AtomicLong();
+    private final AgentInvoker aeronInvoker;
+
+    private long startTimeInMs;
+
+    public IndexCatchup(
+        final AeronArchive aeronArchive,
+        final ErrorHandler errorHandler,
+        final int archiveReplayStream,
+        final int threadCount,
+        final ThreadFactory threadFactory,
+        final EpochClock clock,
+        final AtomicCounter bytesRemaining,
+        final AtomicCounter estimatedTimeRemainingInMs)
+    {
+        this.aeronArchive = aeronArchive;
+        this.errorHandler = errorHandler;
+        this.archiveReplayStream = archiveReplayStream;
+        this.threadCount = threadCount;
+        this.threadFactory = threadFactory;
+        this.clock = clock;
+        this.bytesRemaining = bytesRemaining;
+        this.estimatedTimeRemainingInMs = estimatedTimeRemainingInMs;
+        aeron = aeronArchive.context().aeron();
+        aeronInvoker = aeron.conductorAgentInvoker();
+    }
+
+    /**
+     * Catch up the indices of the indexers, returning once they've all been caught up.
+     *
+     * @param indexers the indexers whose indices should be caught up.
+     */
+    public void catchUp(final List<Indexer> indexers)
+    {
+        final Map<List<Gap>, CatchupIndices> gapsToIndices = new LinkedHashMap<>();
+        for (final Indexer indexer : indexers)
+        {
+            for (final Index index : indexer.indices())
+            {
+                final List<Gap> gaps = findGaps(index);
+                if (!gaps.isEmpty())
+                {
+                    gapsToIndices.computeIfAbsent(gaps, CatchupIndices::new).add(index);
+                }
+            }
+        }
+
+        final Queue<CatchupIndices> indexGaps = new ConcurrentLinkedQueue<>(gapsToIndices.values());
+        long totalBytes = 0;
+        for (final List<Gap> gaps : gapsToIndices.keySet())
+        {
+            for (final Gap gap : gaps)
+            {
+                totalBytes += gap.recordingStoppedPosition - gap.indexStoppedPosition;
+            }
+        }
+
+        bytesRemaining.setOrdered(totalBytes);
+        startTimeInMs = clock.time();
+
+        // Only one thread can invoke the Aeron conductor, so catch up on this thread if it is being invoked.
+        final int catchupThreadCount = aeronInvoker == null ? Math.min(threadCount, indexGaps.size()) : 1;
+        if (catchupThreadCount <= 1)
+        {
+            catchUp(indexGaps);
+        }
+        else
+        {
+            final List<Thread> threads = new ArrayList<>(catchupThreadCount);
+            for (int i = 0; i < catchupThreadCount; i++)
+            {
+                final Thread thread = threadFactory.newThread(() -> catchUp(indexGaps));
+                thread.setName("index-catchup-" + i);
+                threads.add(thread);
+                thread.start();
+            }
+
+            join(threads);
+        }
+
+        estimatedTimeRemainingInMs.setOrdered(0);
+    }
+
+    private List<Gap> findGaps(final Index index)
+    {
+        final List<Gap> gaps = new ArrayList<>();
+        index.readLastPosition((aeronSessionId, recordingId, indexStoppedPosition) ->
+        {
+            try
+            {
+                final long recordingStoppedPosition = aeronArchive.getStopPosition(recordingId);
+                if (recordingStoppedPosition > indexStoppedPosition)
+                {
+                    gaps.add(new Gap(recordingId, indexStoppedPosition, recordingStoppedPosition));
+                }
+            }
+            catch (final ArchiveException ex)
+            {
+                errorHandler.onError(ex);
+            }
+        });
+
+        // Indices report their recordings in no particular order, so sort the gaps to group together the indices
+        // that have the same gaps.
+        gaps.sort(Comparator.comparingLong(gap -> gap.recordingId));
+        return gaps;
+    }
+
+    private void catchUp(final Queue<CatchupIndices> indexGaps)
+    {
+        final IdleStrategy idleStrategy = CommonConfiguration.backoffIdleStrategy();
+
+        CatchupIndices indices;
+        while ((indices = indexGaps.poll()) != null)
+        {
+            for (final Gap gap : indices.gaps)
+            {
+                try
+                {
+                    catchUp(indices, gap, idleStrategy);
+                }
+                catch (final Throwable throwable)
+                {
+                    errorHandler.onError(throwable);
+                }
+            }
+        }
+    }
+
+    private void catchUp(final CatchupIndices indices, final Gap gap, final IdleStrategy idleStrategy)
+    {
+        final long recordingId = gap.recordingId;
+        final long indexStoppedPosition = gap.indexStoppedPosition;
+        final long recordingStoppedPosition = gap.recordingStoppedPosition;
+
+        DebugLogger.log(
+            LogTag.INDEX,
+            "Catchup [%s]: recordingId = %d, recordingStopped @ %d, indexStopped @ %d%n",
+            indices.name(),
+            recordingId,
+            recordingStoppedPosition,
+            indexStoppedPosition);
+
+        // Each replay gets a subscription of its own so that one index doesn't hold up the replays for the others.
+        final long length = recordingStoppedPosition - indexStoppedPosition;
+        final int replaySessionId = (int)aeronArchive.startReplay(
+            recordingId, indexStoppedPosition, length, IPC_CHANNEL, archiveReplayStream);
+        final String replayChannel = ChannelUri.addSessionId(IPC_CHANNEL, replaySessionId);
+        try (Subscription subscription = aeron.addSubscription(replayChannel, archiveReplayStream))
+        {
+            Image replayImage;
+            while ((replayImage = subscription.imageBySessionId(replaySessionId)) == null)
+            {
+                idle(idleStrategy);
+                aeronArchive.checkForErrorResponse();
+            }
+            idleStrategy.reset();
+
+            long indexedPosition = indexStoppedPosition;
+            while (indexedPosition < recordingStoppedPosition && !replayImage.isClosed())
+            {
+                replayImage.poll(indices, LIMIT);
+
+                final long position = replayImage.position();
+                onIndexed(position - indexedPosition);
+                indexedPosition = position;
+
+                idle(idleStrategy);
+            }
+            idleStrategy.reset();
+        }
+    }
+
+    private void onIndexed(final long bytes)
+    {
+        if (bytes <= 0)
+        {
+            return;
+        }
+
+        final long indexed = bytesIndexed.addAndGet(bytes);
+        final long remaining = bytesRemaining.getAndAdd(-bytes) - bytes;
+        final long elapsedTimeInMs = clock.time() - startTimeInMs;
+        estimatedTimeRemainingInMs.setOrdered(remaining * elapsedTimeInMs / indexed);
+    }
+
+    private void idle(final IdleStrategy idleStrategy)
+    {
+        if (aeronInvoker != null)
+        {
+            aeronInvoker.invoke();
+        }
+
+        idleStrategy.idle();
+    }
+
+    private void join(final List<Thread> threads)
+    {
+        boolean interrupted = false;
+        for (final Thread thread : threads)
+        {
+            while (thread.isAlive())
+            {
+                try
+                {
+                    thread.join();
+                }
+                catch (final InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class CatchupIndices implements FragmentHandler
+    {
+        private final List<Index> indices = new ArrayList<>();
+        private final List<Gap> gaps;
+
+        private CatchupIndices(final List<Gap> gaps)
+        {
+            this.gaps = gaps;
+        }
+
+        void add(final Index index)
+        {
+            indices.add(index);
+        }
+
+        String name()
+        {
+            return indices.stream().map(Index::getName).collect(Collectors.joining(","));
+        }
+
+        public void onFragment(final DirectBuffer buffer, final int offset, final int length, final Header header)
+        {
+            final List<Index> indices = this.indices;
+            for (int i = 0, size = indices.size(); i < size; i++)
+            {
+                indices.get(i).onFragment(buffer, offset, length, header);
+            }
+        }
+    }
+
+    private static final class Gap
+    {
+        private final long recordingId;
+        private final long indexStoppedPosition;
+        private final long recordingStoppedPosition;
+
+        private Gap(
+            final long recordingId,
+            final long indexStoppedPosition,
+            final long recordingStoppedPosition)
+        {
+            this.recordingId = recordingId;
+            this.indexStoppedPosition = indexStoppedPosition;
+            this.recordingStoppedPosition = recordingStoppedPosition;
+        }
+
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+
+            if (o == null || getClass() != o.getClass())
+            {
+                return false;
+            }
+
+            final Gap gap = (Gap)o;
+            return recordingId == gap.recordingId &&
+                indexStoppedPosition == gap.indexStoppedPosition &&
+                recordingStoppedPosition == gap.recordingStoppedPosition;
+        }
+
+        public int hashCode()
+        {
+            int result = Long.hashCode(recordingId);
+            result = 31 * result + Long.hashCode(indexStoppedPosition);
+            result = 31 * result + Long.hashCode(recordingStoppedPosition);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.BitUtil;
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.EpochClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
+import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordEncoder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.*;
+
+/**
+ * Converts the ring buffer replay index files from before the index was segmented into segments, so that the
+ * messages that they index can still be resent after upgrading.
+ *
+ * The records that are still in a session's ring are copied in order into segments from 0 onwards, rolling onto a
+ * new segment whenever one fills. Every segment but the last is sealed at the time of the conversion, so retention
+ * policies that keep segments for a period keep them for that period from the upgrade. The legacy file is deleted
+ * once its session's head has been updated, so a conversion that's interrupted is redone from the start the next
+ * time that the engine starts. Files that can't be converted are renamed with a {@link #UNCONVERTED_SUFFIX} suffix
+ * and reported to the error handler, losing the ability to resend the messages that they index.
+ */
+final class LegacyReplayIndexConverter
+{
+    static final String UNCONVERTED_SUFFIX = ".unconverted";
+
+    private final MessageHeaderEncoder indexHeaderEncoder = new MessageHeaderEncoder();
+    private final ReplayIndexRecordEncoder replayIndexRecord = new ReplayIndexRecordEncoder();
+    private final AtomicBuffer headBuffer = new UnsafeBuffer(0, 0);
+    private final AtomicBuffer segmentBuffer = new UnsafeBuffer(0, 0);
+    private final AtomicBuffer legacyBuffer = new UnsafeBuffer(0, 0);
+
+    private final ReplayIndexStore store;
+    private final EpochClock clock;
+    private final ErrorHandler errorHandler;
+
+    LegacyReplayIndexConverter(final ReplayIndexStore store, final EpochClock clock, final ErrorHandler errorHandler)
+    {
+        this.store = store;
+        this.clock = clock;
+        this.errorHandler = errorHandler;
+    }
+
+    void convert(final String logFileDir, final int streamId)
+    {
+        final File[] legacyFiles = new File(logFileDir).listFiles(
+            (dir, name) -> isLegacyReplayIndexFile(name, streamId));
+        if (legacyFiles == null)
+        {
+            return;
+        }
+
+        for (final File legacyFile : legacyFiles)
+        {
+            final long fixSessionId = legacyReplayIndexFixSessionId(legacyFile.getName());
+            final ByteBuffer legacyByteBuffer = LoggerUtil.mapExistingFile(legacyFile);
+            final boolean converted;
+            try
+            {
+                legacyBuffer.wrap(legacyByteBuffer);
+                converted = convert(fixSessionId, streamId, legacyFile);
+            }
+            finally
+            {
+                legacyBuffer.wrap(0, 0);
+                IoUtil.unmap(legacyByteBuffer);
+            }
+
+            if (converted)
+            {
+                if (!legacyFile.delete() && legacyFile.exists())
+                {
+                    errorHandler.onError(new IllegalStateException(
+                        "Unable to delete converted legacy replay index file: " + legacyFile));
+                }
+            }
+            else
+            {
+                final File unconvertedFile = new File(legacyFile.getPath() + UNCONVERTED_SUFFIX);
+                if (!legacyFile.renameTo(unconvertedFile))
+                {
+                    errorHandler.onError(new IllegalStateException(
+                        "Unable to rename unconverted legacy replay index file: " + legacyFile));
+                }
+            }
+        }
+    }
+
+    private boolean convert(final long fixSessionId, final int streamId, final File legacyFile)
+    {
+        final int capacity = legacyBuffer.capacity() - LEGACY_INITIAL_RECORD_OFFSET;
+        if (capacity < RECORD_LENGTH || !BitUtil.isPowerOfTwo(capacity))
+        {
+            errorHandler.onError(new IllegalStateException(String.format(
+                "Unable to convert legacy replay index file %s for stream %d, its capacity of %d isn't valid",
+                legacyFile,
+                streamId,
+                capacity)));
+            return false;
+        }
+
+        if (!store.wrapHead(fixSessionId, headBuffer))
+        {
+            onNoSpace(fixSessionId, streamId, legacyFile);
+            return false;
+        }
+
+        try
+        {
+            // Records that a write in progress when the engine stopped could have overwritten are dropped.
+            final long endChangePosition = endChangeVolatile(legacyBuffer);
+            final long beginChangePosition = Math.max(beginChange(legacyBuffer), endChangePosition);
+            long changePosition = Math.max(0, beginChangePosition - capacity);
+
+            long segment = 0;
+            if (!wrapNewSegment(fixSessionId, segment))
+            {
+                onNoSpace(fixSessionId, streamId, legacyFile);
+                return false;
+            }
+
+            try
+            {
+                int recordCapacity = recordCapacity(segmentBuffer.capacity());
+                for (; changePosition < endChangePosition; changePosition += RECORD_LENGTH)
+                {
+                    long segmentPosition = beginChange(segmentBuffer);
+                    if (segmentPosition + RECORD_LENGTH > recordCapacity)
+                    {
+                        sealedTimeOrdered(segmentBuffer, clock.time());
+                        store.releaseSegment(segmentBuffer);
+
+                        segment++;
+                        if (!wrapNewSegment(fixSessionId, segment))
+                        {
+                            onNoSpace(fixSessionId, streamId, legacyFile);
+                            return false;
+                        }
+                        recordCapacity = recordCapacity(segmentBuffer.capacity());
+                        segmentPosition = 0;
+                    }
+
+                    segmentBuffer.putBytes(
+                        offset(segmentPosition), legacyBuffer, legacyOffset(changePosition, capacity), RECORD_LENGTH);
+                    beginChangeOrdered(segmentBuffer, segmentPosition + RECORD_LENGTH);
+                    endChangeOrdered(segmentBuffer, segmentPosition + RECORD_LENGTH);
+                }
+            }
+            finally
+            {
+                store.releaseSegment(segmentBuffer);
+            }
+
+            firstSegmentOrdered(headBuffer, 0);
+            lastSegmentOrdered(headBuffer, segment);
+
+            return true;
+        }
+        finally
+        {
+            store.releaseHead(headBuffer);
+        }
+    }
+
+    private boolean wrapNewSegment(final long fixSessionId, final long segment)
+    {
+        if (!store.wrapSegment(fixSessionId, segment, segmentBuffer))
+        {
+            return false;
+        }
+
+        indexHeaderEncoder
+            .wrap(segmentBuffer, 0)
+            .blockLength(replayIndexRecord.sbeBlockLength())
+            .templateId(replayIndexRecord.sbeTemplateId())
+            .schemaId(replayIndexRecord.sbeSchemaId())
+            .version(replayIndexRecord.sbeSchemaVersion());
+
+        beginChangeOrdered(segmentBuffer, 0);
+        endChangeOrdered(segmentBuffer, 0);
+        sealedTimeOrdered(segmentBuffer, NOT_SEALED);
+
+        return true;
+    }
+
+    private void onNoSpace(final long fixSessionId, final int streamId, final File legacyFile)
+    {
+        errorHandler.onError(new IllegalStateException(String.format(
+            "Unable to convert legacy replay index file %s, no space in the replay index for session %d on stream %d",
+            legacyFile,
+            fixSessionId,
+            streamId)));
+    }
+}
@@ -22,16 +22,17 @@ import org.agrona.ErrorHandler;
 import org.agrona.IoUtil;
 import org.agrona.collections.Long2ObjectCache;
 import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.EpochClock;
 import org.agrona.concurrent.UnsafeBuffer;
 import uk.co.real_logic.artio.engine.SequenceNumberExtractor;
+import uk.co.real_logic.artio.engine.framer.MessageTypeExtractor;
 import uk.co.real_logic.artio.messages.FixMessageDecoder;
 import uk.co.real_logic.artio.messages.FixMessageEncoder;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
+import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordDecoder;
 import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordEncoder;
 
-import java.io.File;
-import java.nio.ByteBuffer;
 import java.util.function.LongFunction;
 
 import static io.aeron.logbuffer.FrameDescriptor.*;
@@ -45,12 +46,16 @@ import static uk.co.real_logic.artio.messages.MessageStatus.OK;
  *
  * Written Positions are stored in a separate file at {@link ReplayIndexDescriptor#replayPositionPath(String, int)}.
  *
- * Buffer Consists of:
+ * Each session's index is a chain of segments that are rolled as they fill, see {@link ReplayIndexDescriptor} for
+ * their formats. Only a session's head and the segment being written to are used, so the disk and memory used by a
+ * session track its traffic. Old segments are deleted according to a {@link ReplayIndexRetentionPolicy}. Heads and
+ * segments are kept in a {@link ReplayIndexStore}.
  *
- * MessageHeader
- * Head position counter
- * Tail position counter
- * Multiple ReplayIndexRecord entries
+ * Messages that an {@link ArchivingPolicy} doesn't keep aren't indexed, so they're gap filled over on replay. Only
+ * outbound messages get this far, inbound ones are kept off the recorded stream by the Framer.
+ *
+ * Replay index files from before the index was segmented are converted into segments when it's created, see
+ * {@link LegacyReplayIndexConverter}.
  */
 public class ReplayIndex implements Index
 {
@@ -59,6 +64,8 @@ public class ReplayIndex implements Index
     private final FixMessageDecoder messageFrame = new FixMessageDecoder();
     private final ReplayIndexRecordEncoder replayIndexRecord = new ReplayIndexRecordEncoder();
     private final MessageHeaderEncoder indexHeaderEncoder = new MessageHeaderEncoder();
+    private final MessageHeaderDecoder indexHeaderDecoder = new MessageHeaderDecoder();
+    private final ReplayIndexRecordDecoder replayIndexRecordDecoder = new ReplayIndexRecordDecoder();
 
     private final IndexedPositionWriter positionWriter;
     private final IndexedPositionReader positionReader;
@@ -66,43 +73,51 @@ public class ReplayIndex implements Index
 
     private final Long2ObjectCache<SessionIndex> fixSessionIdToIndex;
 
-    private final String logFileDir;
     private final int requiredStreamId;
-    private final int indexFileSize;
-    private final BufferFactory bufferFactory;
+    private final ErrorHandler errorHandler;
+    private final ReplayIndexStore store;
     private final AtomicBuffer positionBuffer;
     private final RecordingIdLookup recordingIdLookup;
+    private final ReplayIndexRetentionPolicy retentionPolicy;
+    private final ArchivingPolicy archivingPolicy;
+    private final EpochClock clock;
 
     public ReplayIndex(
         final String logFileDir,
         final int requiredStreamId,
-        final int indexFileSize,
         final int cacheNumSets,
         final int cacheSetSize,
-        final BufferFactory bufferFactory,
+        final ReplayIndexStore store,
         final AtomicBuffer positionBuffer,
         final ErrorHandler errorHandler,
-        final RecordingIdLookup recordingIdLookup)
+        final RecordingIdLookup recordingIdLookup,
+        final ReplayIndexRetentionPolicy retentionPolicy,
+        final ArchivingPolicy archivingPolicy,
+        final EpochClock clock)
     {
-        this.logFileDir = logFileDir;
         this.requiredStreamId = requiredStreamId;
-        this.indexFileSize = indexFileSize;
-        this.bufferFactory = bufferFactory;
+        this.errorHandler = errorHandler;
+        this.store = store;
         this.positionBuffer = positionBuffer;
         this.recordingIdLookup = recordingIdLookup;
+        this.retentionPolicy = retentionPolicy;
+        this.archivingPolicy = archivingPolicy;
+        this.clock = clock;
 
         sequenceNumberExtractor = new SequenceNumberExtractor(errorHandler);
-        checkIndexFileSize(indexFileSize);
         fixSessionIdToIndex = new Long2ObjectCache<>(cacheNumSets, cacheSetSize, SessionIndex::close);
         final String replayPositionPath = replayPositionPath(logFileDir, requiredStreamId);
         positionWriter = new IndexedPositionWriter(
             positionBuffer, errorHandler, 0, replayPositionPath);
         positionReader = new IndexedPositionReader(positionBuffer);
+
+        new LegacyReplayIndexConverter(store, clock, errorHandler).convert(logFileDir, requiredStreamId);
     }
 
     private long continuedFixSessionId;
     private int continuedSequenceNumber;
     private int continuedSequenceIndex;
+    private boolean continuedArchived;
 
     public void onFragment(
         final DirectBuffer srcBuffer,
@@ -123,6 +138,8 @@ public class ReplayIndex implements Index
         final boolean beginMessage = (flags & BEGIN_FRAG_FLAG) == BEGIN_FRAG_FLAG;
         if ((flags & UNFRAGMENTED) == UNFRAGMENTED || beginMessage)
         {
+            continuedArchived = false;
+
             int offset = srcOffset;
             frameHeaderDecoder.wrap(srcBuffer, offset);
             if (frameHeaderDecoder.templateId() == FixMessageEncoder.TEMPLATE_ID)
@@ -140,10 +157,11 @@ public class ReplayIndex implements Index
                         srcBuffer, offset, messageFrame.bodyLength());
                     final int sequenceIndex = messageFrame.sequenceIndex();
 
-                    if (sequenceNumber != NO_SEQUENCE_NUMBER)
+                    if (sequenceNumber != NO_SEQUENCE_NUMBER && isArchived(fixSessionId))
                     {
                         if (beginMessage)
                         {
+                            continuedArchived = true;
                             continuedFixSessionId = fixSessionId;
                             continuedSequenceNumber = sequenceNumber;
                             continuedSequenceIndex = sequenceIndex;
@@ -156,7 +174,7 @@ public class ReplayIndex implements Index
                 }
             }
         }
-        else
+        else if (continuedArchived)
         {
             fixSessionIdToIndex
                 .computeIfAbsent(continuedFixSessionId, newSessionIndex)
@@ -169,10 +187,17 @@ public class ReplayIndex implements Index
         positionWriter.updateChecksums();
     }
 
+    private boolean isArchived(final long fixSessionId)
+    {
+        return archivingPolicy == null ||
+            archivingPolicy.shouldArchive(fixSessionId, MessageTypeExtractor.getMessageType(messageFrame));
+    }
+
     public void close()
     {
         positionWriter.close();
         fixSessionIdToIndex.clear();
+        store.close();
         IoUtil.unmap(positionBuffer.byteBuffer());
     }
 
@@ -183,32 +208,49 @@ public class ReplayIndex implements Index
 
     private final class SessionIndex implements AutoCloseable
     {
-        private final ByteBuffer wrappedBuffer;
-        private final AtomicBuffer buffer;
-        private final int recordCapacity;
+        private final long fixSessionId;
+        private final AtomicBuffer headBuffer = new UnsafeBuffer(0, 0);
+        private final AtomicBuffer oldSegmentBuffer = new UnsafeBuffer(0, 0);
+        private final boolean hasHead;
+
+        private AtomicBuffer buffer = new UnsafeBuffer(0, 0);
+        private AtomicBuffer nextBuffer = new UnsafeBuffer(0, 0);
+        private int recordCapacity;
+        private long segment;
+        private boolean hasSegment;
+        private boolean reportedNoSpace;
 
         SessionIndex(final long fixSessionId)
         {
-            final File logFile = replayIndexFile(logFileDir, fixSessionId, requiredStreamId);
-            final boolean exists = logFile.exists();
-            this.wrappedBuffer = bufferFactory.map(logFile, indexFileSize);
-            this.buffer = new UnsafeBuffer(wrappedBuffer);
+            this.fixSessionId = fixSessionId;
 
+            hasHead = store.wrapHead(fixSessionId, headBuffer);
+            if (!hasHead)
+            {
+                errorHandler.onError(new IllegalStateException(
+                    "No space in the replay index for session " + fixSessionId + " on stream " + requiredStreamId));
+                return;
+            }
+
+            segment = lastSegmentVolatile(headBuffer);
+            hasSegment = store.wrapSegment(fixSessionId, segment, buffer);
+            if (!hasSegment)
+            {
+                onNoSpace(segment);
+                return;
+            }
             recordCapacity = recordCapacity(buffer.capacity());
-            if (!exists)
+
+            indexHeaderDecoder.wrap(buffer, 0);
+            if (indexHeaderDecoder.blockLength() == 0)
             {
-                indexHeaderEncoder
-                    .wrap(buffer, 0)
-                    .blockLength(replayIndexRecord.sbeBlockLength())
-                    .templateId(replayIndexRecord.sbeTemplateId())
-                    .schemaId(replayIndexRecord.sbeSchemaId())
-                    .version(replayIndexRecord.sbeSchemaVersion());
+                writeSegmentHeader(buffer);
             }
             else
             {
-                // Reset the positions in order to avoid wraps at the start.
-                final long resetPosition = beginChange(buffer);
-                endChangeOrdered(buffer, resetPosition);
+                // Reset the positions in order to ignore a record that was being written when the engine stopped.
+                final long resetPosition = endChangeVolatile(buffer);
+                beginChangeOrdered(buffer, resetPosition);
             }
         }
 
@@ -219,7 +261,21 @@ public class ReplayIndex implements Index
             final int sequenceIndex,
             final Header header)
         {
-            final long beginChangePosition = beginChange(buffer);
+            if (!hasSegment)
+            {
+                return;
+            }
+
+            long beginChangePosition = beginChange(buffer);
+            if (beginChangePosition + RECORD_LENGTH > recordCapacity)
+            {
+                if (!roll(sequenceIndex))
+                {
+                    return;
+                }
+                beginChangePosition = 0;
+            }
+
             final long changePosition = beginChangePosition + RECORD_LENGTH;
             final int aeronSessionId = header.sessionId();
             final long recordingId = recordingIdLookup.getRecordingId(aeronSessionId);
@@ -228,10 +284,8 @@ public class ReplayIndex implements Index
             beginChangeOrdered(buffer, changePosition);
             UNSAFE.storeFence();
 
-            final int offset = offset(beginChangePosition, recordCapacity);
-
             replayIndexRecord
-                .wrap(buffer, offset)
+                .wrap(buffer, offset(beginChangePosition))
                 .position(beginPosition)
                 .sequenceNumber(sequenceNumber)
                 .sequenceIndex(sequenceIndex)
@@ -241,9 +295,123 @@ public class ReplayIndex implements Index
             endChangeOrdered(buffer, changePosition);
         }
 
+        private boolean roll(final int currentSequenceIndex)
+        {
+            final long nextSegment = segment + 1;
+
+            // Deleting old segments first frees up space for the next segment in a shared store.
+            applyRetentionPolicy(nextSegment, currentSequenceIndex);
+
+            if (!store.wrapSegment(fixSessionId, nextSegment, nextBuffer))
+            {
+                if (!reportedNoSpace)
+                {
+                    reportedNoSpace = true;
+                    onNoSpace(nextSegment);
+                }
+                return false;
+            }
+            reportedNoSpace = false;
+
+            writeSegmentHeader(nextBuffer);
+            sealedTimeOrdered(buffer, clock.time());
+            store.releaseSegment(buffer);
+
+            final AtomicBuffer sealedBuffer = buffer;
+            buffer = nextBuffer;
+            nextBuffer = sealedBuffer;
+            recordCapacity = recordCapacity(buffer.capacity());
+            segment = nextSegment;
+
+            // The segment is fully written before readers are told about it.
+            lastSegmentOrdered(headBuffer, segment);
+
+            return true;
+        }
+
+        private void applyRetentionPolicy(final long nextSegment, final int currentSequenceIndex)
+        {
+            // The segment being rolled off is always kept, as it's the only one that hasn't been sealed.
+            long firstSegment = firstSegmentVolatile(headBuffer);
+            while (firstSegment < segment && !shouldRetain(firstSegment, nextSegment, currentSequenceIndex))
+            {
+                // Readers stop looking at the segment before it's deleted.
+                final long deletedSegment = firstSegment;
+                firstSegment++;
+                firstSegmentOrdered(headBuffer, firstSegment);
+                store.deleteSegment(fixSessionId, deletedSegment);
+            }
+        }
+
+        private boolean shouldRetain(final long oldSegment, final long nextSegment, final int currentSequenceIndex)
+        {
+            if (!store.wrapSegment(fixSessionId, oldSegment, oldSegmentBuffer))
+            {
+                return false;
+            }
+
+            try
+            {
+                final long segmentEnd = endChangeVolatile(oldSegmentBuffer);
+                if (segmentEnd == 0)
+                {
+                    return false;
+                }
+
+                replayIndexRecordDecoder.wrap(
+                    oldSegmentBuffer,
+                    offset(segmentEnd - RECORD_LENGTH),
+                    replayIndexRecord.sbeBlockLength(),
+                    replayIndexRecord.sbeSchemaVersion());
+
+                final int newerSegmentCount = (int)(nextSegment - oldSegment);
+                return retentionPolicy.shouldRetain(
+                    newerSegmentCount,
+                    sealedTime(oldSegmentBuffer),
+                    replayIndexRecordDecoder.sequenceIndex(),
+                    currentSequenceIndex);
+            }
+            finally
+            {
+                store.releaseSegment(oldSegmentBuffer);
+            }
+        }
+
+        private void onNoSpace(final long segment)
+        {
+            errorHandler.onError(new IllegalStateException(String.format(
+                "No space in the replay index for segment %d of session %d on stream %d",
+                segment,
+                fixSessionId,
+                requiredStreamId)));
+        }
+
+        private void writeSegmentHeader(final AtomicBuffer buffer)
+        {
+            indexHeaderEncoder
+                .wrap(buffer, 0)
+                .blockLength(replayIndexRecord.sbeBlockLength())
+                .templateId(replayIndexRecord.sbeTemplateId())
+                .schemaId(replayIndexRecord.sbeSchemaId())
+                .version(replayIndexRecord.sbeSchemaVersion());
+
+            // A segment is reused if the engine stopped after creating it but before recording it in the head.
+            beginChangeOrdered(buffer, 0);
+            endChangeOrdered(buffer, 0);
+            sealedTimeOrdered(buffer, NOT_SEALED);
+        }
+
         public void close()
         {
-            IoUtil.unmap(wrappedBuffer);
+            if (hasSegment)
+            {
+                store.releaseSegment(buffer);
+            }
+
+            if (hasHead)
+            {
+                store.releaseHead(headBuffer);
+            }
         }
     }
 }
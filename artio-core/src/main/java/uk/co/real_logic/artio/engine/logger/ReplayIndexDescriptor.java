@@ -22,15 +22,52 @@ import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
 import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordDecoder;
 
 import java.io.File;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Describes the files of the replay index.
+ *
+ * Each session's index is a chain of segment files, numbered from 0, that are written to in order and rolled as they
+ * fill. Each segment consists of:
+ *
+ * MessageHeader
+ * Begin change position
+ * End change position
+ * Sealed timestamp
+ * Multiple ReplayIndexRecord entries, that are never overwritten
+ *
+ * A session's head file, at {@link #replayIndexHeadFile(String, long, int)}, holds the number of the oldest retained
+ * segment and the number of the segment currently being written to.
+ *
+ * Before the index was segmented each session's index was a single ring buffer file, at
+ * {@link #legacyReplayIndexFile(String, long, int)}, that consisted of the MessageHeader, the begin and end change
+ * positions and the ReplayIndexRecord entries, with no sealed timestamp. {@link ReplayIndex} converts these files
+ * into segments when it starts, see {@link LegacyReplayIndexConverter}.
+ *
+ * By default each head and segment is a file of its own, see {@link FileReplayIndexStore}, but they can all be
+ * stored in one file at {@link #replayIndexStoreFile(String, int)}, see {@link SharedReplayIndexStore}.
+ */
 public final class ReplayIndexDescriptor
 {
     static final int REPLAY_POSITION_BUFFER_SIZE = 4 * 1024;
 
+    private static final Pattern LEGACY_REPLAY_INDEX_FILE = Pattern.compile("replay-index-(-?\\d+)-(\\d+)");
+
     private static final int BEGIN_CHANGE_OFFSET = MessageHeaderEncoder.ENCODED_LENGTH;
     private static final int END_CHANGE_OFFSET = BEGIN_CHANGE_OFFSET + BitUtil.SIZE_OF_LONG;
+    private static final int SEALED_TIME_OFFSET = END_CHANGE_OFFSET + BitUtil.SIZE_OF_LONG;
 
-    public static final int INITIAL_RECORD_OFFSET = END_CHANGE_OFFSET + BitUtil.SIZE_OF_LONG;
+    public static final int INITIAL_RECORD_OFFSET = SEALED_TIME_OFFSET + BitUtil.SIZE_OF_LONG;
+
+    static final int LEGACY_INITIAL_RECORD_OFFSET = SEALED_TIME_OFFSET;
+
+    static final long NOT_SEALED = 0;
+
+    private static final int FIRST_SEGMENT_OFFSET = 0;
+    private static final int LAST_SEGMENT_OFFSET = FIRST_SEGMENT_OFFSET + BitUtil.SIZE_OF_LONG;
+
+    static final int HEAD_FILE_SIZE = LAST_SEGMENT_OFFSET + BitUtil.SIZE_OF_LONG;
 
     static final int RECORD_LENGTH = 32;
     static
@@ -42,11 +79,51 @@ public final class ReplayIndexDescriptor
         }
     }
 
-    static File replayIndexFile(final String logFileDir, final long fixSessionId, final int streamId)
+    static File replayIndexHeadFile(final String logFileDir, final long fixSessionId, final int streamId)
+    {
+        return new File(String.format(
+            logFileDir + File.separator + "replay-index-head-%d-%d", fixSessionId, streamId));
+    }
+
+    static File legacyReplayIndexFile(final String logFileDir, final long fixSessionId, final int streamId)
     {
         return new File(String.format(logFileDir + File.separator + "replay-index-%d-%d", fixSessionId, streamId));
     }
 
+    static boolean isLegacyReplayIndexFile(final String fileName, final int streamId)
+    {
+        final Matcher matcher = LEGACY_REPLAY_INDEX_FILE.matcher(fileName);
+        return matcher.matches() && matcher.group(2).equals(String.valueOf(streamId));
+    }
+
+    static long legacyReplayIndexFixSessionId(final String fileName)
+    {
+        final Matcher matcher = LEGACY_REPLAY_INDEX_FILE.matcher(fileName);
+        if (!matcher.matches())
+        {
+            throw new IllegalArgumentException("Not a legacy replay index file: " + fileName);
+        }
+
+        return Long.parseLong(matcher.group(1));
+    }
+
+    static int legacyOffset(final long changePosition, final int capacity)
+    {
+        return LEGACY_INITIAL_RECORD_OFFSET + ((int)changePosition & (capacity - 1));
+    }
+
+    static File replayIndexSegmentFile(
+        final String logFileDir, final long fixSessionId, final int streamId, final long segment)
+    {
+        return new File(String.format(
+            logFileDir + File.separator + "replay-index-%d-%d-%d", fixSessionId, streamId, segment));
+    }
+
+    public static File replayIndexStoreFile(final String logFileDir, final int streamId)
+    {
+        return new File(logFileDir + File.separator + "replay-index-store-" + streamId);
+    }
+
     public static UnsafeBuffer replayPositionBuffer(final String logFileDir, final int streamId)
     {
         final String pathname = replayPositionPath(logFileDir, streamId);
@@ -73,14 +150,39 @@ public final class ReplayIndexDescriptor
         buffer.putLongOrdered(BEGIN_CHANGE_OFFSET, changePosition);
     }
 
-    static long beginChangeVolatile(final AtomicBuffer buffer)
+    static long beginChange(final AtomicBuffer buffer)
     {
-        return buffer.getLongVolatile(BEGIN_CHANGE_OFFSET);
+        return buffer.getLong(BEGIN_CHANGE_OFFSET);
     }
 
-    static long beginChange(final AtomicBuffer buffer)
+    static void sealedTimeOrdered(final AtomicBuffer buffer, final long sealedTimeInMs)
     {
-        return buffer.getLong(BEGIN_CHANGE_OFFSET);
+        buffer.putLongOrdered(SEALED_TIME_OFFSET, sealedTimeInMs);
+    }
+
+    static long sealedTime(final AtomicBuffer buffer)
+    {
+        return buffer.getLong(SEALED_TIME_OFFSET);
+    }
+
+    static void firstSegmentOrdered(final AtomicBuffer headBuffer, final long segment)
+    {
+        headBuffer.putLongOrdered(FIRST_SEGMENT_OFFSET, segment);
+    }
+
+    static long firstSegmentVolatile(final AtomicBuffer headBuffer)
+    {
+        return headBuffer.getLongVolatile(FIRST_SEGMENT_OFFSET);
+    }
+
+    static void lastSegmentOrdered(final AtomicBuffer headBuffer, final long segment)
+    {
+        headBuffer.putLongOrdered(LAST_SEGMENT_OFFSET, segment);
+    }
+
+    static long lastSegmentVolatile(final AtomicBuffer headBuffer)
+    {
+        return headBuffer.getLongVolatile(LAST_SEGMENT_OFFSET);
     }
 
     static int recordCapacity(final int indexFileSize)
@@ -88,18 +190,18 @@ public final class ReplayIndexDescriptor
         return indexFileSize - INITIAL_RECORD_OFFSET;
     }
 
-    static int offset(final long changePosition, final int capacity)
+    static int offset(final long changePosition)
     {
-        return INITIAL_RECORD_OFFSET + ((int)changePosition & (capacity - 1));
+        return INITIAL_RECORD_OFFSET + (int)changePosition;
     }
 
     static void checkIndexFileSize(final int indexFileSize)
     {
         final int recordCapacity = recordCapacity(indexFileSize);
-        if (!BitUtil.isPowerOfTwo(recordCapacity))
+        if (recordCapacity < RECORD_LENGTH)
         {
             throw new IllegalStateException(
-                "IndexFileSize must be a positive power of 2 + INITIAL_RECORD_OFFSET: indexFileSize=" + indexFileSize);
+                "IndexFileSize must have space for at least one record: indexFileSize=" + indexFileSize);
         }
 
         if ((recordCapacity % RECORD_LENGTH) != 0)
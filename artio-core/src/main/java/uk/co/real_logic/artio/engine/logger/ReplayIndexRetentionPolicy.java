@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.concurrent.EpochClock;
+
+/**
+ * Decides which segments of a session's replay index are kept. Messages can only be replayed from segments that are
+ * kept.
+ *
+ * The policy is checked against the oldest segment of a session whenever the session's index rolls onto a new
+ * segment, segments are deleted oldest first until the policy retains one. The segment that's being rolled off is
+ * always kept.
+ */
+@FunctionalInterface
+public interface ReplayIndexRetentionPolicy
+{
+    /**
+     * Decide whether to keep a full segment of a session's replay index.
+     *
+     * @param newerSegmentCount the number of segments of the session that are newer than this one, including the
+     *                          one that's being rolled onto.
+     * @param sealedTimeInMs the time that the segment was filled.
+     * @param lastSequenceIndex the sequence index of the last message in the segment.
+     * @param currentSequenceIndex the sequence index of the message that's being indexed.
+     * @return true to keep the segment, false to delete it.
+     */
+    boolean shouldRetain(
+        int newerSegmentCount, long sealedTimeInMs, int lastSequenceIndex, int currentSequenceIndex);
+
+    default ReplayIndexRetentionPolicy and(final ReplayIndexRetentionPolicy other)
+    {
+        return (newerSegmentCount, sealedTimeInMs, lastSequenceIndex, currentSequenceIndex) ->
+            shouldRetain(newerSegmentCount, sealedTimeInMs, lastSequenceIndex, currentSequenceIndex) &&
+            other.shouldRetain(newerSegmentCount, sealedTimeInMs, lastSequenceIndex, currentSequenceIndex);
+    }
+
+    static ReplayIndexRetentionPolicy retainAll()
+    {
+        return (newerSegmentCount, sealedTimeInMs, lastSequenceIndex, currentSequenceIndex) -> true;
+    }
+
+    /**
+     * Keep up to a number of segments per session, including the one being written to.
+     *
+     * @param segmentCount the maximum number of segments to keep.
+     * @return the policy.
+     */
+    static ReplayIndexRetentionPolicy retainSegments(final int segmentCount)
+    {
+        return (newerSegmentCount, sealedTimeInMs, lastSequenceIndex, currentSequenceIndex) ->
+            newerSegmentCount < segmentCount;
+    }
+
+    /**
+     * Keep segments until they have been full for a period of time.
+     *
+     * @param durationInMs the time to keep a full segment for.
+     * @param clock the clock used to compare against the time that segments were filled.
+     * @return the policy.
+     */
+    static ReplayIndexRetentionPolicy retainFor(final long durationInMs, final EpochClock clock)
+    {
+        return (newerSegmentCount, sealedTimeInMs, lastSequenceIndex, currentSequenceIndex) ->
+            clock.time() - sealedTimeInMs < durationInMs;
+    }
+
+    /**
+     * Keep the segments that hold messages from the latest sequence indices of a session.
+     *
+     * @param sequenceIndexCount the number of sequence indices, including the current one, to keep messages from.
+     * @return the policy.
+     */
+    static ReplayIndexRetentionPolicy retainSequenceIndices(final int sequenceIndexCount)
+    {
+        return (newerSegmentCount, sealedTimeInMs, lastSequenceIndex, currentSequenceIndex) ->
+            currentSequenceIndex - lastSequenceIndex < sequenceIndexCount;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.concurrent.AtomicBuffer;
+
+/**
+ * Stores the heads and segments of the replay index for a stream, see {@link ReplayIndexDescriptor} for their
+ * formats. A store is either used for writing by a {@link ReplayIndex} or for reading by a {@link ReplayQuery}.
+ *
+ * Buffers are wrapped around the head or segment that they refer to, and should be released once they're no longer
+ * used.
+ */
+public interface ReplayIndexStore extends AutoCloseable
+{
+    /**
+     * Wrap a buffer around the head of a session's index. When writing the head is created if it doesn't exist.
+     *
+     * @param fixSessionId the session whose head to wrap.
+     * @param headBuffer the buffer to wrap around the head.
+     * @return true if the buffer was wrapped, false if the session has no head to read.
+     */
+    boolean wrapHead(long fixSessionId, AtomicBuffer headBuffer);
+
+    void releaseHead(AtomicBuffer headBuffer);
+
+    /**
+     * Wrap a buffer around a segment of a session's index. When writing the segment is created if it doesn't exist.
+     *
+     * @param fixSessionId the session whose segment to wrap.
+     * @param segment the number of the segment.
+     * @param segmentBuffer the buffer to wrap around the segment.
+     * @return true if the buffer was wrapped, false if the segment has been deleted or there's no space to create it.
+     */
+    boolean wrapSegment(long fixSessionId, long segment, AtomicBuffer segmentBuffer);
+
+    void releaseSegment(AtomicBuffer segmentBuffer);
+
+    /**
+     * Delete a segment of a session's index, only called when writing and once the segment is no longer part of the
+     * session's head.
+     *
+     * @param fixSessionId the session whose segment to delete.
+     * @param segment the number of the segment.
+     */
+    void deleteSegment(long fixSessionId, long segment);
+
+    void close();
+}
@@ -22,15 +22,12 @@ import org.agrona.CloseHelper;
 import org.agrona.ErrorHandler;
 import org.agrona.IoUtil;
 import org.agrona.collections.Long2ObjectCache;
-import org.agrona.concurrent.IdleStrategy;
 import org.agrona.concurrent.UnsafeBuffer;
 import uk.co.real_logic.artio.DebugLogger;
 import uk.co.real_logic.artio.LogTag;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordDecoder;
 
-import java.nio.ByteBuffer;
-import java.nio.MappedByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.LongFunction;
@@ -54,30 +51,29 @@ public class ReplayQuery implements AutoCloseable
     private final LongFunction<SessionQuery> newSessionQuery = SessionQuery::new;
     private final Long2ObjectCache<SessionQuery> fixSessionToIndex;
     private final String logFileDir;
-    private final ExistingBufferFactory indexBufferFactory;
+    private final ReplayIndexStore store;
     private final int requiredStreamId;
-    private final IdleStrategy idleStrategy;
     private final AeronArchive aeronArchive;
     private final ErrorHandler errorHandler;
     private final int archiveReplayStream;
 
     private Subscription replaySubscription;
+    private UnsafeBuffer positionBuffer;
+    private IndexedPositionReader positionReader;
 
     public ReplayQuery(
         final String logFileDir,
         final int cacheNumSets,
         final int cacheSetSize,
-        final ExistingBufferFactory indexBufferFactory,
+        final ReplayIndexStore store,
         final int requiredStreamId,
-        final IdleStrategy idleStrategy,
         final AeronArchive aeronArchive,
         final ErrorHandler errorHandler,
         final int archiveReplayStream)
     {
         this.logFileDir = logFileDir;
-        this.indexBufferFactory = indexBufferFactory;
+        this.store = store;
         this.requiredStreamId = requiredStreamId;
-        this.idleStrategy = idleStrategy;
         this.aeronArchive = aeronArchive;
         this.errorHandler = errorHandler;
         this.archiveReplayStream = archiveReplayStream;
@@ -110,25 +106,46 @@ public class ReplayQuery implements AutoCloseable
             .query(handler, beginSequenceNumber, beginSequenceIndex, endSequenceNumber, endSequenceIndex, logTag);
     }
 
+    /**
+     * Get the position up to which the replay index has indexed messages from a publication.
+     *
+     * @param aeronSessionId the Aeron session id of the publication.
+     * @return the position up to which the replay index has indexed messages from the publication.
+     */
+    public long indexedPosition(final int aeronSessionId)
+    {
+        if (positionReader == null)
+        {
+            positionBuffer = replayPositionBuffer(logFileDir, requiredStreamId);
+            positionReader = new IndexedPositionReader(positionBuffer);
+        }
+
+        return positionReader.indexedPosition(aeronSessionId);
+    }
+
     public void close()
     {
         fixSessionToIndex.clear();
+        store.close();
 
         CloseHelper.close(replaySubscription);
+
+        if (positionBuffer != null)
+        {
+            IoUtil.unmap(positionBuffer.byteBuffer());
+        }
     }
 
     private final class SessionQuery implements AutoCloseable
     {
-        private final ByteBuffer wrappedBuffer;
         private final long sessionId;
-        private final UnsafeBuffer buffer;
-        private final int capacity;
+        private final UnsafeBuffer headBuffer = new UnsafeBuffer(0, 0);
+        private final UnsafeBuffer segmentBuffer = new UnsafeBuffer(0, 0);
+
+        private boolean hasHead;
 
         SessionQuery(final long sessionId)
         {
-            wrappedBuffer = indexBufferFactory.map(replayIndexFile(logFileDir, sessionId, requiredStreamId));
-            buffer = new UnsafeBuffer(wrappedBuffer);
-            capacity = recordCapacity(buffer.capacity());
             this.sessionId = sessionId;
         }
 
@@ -140,78 +157,109 @@ public class ReplayQuery implements AutoCloseable
             final int endSequenceIndex,
             final LogTag logTag)
         {
-            messageFrameHeader.wrap(buffer, 0);
-
-            final int actingBlockLength = messageFrameHeader.blockLength();
-            final int actingVersion = messageFrameHeader.version();
-            final boolean upToMostRecentMessage = endSequenceNumber == MOST_RECENT_MESSAGE;
-
             // LOOKUP THE RANGE FROM THE INDEX
             // NB: this is a List as we are looking up recordings in the correct order to replay them.
             final List<RecordingRange> ranges = new ArrayList<>();
-            RecordingRange currentRange = null;
 
-            long iteratorPosition = getIteratorPosition();
-            long stopIteratingPosition = iteratorPosition + capacity;
-
-            int lastSequenceNumber = -1;
-            while (iteratorPosition != stopIteratingPosition)
+            // A session that hasn't been indexed yet has no head.
+            if (!hasHead)
             {
-                final long changePosition = endChangeVolatile(buffer);
+                hasHead = store.wrapHead(sessionId, headBuffer);
+            }
 
-                // Lapped by writer
-                if (changePosition > iteratorPosition && (iteratorPosition + capacity) <= beginChangeVolatile(buffer))
+            if (hasHead)
+            {
+                // Retry if a segment was deleted, and so could have been reused, whilst it was being read.
+                while (!lookupRanges(
+                    ranges, beginSequenceNumber, beginSequenceIndex, endSequenceNumber, endSequenceIndex))
                 {
-                    iteratorPosition = changePosition;
-                    stopIteratingPosition = iteratorPosition + capacity;
+                    ranges.clear();
                 }
+            }
 
-                final int offset = offset(iteratorPosition, capacity);
-                indexRecord.wrap(buffer, offset, actingBlockLength, actingVersion);
-                final long beginPosition = indexRecord.position();
-                final int sequenceIndex = indexRecord.sequenceIndex();
-                final int sequenceNumber = indexRecord.sequenceNumber();
-                final long recordingId = indexRecord.recordingId();
-                final int readLength = indexRecord.length();
+            return newReplayOperation(handler, ranges, logTag);
+        }
 
-                UNSAFE.loadFence(); // LoadLoad required so previous loads don't move past version check below.
+        private boolean lookupRanges(
+            final List<RecordingRange> ranges,
+            final int beginSequenceNumber,
+            final int beginSequenceIndex,
+            final int endSequenceNumber,
+            final int endSequenceIndex)
+        {
+            final boolean upToMostRecentMessage = endSequenceNumber == MOST_RECENT_MESSAGE;
+            RecordingRange currentRange = null;
+            long segment = searchStartSegment(beginSequenceNumber, beginSequenceIndex);
+            boolean searchWithinSegment = true;
+            int lastSequenceNumber = -1;
 
-                // if the block was read atomically with no updates
-                if (changePosition == beginChangeVolatile(buffer))
+            scan:
+            while (segment <= lastSegmentVolatile(headBuffer))
+            {
+                if (!wrapSegment(segment))
                 {
-                    idleStrategy.reset();
-
-                    final boolean afterEnd = !upToMostRecentMessage && (sequenceIndex > endSequenceIndex ||
-                        (sequenceIndex == endSequenceIndex && sequenceNumber > endSequenceNumber));
-                    if (beginPosition == 0 || afterEnd)
-                    {
-                        break;
-                    }
+                    // Deleted by the retention policy whilst querying, carry on from the oldest retained segment.
+                    segment = Math.max(segment + 1, firstSegmentVolatile(headBuffer));
+                    continue;
+                }
 
-                    final boolean withinQueryRange = sequenceIndex > beginSequenceIndex ||
-                        (sequenceIndex == beginSequenceIndex && sequenceNumber >= beginSequenceNumber);
-                    if (withinQueryRange)
-                    {
-                        currentRange = addRange(
-                            ranges,
-                            currentRange,
-                            lastSequenceNumber,
-                            beginPosition,
-                            sequenceNumber,
-                            recordingId,
-                            readLength);
-                        lastSequenceNumber = sequenceNumber;
-                        iteratorPosition += RECORD_LENGTH;
-                    }
-                    else // before start of query
+                try
+                {
+                    messageFrameHeader.wrap(segmentBuffer, 0);
+                    final int actingBlockLength = messageFrameHeader.blockLength();
+                    final int actingVersion = messageFrameHeader.version();
+
+                    // Records before the end change position are never modified, unless the segment gets deleted.
+                    final long segmentEnd = Math.min(
+                        endChangeVolatile(segmentBuffer), recordCapacity(segmentBuffer.capacity()));
+                    long iteratorPosition = searchWithinSegment ? searchStartPosition(
+                        segmentEnd, beginSequenceNumber, beginSequenceIndex, actingBlockLength, actingVersion) : 0;
+                    searchWithinSegment = false;
+
+                    for (; iteratorPosition < segmentEnd; iteratorPosition += RECORD_LENGTH)
                     {
-                        iteratorPosition = skipToStart(beginSequenceNumber, iteratorPosition, sequenceNumber);
+                        indexRecord.wrap(segmentBuffer, offset(iteratorPosition), actingBlockLength, actingVersion);
+                        final long beginPosition = indexRecord.position();
+                        final int sequenceIndex = indexRecord.sequenceIndex();
+                        final int sequenceNumber = indexRecord.sequenceNumber();
+                        final long recordingId = indexRecord.recordingId();
+                        final int readLength = indexRecord.length();
+
+                        final boolean afterEnd = !upToMostRecentMessage && (sequenceIndex > endSequenceIndex ||
+                            (sequenceIndex == endSequenceIndex && sequenceNumber > endSequenceNumber));
+                        if (afterEnd)
+                        {
+                            break scan;
+                        }
+
+                        final boolean withinQueryRange = sequenceIndex > beginSequenceIndex ||
+                            (sequenceIndex == beginSequenceIndex && sequenceNumber >= beginSequenceNumber);
+                        if (withinQueryRange)
+                        {
+                            currentRange = addRange(
+                                ranges,
+                                currentRange,
+                                lastSequenceNumber,
+                                beginPosition,
+                                sequenceNumber,
+                                recordingId,
+                                readLength);
+                            lastSequenceNumber = sequenceNumber;
+                        }
                     }
                 }
-                else
+                finally
+                {
+                    store.releaseSegment(segmentBuffer);
+                }
+
+                UNSAFE.loadFence(); // LoadLoad required so the reads of the segment don't move past the check below.
+                if (segment < firstSegmentVolatile(headBuffer))
                 {
-                    idleStrategy.idle();
+                    return false;
                 }
+
+                segment++;
             }
 
             if (currentRange != null)
@@ -219,28 +267,121 @@ public class ReplayQuery implements AutoCloseable
                 ranges.add(currentRange);
             }
 
-            return newReplayOperation(handler, ranges, logTag);
+            return true;
         }
 
-        private long skipToStart(final int beginSequenceNumber, final long iteratorPosition, final int sequenceNumber)
+        /**
+         * Binary search for the newest segment whose first record is at or before the start of the query. Records
+         * are written in sequence index then sequence number order so the search works across sequence index
+         * boundaries.
+         */
+        private long searchStartSegment(final int beginSequenceNumber, final int beginSequenceIndex)
         {
-            if (sequenceNumber < beginSequenceNumber)
+            long low = firstSegmentVolatile(headBuffer);
+            long high = lastSegmentVolatile(headBuffer);
+
+            while (low < high)
             {
-                // Pre: sequenceIndex <= beginSequenceIndex
-                return jumpPosition(beginSequenceNumber, sequenceNumber, iteratorPosition);
+                final long middle = (low + high + 1) >>> 1;
+                if (startsAtOrBefore(middle, beginSequenceNumber, beginSequenceIndex))
+                {
+                    low = middle;
+                }
+                else
+                {
+                    high = middle - 1;
+                }
             }
-            else
+
+            return low;
+        }
+
+        private boolean startsAtOrBefore(
+            final long segment, final int beginSequenceNumber, final int beginSequenceIndex)
+        {
+            if (!wrapSegment(segment))
+            {
+                // Only old segments get deleted.
+                return true;
+            }
+
+            try
+            {
+                if (endChangeVolatile(segmentBuffer) == 0)
+                {
+                    return false;
+                }
+
+                messageFrameHeader.wrap(segmentBuffer, 0);
+                indexRecord.wrap(
+                    segmentBuffer, offset(0), messageFrameHeader.blockLength(), messageFrameHeader.version());
+                final int sequenceIndex = indexRecord.sequenceIndex();
+                final int sequenceNumber = indexRecord.sequenceNumber();
+
+                return sequenceIndex < beginSequenceIndex ||
+                    (sequenceIndex == beginSequenceIndex && sequenceNumber <= beginSequenceNumber);
+            }
+            finally
+            {
+                store.releaseSegment(segmentBuffer);
+            }
+        }
+
+        /**
+         * Binary search for the position of the first record at or after the start of the query within a segment.
+         */
+        private long searchStartPosition(
+            final long segmentEnd,
+            final int beginSequenceNumber,
+            final int beginSequenceIndex,
+            final int actingBlockLength,
+            final int actingVersion)
+        {
+            long low = 0;
+            long high = segmentEnd;
+
+            while (low < high)
             {
-                // Pre: sequenceIndex < beginSequenceIndex
-                // Don't have a good way to estimate the jump, so just scan forward.
-                return iteratorPosition + RECORD_LENGTH;
+                final long middle = low + ((high - low) / RECORD_LENGTH >> 1) * RECORD_LENGTH;
+                indexRecord.wrap(segmentBuffer, offset(middle), actingBlockLength, actingVersion);
+                final int sequenceIndex = indexRecord.sequenceIndex();
+                final int sequenceNumber = indexRecord.sequenceNumber();
+
+                final boolean beforeStart = sequenceIndex < beginSequenceIndex ||
+                    (sequenceIndex == beginSequenceIndex && sequenceNumber < beginSequenceNumber);
+                if (beforeStart)
+                {
+                    low = middle + RECORD_LENGTH;
+                }
+                else
+                {
+                    high = middle;
+                }
             }
+
+            return low;
         }
 
-        private long jumpPosition(final int beginSequenceNumber, final int sequenceNumber, final long iteratorPosition)
+        private boolean wrapSegment(final long segment)
         {
-            final int sequenceNumberJump = beginSequenceNumber - sequenceNumber;
-            return iteratorPosition + sequenceNumberJump * RECORD_LENGTH;
+            if (segment < firstSegmentVolatile(headBuffer))
+            {
+                return false;
+            }
+
+            if (!store.wrapSegment(sessionId, segment, segmentBuffer))
+            {
+                return false;
+            }
+
+            // The segment could have been deleted between checking and wrapping it.
+            if (segment < firstSegmentVolatile(headBuffer))
+            {
+                store.releaseSegment(segmentBuffer);
+                return false;
+            }
+
+            return true;
         }
 
         private ReplayOperation newReplayOperation(
@@ -298,25 +439,12 @@ public class ReplayQuery implements AutoCloseable
             return range;
         }
 
-        private long getIteratorPosition()
-        {
-            // positions on a monotonically increasing scale
-            long iteratorPosition = beginChangeVolatile(buffer);
-            // First iteration around you need to start at 0
-            if (iteratorPosition < capacity)
-            {
-                iteratorPosition = 0;
-            }
-            return iteratorPosition;
-        }
-
         public void close()
         {
-            if (wrappedBuffer instanceof MappedByteBuffer)
+            if (hasHead)
             {
-                IoUtil.unmap((MappedByteBuffer)wrappedBuffer);
+                store.releaseHead(headBuffer);
             }
         }
     }
-
 }
@@ -18,6 +18,7 @@ package uk.co.real_logic.artio.engine.logger;
 import java.util.ArrayList;
 import java.util.Set;
 
+import org.agrona.CloseHelper;
 import org.agrona.DirectBuffer;
 import org.agrona.ErrorHandler;
 import org.agrona.collections.LongHashSet;
@@ -58,7 +59,8 @@ import static uk.co.real_logic.artio.messages.MessageStatus.OK;
  *
  * This agent subscribes to the stream of incoming fix data messages. It parses
  * Resend Request messages and searches the log, using the replay index to find
- * relevant messages to resend.
+ * relevant messages to resend. If a {@link ResendCache} is used then recent messages are resent from it
+ * instead.
  */
 public class Replayer implements ProtocolHandler, Agent
 {
@@ -76,6 +78,7 @@ public class Replayer implements ProtocolHandler, Agent
     private final ArrayList<ReplayerSession> replayerSessions = new ArrayList<>();
 
     private final ReplayQuery replayQuery;
+    private final ResendCache resendCache;
     private final ExclusivePublication publication;
     private final IdleStrategy idleStrategy;
     private final ErrorHandler errorHandler;
@@ -83,12 +86,14 @@ public class Replayer implements ProtocolHandler, Agent
     private final Subscription inboundSubscription;
     private final String agentNamePrefix;
     private final LongHashSet gapFillMessageTypes;
+    private final boolean gapFillUnarchivedMessages;
     private final EpochClock clock;
     private final ReplayHandler replayHandler;
     private final SenderSequenceNumbers senderSequenceNumbers;
 
     public Replayer(
         final ReplayQuery replayQuery,
+        final ResendCache resendCache,
         final ExclusivePublication publication,
         final BufferClaim bufferClaim,
         final IdleStrategy idleStrategy,
@@ -98,11 +103,13 @@ public class Replayer implements ProtocolHandler, Agent
         final String agentNamePrefix,
         final EpochClock clock,
         final Set<String> gapfillOnReplayMessageTypes,
+        final boolean gapFillUnarchivedMessages,
         final ReplayHandler replayHandler,
         final SenderSequenceNumbers senderSequenceNumbers,
         final FixSessionCodecsFactory fixSessionCodecsFactory)
     {
         this.replayQuery = replayQuery;
+        this.resendCache = resendCache;
         this.publication = publication;
         this.bufferClaim = bufferClaim;
         this.idleStrategy = idleStrategy;
@@ -111,6 +118,7 @@ public class Replayer implements ProtocolHandler, Agent
         this.inboundSubscription = inboundSubscription;
         this.agentNamePrefix = agentNamePrefix;
         this.clock = clock;
+        this.gapFillUnarchivedMessages = gapFillUnarchivedMessages;
         this.replayHandler = replayHandler;
         this.senderSequenceNumbers = senderSequenceNumbers;
         this.fixSessionCodecsFactory = fixSessionCodecsFactory;
@@ -177,6 +185,7 @@ public class Replayer implements ProtocolHandler, Agent
                 replayHandler,
                 maxClaimAttempts,
                 gapFillMessageTypes,
+                gapFillUnarchivedMessages,
                 senderSequenceNumbers,
                 publication,
                 clock,
@@ -187,6 +196,7 @@ public class Replayer implements ProtocolHandler, Agent
                 sessionId,
                 sequenceIndex,
                 replayQuery,
+                resendCache,
                 message,
                 errorHandler,
                 encoder);
@@ -203,12 +213,22 @@ public class Replayer implements ProtocolHandler, Agent
 
     public Action onDisconnect(final int libraryId, final long connectionId, final DisconnectReason reason)
     {
+        if (resendCache != null)
+        {
+            resendCache.onDisconnect(connectionId);
+        }
+
         return CONTINUE;
     }
 
     public int doWork()
     {
         int work = senderSequenceNumbers.poll();
+        if (resendCache != null)
+        {
+            // Polled before resend requests are processed so that the cache is as up to date as possible.
+            work += resendCache.poll();
+        }
         work += pollReplayerSessions();
         return work + inboundSubscription.controlledPoll(protocolSubscription, POLL_LIMIT);
     }
@@ -234,6 +254,7 @@ public class Replayer implements ProtocolHandler, Agent
         replayerSessions.forEach(ReplayerSession::close);
         publication.close();
         replayQuery.close();
+        CloseHelper.close(resendCache);
     }
 
     public String roleName()
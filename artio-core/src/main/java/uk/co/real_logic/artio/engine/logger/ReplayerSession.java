@@ -21,6 +21,7 @@ import org.agrona.MutableDirectBuffer;
 import org.agrona.collections.LongHashSet;
 import org.agrona.concurrent.EpochClock;
 import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
 
 
 import io.aeron.ExclusivePublication;
@@ -80,9 +81,12 @@ class ReplayerSession implements ControlledFragmentHandler
     private final ReplayHandler replayHandler;
     private final int maxClaimAttempts;
     private final LongHashSet gapFillMessageTypes;
+    private final boolean gapFillUnarchivedMessages;
     private final SenderSequenceNumbers senderSequenceNumbers;
     private final ExclusivePublication publication;
     private final ReplayQuery replayQuery;
+    private final ResendCache resendCache;
+    private final UnsafeBuffer cachedMessage = new UnsafeBuffer(0, 0);
     private final ErrorHandler errorHandler;
     private final SequenceNumberExtractor sequenceNumberExtractor;
 
@@ -96,6 +100,11 @@ class ReplayerSession implements ControlledFragmentHandler
 
     private int beginGapFillSeqNum = NONE;
 
+    // Messages that are replayed from the resend cache rather than the archive
+    private int nextCachedSeqNo = NONE;
+    private int endCachedSeqNo = NONE;
+    private int cachedReplayedMessages;
+
     private ReplayOperation replayOperation;
 
     private State state;
@@ -106,6 +115,7 @@ class ReplayerSession implements ControlledFragmentHandler
         final ReplayHandler replayHandler,
         final int maxClaimAttempts,
         final LongHashSet gapFillMessageTypes,
+        final boolean gapFillUnarchivedMessages,
         final SenderSequenceNumbers senderSequenceNumbers,
         final ExclusivePublication publication,
         final EpochClock clock,
@@ -116,6 +126,7 @@ class ReplayerSession implements ControlledFragmentHandler
         final long sessionId,
         final int sequenceIndex,
         final ReplayQuery replayQuery,
+        final ResendCache resendCache,
         final String message,
         final ErrorHandler errorHandler,
         final GapFillEncoder gapFillEncoder)
@@ -125,6 +136,7 @@ class ReplayerSession implements ControlledFragmentHandler
         this.replayHandler = replayHandler;
         this.maxClaimAttempts = maxClaimAttempts;
         this.gapFillMessageTypes = gapFillMessageTypes;
+        this.gapFillUnarchivedMessages = gapFillUnarchivedMessages;
         this.senderSequenceNumbers = senderSequenceNumbers;
         this.publication = publication;
         this.beginSeqNo = beginSeqNo;
@@ -136,6 +148,7 @@ class ReplayerSession implements ControlledFragmentHandler
         this.message = message;
         this.errorHandler = errorHandler;
         this.replayQuery = replayQuery;
+        this.resendCache = resendCache;
         this.gapFillEncoder = gapFillEncoder;
 
         sequenceNumberExtractor = new SequenceNumberExtractor(errorHandler);
@@ -175,6 +188,26 @@ class ReplayerSession implements ControlledFragmentHandler
     }
 
     void query()
+    {
+        if (resendCache != null)
+        {
+            final int cachedEndSeqNo = upToMostRecent ?
+                resendCache.lastSequenceNumber(sessionId, sequenceIndex) : endSeqNo;
+            if (resendCache.containsAll(sessionId, sequenceIndex, beginSeqNo, cachedEndSeqNo))
+            {
+                DebugLogger.log(
+                    REPLAY, "ReplayerSession: replaying [%d, %d] from cache%n", beginSeqNo, cachedEndSeqNo);
+
+                nextCachedSeqNo = beginSeqNo;
+                endCachedSeqNo = cachedEndSeqNo;
+                return;
+            }
+        }
+
+        query(beginSeqNo);
+    }
+
+    private void query(final int beginSeqNo)
     {
         replayOperation = replayQuery.query(
             this,
@@ -186,9 +219,37 @@ class ReplayerSession implements ControlledFragmentHandler
             CATCHUP);
     }
 
+    private boolean replayFromCache()
+    {
+        while (nextCachedSeqNo <= endCachedSeqNo)
+        {
+            if (!resendCache.wrap(sessionId, sequenceIndex, nextCachedSeqNo, cachedMessage))
+            {
+                // Overwritten whilst back pressured, so replay the rest from the archive.
+                query(nextCachedSeqNo);
+                return false;
+            }
+
+            if (onMessage(cachedMessage, 0, cachedMessage.capacity()) == ABORT)
+            {
+                return false;
+            }
+
+            nextCachedSeqNo++;
+            cachedReplayedMessages++;
+        }
+
+        return true;
+    }
+
     // Callback for the ReplayQuery:
     public Action onFragment(
         final DirectBuffer srcBuffer, final int srcOffset, final int srcLength, final Header header)
+    {
+        return onMessage(srcBuffer, srcOffset, srcLength);
+    }
+
+    private Action onMessage(final DirectBuffer srcBuffer, final int srcOffset, final int srcLength)
     {
         MESSAGE_HEADER.wrap(srcBuffer, srcOffset);
         final int actingBlockLength = MESSAGE_HEADER.blockLength();
@@ -228,13 +289,17 @@ class ReplayerSession implements ControlledFragmentHandler
         }
         else
         {
-            if (beginGapFillSeqNum != NONE)
-            {
-                sendGapFill(beginGapFillSeqNum, msgSeqNum);
-            }
-            else if (msgSeqNum > lastSeqNo + 1)
+            // Messages before this one that weren't replayed, eg: because they weren't archived, are gap filled.
+            final int gapFillSeqNum = beginGapFillSeqNum != NONE ? beginGapFillSeqNum : lastSeqNo + 1;
+            if (gapFillSeqNum < msgSeqNum)
             {
-                sendGapFill(lastSeqNo, msgSeqNum);
+                if (sendGapFill(gapFillSeqNum, msgSeqNum) == ABORT)
+                {
+                    return ABORT;
+                }
+
+                // So that the gap isn't filled again if this message is back pressured and redelivered.
+                lastSeqNo = msgSeqNum - 1;
             }
 
             final Action action = possDupEnabler.enablePossDupFlag(
@@ -316,7 +381,8 @@ class ReplayerSession implements ControlledFragmentHandler
         {
             case REPLAYING:
                 DebugLogger.log(REPLAY_ATTEMPT, "ReplayerSession: REPLAYING step");
-                if (replayOperation.attemptReplay())
+                final boolean replayed = replayOperation == null ? replayFromCache() : replayOperation.attemptReplay();
+                if (replayed)
                 {
                     state = State.CHECK_REPLAY;
                     return attempReplay();
@@ -342,7 +408,8 @@ class ReplayerSession implements ControlledFragmentHandler
     private boolean completeReplay()
     {
         // Load state needed to complete the replay
-        final int replayedMessages = replayOperation.replayedMessages();
+        final int replayedMessages = replayOperation == null ?
+            cachedReplayedMessages : cachedReplayedMessages + replayOperation.replayedMessages();
 
         // If the last N messages were admin messages then we need to send a gapfill
         // after the replay query has run.
@@ -383,6 +450,12 @@ class ReplayerSession implements ControlledFragmentHandler
 
                 if (replayedMessages != expectedCount)
                 {
+                    if (gapFillUnarchivedMessages)
+                    {
+                        // Messages that weren't archived are expected to be missing.
+                        return gapFillUnarchivedMessages(endSeqNo + 1);
+                    }
+
                     if (replayedMessages == 0)
                     {
                         final Action action = sendGapFill(beginSeqNo, endSeqNo + 1);
@@ -403,12 +476,39 @@ class ReplayerSession implements ControlledFragmentHandler
                     REPLAY,
                     "ReplayerSession: completeReplay-upToMostRecent replayedMessages=%d%n",
                     replayedMessages);
+
+                if (gapFillUnarchivedMessages)
+                {
+                    return gapFillUnarchivedMessages(newSeqNo(connectionId));
+                }
             }
         }
 
         return true;
     }
 
+    // Messages that weren't archived after the last replayed message don't have a later message to gap fill before.
+    private boolean gapFillUnarchivedMessages(final int newSequenceNumber)
+    {
+        final int beginSeqNum = lastSeqNo + 1;
+        if (beginSeqNum < newSequenceNumber)
+        {
+            final Action action = sendGapFill(beginSeqNum, newSequenceNumber);
+
+            DebugLogger.log(
+                REPLAY,
+                "ReplayerSession: completeReplay-gapFillUnarchivedMessages action=%s, beginSeqNum=%d, " +
+                "newSequenceNumber=%d%n",
+                action,
+                beginSeqNum,
+                newSequenceNumber);
+
+            return action != ABORT;
+        }
+
+        return true;
+    }
+
     private boolean sendCompleteMessage()
     {
         if (claimBuffer(MessageHeaderEncoder.ENCODED_LENGTH + ReplayCompleteEncoder.BLOCK_LENGTH))
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.FragmentAssembler;
+import io.aeron.Subscription;
+import io.aeron.logbuffer.FragmentHandler;
+import io.aeron.logbuffer.Header;
+import org.agrona.BitUtil;
+import org.agrona.BufferUtil;
+import org.agrona.CloseHelper;
+import org.agrona.DirectBuffer;
+import org.agrona.ErrorHandler;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.artio.engine.SequenceNumberExtractor;
+import uk.co.real_logic.artio.messages.FixMessageDecoder;
+import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
+
+import static uk.co.real_logic.artio.engine.SequenceNumberExtractor.NO_SEQUENCE_NUMBER;
+import static uk.co.real_logic.artio.messages.MessageStatus.OK;
+
+/**
+ * Caches the most recent messages sent by each session so that resend requests for them can be answered without
+ * replaying from the archive.
+ *
+ * Each session has an off-heap ring of messageCapacity slots that messages are stored in by sequence number. Messages
+ * that are longer than maxMessageLength aren't cached, so resend requests for them fall back to the archive. The
+ * cache is populated from the outbound library stream and is only used on the replayer's thread.
+ *
+ * A session's ring is dropped when the connection that it last sent a message on disconnects, see
+ * {@link #onDisconnect(long)}, so the memory used tracks the connected sessions rather than every session seen.
+ */
+public class ResendCache implements FragmentHandler, AutoCloseable
+{
+    static final int NOT_CACHED = -1;
+
+    private static final long NO_SESSION_ID = -1;
+    private static final long NO_CONNECTION_ID = -1;
+
+    private static final int POLL_LIMIT = 20;
+
+    private static final int SEQUENCE_INDEX_OFFSET = 0;
+    private static final int SEQUENCE_NUMBER_OFFSET = SEQUENCE_INDEX_OFFSET + BitUtil.SIZE_OF_INT;
+    private static final int LENGTH_OFFSET = SEQUENCE_NUMBER_OFFSET + BitUtil.SIZE_OF_INT;
+    private static final int SLOT_HEADER_LENGTH = 16;
+
+    private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
+    private final FixMessageDecoder fixMessage = new FixMessageDecoder();
+    private final Long2ObjectHashMap<SessionCache> fixSessionIdToCache = new Long2ObjectHashMap<>();
+    private final Long2LongHashMap connectionIdToFixSessionId = new Long2LongHashMap(NO_SESSION_ID);
+    private final FragmentAssembler assembler = new FragmentAssembler(this);
+
+    private final Subscription outboundSubscription;
+    private final int messageCapacity;
+    private final int maxMessageLength;
+    private final int slotLength;
+    private final SequenceNumberExtractor sequenceNumberExtractor;
+
+    public ResendCache(
+        final Subscription outboundSubscription,
+        final int messageCapacity,
+        final int maxMessageLength,
+        final ErrorHandler errorHandler)
+    {
+        this.outboundSubscription = outboundSubscription;
+        this.messageCapacity = messageCapacity;
+        this.maxMessageLength = maxMessageLength;
+
+        slotLength = BitUtil.align(SLOT_HEADER_LENGTH + maxMessageLength, BitUtil.SIZE_OF_LONG);
+        if (messageCapacity <= 0 || (long)messageCapacity * slotLength > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException(String.format(
+                "Invalid resend cache size: messageCapacity=%d, maxMessageLength=%d",
+                messageCapacity,
+                maxMessageLength));
+        }
+
+        sequenceNumberExtractor = new SequenceNumberExtractor(errorHandler);
+    }
+
+    public int poll()
+    {
+        return outboundSubscription.poll(assembler, POLL_LIMIT);
+    }
+
+    public void onFragment(final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        messageHeader.wrap(buffer, offset);
+        if (messageHeader.templateId() != FixMessageDecoder.TEMPLATE_ID)
+        {
+            return;
+        }
+
+        final int actingBlockLength = messageHeader.blockLength();
+        fixMessage.wrap(
+            buffer, offset + MessageHeaderDecoder.ENCODED_LENGTH, actingBlockLength, messageHeader.version());
+        if (fixMessage.status() != OK)
+        {
+            return;
+        }
+
+        final int messageOffset = offset + MessageHeaderDecoder.ENCODED_LENGTH + actingBlockLength +
+            FixMessageDecoder.bodyHeaderLength();
+        final int sequenceNumber = sequenceNumberExtractor.extract(buffer, messageOffset, fixMessage.bodyLength());
+        if (sequenceNumber == NO_SEQUENCE_NUMBER)
+        {
+            return;
+        }
+
+        final long fixSessionId = fixMessage.session();
+        SessionCache sessionCache = fixSessionIdToCache.get(fixSessionId);
+        if (sessionCache == null)
+        {
+            sessionCache = new SessionCache();
+            fixSessionIdToCache.put(fixSessionId, sessionCache);
+        }
+
+        final long connectionId = fixMessage.connection();
+        if (sessionCache.connectionId != connectionId)
+        {
+            if (connectionIdToFixSessionId.get(sessionCache.connectionId) == fixSessionId)
+            {
+                connectionIdToFixSessionId.remove(sessionCache.connectionId);
+            }
+            sessionCache.connectionId = connectionId;
+            connectionIdToFixSessionId.put(connectionId, fixSessionId);
+        }
+
+        sessionCache.cache(fixMessage.sequenceIndex(), sequenceNumber, buffer, offset, length);
+    }
+
+    /**
+     * Find the last sequence number that has been cached for a session.
+     *
+     * @param fixSessionId the session to look up.
+     * @param sequenceIndex the sequence index that the sequence number should be from.
+     * @return the sequence number or {@link #NOT_CACHED} if nothing has been cached for the sequence index.
+     */
+    public int lastSequenceNumber(final long fixSessionId, final int sequenceIndex)
+    {
+        final SessionCache sessionCache = fixSessionIdToCache.get(fixSessionId);
+        if (sessionCache == null || sessionCache.lastSequenceIndex != sequenceIndex)
+        {
+            return NOT_CACHED;
+        }
+
+        return sessionCache.lastSequenceNumber;
+    }
+
+    /**
+     * Check whether every message in a range of sequence numbers is cached.
+     *
+     * @param fixSessionId the session to look up.
+     * @param sequenceIndex the sequence index of the messages.
+     * @param beginSequenceNumber the first sequence number in the range, inclusive.
+     * @param endSequenceNumber the last sequence number in the range, inclusive.
+     * @return true if every message in the range can be replayed from the cache.
+     */
+    public boolean containsAll(
+        final long fixSessionId, final int sequenceIndex, final int beginSequenceNumber, final int endSequenceNumber)
+    {
+        final SessionCache sessionCache = fixSessionIdToCache.get(fixSessionId);
+        if (sessionCache == null ||
+            endSequenceNumber < beginSequenceNumber ||
+            endSequenceNumber - beginSequenceNumber >= messageCapacity)
+        {
+            return false;
+        }
+
+        for (int sequenceNumber = beginSequenceNumber; sequenceNumber <= endSequenceNumber; sequenceNumber++)
+        {
+            if (sessionCache.slotOffset(sequenceIndex, sequenceNumber) == NOT_CACHED)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Wrap a buffer around a cached message. The buffer holds the whole fragment that was sent on the outbound
+     * library stream and is only valid until the cache is next polled.
+     *
+     * @param fixSessionId the session whose message should be wrapped.
+     * @param sequenceIndex the sequence index of the message.
+     * @param sequenceNumber the sequence number of the message.
+     * @param messageBuffer the buffer to wrap around the message.
+     * @return true if the message was wrapped, false if it isn't cached.
+     */
+    public boolean wrap(
+        final long fixSessionId, final int sequenceIndex, final int sequenceNumber, final DirectBuffer messageBuffer)
+    {
+        final SessionCache sessionCache = fixSessionIdToCache.get(fixSessionId);
+        if (sessionCache == null)
+        {
+            return false;
+        }
+
+        final int slotOffset = sessionCache.slotOffset(sequenceIndex, sequenceNumber);
+        if (slotOffset == NOT_CACHED)
+        {
+            return false;
+        }
+
+        final AtomicBuffer buffer = sessionCache.buffer;
+        messageBuffer.wrap(buffer, slotOffset + SLOT_HEADER_LENGTH, buffer.getInt(slotOffset + LENGTH_OFFSET));
+        return true;
+    }
+
+    /**
+     * Drop the cached messages of the session on a connection that has disconnected, releasing the memory that they
+     * use. Resend requests for them after the session reconnects fall back to the archive.
+     *
+     * @param connectionId the id of the connection that has disconnected.
+     */
+    public void onDisconnect(final long connectionId)
+    {
+        final long fixSessionId = connectionIdToFixSessionId.remove(connectionId);
+        if (fixSessionId != NO_SESSION_ID)
+        {
+            // The buffer's direct memory is released once the cache has been collected.
+            fixSessionIdToCache.remove(fixSessionId);
+        }
+    }
+
+    public void close()
+    {
+        connectionIdToFixSessionId.clear();
+        fixSessionIdToCache.clear();
+        CloseHelper.close(outboundSubscription);
+    }
+
+    private final class SessionCache
+    {
+        private final AtomicBuffer buffer = new UnsafeBuffer(
+            BufferUtil.allocateDirectAligned(messageCapacity * slotLength, BitUtil.CACHE_LINE_LENGTH));
+
+        private long connectionId = NO_CONNECTION_ID;
+        private int lastSequenceIndex = NOT_CACHED;
+        private int lastSequenceNumber = NOT_CACHED;
+
+        void cache(
+            final int sequenceIndex,
+            final int sequenceNumber,
+            final DirectBuffer srcBuffer,
+            final int srcOffset,
+            final int srcLength)
+        {
+            final int slotOffset = offsetOf(sequenceNumber);
+            if (srcLength > maxMessageLength)
+            {
+                // Otherwise a message from an earlier sequence index could be replayed in its place.
+                buffer.putInt(slotOffset + LENGTH_OFFSET, 0);
+            }
+            else
+            {
+                buffer.putInt(slotOffset + SEQUENCE_INDEX_OFFSET, sequenceIndex);
+                buffer.putInt(slotOffset + SEQUENCE_NUMBER_OFFSET, sequenceNumber);
+                buffer.putInt(slotOffset + LENGTH_OFFSET, srcLength);
+                buffer.putBytes(slotOffset + SLOT_HEADER_LENGTH, srcBuffer, srcOffset, srcLength);
+            }
+
+            lastSequenceIndex = sequenceIndex;
+            lastSequenceNumber = sequenceNumber;
+        }
+
+        int slotOffset(final int sequenceIndex, final int sequenceNumber)
+        {
+            final int slotOffset = offsetOf(sequenceNumber);
+            if (buffer.getInt(slotOffset + LENGTH_OFFSET) == 0 ||
+                buffer.getInt(slotOffset + SEQUENCE_INDEX_OFFSET) != sequenceIndex ||
+                buffer.getInt(slotOffset + SEQUENCE_NUMBER_OFFSET) != sequenceNumber)
+            {
+                return NOT_CACHED;
+            }
+
+            return slotOffset;
+        }
+
+        private int offsetOf(final int sequenceNumber)
+        {
+            return (sequenceNumber % messageCapacity) * slotLength;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberDecoder;
 
 import java.io.File;
 
+import static uk.co.real_logic.artio.engine.SectorFramer.SECTOR_DATA_LENGTH;
 import static uk.co.real_logic.artio.engine.SectorFramer.SECTOR_SIZE;
 import static uk.co.real_logic.artio.engine.SectorFramer.nextSectorStart;
 
@@ -32,14 +33,26 @@ import static uk.co.real_logic.artio.engine.SectorFramer.nextSectorStart;
  * off-heap in a single-writer threadsafe manner.
  * <p>
  * Message Header
- * Series of LastKnownSequenceNumber records
+ * Hash table of LastKnownSequenceNumber records
  * ...
  * Positions Table
+ * <p>
+ * The records are slots in an open addressing hash table keyed by session id, with linear probing. A slot is empty
+ * if its session id is {@link #NO_SESSION_ID}. Records are never removed, other than when every sequence number is
+ * reset, so a lookup can stop probing at the first empty slot. Slots are numbered in file order, skipping the
+ * checksum at the end of each sector.
  */
 final class SequenceNumberIndexDescriptor
 {
     static final int HEADER_SIZE = MessageHeaderDecoder.ENCODED_LENGTH;
     static final int RECORD_SIZE = LastKnownSequenceNumberDecoder.BLOCK_LENGTH;
+    static final int SESSION_ID_OFFSET = 0;
+    static final int SEQUENCE_NUMBER_OFFSET = 8;
+
+    static final long NO_SESSION_ID = 0;
+
+    private static final int FIRST_SECTOR_SLOTS = (SECTOR_DATA_LENGTH - HEADER_SIZE) / RECORD_SIZE;
+    private static final int SLOTS_PER_SECTOR = SECTOR_DATA_LENGTH / RECORD_SIZE;
 
     static final double SEQUENCE_NUMBER_RATIO = 0.9;
 
@@ -65,6 +78,37 @@ final class SequenceNumberIndexDescriptor
         return proposedCapacity;
     }
 
+    static int slotCount(final int positionTableOffset)
+    {
+        final int sectors = positionTableOffset / SECTOR_SIZE;
+        return FIRST_SECTOR_SLOTS + (sectors - 1) * SLOTS_PER_SECTOR;
+    }
+
+    static int slotOffset(final int slot)
+    {
+        if (slot < FIRST_SECTOR_SLOTS)
+        {
+            return HEADER_SIZE + slot * RECORD_SIZE;
+        }
+
+        final int slotAfterFirstSector = slot - FIRST_SECTOR_SLOTS;
+        final int sector = 1 + slotAfterFirstSector / SLOTS_PER_SECTOR;
+        return sector * SECTOR_SIZE + (slotAfterFirstSector % SLOTS_PER_SECTOR) * RECORD_SIZE;
+    }
+
+    static int homeSlot(final long sessionId, final int slotCount)
+    {
+        // Session ids are mostly allocated sequentially, so mix the bits before picking a slot.
+        final long hash = sessionId * 0x9E3779B97F4A7C15L;
+        return (int)((hash >>> 33) % slotCount);
+    }
+
+    static int nextSlot(final int slot, final int slotCount)
+    {
+        final int nextSlot = slot + 1;
+        return nextSlot == slotCount ? 0 : nextSlot;
+    }
+
     public static File passingFile(final String indexFilePath)
     {
         return new File(indexFilePath + "-passing");
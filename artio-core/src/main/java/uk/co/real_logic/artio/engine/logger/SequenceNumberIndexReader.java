@@ -17,23 +17,17 @@ package uk.co.real_logic.artio.engine.logger;
 
 import org.agrona.ErrorHandler;
 import org.agrona.concurrent.AtomicBuffer;
-import uk.co.real_logic.artio.engine.SectorFramer;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
-import uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberDecoder;
 import uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEncoder;
 
-import static uk.co.real_logic.artio.engine.SectorFramer.OUT_OF_SPACE;
 import static uk.co.real_logic.artio.engine.SessionInfo.UNK_SESSION;
 import static uk.co.real_logic.artio.engine.logger.SequenceNumberIndexDescriptor.*;
-import static uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEncoder.BLOCK_LENGTH;
-import static uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEncoder.SCHEMA_VERSION;
 
 public class SequenceNumberIndexReader
 {
     private final MessageHeaderDecoder fileHeaderDecoder = new MessageHeaderDecoder();
-    private final LastKnownSequenceNumberDecoder lastKnownDecoder = new LastKnownSequenceNumberDecoder();
     private final AtomicBuffer inMemoryBuffer;
-    private final SectorFramer sectorFramer;
+    private final int slotCount;
     private final IndexedPositionReader positions;
     private final ErrorHandler errorHandler;
 
@@ -42,30 +36,58 @@ public class SequenceNumberIndexReader
         this.inMemoryBuffer = inMemoryBuffer;
         this.errorHandler = errorHandler;
         final int positionTableOffset = positionTableOffset(inMemoryBuffer.capacity());
-        sectorFramer = new SectorFramer(positionTableOffset);
+        slotCount = slotCount(positionTableOffset);
         validateBuffer();
         positions = new IndexedPositionReader(positionsBuffer(inMemoryBuffer, positionTableOffset));
     }
 
     public int lastKnownSequenceNumber(final long sessionId)
     {
-        int position = SequenceNumberIndexDescriptor.HEADER_SIZE;
-        while (true)
+        final AtomicBuffer inMemoryBuffer = this.inMemoryBuffer;
+        final int slotCount = this.slotCount;
+
+        int slot = homeSlot(sessionId, slotCount);
+        for (int probes = 0; probes < slotCount; probes++)
         {
-            position = sectorFramer.claim(position, RECORD_SIZE);
-            if (position == OUT_OF_SPACE)
+            final int position = slotOffset(slot);
+
+            // The writer publishes the session id after the sequence number of a new record.
+            final long slotSessionId = inMemoryBuffer.getLongVolatile(position + SESSION_ID_OFFSET);
+            if (slotSessionId == sessionId)
+            {
+                return inMemoryBuffer.getIntVolatile(position + SEQUENCE_NUMBER_OFFSET);
+            }
+            else if (slotSessionId == NO_SESSION_ID)
             {
                 return UNK_SESSION;
             }
 
-            lastKnownDecoder.wrap(inMemoryBuffer, position, BLOCK_LENGTH, SCHEMA_VERSION);
+            slot = nextSlot(slot, slotCount);
+        }
+
+        return UNK_SESSION;
+    }
+
+    /**
+     * Reads the last known sequence number of every session in the index. Sessions are read in the order of their
+     * slots in the index, rather than in order of their session id.
+     *
+     * @param consumer the callback that receives each session's sequence number.
+     */
+    public void readLastKnownSequenceNumbers(final SequenceNumberConsumer consumer)
+    {
+        final AtomicBuffer inMemoryBuffer = this.inMemoryBuffer;
+        final int slotCount = this.slotCount;
 
-            if (lastKnownDecoder.sessionId() == sessionId)
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            final int position = slotOffset(slot);
+
+            final long sessionId = inMemoryBuffer.getLongVolatile(position + SESSION_ID_OFFSET);
+            if (sessionId != NO_SESSION_ID)
             {
-                return lastKnownDecoder.sequenceNumber();
+                consumer.accept(sessionId, inMemoryBuffer.getIntVolatile(position + SEQUENCE_NUMBER_OFFSET));
             }
-
-            position += RECORD_SIZE;
         }
     }
 
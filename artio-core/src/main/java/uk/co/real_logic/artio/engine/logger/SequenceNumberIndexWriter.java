@@ -27,7 +27,6 @@ import uk.co.real_logic.artio.engine.ChecksumFramer;
 import uk.co.real_logic.artio.engine.MappedFile;
 import uk.co.real_logic.artio.engine.SequenceNumberExtractor;
 import uk.co.real_logic.artio.messages.*;
-import uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberDecoder;
 import uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEncoder;
 
 import java.io.File;
@@ -40,7 +39,6 @@ import static io.aeron.protocol.DataHeaderFlyweight.BEGIN_FLAG;
 import static uk.co.real_logic.artio.engine.SectorFramer.*;
 import static uk.co.real_logic.artio.engine.SequenceNumberExtractor.NO_SEQUENCE_NUMBER;
 import static uk.co.real_logic.artio.engine.logger.SequenceNumberIndexDescriptor.*;
-import static uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEncoder.SCHEMA_VERSION;
 
 /**
  * Writes updates into an in-memory buffer. This buffer is then flushed down to disk. A passing place
@@ -52,16 +50,15 @@ public class SequenceNumberIndexWriter implements Index
 
     private static final long MISSING_RECORD = -1L;
     private static final long UNINITIALISED = -1;
-    static final int SEQUENCE_NUMBER_OFFSET = 8;
 
     private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
     private final FixMessageDecoder messageFrame = new FixMessageDecoder();
     private final ResetSequenceNumberDecoder resetSequenceNumber = new ResetSequenceNumberDecoder();
+    private final UnrecordedFixMessageDecoder unrecordedFixMessage = new UnrecordedFixMessageDecoder();
 
     private final MessageHeaderDecoder fileHeaderDecoder = new MessageHeaderDecoder();
     private final MessageHeaderEncoder fileHeaderEncoder = new MessageHeaderEncoder();
     private final LastKnownSequenceNumberEncoder lastKnownEncoder = new LastKnownSequenceNumberEncoder();
-    private final LastKnownSequenceNumberDecoder lastKnownDecoder = new LastKnownSequenceNumberDecoder();
     private final Long2LongHashMap recordOffsets = new Long2LongHashMap(MISSING_RECORD);
 
     private final SequenceNumberExtractor sequenceNumberExtractor;
@@ -75,6 +72,7 @@ public class SequenceNumberIndexWriter implements Index
     private final RecordingIdLookup recordingIdLookup;
     private final int streamId;
     private final int indexedPositionsOffset;
+    private final int slotCount;
     private final IndexedPositionWriter positions;
 
     private MappedFile writableFile;
@@ -85,6 +83,7 @@ public class SequenceNumberIndexWriter implements Index
     private final long indexFileStateFlushTimeoutInMs;
     private long lastUpdatedFileTimeInMs;
     private boolean hasSavedRecordSinceFileUpdate = false;
+    private boolean hasIndexedPositionSinceFileUpdate = false;
 
     public SequenceNumberIndexWriter(
         final AtomicBuffer inMemoryBuffer,
@@ -114,6 +113,7 @@ public class SequenceNumberIndexWriter implements Index
 
         // TODO: Fsync parent directory
         indexedPositionsOffset = positionTableOffset(fileCapacity);
+        slotCount = slotCount(indexedPositionsOffset);
         checksumFramer = new ChecksumFramer(
             inMemoryBuffer, indexedPositionsOffset, errorHandler, 0, "SequenceNumberIndex");
         try
@@ -191,6 +191,19 @@ public class SequenceNumberIndexWriter implements Index
                 {
                     resetSequenceNumber.wrap(buffer, offset, actingBlockLength, version);
                     saveRecord(0, resetSequenceNumber.session());
+                    break;
+                }
+
+                // The archiving policy kept the message itself off the stream, but its sequence number is still here.
+                case UnrecordedFixMessageDecoder.TEMPLATE_ID:
+                {
+                    unrecordedFixMessage.wrap(buffer, offset, actingBlockLength, version);
+                    final int msgSeqNum = unrecordedFixMessage.sequenceNumber();
+                    if (msgSeqNum != NO_SEQUENCE_NUMBER)
+                    {
+                        saveRecord(msgSeqNum, unrecordedFixMessage.session());
+                    }
+                    break;
                 }
             }
         }
@@ -199,6 +212,7 @@ public class SequenceNumberIndexWriter implements Index
 
         final long recordingId = recordingIdLookup.getRecordingId(aeronSessionId);
         positions.indexedUpTo(aeronSessionId, recordingId, endPosition);
+        hasIndexedPositionSinceFileUpdate = true;
     }
 
     @Override
@@ -220,6 +234,7 @@ public class SequenceNumberIndexWriter implements Index
     void resetSequenceNumbers()
     {
         inMemoryBuffer.setMemory(0, indexedPositionsOffset, (byte)0);
+        recordOffsets.clear();
         initialiseBlankBuffer();
     }
 
@@ -245,6 +260,7 @@ public class SequenceNumberIndexWriter implements Index
         saveFile();
         flipFiles();
         hasSavedRecordSinceFileUpdate = false;
+        hasIndexedPositionSinceFileUpdate = false;
         lastUpdatedFileTimeInMs = clock.time();
     }
 
@@ -308,7 +324,8 @@ public class SequenceNumberIndexWriter implements Index
     {
         try
         {
-            if (isOpen() && hasSavedRecordSinceFileUpdate)
+            // Saving the indexed positions on a clean shutdown means that there's nothing to catch up on restart.
+            if (isOpen() && (hasSavedRecordSinceFileUpdate || hasIndexedPositionSinceFileUpdate))
             {
                 updateFile();
             }
@@ -331,33 +348,31 @@ public class SequenceNumberIndexWriter implements Index
         int position = (int)recordOffsets.get(sessionId);
         if (position == MISSING_RECORD)
         {
-            position = SequenceNumberIndexDescriptor.HEADER_SIZE;
-            while (true)
+            int slot = homeSlot(sessionId, slotCount);
+            for (int probes = 0; probes < slotCount; probes++)
             {
-                position = checksumFramer.claim(position, RECORD_SIZE);
-                if (position == OUT_OF_SPACE)
-                {
-                    errorHandler.onError(new IllegalStateException(
-                        "Sequence Number Index out of space, can't claim slot for " + sessionId));
-                    return;
-                }
+                position = slotOffset(slot);
 
-                lastKnownDecoder.wrap(inMemoryBuffer, position, RECORD_SIZE, SCHEMA_VERSION);
-                if (lastKnownDecoder.sequenceNumber() == 0)
+                final long slotSessionId = inMemoryBuffer.getLong(position + SESSION_ID_OFFSET);
+                if (slotSessionId == NO_SESSION_ID)
                 {
                     createNewRecord(newSequenceNumber, sessionId, position);
                     hasSavedRecordSinceFileUpdate = true;
                     return;
                 }
-                else if (lastKnownDecoder.sessionId() == sessionId)
+                else if (slotSessionId == sessionId)
                 {
+                    recordOffsets.put(sessionId, position);
                     updateSequenceNumber(position, newSequenceNumber);
                     hasSavedRecordSinceFileUpdate = true;
                     return;
                 }
 
-                position += RECORD_SIZE;
+                slot = nextSlot(slot, slotCount);
             }
+
+            errorHandler.onError(new IllegalStateException(
+                "Sequence Number Index out of space, can't claim slot for " + sessionId));
         }
         else
         {
@@ -372,10 +387,9 @@ public class SequenceNumberIndexWriter implements Index
         final int position)
     {
         recordOffsets.put(sessionId, position);
-        lastKnownEncoder
-            .wrap(inMemoryBuffer, position)
-            .sessionId(sessionId);
         updateSequenceNumber(position, sequenceNumber);
+        // Publishes the record to readers, so must come after its sequence number.
+        inMemoryBuffer.putLongOrdered(position + SESSION_ID_OFFSET, sessionId);
     }
 
     private void initialiseBuffer()
@@ -451,6 +465,36 @@ public class SequenceNumberIndexWriter implements Index
     {
         loadBuffer(fileBuffer);
         checksumFramer.validateCheckSums();
+        rehashRecords();
+    }
+
+    /**
+     * Re-insert every record, so that files written before the records were hashed by session id, which have their
+     * records one after another from the start of the file, can be read.
+     */
+    private void rehashRecords()
+    {
+        final long[] sessionIds = new long[slotCount];
+        final int[] sequenceNumbers = new int[slotCount];
+        int recordCount = 0;
+
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            final int position = slotOffset(slot);
+            final long sessionId = inMemoryBuffer.getLong(position + SESSION_ID_OFFSET);
+            if (sessionId != NO_SESSION_ID)
+            {
+                sessionIds[recordCount] = sessionId;
+                sequenceNumbers[recordCount] = inMemoryBuffer.getInt(position + SEQUENCE_NUMBER_OFFSET);
+                recordCount++;
+                inMemoryBuffer.setMemory(position, RECORD_SIZE, (byte)0);
+            }
+        }
+
+        for (int i = 0; i < recordCount; i++)
+        {
+            saveRecord(sequenceNumbers[i], sessionIds[i]);
+        }
     }
 
     private void loadBuffer(final AtomicBuffer fileBuffer)
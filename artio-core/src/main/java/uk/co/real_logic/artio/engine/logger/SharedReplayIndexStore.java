@@ -0,0 +1,492 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.BitUtil;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
+import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
+import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordEncoder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.HEAD_FILE_SIZE;
+import static uk.co.real_logic.artio.engine.logger.SequenceNumberIndexDescriptor.homeSlot;
+import static uk.co.real_logic.artio.engine.logger.SequenceNumberIndexDescriptor.nextSlot;
+
+/**
+ * Stores the heads and segments of every session in one file that's mapped once, so that no mapping is created or
+ * destroyed whilst indexing or querying.
+ *
+ * The file consists of:
+ *
+ * MessageHeader
+ * Segment size, segment count and session capacity
+ * A directory of sessions: a hash table keyed by session id, whose entries hold the session's head and the first
+ * and last blocks in its chain of segments
+ * A block table: for each block the session and segment that it holds and the next block in the session's chain
+ * The blocks themselves, each of which holds a segment
+ *
+ * Blocks are allocated to segments when sessions roll onto a new segment and freed when segments are deleted. The
+ * free blocks are worked out from the chains when the store is opened.
+ */
+public class SharedReplayIndexStore implements ReplayIndexStore
+{
+    static final int NO_BLOCK = -1;
+    static final int NO_ENTRY = -1;
+    static final long NO_SESSION_ID = 0;
+
+    private static final int SEGMENT_SIZE_OFFSET = MessageHeaderEncoder.ENCODED_LENGTH;
+    private static final int SEGMENT_COUNT_OFFSET = SEGMENT_SIZE_OFFSET + BitUtil.SIZE_OF_INT;
+    private static final int SESSION_CAPACITY_OFFSET = SEGMENT_COUNT_OFFSET + BitUtil.SIZE_OF_INT;
+    private static final int DIRECTORY_OFFSET = BitUtil.CACHE_LINE_LENGTH;
+
+    private static final int ENTRY_SESSION_ID_OFFSET = 0;
+    private static final int ENTRY_HEAD_OFFSET = ENTRY_SESSION_ID_OFFSET + BitUtil.SIZE_OF_LONG;
+    private static final int ENTRY_FIRST_BLOCK_OFFSET = ENTRY_HEAD_OFFSET + HEAD_FILE_SIZE;
+    private static final int ENTRY_LAST_BLOCK_OFFSET = ENTRY_FIRST_BLOCK_OFFSET + BitUtil.SIZE_OF_INT;
+    private static final int ENTRY_LENGTH = 32;
+
+    private static final int BLOCK_SESSION_ID_OFFSET = 0;
+    private static final int BLOCK_SEGMENT_OFFSET = BLOCK_SESSION_ID_OFFSET + BitUtil.SIZE_OF_LONG;
+    private static final int BLOCK_NEXT_OFFSET = BLOCK_SEGMENT_OFFSET + BitUtil.SIZE_OF_LONG;
+    private static final int BLOCK_ENTRY_LENGTH = 24;
+
+    private static final int PAGE_SIZE = 4 * 1024;
+
+    private final ReplayIndexRecordEncoder replayIndexRecord = new ReplayIndexRecordEncoder();
+    private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+    private final File file;
+    private final BufferFactory bufferFactory;
+    private final boolean writable;
+
+    private ByteBuffer wrappedBuffer;
+    private AtomicBuffer buffer;
+    private int segmentSize;
+    private int segmentCount;
+    private int sessionCapacity;
+    private int blockTableOffset;
+    private int blocksOffset;
+
+    // Only used when writing
+    private int[] freeBlocks;
+    private int freeBlockCount;
+
+    /**
+     * Create a store to write to, creating the file if it doesn't exist. The layout of an existing file is kept.
+     *
+     * @param file the file to store the index in.
+     * @param segmentSize the size of each segment.
+     * @param segmentCount the number of segments that can be stored across every session.
+     * @param sessionCapacity the number of sessions that can be stored.
+     * @param bufferFactory maps the file, creating it if it doesn't exist.
+     */
+    public SharedReplayIndexStore(
+        final File file,
+        final int segmentSize,
+        final int segmentCount,
+        final int sessionCapacity,
+        final BufferFactory bufferFactory)
+    {
+        this.file = file;
+        this.bufferFactory = bufferFactory;
+        this.writable = true;
+
+        ReplayIndexDescriptor.checkIndexFileSize(segmentSize);
+        final long fileSize = fileSize(segmentSize, segmentCount, sessionCapacity);
+        if (fileSize > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException(String.format(
+                "Shared replay index store is too large: segmentSize=%d, segmentCount=%d, sessionCapacity=%d",
+                segmentSize,
+                segmentCount,
+                sessionCapacity));
+        }
+
+        wrappedBuffer = bufferFactory.map(file, (int)fileSize);
+        buffer = new UnsafeBuffer(wrappedBuffer);
+
+        if (buffer.getIntVolatile(SESSION_CAPACITY_OFFSET) == 0)
+        {
+            new MessageHeaderEncoder()
+                .wrap(buffer, 0)
+                .blockLength(replayIndexRecord.sbeBlockLength())
+                .templateId(replayIndexRecord.sbeTemplateId())
+                .schemaId(replayIndexRecord.sbeSchemaId())
+                .version(replayIndexRecord.sbeSchemaVersion());
+            buffer.putInt(SEGMENT_SIZE_OFFSET, segmentSize);
+            buffer.putInt(SEGMENT_COUNT_OFFSET, segmentCount);
+            // Written last as it marks the file as initialised.
+            buffer.putIntOrdered(SESSION_CAPACITY_OFFSET, sessionCapacity);
+        }
+
+        readLayout();
+        recover();
+    }
+
+    /**
+     * Create a store to read from, the file is mapped once it has been created by the writer.
+     *
+     * @param file the file that the index is stored in.
+     * @param bufferFactory maps the existing file.
+     */
+    public SharedReplayIndexStore(final File file, final ExistingBufferFactory bufferFactory)
+    {
+        this.file = file;
+        this.bufferFactory = (existingFile, size) -> bufferFactory.map(existingFile);
+        this.writable = false;
+    }
+
+    static long fileSize(final int segmentSize, final int segmentCount, final int sessionCapacity)
+    {
+        final long blockTableOffset = DIRECTORY_OFFSET + (long)sessionCapacity * ENTRY_LENGTH;
+        final long blocksOffset = BitUtil.align(blockTableOffset + (long)segmentCount * BLOCK_ENTRY_LENGTH, PAGE_SIZE);
+        return blocksOffset + (long)segmentCount * segmentSize;
+    }
+
+    public boolean wrapHead(final long fixSessionId, final AtomicBuffer headBuffer)
+    {
+        if (!isMapped())
+        {
+            return false;
+        }
+
+        final int entryOffset = writable ? findOrAddEntry(fixSessionId) : findEntry(fixSessionId);
+        if (entryOffset == NO_ENTRY)
+        {
+            return false;
+        }
+
+        headBuffer.wrap(buffer, entryOffset + ENTRY_HEAD_OFFSET, HEAD_FILE_SIZE);
+        return true;
+    }
+
+    public void releaseHead(final AtomicBuffer headBuffer)
+    {
+        headBuffer.wrap(0, 0);
+    }
+
+    public boolean wrapSegment(final long fixSessionId, final long segment, final AtomicBuffer segmentBuffer)
+    {
+        if (!isMapped())
+        {
+            return false;
+        }
+
+        final int entryOffset = findEntry(fixSessionId);
+        if (entryOffset == NO_ENTRY)
+        {
+            return false;
+        }
+
+        int block = findBlock(entryOffset, fixSessionId, segment);
+        if (block == NO_BLOCK)
+        {
+            if (!writable || freeBlockCount == 0)
+            {
+                return false;
+            }
+
+            block = allocateBlock(entryOffset, fixSessionId, segment);
+        }
+
+        segmentBuffer.wrap(buffer, blockOffset(block), segmentSize);
+        return true;
+    }
+
+    public void releaseSegment(final AtomicBuffer segmentBuffer)
+    {
+        segmentBuffer.wrap(0, 0);
+    }
+
+    public void deleteSegment(final long fixSessionId, final long segment)
+    {
+        final int entryOffset = findEntry(fixSessionId);
+        if (entryOffset == NO_ENTRY)
+        {
+            return;
+        }
+
+        // Segments are deleted oldest first, so it's the first block in the chain.
+        final int block = buffer.getInt(entryOffset + ENTRY_FIRST_BLOCK_OFFSET);
+        if (block == NO_BLOCK || buffer.getLong(blockEntryOffset(block) + BLOCK_SEGMENT_OFFSET) != segment)
+        {
+            return;
+        }
+
+        final int nextBlock = buffer.getInt(blockEntryOffset(block) + BLOCK_NEXT_OFFSET);
+        buffer.putIntOrdered(entryOffset + ENTRY_FIRST_BLOCK_OFFSET, nextBlock);
+        if (nextBlock == NO_BLOCK)
+        {
+            buffer.putInt(entryOffset + ENTRY_LAST_BLOCK_OFFSET, NO_BLOCK);
+        }
+        freeBlock(block);
+    }
+
+    public void close()
+    {
+        if (wrappedBuffer != null)
+        {
+            IoUtil.unmap(wrappedBuffer);
+            wrappedBuffer = null;
+            buffer = null;
+        }
+    }
+
+    int freeBlockCount()
+    {
+        return freeBlockCount;
+    }
+
+    private boolean isMapped()
+    {
+        if (buffer != null)
+        {
+            return true;
+        }
+
+        if (!file.exists())
+        {
+            return false;
+        }
+
+        final ByteBuffer wrappedBuffer = bufferFactory.map(file, 0);
+        final AtomicBuffer buffer = new UnsafeBuffer(wrappedBuffer);
+        if (buffer.capacity() < DIRECTORY_OFFSET || buffer.getIntVolatile(SESSION_CAPACITY_OFFSET) == 0)
+        {
+            IoUtil.unmap(wrappedBuffer);
+            return false;
+        }
+
+        this.wrappedBuffer = wrappedBuffer;
+        this.buffer = buffer;
+        readLayout();
+        return true;
+    }
+
+    private void readLayout()
+    {
+        headerDecoder.wrap(buffer, 0);
+        if (headerDecoder.schemaId() != replayIndexRecord.sbeSchemaId())
+        {
+            throw new IllegalStateException(String.format(
+                "Wrong schema id in %s: expected %d and got %d",
+                file,
+                replayIndexRecord.sbeSchemaId(),
+                headerDecoder.schemaId()));
+        }
+
+        segmentSize = buffer.getInt(SEGMENT_SIZE_OFFSET);
+        segmentCount = buffer.getInt(SEGMENT_COUNT_OFFSET);
+        sessionCapacity = buffer.getInt(SESSION_CAPACITY_OFFSET);
+        blockTableOffset = DIRECTORY_OFFSET + sessionCapacity * ENTRY_LENGTH;
+        blocksOffset = BitUtil.align(blockTableOffset + segmentCount * BLOCK_ENTRY_LENGTH, PAGE_SIZE);
+    }
+
+    // Trims each chain to the segments in its session's head and frees every block that isn't in a chain, which
+    // tidies up after the engine stopping part way through rolling or deleting a segment.
+    private void recover()
+    {
+        final boolean[] usedBlocks = new boolean[segmentCount];
+        for (int slot = 0; slot < sessionCapacity; slot++)
+        {
+            final int entryOffset = entryOffset(slot);
+            final long fixSessionId = buffer.getLong(entryOffset + ENTRY_SESSION_ID_OFFSET);
+            if (fixSessionId == NO_SESSION_ID)
+            {
+                continue;
+            }
+
+            final long firstSegment = buffer.getLong(entryOffset + ENTRY_HEAD_OFFSET);
+            final long lastSegment = buffer.getLong(entryOffset + ENTRY_HEAD_OFFSET + BitUtil.SIZE_OF_LONG);
+
+            int firstBlock = NO_BLOCK;
+            int lastBlock = NO_BLOCK;
+            int block = buffer.getInt(entryOffset + ENTRY_FIRST_BLOCK_OFFSET);
+            while (block != NO_BLOCK && !usedBlocks[block])
+            {
+                final int blockEntryOffset = blockEntryOffset(block);
+                final long segment = buffer.getLong(blockEntryOffset + BLOCK_SEGMENT_OFFSET);
+                final boolean owned = buffer.getLong(blockEntryOffset + BLOCK_SESSION_ID_OFFSET) == fixSessionId;
+                if (!owned || segment > lastSegment)
+                {
+                    break;
+                }
+
+                if (segment >= firstSegment)
+                {
+                    usedBlocks[block] = true;
+                    if (firstBlock == NO_BLOCK)
+                    {
+                        firstBlock = block;
+                    }
+                    else
+                    {
+                        buffer.putInt(blockEntryOffset(lastBlock) + BLOCK_NEXT_OFFSET, block);
+                    }
+                    lastBlock = block;
+                }
+
+                block = buffer.getInt(blockEntryOffset + BLOCK_NEXT_OFFSET);
+            }
+
+            if (lastBlock != NO_BLOCK)
+            {
+                buffer.putInt(blockEntryOffset(lastBlock) + BLOCK_NEXT_OFFSET, NO_BLOCK);
+            }
+            buffer.putInt(entryOffset + ENTRY_FIRST_BLOCK_OFFSET, firstBlock);
+            buffer.putInt(entryOffset + ENTRY_LAST_BLOCK_OFFSET, lastBlock);
+        }
+
+        freeBlocks = new int[segmentCount];
+        freeBlockCount = 0;
+        // Pushed in reverse so that blocks are allocated from the start of the file first.
+        for (int block = segmentCount - 1; block >= 0; block--)
+        {
+            if (!usedBlocks[block])
+            {
+                freeBlock(block);
+            }
+        }
+    }
+
+    private int allocateBlock(final int entryOffset, final long fixSessionId, final long segment)
+    {
+        final int block = freeBlocks[--freeBlockCount];
+        final int blockEntryOffset = blockEntryOffset(block);
+        buffer.putLong(blockEntryOffset + BLOCK_SEGMENT_OFFSET, segment);
+        buffer.putInt(blockEntryOffset + BLOCK_NEXT_OFFSET, NO_BLOCK);
+        buffer.putLongOrdered(blockEntryOffset + BLOCK_SESSION_ID_OFFSET, fixSessionId);
+
+        // A reused block could still hold another session's segment.
+        buffer.setMemory(blockOffset(block), segmentSize, (byte)0);
+
+        final int lastBlock = buffer.getInt(entryOffset + ENTRY_LAST_BLOCK_OFFSET);
+        if (lastBlock == NO_BLOCK)
+        {
+            buffer.putIntOrdered(entryOffset + ENTRY_FIRST_BLOCK_OFFSET, block);
+        }
+        else
+        {
+            buffer.putIntOrdered(blockEntryOffset(lastBlock) + BLOCK_NEXT_OFFSET, block);
+        }
+        buffer.putInt(entryOffset + ENTRY_LAST_BLOCK_OFFSET, block);
+
+        return block;
+    }
+
+    private void freeBlock(final int block)
+    {
+        buffer.putLongOrdered(blockEntryOffset(block) + BLOCK_SESSION_ID_OFFSET, NO_SESSION_ID);
+        freeBlocks[freeBlockCount++] = block;
+    }
+
+    private int findBlock(final int entryOffset, final long fixSessionId, final long segment)
+    {
+        // Chains are bounded by the retention policy and don't need any mapping to walk.
+        int block = buffer.getIntVolatile(entryOffset + ENTRY_FIRST_BLOCK_OFFSET);
+        for (int i = 0; block != NO_BLOCK && i < segmentCount; i++)
+        {
+            final int blockEntryOffset = blockEntryOffset(block);
+            final long blockSegment = buffer.getLong(blockEntryOffset + BLOCK_SEGMENT_OFFSET);
+            if (buffer.getLongVolatile(blockEntryOffset + BLOCK_SESSION_ID_OFFSET) != fixSessionId ||
+                blockSegment > segment)
+            {
+                // Either the chain has been modified under a reader, or the segment isn't in the chain.
+                return NO_BLOCK;
+            }
+
+            if (blockSegment == segment)
+            {
+                return block;
+            }
+
+            block = buffer.getIntVolatile(blockEntryOffset + BLOCK_NEXT_OFFSET);
+        }
+
+        return NO_BLOCK;
+    }
+
+    private int findEntry(final long fixSessionId)
+    {
+        int slot = homeSlot(fixSessionId, sessionCapacity);
+        for (int i = 0; i < sessionCapacity; i++)
+        {
+            final int entryOffset = entryOffset(slot);
+            final long entrySessionId = buffer.getLongVolatile(entryOffset + ENTRY_SESSION_ID_OFFSET);
+            if (entrySessionId == fixSessionId)
+            {
+                return entryOffset;
+            }
+
+            if (entrySessionId == NO_SESSION_ID)
+            {
+                return NO_ENTRY;
+            }
+
+            slot = nextSlot(slot, sessionCapacity);
+        }
+
+        return NO_ENTRY;
+    }
+
+    private int findOrAddEntry(final long fixSessionId)
+    {
+        int slot = homeSlot(fixSessionId, sessionCapacity);
+        for (int i = 0; i < sessionCapacity; i++)
+        {
+            final int entryOffset = entryOffset(slot);
+            final long entrySessionId = buffer.getLong(entryOffset + ENTRY_SESSION_ID_OFFSET);
+            if (entrySessionId == fixSessionId)
+            {
+                return entryOffset;
+            }
+
+            if (entrySessionId == NO_SESSION_ID)
+            {
+                buffer.putLong(entryOffset + ENTRY_HEAD_OFFSET, 0);
+                buffer.putLong(entryOffset + ENTRY_HEAD_OFFSET + BitUtil.SIZE_OF_LONG, 0);
+                buffer.putInt(entryOffset + ENTRY_FIRST_BLOCK_OFFSET, NO_BLOCK);
+                buffer.putInt(entryOffset + ENTRY_LAST_BLOCK_OFFSET, NO_BLOCK);
+                // Written last so that readers only see the entry once it's complete.
+                buffer.putLongOrdered(entryOffset + ENTRY_SESSION_ID_OFFSET, fixSessionId);
+                return entryOffset;
+            }
+
+            slot = nextSlot(slot, sessionCapacity);
+        }
+
+        return NO_ENTRY;
+    }
+
+    private int entryOffset(final int slot)
+    {
+        return DIRECTORY_OFFSET + slot * ENTRY_LENGTH;
+    }
+
+    private int blockEntryOffset(final int block)
+    {
+        return blockTableOffset + block * BLOCK_ENTRY_LENGTH;
+    }
+
+    private int blockOffset(final int block)
+    {
+        return blocksOffset + block * segmentSize;
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.logbuffer.Header;
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.ErrorHandler;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.IoUtil;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntHashSet;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.artio.messages.FixMessageDecoder;
+import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
+
+import java.io.File;
+
+import static io.aeron.logbuffer.FrameDescriptor.*;
+import static io.aeron.protocol.DataHeaderFlyweight.HEADER_LENGTH;
+import static org.agrona.UnsafeAccess.UNSAFE;
+import static uk.co.real_logic.artio.dictionary.SessionConstants.START_OF_HEADER;
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.REPLAY_POSITION_BUFFER_SIZE;
+import static uk.co.real_logic.artio.engine.logger.TagIndexDescriptor.*;
+import static uk.co.real_logic.artio.messages.MessageStatus.OK;
+
+/**
+ * Builds an index of the values of chosen tags, for example ClOrdID, in the fix messages of a stream. Each entry
+ * points at the frames of a message within its recording, so that messages can be looked up by a tag's value without
+ * scanning the archive, see {@link TagIndexReader} and {@link FixArchiveScanner#scanTagIndex}.
+ *
+ * The index is a single file with a fixed number of buckets and a ring of entries, so the oldest entries are
+ * overwritten once it fills up, see {@link TagIndexDescriptor}. Written positions are stored in a separate file.
+ */
+public class TagIndex implements Index
+{
+    private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
+    private final FixMessageDecoder fixMessage = new FixMessageDecoder();
+    private final Int2ObjectHashMap<PartialMessage> aeronSessionIdToPartialMessage = new Int2ObjectHashMap<>();
+    private final IntHashSet tags = new IntHashSet();
+
+    private final int requiredStreamId;
+    private final RecordingIdLookup recordingIdLookup;
+    private final AtomicBuffer buffer;
+    private final AtomicBuffer positionBuffer;
+    private final IndexedPositionWriter positionWriter;
+    private final IndexedPositionReader positionReader;
+    private final int bucketMask;
+    private final int entriesOffset;
+    private final int entryCapacity;
+
+    public TagIndex(
+        final String logFileDir,
+        final int requiredStreamId,
+        final int[] tags,
+        final int bucketCount,
+        final int entryCapacity,
+        final ErrorHandler errorHandler,
+        final RecordingIdLookup recordingIdLookup)
+    {
+        this.requiredStreamId = requiredStreamId;
+        this.recordingIdLookup = recordingIdLookup;
+        for (final int tag : tags)
+        {
+            this.tags.add(tag);
+        }
+
+        final File file = tagIndexFile(logFileDir, requiredStreamId);
+        if (file.exists())
+        {
+            buffer = new UnsafeBuffer(LoggerUtil.mapExistingFile(file));
+        }
+        else
+        {
+            if (!BitUtil.isPowerOfTwo(bucketCount) || fileSize(bucketCount, entryCapacity) > Integer.MAX_VALUE ||
+                entryCapacity < entryLength(0))
+            {
+                throw new IllegalArgumentException(String.format(
+                    "Invalid tag index size: bucketCount=%d, entryCapacity=%d", bucketCount, entryCapacity));
+            }
+
+            buffer = new UnsafeBuffer(LoggerUtil.mapNewFile(file, (int)fileSize(bucketCount, entryCapacity)));
+        }
+
+        // The size of an existing index is kept, since its entries would be lost if it was resized.
+        if (writePositionVolatile(buffer) == NO_ENTRY)
+        {
+            bucketCount(buffer, bucketCount);
+            entryCapacity(buffer, entryCapacity);
+            writePositionOrdered(buffer, FIRST_ENTRY_POSITION);
+        }
+        bucketMask = bucketCount(buffer) - 1;
+        entriesOffset = entriesOffset(bucketCount(buffer));
+        this.entryCapacity = entryCapacity(buffer);
+
+        final String positionPath = tagIndexPositionPath(logFileDir, requiredStreamId);
+        positionBuffer = new UnsafeBuffer(LoggerUtil.map(new File(positionPath), REPLAY_POSITION_BUFFER_SIZE));
+        positionWriter = new IndexedPositionWriter(positionBuffer, errorHandler, 0, positionPath);
+        positionReader = new IndexedPositionReader(positionBuffer);
+    }
+
+    public void onFragment(final DirectBuffer srcBuffer, final int srcOffset, final int srcLength, final Header header)
+    {
+        if (header.streamId() != requiredStreamId)
+        {
+            return;
+        }
+
+        final int aeronSessionId = header.sessionId();
+        final long recordingId = recordingIdLookup.getRecordingId(aeronSessionId);
+        final long endPosition = header.position();
+        final long beginPosition = endPosition - BitUtil.align(srcLength + HEADER_LENGTH, FRAME_ALIGNMENT);
+        final byte flags = header.flags();
+
+        if ((flags & UNFRAGMENTED) == UNFRAGMENTED)
+        {
+            if (isIndexed(srcBuffer, srcOffset))
+            {
+                indexMessage(srcBuffer, srcOffset, recordingId, beginPosition, endPosition);
+            }
+        }
+        else if ((flags & BEGIN_FRAG_FLAG) == BEGIN_FRAG_FLAG)
+        {
+            // Only messages that are indexed are reassembled.
+            final PartialMessage partialMessage = partialMessage(aeronSessionId);
+            if (isIndexed(srcBuffer, srcOffset))
+            {
+                partialMessage.begin(srcBuffer, srcOffset, srcLength, beginPosition);
+            }
+            else
+            {
+                partialMessage.reset();
+            }
+        }
+        else
+        {
+            final PartialMessage partialMessage = aeronSessionIdToPartialMessage.get(aeronSessionId);
+            if (partialMessage != null && partialMessage.isActive())
+            {
+                partialMessage.append(srcBuffer, srcOffset, srcLength);
+                if ((flags & END_FRAG_FLAG) == END_FRAG_FLAG)
+                {
+                    indexMessage(
+                        partialMessage.buffer, 0, recordingId, partialMessage.beginPosition, endPosition);
+                    partialMessage.reset();
+                }
+            }
+        }
+
+        positionWriter.indexedUpTo(aeronSessionId, recordingId, endPosition);
+        positionWriter.updateChecksums();
+    }
+
+    private PartialMessage partialMessage(final int aeronSessionId)
+    {
+        PartialMessage partialMessage = aeronSessionIdToPartialMessage.get(aeronSessionId);
+        if (partialMessage == null)
+        {
+            partialMessage = new PartialMessage();
+            aeronSessionIdToPartialMessage.put(aeronSessionId, partialMessage);
+        }
+
+        return partialMessage;
+    }
+
+    private boolean isIndexed(final DirectBuffer srcBuffer, final int srcOffset)
+    {
+        messageHeader.wrap(srcBuffer, srcOffset);
+        if (messageHeader.templateId() != FixMessageDecoder.TEMPLATE_ID)
+        {
+            return false;
+        }
+
+        fixMessage.wrap(
+            srcBuffer,
+            srcOffset + MessageHeaderDecoder.ENCODED_LENGTH,
+            messageHeader.blockLength(),
+            messageHeader.version());
+
+        return fixMessage.status() == OK;
+    }
+
+    private void indexMessage(
+        final DirectBuffer srcBuffer,
+        final int srcOffset,
+        final long recordingId,
+        final long beginPosition,
+        final long endPosition)
+    {
+        messageHeader.wrap(srcBuffer, srcOffset);
+        final int actingBlockLength = messageHeader.blockLength();
+        fixMessage.wrap(
+            srcBuffer, srcOffset + MessageHeaderDecoder.ENCODED_LENGTH, actingBlockLength, messageHeader.version());
+
+        final int bodyOffset = srcOffset + MessageHeaderDecoder.ENCODED_LENGTH + actingBlockLength +
+            FixMessageDecoder.bodyHeaderLength();
+        final int bodyEnd = bodyOffset + fixMessage.bodyLength();
+        final int length = (int)(endPosition - beginPosition);
+
+        int index = bodyOffset;
+        while (index < bodyEnd)
+        {
+            int tag = 0;
+            byte value;
+            while (index < bodyEnd && (value = srcBuffer.getByte(index)) != '=')
+            {
+                tag = tag * 10 + value - '0';
+                index++;
+            }
+
+            final int valueOffset = index + 1;
+            int valueEnd = valueOffset;
+            while (valueEnd < bodyEnd && srcBuffer.getByte(valueEnd) != START_OF_HEADER)
+            {
+                valueEnd++;
+            }
+
+            if (valueEnd <= bodyEnd && tags.contains(tag))
+            {
+                putEntry(tag, srcBuffer, valueOffset, valueEnd - valueOffset, recordingId, beginPosition, length);
+            }
+
+            index = valueEnd + 1;
+        }
+    }
+
+    private void putEntry(
+        final int tag,
+        final DirectBuffer srcBuffer,
+        final int valueOffset,
+        final int valueLength,
+        final long recordingId,
+        final long position,
+        final int length)
+    {
+        final int entryLength = entryLength(valueLength);
+        if (entryLength > entryCapacity)
+        {
+            return;
+        }
+
+        long entryPosition = writePositionVolatile(buffer);
+        int entryOffset = (int)(entryPosition % entryCapacity);
+        if (entryOffset + entryLength > entryCapacity)
+        {
+            // Entries never wrap around the end of the ring.
+            entryPosition += entryCapacity - entryOffset;
+            entryOffset = 0;
+        }
+        entryOffset += entriesOffset;
+
+        // Readers must see that the entries are being overwritten before they are.
+        writePositionOrdered(buffer, entryPosition + entryLength);
+        UNSAFE.storeFence();
+
+        final int bucketOffset = bucketOffset(bucket(tag, srcBuffer, valueOffset, valueLength, bucketMask));
+        buffer.putLong(entryOffset + PREVIOUS_POSITION_OFFSET, buffer.getLong(bucketOffset));
+        buffer.putLong(entryOffset + RECORDING_ID_OFFSET, recordingId);
+        buffer.putLong(entryOffset + POSITION_OFFSET, position);
+        buffer.putInt(entryOffset + LENGTH_OFFSET, length);
+        buffer.putInt(entryOffset + TAG_OFFSET, tag);
+        buffer.putInt(entryOffset + VALUE_LENGTH_OFFSET, valueLength);
+        buffer.putBytes(entryOffset + VALUE_OFFSET, srcBuffer, valueOffset, valueLength);
+
+        buffer.putLongOrdered(bucketOffset, entryPosition);
+    }
+
+    public void readLastPosition(final IndexedPositionConsumer consumer)
+    {
+        positionReader.readLastPosition(consumer);
+    }
+
+    public void close()
+    {
+        positionWriter.close();
+        IoUtil.unmap(positionBuffer.byteBuffer());
+        IoUtil.unmap(buffer.byteBuffer());
+    }
+
+    private static final class PartialMessage
+    {
+        private final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
+
+        private int length;
+        private long beginPosition;
+        private boolean active;
+
+        void begin(final DirectBuffer srcBuffer, final int srcOffset, final int srcLength, final long beginPosition)
+        {
+            length = 0;
+            this.beginPosition = beginPosition;
+            active = true;
+            append(srcBuffer, srcOffset, srcLength);
+        }
+
+        void append(final DirectBuffer srcBuffer, final int srcOffset, final int srcLength)
+        {
+            buffer.putBytes(length, srcBuffer, srcOffset, srcLength);
+            length += srcLength;
+        }
+
+        boolean isActive()
+        {
+            return active;
+        }
+
+        void reset()
+        {
+            active = false;
+        }
+    }
+}
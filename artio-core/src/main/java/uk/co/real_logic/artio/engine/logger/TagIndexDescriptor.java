@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Hashing;
+import org.agrona.concurrent.AtomicBuffer;
+
+import java.io.File;
+
+/**
+ * Describes the file of the tag index.
+ *
+ * The file is a hash table of buckets followed by an area of entries that is written to as a ring. It consists of:
+ *
+ * Write position, the logical position in the entry area that the next entry is written at
+ * Bucket count, a power of two
+ * Entry capacity, the length of the entry area
+ * Buckets, each the logical position of the most recent entry whose tag and value hash to the bucket
+ * Entries
+ *
+ * Each entry consists of:
+ *
+ * Previous position, the logical position of the previous entry in the same bucket
+ * Recording id
+ * Position, of the first frame of the message within the recording
+ * Length, of the message's frames within the recording
+ * Tag
+ * Value length
+ * Value, in ASCII
+ *
+ * Logical positions only ever increase, the entry at a logical position is at the position modulo the entry capacity
+ * within the entry area. The write position is moved on before an entry is overwritten, so an entry is valid if its
+ * logical position is no more than the entry capacity behind the write position. A position of
+ * {@link #NO_ENTRY} marks the end of a bucket's chain.
+ */
+public final class TagIndexDescriptor
+{
+    static final long NO_ENTRY = 0;
+    static final int ENTRY_ALIGNMENT = BitUtil.SIZE_OF_LONG;
+    static final long FIRST_ENTRY_POSITION = ENTRY_ALIGNMENT;
+
+    private static final int WRITE_POSITION_OFFSET = 0;
+    private static final int BUCKET_COUNT_OFFSET = WRITE_POSITION_OFFSET + BitUtil.SIZE_OF_LONG;
+    private static final int ENTRY_CAPACITY_OFFSET = BUCKET_COUNT_OFFSET + BitUtil.SIZE_OF_INT;
+    static final int BUCKETS_OFFSET = ENTRY_CAPACITY_OFFSET + BitUtil.SIZE_OF_INT;
+
+    static final int PREVIOUS_POSITION_OFFSET = 0;
+    static final int RECORDING_ID_OFFSET = PREVIOUS_POSITION_OFFSET + BitUtil.SIZE_OF_LONG;
+    static final int POSITION_OFFSET = RECORDING_ID_OFFSET + BitUtil.SIZE_OF_LONG;
+    static final int LENGTH_OFFSET = POSITION_OFFSET + BitUtil.SIZE_OF_LONG;
+    static final int TAG_OFFSET = LENGTH_OFFSET + BitUtil.SIZE_OF_INT;
+    static final int VALUE_LENGTH_OFFSET = TAG_OFFSET + BitUtil.SIZE_OF_INT;
+    static final int VALUE_OFFSET = VALUE_LENGTH_OFFSET + BitUtil.SIZE_OF_INT;
+
+    public static File tagIndexFile(final String logFileDir, final int streamId)
+    {
+        return new File(logFileDir + File.separator + "tag-index-" + streamId);
+    }
+
+    static String tagIndexPositionPath(final String logFileDir, final int streamId)
+    {
+        return logFileDir + File.separator + "tag-index-positions-" + streamId;
+    }
+
+    static long fileSize(final int bucketCount, final int entryCapacity)
+    {
+        return entriesOffset(bucketCount) + (long)entryCapacity;
+    }
+
+    static int entriesOffset(final int bucketCount)
+    {
+        return BUCKETS_OFFSET + bucketCount * BitUtil.SIZE_OF_LONG;
+    }
+
+    static int entryLength(final int valueLength)
+    {
+        return BitUtil.align(VALUE_OFFSET + valueLength, ENTRY_ALIGNMENT);
+    }
+
+    static int bucket(final int tag, final DirectBuffer buffer, final int offset, final int length, final int mask)
+    {
+        int hash = tag;
+        for (int i = 0; i < length; i++)
+        {
+            hash = 31 * hash + buffer.getByte(offset + i);
+        }
+
+        return Hashing.hash(hash, mask);
+    }
+
+    static int bucketOffset(final int bucket)
+    {
+        return BUCKETS_OFFSET + bucket * BitUtil.SIZE_OF_LONG;
+    }
+
+    static void writePositionOrdered(final AtomicBuffer buffer, final long writePosition)
+    {
+        buffer.putLongOrdered(WRITE_POSITION_OFFSET, writePosition);
+    }
+
+    static long writePositionVolatile(final AtomicBuffer buffer)
+    {
+        return buffer.getLongVolatile(WRITE_POSITION_OFFSET);
+    }
+
+    static void bucketCount(final AtomicBuffer buffer, final int bucketCount)
+    {
+        buffer.putInt(BUCKET_COUNT_OFFSET, bucketCount);
+    }
+
+    static int bucketCount(final AtomicBuffer buffer)
+    {
+        return buffer.getInt(BUCKET_COUNT_OFFSET);
+    }
+
+    static void entryCapacity(final AtomicBuffer buffer, final int entryCapacity)
+    {
+        buffer.putInt(ENTRY_CAPACITY_OFFSET, entryCapacity);
+    }
+
+    static int entryCapacity(final AtomicBuffer buffer)
+    {
+        return buffer.getInt(ENTRY_CAPACITY_OFFSET);
+    }
+}
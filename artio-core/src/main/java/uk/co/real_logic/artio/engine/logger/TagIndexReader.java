@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.IoUtil;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.File;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.agrona.UnsafeAccess.UNSAFE;
+import static uk.co.real_logic.artio.engine.logger.TagIndexDescriptor.*;
+
+/**
+ * Looks up the messages with a given value of a tag in a {@link TagIndex}. The index can be read whilst the engine
+ * is writing to it, entries that are overwritten whilst they're being read are skipped.
+ */
+public class TagIndexReader implements AutoCloseable
+{
+    private final UnsafeBuffer valueBuffer = new UnsafeBuffer(0, 0);
+    private final AtomicBuffer buffer;
+    private final int bucketMask;
+    private final int entriesOffset;
+    private final int entryCapacity;
+
+    /**
+     * Open an index file for reading.
+     *
+     * @param file the index file, see {@link TagIndexDescriptor#tagIndexFile(String, int)}.
+     */
+    public TagIndexReader(final File file)
+    {
+        buffer = new UnsafeBuffer(LoggerUtil.mapExistingFile(file));
+        bucketMask = bucketCount(buffer) - 1;
+        entriesOffset = entriesOffset(bucketCount(buffer));
+        entryCapacity = entryCapacity(buffer);
+    }
+
+    /**
+     * Find the messages that have a given value of a tag, most recent first.
+     *
+     * @param tag the tag to look up, it must be one of the indexed tags.
+     * @param value the value of the tag.
+     * @param consumer the consumer of the location of each message.
+     * @return the number of messages found.
+     */
+    public int query(final int tag, final String value, final TagIndexEntryConsumer consumer)
+    {
+        final byte[] valueBytes = value.getBytes(US_ASCII);
+        valueBuffer.wrap(valueBytes);
+        final int valueLength = valueBytes.length;
+        final int bucketOffset = bucketOffset(bucket(tag, valueBuffer, 0, valueLength, bucketMask));
+
+        int count = 0;
+        long entryPosition = buffer.getLongVolatile(bucketOffset);
+        long lastEntryPosition = Long.MAX_VALUE;
+        // Chains only ever point back to older entries, anything else has been overwritten.
+        while (entryPosition != NO_ENTRY && entryPosition < lastEntryPosition && !isOverwritten(entryPosition))
+        {
+            final int entryOffset = entriesOffset + (int)(entryPosition % entryCapacity);
+            final long previousPosition = buffer.getLong(entryOffset + PREVIOUS_POSITION_OFFSET);
+            final long recordingId = buffer.getLong(entryOffset + RECORDING_ID_OFFSET);
+            final long position = buffer.getLong(entryOffset + POSITION_OFFSET);
+            final int length = buffer.getInt(entryOffset + LENGTH_OFFSET);
+            final boolean matches = buffer.getInt(entryOffset + TAG_OFFSET) == tag &&
+                buffer.getInt(entryOffset + VALUE_LENGTH_OFFSET) == valueLength &&
+                valueEquals(entryOffset + VALUE_OFFSET, valueBytes);
+
+            // The entry was read before checking that it hadn't been overwritten whilst reading.
+            UNSAFE.loadFence();
+            if (isOverwritten(entryPosition))
+            {
+                break;
+            }
+
+            if (matches)
+            {
+                consumer.accept(recordingId, position, length);
+                count++;
+            }
+
+            lastEntryPosition = entryPosition;
+            entryPosition = previousPosition;
+        }
+
+        return count;
+    }
+
+    private boolean valueEquals(final int offset, final byte[] valueBytes)
+    {
+        final int valueLength = valueBytes.length;
+        if (offset + valueLength > buffer.capacity())
+        {
+            return false;
+        }
+
+        for (int i = 0; i < valueLength; i++)
+        {
+            if (buffer.getByte(offset + i) != valueBytes[i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isOverwritten(final long entryPosition)
+    {
+        return entryPosition < writePositionVolatile(buffer) - entryCapacity;
+    }
+
+    public void close()
+    {
+        IoUtil.unmap(buffer.byteBuffer());
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.logbuffer.Header;
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.ErrorHandler;
+import org.agrona.LangUtil;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.artio.messages.FixMessageDecoder;
+import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static io.aeron.logbuffer.FrameDescriptor.*;
+import static io.aeron.protocol.DataHeaderFlyweight.HEADER_LENGTH;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static uk.co.real_logic.artio.engine.logger.TimestampIndexDescriptor.*;
+
+/**
+ * Indexes the timestamps of the fix messages in a stream, so that a scan of the archive for a time range can skip the
+ * parts of recordings that are outside of it.
+ *
+ * Each recording is split into ranges of roughly checkpointInterval bytes and a record of the range's minimum and
+ * maximum timestamps is appended to the index once the range is complete, see {@link TimestampIndexDescriptor}.
+ *
+ * @see TimestampIndexReader
+ */
+public class TimestampIndex implements Index
+{
+    private static final long NO_POSITION = -1;
+
+    private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
+    private final FixMessageDecoder fixMessage = new FixMessageDecoder();
+    private final Long2ObjectHashMap<Range> recordingIdToRange = new Long2ObjectHashMap<>();
+    private final ByteBuffer recordByteBuffer = ByteBuffer.allocateDirect(RECORD_LENGTH);
+    private final UnsafeBuffer recordBuffer = new UnsafeBuffer(recordByteBuffer);
+
+    private final int requiredStreamId;
+    private final int checkpointInterval;
+    private final ErrorHandler errorHandler;
+    private final RecordingIdLookup recordingIdLookup;
+    private final FileChannel channel;
+
+    public TimestampIndex(
+        final String logFileDir,
+        final int requiredStreamId,
+        final int checkpointInterval,
+        final ErrorHandler errorHandler,
+        final RecordingIdLookup recordingIdLookup)
+    {
+        this.requiredStreamId = requiredStreamId;
+        this.checkpointInterval = checkpointInterval;
+        this.errorHandler = errorHandler;
+        this.recordingIdLookup = recordingIdLookup;
+
+        final File file = timestampIndexFile(logFileDir, requiredStreamId);
+        FileChannel channel = null;
+        try
+        {
+            channel = FileChannel.open(file.toPath(), CREATE, READ, WRITE);
+            readRecords(channel);
+        }
+        catch (final IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+        this.channel = channel;
+    }
+
+    // Restores the end of each recording's last range so that indexing can be caught up from it.
+    private void readRecords(final FileChannel channel) throws IOException
+    {
+        // Drop a record that was only partly written when the engine stopped.
+        final long size = channel.size() - (channel.size() % RECORD_LENGTH);
+        channel.truncate(size);
+
+        long filePosition = 0;
+        while (filePosition < size)
+        {
+            recordByteBuffer.clear();
+            while (recordByteBuffer.hasRemaining())
+            {
+                channel.read(recordByteBuffer, filePosition + recordByteBuffer.position());
+            }
+
+            final long recordingId = recordBuffer.getLong(RECORDING_ID_OFFSET);
+            Range range = recordingIdToRange.get(recordingId);
+            if (range == null)
+            {
+                range = new Range(recordingId);
+                recordingIdToRange.put(recordingId, range);
+            }
+            range.aeronSessionId = recordBuffer.getInt(AERON_SESSION_ID_OFFSET);
+            range.endPosition = recordBuffer.getLong(END_POSITION_OFFSET);
+
+            filePosition += RECORD_LENGTH;
+        }
+
+        channel.position(size);
+    }
+
+    public void onFragment(final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        if (header.streamId() != requiredStreamId)
+        {
+            return;
+        }
+
+        final int aeronSessionId = header.sessionId();
+        final long recordingId = recordingIdLookup.getRecordingId(aeronSessionId);
+        final long endPosition = header.position();
+        final long startPosition = endPosition - BitUtil.align(length + HEADER_LENGTH, FRAME_ALIGNMENT);
+        final byte flags = header.flags();
+        final boolean beginsMessage = (flags & BEGIN_FRAG_FLAG) == BEGIN_FRAG_FLAG;
+
+        Range range = recordingIdToRange.get(recordingId);
+        if (range == null)
+        {
+            range = new Range(recordingId);
+            recordingIdToRange.put(recordingId, range);
+        }
+
+        // Aeron doesn't deliver the padding at the end of a term, so the first fragment of a term starts after a gap.
+        // Cover the padding with the range so that the records of the recording stay contiguous.
+        if (followsPadding(header, range, startPosition))
+        {
+            if (range.startPosition == NO_POSITION)
+            {
+                range.start(aeronSessionId, range.endPosition);
+            }
+            range.endPosition = startPosition;
+        }
+
+        if (range.startPosition != NO_POSITION &&
+            (startPosition != range.endPosition ||
+            (beginsMessage && startPosition - range.startPosition >= checkpointInterval)))
+        {
+            checkpoint(range);
+        }
+
+        if (range.startPosition == NO_POSITION)
+        {
+            range.start(aeronSessionId, startPosition);
+        }
+
+        if (beginsMessage)
+        {
+            messageHeader.wrap(buffer, offset);
+            if (messageHeader.templateId() == FixMessageDecoder.TEMPLATE_ID)
+            {
+                fixMessage.wrap(
+                    buffer,
+                    offset + MessageHeaderDecoder.ENCODED_LENGTH,
+                    messageHeader.blockLength(),
+                    messageHeader.version());
+
+                final long timestamp = fixMessage.timestamp();
+                range.minTimestamp = Math.min(range.minTimestamp, timestamp);
+                range.maxTimestamp = Math.max(range.maxTimestamp, timestamp);
+            }
+        }
+
+        range.endPosition = endPosition;
+    }
+
+    private static boolean followsPadding(final Header header, final Range range, final long startPosition)
+    {
+        final long termLength = 1L << header.positionBitsToShift();
+        return header.termOffset() == 0 &&
+            range.endPosition != NO_POSITION &&
+            range.endPosition < startPosition &&
+            range.endPosition > startPosition - termLength;
+    }
+
+    private void checkpoint(final Range range)
+    {
+        recordBuffer.putLong(RECORDING_ID_OFFSET, range.recordingId);
+        recordBuffer.putLong(START_POSITION_OFFSET, range.startPosition);
+        recordBuffer.putLong(END_POSITION_OFFSET, range.endPosition);
+        recordBuffer.putLong(MIN_TIMESTAMP_OFFSET, range.minTimestamp);
+        recordBuffer.putLong(MAX_TIMESTAMP_OFFSET, range.maxTimestamp);
+        recordBuffer.putInt(AERON_SESSION_ID_OFFSET, range.aeronSessionId);
+
+        try
+        {
+            recordByteBuffer.clear();
+            while (recordByteBuffer.hasRemaining())
+            {
+                channel.write(recordByteBuffer);
+            }
+        }
+        catch (final IOException ex)
+        {
+            errorHandler.onError(ex);
+        }
+
+        range.startPosition = NO_POSITION;
+    }
+
+    public void readLastPosition(final IndexedPositionConsumer consumer)
+    {
+        recordingIdToRange.values().forEach(range ->
+            consumer.accept(range.aeronSessionId, range.recordingId, range.endPosition));
+    }
+
+    public void close()
+    {
+        recordingIdToRange.values().forEach(range ->
+        {
+            if (range.startPosition != NO_POSITION)
+            {
+                checkpoint(range);
+            }
+        });
+
+        try
+        {
+            channel.close();
+        }
+        catch (final IOException ex)
+        {
+            errorHandler.onError(ex);
+        }
+    }
+
+    private static final class Range
+    {
+        private final long recordingId;
+
+        private int aeronSessionId;
+        private long startPosition = NO_POSITION;
+        private long endPosition = NO_POSITION;
+        private long minTimestamp;
+        private long maxTimestamp;
+
+        Range(final long recordingId)
+        {
+            this.recordingId = recordingId;
+        }
+
+        void start(final int aeronSessionId, final long startPosition)
+        {
+            this.aeronSessionId = aeronSessionId;
+            this.startPosition = startPosition;
+            minTimestamp = Long.MAX_VALUE;
+            maxTimestamp = Long.MIN_VALUE;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.BitUtil;
+
+import java.io.File;
+
+/**
+ * Describes the file of the timestamp index.
+ *
+ * The file is a sequence of checkpoint records that are only ever appended to. Each record covers a contiguous range
+ * of positions within a recording and consists of:
+ *
+ * Recording id
+ * Start position, inclusive
+ * End position, exclusive
+ * Minimum timestamp of the fix messages in the range
+ * Maximum timestamp of the fix messages in the range
+ * Aeron session id
+ *
+ * The records of a recording are in position order. A range that holds no fix messages has a minimum timestamp of
+ * Long.MAX_VALUE and a maximum timestamp of Long.MIN_VALUE.
+ */
+public final class TimestampIndexDescriptor
+{
+    static final int RECORDING_ID_OFFSET = 0;
+    static final int START_POSITION_OFFSET = RECORDING_ID_OFFSET + BitUtil.SIZE_OF_LONG;
+    static final int END_POSITION_OFFSET = START_POSITION_OFFSET + BitUtil.SIZE_OF_LONG;
+    static final int MIN_TIMESTAMP_OFFSET = END_POSITION_OFFSET + BitUtil.SIZE_OF_LONG;
+    static final int MAX_TIMESTAMP_OFFSET = MIN_TIMESTAMP_OFFSET + BitUtil.SIZE_OF_LONG;
+    static final int AERON_SESSION_ID_OFFSET = MAX_TIMESTAMP_OFFSET + BitUtil.SIZE_OF_LONG;
+
+    static final int RECORD_LENGTH = 48;
+
+    public static File timestampIndexFile(final String logFileDir, final int streamId)
+    {
+        return new File(logFileDir + File.separator + "timestamp-index-" + streamId);
+    }
+}
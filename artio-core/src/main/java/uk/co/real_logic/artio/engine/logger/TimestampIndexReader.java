@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.LangUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static uk.co.real_logic.artio.engine.logger.TimestampIndexDescriptor.*;
+
+/**
+ * Narrows the positions of a recording that need to be scanned for messages within a time range, using the records
+ * written by a {@link TimestampIndex}. Parts of a recording that haven't been indexed are always scanned.
+ */
+public class TimestampIndexReader
+{
+    private final UnsafeBuffer buffer;
+    private final int recordCount;
+
+    /**
+     * Read the records that have been written to an index file so far.
+     *
+     * @param file the index file, if it doesn't exist then no part of any recording is skipped.
+     */
+    public TimestampIndexReader(final File file)
+    {
+        byte[] bytes = new byte[0];
+        if (file.exists())
+        {
+            try
+            {
+                bytes = Files.readAllBytes(file.toPath());
+            }
+            catch (final IOException ex)
+            {
+                LangUtil.rethrowUnchecked(ex);
+            }
+        }
+
+        buffer = new UnsafeBuffer(bytes);
+        recordCount = bytes.length / RECORD_LENGTH;
+    }
+
+    /**
+     * Find the position to start scanning a recording from, all messages before it were sent before the time range.
+     *
+     * @param recordingId the recording to scan.
+     * @param recordingStartPosition the position that the recording starts at.
+     * @param beginTimestampInclusive the start of the time range.
+     * @return the position to start scanning from.
+     */
+    public long startPosition(
+        final long recordingId, final long recordingStartPosition, final long beginTimestampInclusive)
+    {
+        long position = recordingStartPosition;
+        for (int i = 0; i < recordCount; i++)
+        {
+            final int offset = i * RECORD_LENGTH;
+            if (buffer.getLong(offset + RECORDING_ID_OFFSET) != recordingId)
+            {
+                continue;
+            }
+
+            // Only skip over ranges that are contiguous with the start of the recording.
+            if (buffer.getLong(offset + START_POSITION_OFFSET) != position ||
+                buffer.getLong(offset + MAX_TIMESTAMP_OFFSET) >= beginTimestampInclusive)
+            {
+                break;
+            }
+
+            position = buffer.getLong(offset + END_POSITION_OFFSET);
+        }
+
+        return position;
+    }
+
+    /**
+     * Find the position to stop scanning a recording at, all messages after it were sent after the time range.
+     *
+     * @param recordingId the recording to scan.
+     * @param recordingStopPosition the position that the recording stops at, or the position to scan up to if it's
+     *                              still being recorded.
+     * @param endTimestampExclusive the end of the time range.
+     * @return the position to stop scanning at.
+     */
+    public long stopPosition(
+        final long recordingId, final long recordingStopPosition, final long endTimestampExclusive)
+    {
+        long position = recordingStopPosition;
+        for (int i = recordCount - 1; i >= 0; i--)
+        {
+            final int offset = i * RECORD_LENGTH;
+            if (buffer.getLong(offset + RECORDING_ID_OFFSET) != recordingId)
+            {
+                continue;
+            }
+
+            // Only skip over ranges that are contiguous with the end of the recording.
+            if (buffer.getLong(offset + END_POSITION_OFFSET) != position ||
+                buffer.getLong(offset + MIN_TIMESTAMP_OFFSET) < endTimestampExclusive)
+            {
+                break;
+            }
+
+            position = buffer.getLong(offset + START_POSITION_OFFSET);
+        }
+
+        return position;
+    }
+}
@@ -93,6 +93,7 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
     private final Long2ObjectHashMap<SessionSubscriber> connectionIdToSession = new Long2ObjectHashMap<>();
     private InternalSession[] sessions = new InternalSession[0];
     private InternalSession[] pendingInitiatorSessions = new InternalSession[0];
+    private final SessionPollTimers sessionPollTimers;
 
     private final List<Session> unmodifiableSessions = new AbstractList<Session>()
     {
@@ -172,6 +173,7 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
         this.sentPositionHandler = configuration.sentPositionHandler();
         this.epochClock = epochClock;
         this.enginesAreClustered = configuration.libraryAeronChannels().size() > 1;
+        this.sessionPollTimers = new SessionPollTimers(epochClock.time());
     }
 
     boolean isConnected()
@@ -260,7 +262,7 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
 
     void disableSession(final InternalSession session)
     {
-        sessions = ArrayUtil.remove(sessions, session);
+        removeSession(session);
         session.disable();
     }
 
@@ -614,16 +616,19 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
 
     private int pollSessions(final long timeInMs)
     {
-        final InternalSession[] sessions = this.sessions;
-        int total = 0;
+        return sessionPollTimers.poll(timeInMs);
+    }
 
-        for (int i = 0, size = sessions.length; i < size; i++)
-        {
-            final InternalSession session = sessions[i];
-            total += session.poll(timeInMs);
-        }
+    private void addSession(final InternalSession session)
+    {
+        sessions = ArrayUtil.add(sessions, session);
+        sessionPollTimers.add(session.pollTimer());
+    }
 
-        return total;
+    private void removeSession(final InternalSession session)
+    {
+        sessions = ArrayUtil.remove(sessions, session);
+        sessionPollTimers.remove(session.pollTimer());
     }
 
     private int pollPendingInitiatorSessions(final long timeInMs)
@@ -639,7 +644,7 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
             {
                 this.pendingInitiatorSessions = pendingSessions = ArrayUtil.remove(pendingSessions, i);
                 size--;
-                sessions = ArrayUtil.add(sessions, session);
+                addSession(session);
             }
             else
             {
@@ -921,7 +926,7 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
         }
         else
         {
-            sessions = ArrayUtil.add(sessions, session);
+            addSession(session);
         }
     }
 
@@ -985,7 +990,7 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
                     session.close();
                     // session will be in either pendingInitiatorSessions or sessions
                     pendingInitiatorSessions = ArrayUtil.remove(pendingInitiatorSessions, session);
-                    sessions = ArrayUtil.remove(sessions, session);
+                    removeSession(session);
                 }
 
                 return action;
@@ -1161,6 +1166,7 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
                         subscriber.onTimeout(libraryId);
                     }
                     session.close();
+                    sessionPollTimers.remove(session.pollTimer());
                     // TODO(Nick): Maybe we shouldn't be creating a lot of arrays and batch this up?
                     sessions = ArrayUtil.remove(sessions, i);
                     size--;
@@ -16,6 +16,7 @@
 package uk.co.real_logic.artio.library;
 
 import io.aeron.Aeron;
+import io.aeron.ChannelUri;
 import io.aeron.Subscription;
 import uk.co.real_logic.artio.Clock;
 import uk.co.real_logic.artio.DebugLogger;
@@ -67,9 +68,12 @@ class LibraryTransport
             outboundPublication.close();
         }
 
-        inboundSubscription = aeron.addSubscription(aeronChannel, configuration.inboundLibraryStream());
+        // The engine delivers this library's messages on a publication whose Aeron session id is the library id.
+        final int libraryId = configuration.libraryId();
+        inboundSubscription = aeron.addSubscription(
+            ChannelUri.addSessionId(aeronChannel, libraryId), configuration.inboundLibraryDeliveryStream());
         StreamInformation.print(
-            "library " + configuration.libraryId() + " inboundSubscription", inboundSubscription, configuration);
+            "library " + libraryId + " inboundSubscription", inboundSubscription, configuration);
         outboundPublication = outboundLibraryStreams.gatewayPublication(
             configuration.libraryIdleStrategy(), "outboundPublication");
     }
@@ -15,7 +15,8 @@
  */
 package uk.co.real_logic.artio.protocol;
 
-import io.aeron.ExclusivePublication;
+import io.aeron.DirectBufferVector;
+import io.aeron.Publication;
 import io.aeron.logbuffer.BufferClaim;
 import org.agrona.concurrent.IdleStrategy;
 import org.agrona.concurrent.status.AtomicCounter;
@@ -35,7 +36,7 @@ class ClaimablePublication implements AutoCloseable
     private final AtomicCounter fails;
     protected final MessageHeaderEncoder header = new MessageHeaderEncoder();
     protected final BufferClaim bufferClaim = new BufferClaim();
-    protected final ExclusivePublication dataPublication;
+    protected final Publication dataPublication;
 
     protected final IdleStrategy idleStrategy;
 
@@ -43,7 +44,7 @@ class ClaimablePublication implements AutoCloseable
         final int maxClaimAttempts,
         final IdleStrategy idleStrategy,
         final AtomicCounter fails,
-        final ExclusivePublication dataPublication)
+        final Publication dataPublication)
     {
         this.maxClaimAttempts = maxClaimAttempts;
         this.idleStrategy = idleStrategy;
@@ -90,6 +91,40 @@ class ClaimablePublication implements AutoCloseable
         }
     }
 
+    protected long offer(final DirectBufferVector[] vectors)
+    {
+        long position;
+        long i = 0;
+        do
+        {
+            position = dataPublication.offer(vectors);
+
+            if (position > 0L)
+            {
+                return position;
+            }
+            else
+            {
+                idleStrategy.idle();
+            }
+
+            fails.increment();
+            i++;
+        }
+        while (i <= maxClaimAttempts);
+
+        idleStrategy.reset();
+
+        if (position == CLOSED || position == MAX_POSITION_EXCEEDED)
+        {
+            throw new NotConnectedException(position);
+        }
+        else
+        {
+            return position;
+        }
+    }
+
     public void close()
     {
         dataPublication.close();
@@ -15,24 +15,33 @@
  */
 package uk.co.real_logic.artio.protocol;
 
-import io.aeron.ExclusivePublication;
+import io.aeron.DirectBufferVector;
+import io.aeron.Publication;
 import io.aeron.logbuffer.BufferClaim;
+import io.aeron.protocol.DataHeaderFlyweight;
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.Long2LongHashMap;
 import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
 import org.agrona.concurrent.status.AtomicCounter;
 import uk.co.real_logic.artio.Clock;
 import uk.co.real_logic.artio.DebugLogger;
+import uk.co.real_logic.artio.builder.Encoder;
 import uk.co.real_logic.artio.dictionary.FixDictionary;
 import uk.co.real_logic.artio.engine.SessionInfo;
 import uk.co.real_logic.artio.messages.*;
 import uk.co.real_logic.artio.messages.ControlNotificationEncoder.SessionsEncoder;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
 import java.util.List;
 
 import static io.aeron.logbuffer.FrameDescriptor.FRAME_ALIGNMENT;
-import static io.aeron.protocol.DataHeaderFlyweight.BEGIN_FLAG;
-import static io.aeron.protocol.DataHeaderFlyweight.END_FLAG;
+import static io.aeron.logbuffer.FrameDescriptor.frameLengthOrdered;
+import static io.aeron.protocol.DataHeaderFlyweight.TERM_OFFSET_FIELD_OFFSET;
+import static io.aeron.protocol.HeaderFlyweight.FRAME_LENGTH_FIELD_OFFSET;
+import static io.aeron.protocol.HeaderFlyweight.HDR_TYPE_PAD;
+import static io.aeron.protocol.HeaderFlyweight.TYPE_FIELD_OFFSET;
 import static java.nio.ByteOrder.LITTLE_ENDIAN;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.agrona.BitUtil.align;
@@ -52,6 +61,9 @@ public class GatewayPublication extends ClaimablePublication
 
     private static final byte[] NO_BYTES = {};
 
+    private static final long NO_ENCODED_MESSAGE_OFFSET = -1;
+    private static final long MESSAGE_DID_NOT_FIT = Long.MIN_VALUE;
+
     private static final int HEARTBEAT_LENGTH = HEADER_LENGTH + ApplicationHeartbeatEncoder.BLOCK_LENGTH;
     private static final int LIBRARY_CONNECT_LENGTH =
         HEADER_LENGTH + LibraryConnectEncoder.BLOCK_LENGTH + LibraryConnectEncoder.libraryNameHeaderLength();
@@ -65,7 +77,6 @@ public class GatewayPublication extends ClaimablePublication
         HEADER_LENGTH + ConnectEncoder.BLOCK_LENGTH + ConnectEncoder.addressHeaderLength();
     private static final int SLOW_STATUS_NOTIFICATION_LENGTH =
         HEADER_LENGTH + SlowStatusNotificationEncoder.BLOCK_LENGTH;
-    private static final byte MIDDLE_FLAG = 0;
     private static final int MANAGE_SESSION_BLOCK_LENGTH = MessageHeaderEncoder.ENCODED_LENGTH +
         ManageSessionEncoder.BLOCK_LENGTH + ManageSessionEncoder.localCompIdHeaderLength() * 10;
     private static final int INITIATE_CONNECTION_LENGTH = MessageHeaderEncoder.ENCODED_LENGTH +
@@ -106,13 +117,23 @@ public class GatewayPublication extends ClaimablePublication
     private final FollowerSessionRequestEncoder followerSessionRequest = new FollowerSessionRequestEncoder();
     private final FollowerSessionReplyEncoder followerSessionReply = new FollowerSessionReplyEncoder();
     private final EndOfDayEncoder endOfDay = new EndOfDayEncoder();
+    private final UnrecordedFixMessageEncoder unrecordedFixMessage = new UnrecordedFixMessageEncoder();
+
+    // Per message type: the offset of the message start from the offset that the encoder was asked to encode at.
+    private final Long2LongHashMap encodedMessageOffsets = new Long2LongHashMap(NO_ENCODED_MESSAGE_OFFSET);
+    private final MutableAsciiBuffer claimedMessage = new MutableAsciiBuffer();
+    // Messages too large for a single frame are offered as their framing followed by their body.
+    private final UnsafeBuffer fragmentedMessageFraming = new UnsafeBuffer(new byte[FRAMED_MESSAGE_SIZE]);
+    private final DirectBufferVector fragmentedMessageFramingVector = new DirectBufferVector();
+    private final DirectBufferVector fragmentedMessageBodyVector = new DirectBufferVector();
+    private final DirectBufferVector[] fragmentedMessageVectors =
+        { fragmentedMessageFramingVector, fragmentedMessageBodyVector };
 
     private final Clock clock;
     private final int maxPayloadLength;
-    private final int maxInitialBodyLength;
 
     public GatewayPublication(
-        final ExclusivePublication dataPublication,
+        final Publication dataPublication,
         final AtomicCounter fails,
         final IdleStrategy idleStrategy,
         final Clock clock,
@@ -121,7 +142,6 @@ public class GatewayPublication extends ClaimablePublication
         super(maxClaimAttempts, idleStrategy, fails, dataPublication);
         this.clock = clock;
         this.maxPayloadLength = dataPublication.maxPayloadLength();
-        this.maxInitialBodyLength = maxPayloadLength - FRAMED_MESSAGE_SIZE;
     }
 
     public long saveMessage(
@@ -163,37 +183,25 @@ public class GatewayPublication extends ClaimablePublication
         final int sequenceNumber,
         final long timestamp)
     {
-        final BufferClaim bufferClaim = this.bufferClaim;
         final int framedLength = FRAMED_MESSAGE_SIZE + srcLength;
-        final boolean fragmented = framedLength > maxPayloadLength;
-        final int claimLength = fragmented ? maxPayloadLength : framedLength;
-        int srcFragmentLength = fragmented ? maxInitialBodyLength : srcLength;
-        int srcFragmentOffset = srcOffset;
-
-        if (fragmented)
-        {
-            // Add a padding message at the end of the term buffer if needed.
-            final int length = framedLength;
-            final int numMaxPayloads = length / maxPayloadLength;
-            final int remainingPayload = length % maxPayloadLength;
-            final int lastFrameLength = remainingPayload > 0 ?
-                align(remainingPayload + HEADER_LENGTH, FRAME_ALIGNMENT) : 0;
-            final int requiredLength = (numMaxPayloads * (maxPayloadLength + HEADER_LENGTH)) + lastFrameLength;
-            final int termLength = dataPublication.termBufferLength();
-            final int termOffset = dataPublication.termOffset();
-            final int resultingOffset = termOffset + requiredLength;
-
-            if (resultingOffset > termLength)
-            {
-                final long paddingPosition = dataPublication.appendPadding(termLength - termOffset);
-                if (paddingPosition < 0)
-                {
-                    return paddingPosition;
-                }
-            }
+        if (framedLength > maxPayloadLength)
+        {
+            return saveFragmentedMessage(
+                srcBuffer,
+                srcOffset,
+                srcLength,
+                libraryId,
+                messageType,
+                sessionId,
+                sequenceIndex,
+                connectionId,
+                status,
+                sequenceNumber,
+                timestamp);
         }
 
-        long position = claim(claimLength);
+        final BufferClaim bufferClaim = this.bufferClaim;
+        final long position = claim(framedLength);
         if (position < 0)
         {
             return position;
@@ -219,43 +227,265 @@ public class GatewayPublication extends ClaimablePublication
             .timestamp(timestamp)
             .status(status)
             .sequenceNumber(sequenceNumber)
-            .putBody(srcBuffer, srcFragmentOffset, srcFragmentLength);
+            .putBody(srcBuffer, srcOffset, srcLength);
+
+        bufferClaim.commit();
+
+        DebugLogger.log(FIX_MESSAGE_FLOW, "Enqueued %s%n", srcBuffer, srcOffset, srcLength);
+
+        return position;
+    }
+
+    // Offering the whole message, rather than claiming each fragment in turn, means that Aeron appends all of its
+    // fragments together even when the publication is shared with other threads. The body is gathered straight from
+    // the source buffer.
+    private long saveFragmentedMessage(
+        final DirectBuffer srcBuffer,
+        final int srcOffset,
+        final int srcLength,
+        final int libraryId,
+        final long messageType,
+        final long sessionId,
+        final int sequenceIndex,
+        final long connectionId,
+        final MessageStatus status,
+        final int sequenceNumber,
+        final long timestamp)
+    {
+        final UnsafeBuffer framing = this.fragmentedMessageFraming;
+
+        header.wrap(framing, 0)
+            .blockLength(fixMessage.sbeBlockLength())
+            .templateId(fixMessage.sbeTemplateId())
+            .schemaId(fixMessage.sbeSchemaId())
+            .version(fixMessage.sbeSchemaVersion());
+
+        final int offset = header.encodedLength();
+
+        fixMessage.wrap(framing, offset)
+            .libraryId(libraryId)
+            .messageType(messageType)
+            .session(sessionId)
+            .sequenceIndex(sequenceIndex)
+            .connection(connectionId)
+            .timestamp(timestamp)
+            .status(status)
+            .sequenceNumber(sequenceNumber);
+
+        putBodyLength(srcLength, offset, framing);
 
-        if (!fragmented)
+        fragmentedMessageFramingVector.reset(framing, 0, FRAMED_MESSAGE_SIZE);
+        fragmentedMessageBodyVector.reset(srcBuffer, srcOffset, srcLength);
+
+        final long position = offer(fragmentedMessageVectors);
+        if (position > 0)
         {
-            bufferClaim.commit();
+            DebugLogger.log(FIX_MESSAGE_FLOW, "Enqueued %s%n", srcBuffer, srcOffset, srcLength);
         }
-        else
-        {
-            putBodyLength(srcLength, offset, destBuffer);
 
-            bufferClaim.flags((byte)BEGIN_FLAG).commit();
+        return position;
+    }
 
-            int remaining = srcLength - srcFragmentLength;
-            while (remaining > 0)
+    /**
+     * Encodes a FIX message straight into the space claimed on the publication, rather than encoding it into a
+     * separate buffer and copying it in.
+     *
+     * The length of a message isn't known until it has been encoded, so the claim is sized from the most that the
+     * encoder could write, see {@link Encoder#maxEncodedLength()}, and any space at the end of the claim that the
+     * message didn't need is handed back as a padding frame. The first message of each type, messages whose encoder
+     * can't bound their length and messages too large for a single frame are encoded into the fallback buffer and
+     * copied instead.
+     *
+     * @param encoder the encoder of the message to be sent, its header should already have been prepared.
+     * @param fallbackBuffer the buffer to encode the message into if it can't be encoded into a claim.
+     * @param libraryId the id of the library sending the message.
+     * @param sessionId the id of the session sending the message.
+     * @param sequenceIndex the sequence index of the session.
+     * @param connectionId the id of the connection that the message is sent on.
+     * @param status the status of the message.
+     * @param sequenceNumber the sequence number of the message.
+     * @return the position in the stream that corresponds to the end of this message or a negative
+     * number indicating an error status.
+     * @throws IndexOutOfBoundsException if the encoded message is too large for the fallback buffer.
+     */
+    public long saveMessage(
+        final Encoder encoder,
+        final MutableAsciiBuffer fallbackBuffer,
+        final int libraryId,
+        final long sessionId,
+        final int sequenceIndex,
+        final long connectionId,
+        final MessageStatus status,
+        final int sequenceNumber)
+    {
+        final long messageType = encoder.messageType();
+        final long timestamp = clock.time();
+
+        final long messageStartOffset = encodedMessageOffsets.get(messageType);
+        final int maxEncodedLength = encoder.maxEncodedLength();
+        if (messageStartOffset != NO_ENCODED_MESSAGE_OFFSET && maxEncodedLength != Encoder.UNKNOWN_MAX_ENCODED_LENGTH)
+        {
+            final long position = encodeIntoClaim(
+                encoder,
+                maxEncodedLength,
+                (int)messageStartOffset,
+                libraryId,
+                messageType,
+                sessionId,
+                sequenceIndex,
+                connectionId,
+                status,
+                sequenceNumber,
+                timestamp);
+
+            if (position != MESSAGE_DID_NOT_FIT)
             {
-                srcFragmentOffset += srcFragmentLength;
-                srcFragmentLength = Math.min(remaining, maxPayloadLength);
-
-                position = claim(srcFragmentLength);
-                // NB: if multiple fragments are written but never finished then
-                // the message gets thrown away in re-assembly.
-                if (position < 0)
-                {
-                    return position;
-                }
-
-                remaining -= srcFragmentLength;
-                bufferClaim.buffer().putBytes(bufferClaim.offset(), srcBuffer, srcFragmentOffset, srcFragmentLength);
-                bufferClaim.flags(remaining > 0 ? MIDDLE_FLAG : (byte)END_FLAG).commit();
+                return position;
             }
         }
 
-        DebugLogger.log(FIX_MESSAGE_FLOW, "Enqueued %s%n", srcBuffer, srcOffset, srcLength);
+        final long result = encoder.encode(fallbackBuffer, 0);
+        final int length = Encoder.length(result);
+        final int offset = Encoder.offset(result);
+        updateEncodedMessageOffset(messageType, offset);
+
+        final long position = saveMessage(
+            fallbackBuffer,
+            offset,
+            length,
+            libraryId,
+            messageType,
+            sessionId,
+            sequenceIndex,
+            connectionId,
+            status,
+            sequenceNumber,
+            timestamp);
+
+        if (position > 0)
+        {
+            DebugLogger.log(FIX_MESSAGE, "Sent %s %n", fallbackBuffer, offset, length);
+        }
 
         return position;
     }
 
+    private long encodeIntoClaim(
+        final Encoder encoder,
+        final int maxEncodedLength,
+        final int messageStartOffset,
+        final int libraryId,
+        final long messageType,
+        final long sessionId,
+        final int sequenceIndex,
+        final long connectionId,
+        final MessageStatus status,
+        final int sequenceNumber,
+        final long timestamp)
+    {
+        // The claim has room for everything that the encoder could write from the encode offset, and for the message
+        // once it has been moved to start straight after the FixMessage header, so nothing is written past its end.
+        final int alignedFrameLength = align(
+            DataHeaderFlyweight.HEADER_LENGTH + FRAMED_MESSAGE_SIZE + maxEncodedLength, FRAME_ALIGNMENT);
+        final int claimLength = alignedFrameLength - DataHeaderFlyweight.HEADER_LENGTH;
+        final int encodeOffset = FRAMED_MESSAGE_SIZE - messageStartOffset;
+        if (claimLength > maxPayloadLength || encodeOffset < 0)
+        {
+            return MESSAGE_DID_NOT_FIT;
+        }
+
+        final BufferClaim bufferClaim = this.bufferClaim;
+        final long position = claim(claimLength);
+        if (position < 0)
+        {
+            return position;
+        }
+
+        final MutableDirectBuffer frameBuffer = bufferClaim.buffer();
+        final int offset = bufferClaim.offset();
+        final MutableAsciiBuffer claimedMessage = this.claimedMessage;
+        claimedMessage.wrap(frameBuffer, offset, claimLength);
+
+        final long result;
+        try
+        {
+            result = encoder.encode(claimedMessage, encodeOffset);
+        }
+        catch (final RuntimeException e)
+        {
+            bufferClaim.abort();
+            throw e;
+        }
+
+        final int messageLength = Encoder.length(result);
+        final int messageOffset = Encoder.offset(result);
+        if (messageOffset != FRAMED_MESSAGE_SIZE)
+        {
+            // The header is encoded backwards from the start of the body, so the message doesn't start where it was
+            // expected to if the number of digits in its body length has changed.
+            claimedMessage.putBytes(FRAMED_MESSAGE_SIZE, claimedMessage, messageOffset, messageLength);
+        }
+        updateEncodedMessageOffset(messageType, messageOffset - encodeOffset);
+
+        header.wrap(frameBuffer, offset)
+            .blockLength(fixMessage.sbeBlockLength())
+            .templateId(fixMessage.sbeTemplateId())
+            .schemaId(fixMessage.sbeSchemaId())
+            .version(fixMessage.sbeSchemaVersion());
+
+        final int fixMessageOffset = offset + header.encodedLength();
+
+        fixMessage.wrap(frameBuffer, fixMessageOffset)
+            .libraryId(libraryId)
+            .messageType(messageType)
+            .session(sessionId)
+            .sequenceIndex(sequenceIndex)
+            .connection(connectionId)
+            .timestamp(timestamp)
+            .status(status)
+            .sequenceNumber(sequenceNumber);
+
+        putBodyLength(messageLength, fixMessageOffset, frameBuffer);
+
+        final int paddingLength = commitMessageFrame(
+            frameBuffer, DataHeaderFlyweight.HEADER_LENGTH + FRAMED_MESSAGE_SIZE + messageLength, alignedFrameLength);
+
+        DebugLogger.log(FIX_MESSAGE, "Sent %s %n", claimedMessage, FRAMED_MESSAGE_SIZE, messageLength);
+
+        return position - paddingLength;
+    }
+
+    // Commits the message frame, handing back the end of the claim as a padding frame if the message didn't need it,
+    // returns the length of the padding.
+    private int commitMessageFrame(
+        final MutableDirectBuffer frameBuffer, final int frameLength, final int claimedFrameLength)
+    {
+        final int paddingOffset = align(frameLength, FRAME_ALIGNMENT);
+        final int paddingLength = claimedFrameLength - paddingOffset;
+        if (paddingLength > 0)
+        {
+            final int termOffset = frameBuffer.getInt(TERM_OFFSET_FIELD_OFFSET, LITTLE_ENDIAN);
+
+            frameBuffer.putBytes(paddingOffset, frameBuffer, 0, DataHeaderFlyweight.HEADER_LENGTH);
+            frameBuffer.putShort(paddingOffset + TYPE_FIELD_OFFSET, (short)HDR_TYPE_PAD, LITTLE_ENDIAN);
+            frameBuffer.putInt(paddingOffset + TERM_OFFSET_FIELD_OFFSET, termOffset + paddingOffset, LITTLE_ENDIAN);
+            frameBuffer.putInt(paddingOffset + FRAME_LENGTH_FIELD_OFFSET, paddingLength, LITTLE_ENDIAN);
+        }
+
+        // Makes both the message frame and the padding frame after it visible to subscribers.
+        frameLengthOrdered((UnsafeBuffer)frameBuffer, 0, frameLength);
+
+        return paddingLength;
+    }
+
+    private void updateEncodedMessageOffset(final long messageType, final int messageStartOffset)
+    {
+        if (encodedMessageOffsets.get(messageType) != messageStartOffset)
+        {
+            encodedMessageOffsets.put(messageType, messageStartOffset);
+        }
+    }
+
     private void putBodyLength(final int srcLength, final int offset, final MutableDirectBuffer destBuffer)
     {
         destBuffer.putShort(offset + FixMessageEncoder.BLOCK_LENGTH, (short)srcLength, LITTLE_ENDIAN);
@@ -454,6 +684,39 @@ public class GatewayPublication extends ClaimablePublication
         return position;
     }
 
+    public long saveUnrecordedFixMessage(
+        final long sessionId,
+        final int sequenceIndex,
+        final int sequenceNumber,
+        final long messageType,
+        final int unrecordedSessionId,
+        final long unrecordedPosition)
+    {
+        final long position = claim(HEADER_LENGTH + UnrecordedFixMessageEncoder.BLOCK_LENGTH);
+        if (position < 0)
+        {
+            return position;
+        }
+
+        final MutableDirectBuffer buffer = bufferClaim.buffer();
+        final int offset = bufferClaim.offset();
+
+        unrecordedFixMessage
+            .wrapAndApplyHeader(buffer, offset, header)
+            .session(sessionId)
+            .sequenceIndex(sequenceIndex)
+            .sequenceNumber(sequenceNumber)
+            .messageType(messageType)
+            .unrecordedSessionId(unrecordedSessionId)
+            .unrecordedPosition(unrecordedPosition);
+
+        bufferClaim.commit();
+
+        logSbeMessage(GATEWAY_MESSAGE, unrecordedFixMessage);
+
+        return position;
+    }
+
     public long saveResetLibrarySequenceNumber(final int libraryId, final long sessionId)
     {
         final long position = claim(HEADER_LENGTH + ResetLibrarySequenceNumberEncoder.BLOCK_LENGTH);
@@ -16,7 +16,9 @@
 package uk.co.real_logic.artio.protocol;
 
 import io.aeron.Aeron;
+import io.aeron.ChannelUri;
 import io.aeron.ExclusivePublication;
+import io.aeron.Publication;
 import io.aeron.Subscription;
 import org.agrona.concurrent.IdleStrategy;
 import org.agrona.concurrent.status.AtomicCounter;
@@ -66,6 +68,33 @@ public final class Streams
         );
     }
 
+    /**
+     * Create a gateway publication that can be used alongside the other shared gateway publications of this stream
+     * from other threads. They all publish onto the same Aeron publication, so a subscriber sees a single image and
+     * the stream is recorded once.
+     *
+     * @param idleStrategy the idle strategy to use when claims are back pressured.
+     * @param name the name to print the stream identifiers with.
+     * @return the new publication.
+     */
+    public GatewayPublication sharedGatewayPublication(final IdleStrategy idleStrategy, final String name)
+    {
+        final Publication publication = aeron.addPublication(aeronChannel, streamId);
+        if (recordingCoordinator != null)
+        {
+            recordingCoordinator.track(publication);
+        }
+        StreamInformation.print(name, publication, printAeronStreamIdentifiers);
+
+        return new GatewayPublication(
+            publication,
+            failedPublications,
+            idleStrategy,
+            clock,
+            maxClaimAttempts
+        );
+    }
+
     private ExclusivePublication dataPublication(final String name)
     {
         final ExclusivePublication publication = aeron.addExclusivePublication(aeronChannel, streamId);
@@ -77,6 +106,23 @@ public final class Streams
         return publication;
     }
 
+    /**
+     * Create a publication with a fixed Aeron session id, so that a subscriber can subscribe to just this
+     * publication by its session id. It's down to the caller to ensure that the session ids of the publications on
+     * the stream are unique, so there shouldn't be any publications with an Aeron assigned session id on it.
+     *
+     * @param name the name to print the stream identifiers with.
+     * @param aeronSessionId the Aeron session id of the new publication.
+     * @return the new publication.
+     */
+    public ExclusivePublication dataPublication(final String name, final int aeronSessionId)
+    {
+        final ExclusivePublication publication = aeron.addExclusivePublication(
+            ChannelUri.addSessionId(aeronChannel, aeronSessionId), streamId);
+        StreamInformation.print(name, publication, printAeronStreamIdentifiers);
+        return publication;
+    }
+
     public Subscription subscription(final String name)
     {
         final Subscription subscription = aeron.addSubscription(aeronChannel, streamId);
@@ -25,7 +25,7 @@ import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 /**
  * Exposes Session methods to internal APIs that we don't want to expose to the outside world
  */
-public class InternalSession extends Session
+public class InternalSession extends Session implements SessionPollTimers.Pollable
 {
     // Default initialised values used by both the Session and also the manage session handover.
     public static final boolean INITIAL_AWAITING_RESEND = false;
@@ -71,6 +71,8 @@ public class InternalSession extends Session
             asciiBuffer,
             enableLastMsgSeqNumProcessed,
             beginString);
+
+        pollTimer(new SessionPollTimers.Timer(this));
     }
 
     public int poll(final long time)
@@ -78,6 +80,21 @@ public class InternalSession extends Session
         return super.poll(time);
     }
 
+    public long nextPollTimeInMs()
+    {
+        return super.nextPollTimeInMs();
+    }
+
+    public SessionPollTimers.Timer pollTimer()
+    {
+        return super.pollTimer();
+    }
+
+    public void pollTimer(final SessionPollTimers.Timer pollTimer)
+    {
+        super.pollTimer(pollTimer);
+    }
+
     public void disable()
     {
         super.disable();
@@ -50,6 +50,8 @@ import static uk.co.real_logic.artio.messages.MessageStatus.OK;
 import static uk.co.real_logic.artio.messages.SessionState.*;
 import static uk.co.real_logic.artio.session.DirectSessionProxy.NO_LAST_MSG_SEQ_NUM_PROCESSED;
 import static uk.co.real_logic.artio.session.InternalSession.*;
+import static uk.co.real_logic.artio.session.SessionPollTimers.NO_POLL_DEADLINE;
+import static uk.co.real_logic.artio.session.SessionPollTimers.POLL_IMMEDIATELY;
 import static uk.co.real_logic.artio.dictionary.SessionConstants.*;
 
 /**
@@ -145,6 +147,7 @@ public class Session implements AutoCloseable
     private long nextRequiredInboundMessageTimeInMs;
     private long sendingHeartbeatIntervalInMs;
     private long nextRequiredHeartbeatTimeInMs;
+    private SessionPollTimers.Timer pollTimer;
 
     private String username;
     private String password;
@@ -486,11 +489,15 @@ public class Session implements AutoCloseable
 
         final int sentSeqNum = prepare(encoder.header());
 
-        final long result = encoder.encode(asciiBuffer, 0);
-        final int length = Encoder.length(result);
-        final int offset = Encoder.offset(result);
+        final long position = publication.saveMessage(
+            encoder, asciiBuffer, libraryId, id(), sequenceIndex(), connectionId, OK, sentSeqNum);
+
+        if (position > 0)
+        {
+            lastSentMsgSeqNum(sentSeqNum, position);
+        }
 
-        return send(asciiBuffer, offset, length, sentSeqNum, encoder.messageType());
+        return position;
     }
 
     /**
@@ -1414,11 +1421,13 @@ public class Session implements AutoCloseable
         incNextReceivedInboundMessageTime(time);
         sendingHeartbeatIntervalInMs = (long)(heartbeatIntervalInMs * HEARTBEAT_PAUSE_FACTOR);
         nextRequiredHeartbeatTimeInMs = time + sendingHeartbeatIntervalInMs;
+        reschedulePoll();
     }
 
     protected Session state(final SessionState state)
     {
         this.state = state;
+        reschedulePoll();
         return this;
     }
 
@@ -1644,6 +1653,27 @@ public class Session implements AutoCloseable
         }
     }
 
+    // Mirrors the checks in poll(), any change to the conditions there needs reflecting here.
+    long nextPollTimeInMs()
+    {
+        switch (state().value())
+        {
+            case DISCONNECTING_VALUE:
+            case LOGGING_OUT_VALUE:
+            case LOGGING_OUT_AND_DISCONNECTING_VALUE:
+                return POLL_IMMEDIATELY;
+
+            case ACTIVE_VALUE:
+                return Math.min(nextRequiredHeartbeatTimeInMs, nextRequiredInboundMessageTimeInMs);
+
+            case AWAITING_LOGOUT_VALUE:
+                return nextRequiredInboundMessageTimeInMs;
+
+            default:
+                return awaitingHeartbeat ? nextRequiredInboundMessageTimeInMs : NO_POLL_DEADLINE;
+        }
+    }
+
     void libraryConnected(final boolean libraryConnected)
     {
         proxy.libraryConnected(libraryConnected);
@@ -1762,6 +1792,26 @@ public class Session implements AutoCloseable
     void awaitingHeartbeat(final boolean awaitingHeartbeat)
     {
         this.awaitingHeartbeat = awaitingHeartbeat;
+        reschedulePoll();
+    }
+
+    void pollTimer(final SessionPollTimers.Timer pollTimer)
+    {
+        this.pollTimer = pollTimer;
+    }
+
+    SessionPollTimers.Timer pollTimer()
+    {
+        return pollTimer;
+    }
+
+    private void reschedulePoll()
+    {
+        final SessionPollTimers.Timer pollTimer = this.pollTimer;
+        if (pollTimer != null)
+        {
+            pollTimer.reschedule();
+        }
     }
 
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.session;
+
+import org.agrona.DeadlineTimerWheel;
+import org.agrona.collections.Long2ObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Polls sessions from a timer wheel, so that a duty cycle only polls the sessions that have a heartbeat, test
+ * request, logout or timeout due rather than every session.
+ *
+ * Deadlines that move later, for example when a message is sent or received, aren't rescheduled: the session gets
+ * polled at its old deadline, has nothing to do and is scheduled again at its new deadline. Anything that can move
+ * a deadline earlier, such as a change of session state, has to call {@link Timer#reschedule()}.
+ */
+public class SessionPollTimers implements DeadlineTimerWheel.TimerHandler
+{
+    public static final long NO_POLL_DEADLINE = Long.MAX_VALUE;
+    public static final long POLL_IMMEDIATELY = 0;
+
+    private static final long NO_TIMER = -1;
+    private static final int TICK_RESOLUTION_IN_MS = 8;
+    private static final int TICKS_PER_WHEEL = 1024;
+
+    public interface Pollable
+    {
+        int poll(long timeInMs);
+
+        /**
+         * Get the earliest time that polling could do something.
+         *
+         * @return the earliest time that polling could do something, {@link #POLL_IMMEDIATELY} if it should be
+         * polled on the next duty cycle or {@link #NO_POLL_DEADLINE} if it doesn't need polling at all.
+         */
+        long nextPollTimeInMs();
+    }
+
+    public static final class Timer
+    {
+        private final Pollable pollable;
+        private SessionPollTimers timers;
+        private long timerId = NO_TIMER;
+
+        public Timer(final Pollable pollable)
+        {
+            this.pollable = pollable;
+        }
+
+        /**
+         * Reschedule the poll for the pollable's current deadline, this needs to be called whenever its deadline may
+         * have moved earlier.
+         */
+        public void reschedule()
+        {
+            final SessionPollTimers timers = this.timers;
+            if (timers != null)
+            {
+                timers.schedule(this);
+            }
+        }
+    }
+
+    private final Long2ObjectHashMap<Timer> timerIdToTimer = new Long2ObjectHashMap<>();
+    private final ArrayList<Timer> dueTimers = new ArrayList<>();
+    private final DeadlineTimerWheel timerWheel;
+
+    public SessionPollTimers(final long timeInMs)
+    {
+        timerWheel = new DeadlineTimerWheel(MILLISECONDS, timeInMs, TICK_RESOLUTION_IN_MS, TICKS_PER_WHEEL);
+    }
+
+    public void add(final Timer timer)
+    {
+        if (timer.timers == null)
+        {
+            timer.timers = this;
+            schedule(timer);
+        }
+    }
+
+    public void remove(final Timer timer)
+    {
+        if (timer.timers == this)
+        {
+            cancel(timer);
+            timer.timers = null;
+        }
+    }
+
+    public int poll(final long timeInMs)
+    {
+        // The wheel only moves on by a tick per poll so catch up with the current time.
+        final DeadlineTimerWheel timerWheel = this.timerWheel;
+        timerWheel.poll(timeInMs, this, Integer.MAX_VALUE);
+        while (timeInMs >= timerWheel.currentTickTime())
+        {
+            timerWheel.poll(timeInMs, this, Integer.MAX_VALUE);
+        }
+
+        // Pollables are polled outside of the wheel's poll as polling can add, remove or reschedule timers.
+        final ArrayList<Timer> dueTimers = this.dueTimers;
+        int events = 0;
+        for (int i = 0; i < dueTimers.size(); i++)
+        {
+            final Timer timer = dueTimers.get(i);
+            if (timer.timers == this)
+            {
+                events += timer.pollable.poll(timeInMs);
+
+                if (timer.timers == this && timer.timerId == NO_TIMER)
+                {
+                    schedule(timer);
+                }
+            }
+        }
+        dueTimers.clear();
+
+        return events;
+    }
+
+    public boolean onTimerExpiry(final TimeUnit timeUnit, final long now, final long timerId)
+    {
+        final Timer timer = timerIdToTimer.remove(timerId);
+        if (timer != null)
+        {
+            timer.timerId = NO_TIMER;
+            dueTimers.add(timer);
+        }
+
+        return true;
+    }
+
+    private void schedule(final Timer timer)
+    {
+        cancel(timer);
+
+        final long deadline = timer.pollable.nextPollTimeInMs();
+        if (deadline != NO_POLL_DEADLINE)
+        {
+            final long timerId = timerWheel.scheduleTimer(deadline);
+            timer.timerId = timerId;
+            timerIdToTimer.put(timerId, timer);
+        }
+    }
+
+    private void cancel(final Timer timer)
+    {
+        final long timerId = timer.timerId;
+        if (timerId != NO_TIMER)
+        {
+            timerWheel.cancelTimer(timerId);
+            timerIdToTimer.remove(timerId);
+            timer.timerId = NO_TIMER;
+        }
+    }
+
+    int scheduledTimerCount()
+    {
+        return timerIdToTimer.size();
+    }
+}
@@ -73,11 +73,8 @@ public class SessionWriter
      */
     public long send(final Encoder encoder, final int seqNum)
     {
-        final long result = encoder.encode(asciiBuffer, 0);
-        final int length = Encoder.length(result);
-        final int offset = Encoder.offset(result);
-
-        return send(asciiBuffer, offset, length, seqNum, encoder.messageType());
+        return publication.saveMessage(
+            encoder, asciiBuffer, libraryId, id, sequenceIndex, connectionId, OK, seqNum);
     }
 
     /**
@@ -29,6 +29,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.mockito.verification.VerificationMode;
 import uk.co.real_logic.artio.Timing;
@@ -101,6 +102,7 @@ public class FramerTest
     private final ReceiverEndPoint mockReceiverEndPoint = mock(ReceiverEndPoint.class);
     private final EndPointFactory mockEndPointFactory = mock(EndPointFactory.class);
     private final GatewayPublication inboundPublication = mock(GatewayPublication.class);
+    private final LibraryDemultiplexer libraryDemultiplexer = mock(LibraryDemultiplexer.class);
     private final SessionIdStrategy mockSessionIdStrategy = mock(SessionIdStrategy.class);
     private final Header header = mock(Header.class);
     private final FakeEpochClock mockClock = new FakeEpochClock();
@@ -182,6 +184,9 @@ public class FramerTest
             replayQuery,
             mock(GatewayPublication.class),
             inboundPublication,
+            new GatewayPublication[]{ inboundPublication },
+            null,
+            libraryDemultiplexer,
             mock(QueuedPipe.class),
             mockSessionIdStrategy,
             sessionContexts,
@@ -272,6 +277,19 @@ public class FramerTest
         verifyEndPointsDisconnected(APPLICATION_DISCONNECT);
     }
 
+    @Test
+    public void shouldWriteBatchedMessagesBeforeClosingSocketUponRequestedDisconnect() throws Exception
+    {
+        aClientConnects();
+        framer.doWork();
+
+        framer.onRequestDisconnect(LIBRARY_ID, connectionId.getValue(), APPLICATION_DISCONNECT);
+
+        final InOrder inOrder = inOrder(mockSenderEndPoint, mockReceiverEndPoint);
+        inOrder.verify(mockSenderEndPoint).close();
+        inOrder.verify(mockReceiverEndPoint).close(APPLICATION_DISCONNECT);
+    }
+
     @Test
     public void shouldConnectToAddress() throws Exception
     {
@@ -360,6 +378,20 @@ public class FramerTest
         verifyLibraryTimeout();
     }
 
+    @Test
+    public void shouldDeliverInboundMessagesToConnectedLibraries() throws Exception
+    {
+        libraryConnects();
+
+        verify(libraryDemultiplexer).addLibrary(LIBRARY_ID);
+
+        timeoutLibrary();
+
+        framer.doWork();
+
+        verify(libraryDemultiplexer).removeLibrary(LIBRARY_ID);
+    }
+
     @Test
     public void shouldAcquireAcceptedClientsWhenLibraryDisconnects() throws Exception
     {
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import io.aeron.ExclusivePublication;
+import io.aeron.Image;
+import io.aeron.Subscription;
+import io.aeron.logbuffer.ControlledFragmentHandler;
+import io.aeron.logbuffer.ControlledFragmentHandler.Action;
+import io.aeron.logbuffer.Header;
+import org.agrona.ErrorHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.messages.ApplicationHeartbeatEncoder;
+import uk.co.real_logic.artio.messages.ConnectEncoder;
+import uk.co.real_logic.artio.messages.FixMessageEncoder;
+import uk.co.real_logic.artio.messages.ManageSessionEncoder;
+import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
+import uk.co.real_logic.artio.messages.UnrecordedFixMessageEncoder;
+import uk.co.real_logic.artio.protocol.Streams;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static io.aeron.Publication.BACK_PRESSURED;
+import static io.aeron.Publication.NOT_CONNECTED;
+import static io.aeron.logbuffer.FrameDescriptor.UNFRAGMENTED;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static uk.co.real_logic.artio.engine.FixEngine.ENGINE_LIBRARY_ID;
+
+public class LibraryDemultiplexerTest
+{
+    private static final int LIBRARY_ID = 1;
+    private static final int OTHER_LIBRARY_ID = 2;
+    private static final int UNKNOWN_LIBRARY_ID = 3;
+    private static final long POSITION = 1024;
+    private static final int UNRECORDED_SESSION_ID = 7;
+    private static final long UNRECORDED_POSITION = 2048;
+    private static final long ORPHANED_POSITION = 1024;
+
+    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[1024]);
+    private final MessageHeaderEncoder header = new MessageHeaderEncoder();
+    private final Streams deliveryStreams = mock(Streams.class);
+    private final ExclusivePublication publication = mock(ExclusivePublication.class);
+    private final ExclusivePublication otherPublication = mock(ExclusivePublication.class);
+    private final Subscription unrecordedSubscription = mock(Subscription.class);
+    private final Image unrecordedImage = mock(Image.class);
+    private final UnsafeBuffer unrecordedBuffer = new UnsafeBuffer(new byte[1024]);
+    private final Deque<Header> unrecordedHeaders = new ArrayDeque<>();
+    private long unrecordedImagePosition = 0;
+
+    private final LibraryDemultiplexer demultiplexer = new LibraryDemultiplexer(
+        mock(Subscription.class), unrecordedSubscription, deliveryStreams, mock(ErrorHandler.class), 10);
+
+    @Before
+    public void setUp()
+    {
+        givenPublication(publication, LIBRARY_ID);
+        givenPublication(otherPublication, OTHER_LIBRARY_ID);
+
+        demultiplexer.addLibrary(LIBRARY_ID);
+        demultiplexer.addLibrary(OTHER_LIBRARY_ID);
+    }
+
+    @Test
+    public void shouldDeliverMessagesToTheLibraryTheyAreAddressedTo()
+    {
+        final int length = applicationHeartbeat(LIBRARY_ID);
+
+        assertEquals(CONTINUE, onFragment(length));
+
+        verify(publication).offer(buffer, 0, length);
+        verify(otherPublication, never()).offer(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void shouldNotDeliverMessagesForLibrariesThatAreNotConnected()
+    {
+        final int length = applicationHeartbeat(UNKNOWN_LIBRARY_ID);
+
+        assertEquals(CONTINUE, onFragment(length));
+
+        verifyNotDelivered();
+    }
+
+    @Test
+    public void shouldNotDeliverMessagesThatLibrariesDoNotRead()
+    {
+        final int length = ConnectEncoder.BLOCK_LENGTH + MessageHeaderEncoder.ENCODED_LENGTH;
+        new ConnectEncoder().wrapAndApplyHeader(buffer, 0, header).connection(1);
+
+        assertEquals(CONTINUE, onFragment(length));
+
+        verifyNotDelivered();
+    }
+
+    @Test
+    public void shouldNotDeliverMessagesToRemovedLibraries()
+    {
+        demultiplexer.removeLibrary(LIBRARY_ID);
+
+        final int length = applicationHeartbeat(LIBRARY_ID);
+
+        assertEquals(CONTINUE, onFragment(length));
+
+        verify(publication).close();
+        verifyNotDelivered();
+    }
+
+    @Test
+    public void shouldRetryMessagesWhenBackPressured()
+    {
+        when(publication.offer(any(), anyInt(), anyInt())).thenReturn(BACK_PRESSURED, POSITION);
+
+        final int length = applicationHeartbeat(LIBRARY_ID);
+
+        assertEquals(ABORT, onFragment(length));
+        assertEquals(CONTINUE, onFragment(length));
+
+        verify(publication, times(2)).offer(buffer, 0, length);
+    }
+
+    @Test
+    public void shouldDropMessagesForLibrariesThatHaveGoneAway()
+    {
+        when(publication.offer(any(), anyInt(), anyInt())).thenReturn(NOT_CONNECTED);
+
+        final int length = applicationHeartbeat(LIBRARY_ID);
+
+        assertEquals(CONTINUE, onFragment(length));
+    }
+
+    @Test
+    public void shouldBroadcastSessionAvailableNotificationsToEveryLibrary()
+    {
+        final int length = manageSession(ENGINE_LIBRARY_ID);
+
+        assertEquals(CONTINUE, onFragment(length));
+
+        verify(publication).offer(buffer, 0, length);
+        verify(otherPublication).offer(buffer, 0, length);
+    }
+
+    @Test
+    public void shouldOnlyRetryBroadcastToLibrariesThatWereBackPressured()
+    {
+        when(publication.offer(any(), anyInt(), anyInt())).thenReturn(BACK_PRESSURED, POSITION);
+
+        final int length = manageSession(ENGINE_LIBRARY_ID);
+
+        assertEquals(ABORT, onFragment(length));
+        assertEquals(CONTINUE, onFragment(length));
+
+        verify(publication, times(2)).offer(buffer, 0, length);
+        verify(otherPublication, times(1)).offer(buffer, 0, length);
+    }
+
+    @Test
+    public void shouldDeliverSessionHandoversToTheLibraryTheyAreAddressedTo()
+    {
+        final int length = manageSession(OTHER_LIBRARY_ID);
+
+        assertEquals(CONTINUE, onFragment(length));
+
+        verify(publication, never()).offer(any(), anyInt(), anyInt());
+        verify(otherPublication).offer(buffer, 0, length);
+    }
+
+    @Test
+    public void shouldDeliverUnrecordedMessagesInPlaceOfTheirMarker()
+    {
+        final int unrecordedLength = givenUnrecordedMessages(UNRECORDED_POSITION);
+        final int length = unrecordedMarker();
+
+        assertEquals(CONTINUE, onFragment(length));
+
+        verify(publication).offer(unrecordedBuffer, 0, unrecordedLength);
+        verify(publication, never()).offer(buffer, 0, length);
+        verify(otherPublication, never()).offer(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void shouldRetryMarkersUntilTheirUnrecordedMessageIsVisible()
+    {
+        givenUnrecordedMessages();
+        final int length = unrecordedMarker();
+
+        assertEquals(ABORT, onFragment(length));
+
+        verifyNotDelivered();
+    }
+
+    @Test
+    public void shouldRetryMarkersWhenTheirUnrecordedMessageIsBackPressured()
+    {
+        when(publication.offer(any(), anyInt(), anyInt())).thenReturn(BACK_PRESSURED, POSITION);
+        final int unrecordedLength = givenUnrecordedMessages(UNRECORDED_POSITION);
+        final int length = unrecordedMarker();
+
+        assertEquals(ABORT, onFragment(length));
+        assertEquals(CONTINUE, onFragment(length));
+
+        verify(publication, times(2)).offer(unrecordedBuffer, 0, unrecordedLength);
+        assertEquals(UNRECORDED_POSITION, unrecordedImagePosition);
+    }
+
+    @Test
+    public void shouldSkipUnrecordedMessagesThatHaveNoMarker()
+    {
+        final int unrecordedLength = givenUnrecordedMessages(ORPHANED_POSITION, UNRECORDED_POSITION);
+        final int length = unrecordedMarker();
+
+        assertEquals(CONTINUE, onFragment(length));
+
+        verify(publication, times(1)).offer(unrecordedBuffer, 0, unrecordedLength);
+        assertEquals(UNRECORDED_POSITION, unrecordedImagePosition);
+    }
+
+    private int givenUnrecordedMessages(final long... positions)
+    {
+        for (final long position : positions)
+        {
+            final Header fragmentHeader = mock(Header.class);
+            when(fragmentHeader.flags()).thenReturn(UNFRAGMENTED);
+            when(fragmentHeader.position()).thenReturn(position);
+            unrecordedHeaders.add(fragmentHeader);
+        }
+
+        new FixMessageEncoder().wrapAndApplyHeader(unrecordedBuffer, 0, header).libraryId(LIBRARY_ID);
+        final int length = MessageHeaderEncoder.ENCODED_LENGTH + FixMessageEncoder.BLOCK_LENGTH +
+            FixMessageEncoder.bodyHeaderLength();
+
+        when(unrecordedSubscription.imageBySessionId(UNRECORDED_SESSION_ID)).thenReturn(unrecordedImage);
+        when(unrecordedImage.position()).thenAnswer(inv -> unrecordedImagePosition);
+        when(unrecordedImage.controlledPoll(any(), eq(1))).thenAnswer(inv ->
+        {
+            final Header fragmentHeader = unrecordedHeaders.peek();
+            if (fragmentHeader == null)
+            {
+                return 0;
+            }
+
+            final ControlledFragmentHandler handler = inv.getArgument(0);
+            if (handler.onFragment(unrecordedBuffer, 0, length, fragmentHeader) == ABORT)
+            {
+                return 0;
+            }
+
+            unrecordedHeaders.poll();
+            unrecordedImagePosition = fragmentHeader.position();
+            return 1;
+        });
+
+        return length;
+    }
+
+    private int unrecordedMarker()
+    {
+        new UnrecordedFixMessageEncoder()
+            .wrapAndApplyHeader(buffer, 0, header)
+            .unrecordedSessionId(UNRECORDED_SESSION_ID)
+            .unrecordedPosition(UNRECORDED_POSITION);
+        return UnrecordedFixMessageEncoder.BLOCK_LENGTH + MessageHeaderEncoder.ENCODED_LENGTH;
+    }
+
+    private void givenPublication(final ExclusivePublication publication, final int libraryId)
+    {
+        when(publication.sessionId()).thenReturn(libraryId);
+        when(publication.offer(any(), anyInt(), anyInt())).thenReturn(POSITION);
+        when(deliveryStreams.dataPublication(anyString(), eq(libraryId))).thenReturn(publication);
+    }
+
+    private int applicationHeartbeat(final int libraryId)
+    {
+        new ApplicationHeartbeatEncoder().wrapAndApplyHeader(buffer, 0, header).libraryId(libraryId);
+        return ApplicationHeartbeatEncoder.BLOCK_LENGTH + MessageHeaderEncoder.ENCODED_LENGTH;
+    }
+
+    private int manageSession(final int libraryId)
+    {
+        new ManageSessionEncoder().wrapAndApplyHeader(buffer, 0, header).libraryId(libraryId);
+        return ManageSessionEncoder.BLOCK_LENGTH + MessageHeaderEncoder.ENCODED_LENGTH;
+    }
+
+    private Action onFragment(final int length)
+    {
+        return demultiplexer.onFragment(buffer, 0, length, mock(Header.class));
+    }
+
+    private void verifyNotDelivered()
+    {
+        verify(publication, never()).offer(any(), anyInt(), anyInt());
+        verify(otherPublication, never()).offer(any(), anyInt(), anyInt());
+    }
+}
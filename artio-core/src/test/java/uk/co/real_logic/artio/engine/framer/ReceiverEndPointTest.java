@@ -28,6 +28,7 @@ import uk.co.real_logic.artio.Clock;
 import uk.co.real_logic.artio.decoder.LogonDecoder;
 import uk.co.real_logic.artio.dictionary.FixDictionary;
 import uk.co.real_logic.artio.engine.FixEngine;
+import uk.co.real_logic.artio.engine.logger.ArchivingPolicy;
 import uk.co.real_logic.artio.messages.DisconnectReason;
 import uk.co.real_logic.artio.messages.MessageStatus;
 import uk.co.real_logic.artio.messages.SessionState;
@@ -42,6 +43,8 @@ import java.nio.channels.ClosedChannelException;
 import java.util.function.ToIntFunction;
 
 import static io.aeron.Publication.BACK_PRESSURED;
+import static io.aeron.Publication.NOT_CONNECTED;
+import static java.util.Collections.singleton;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 import static uk.co.real_logic.artio.dictionary.ExampleDictionary.TAG_SPECIFIED_OUT_OF_REQUIRED_ORDER_MESSAGE_BYTES;
@@ -63,12 +66,18 @@ public class ReceiverEndPointTest
     private static final int LOGON_LEN = LOGON_MESSAGE.length;
     private static final int OUT_OF_REQUIRED_ORDER_MSG_LEN = TAG_SPECIFIED_OUT_OF_REQUIRED_ORDER_MESSAGE_BYTES.length;
     private static final long TIMESTAMP = 1000L;
+    private static final int MSG_SEQ_NUM = 4;
+    private static final int UNRECORDED_SESSION_ID = 7;
+    private static final long UNRECORDED_POSITION = 2048L;
     // private static final long BACKPRESSURED_TIMESTAMP = 2000L;
 
     private final AcceptorLogonResult pendingAuth = createSuccessfulPendingAuth();
     private final AcceptorLogonResult backpressuredPendingAuth = createBackpressuredPendingAuth();
     private TcpChannel mockChannel = mock(TcpChannel.class);
     private GatewayPublication publication = mock(GatewayPublication.class);
+    private GatewayPublication shardPublication = mock(GatewayPublication.class);
+    private GatewayPublication unrecordedPublication = mock(GatewayPublication.class);
+    private ArchivingPolicy archivingPolicy = null;
     private SessionContexts mockSessionContexts = mock(SessionContexts.class);
     private AtomicCounter messagesRead = mock(AtomicCounter.class);
     private ErrorHandler errorHandler = mock(ErrorHandler.class);
@@ -141,7 +150,7 @@ public class ReceiverEndPointTest
     private void givenReceiverEndPoint(final long sessionId)
     {
         endPoint = new ReceiverEndPoint(
-            mockChannel, BUFFER_SIZE, publication,
+            mockChannel, BUFFER_SIZE, publication, unrecordedPublication, archivingPolicy,
             CONNECTION_ID, sessionId, SEQUENCE_INDEX, mockSessionContexts,
             messagesRead, framer, errorHandler, LIBRARY_ID,
             mockGatewaySessions,
@@ -226,6 +235,57 @@ public class ReceiverEndPointTest
         sessionReceivesOneMessage();
     }
 
+    @Test
+    public void shouldPublishMessagesThatAreNotArchivedOnTheUnrecordedStream()
+    {
+        givenMessagesAreNotArchived();
+
+        theEndpointReceivesACompleteMessage();
+
+        polls(MSG_LEN);
+
+        savesAnUnrecordedMessage(times(1));
+        savesAMarker(times(1));
+        savesFramedMessages(0, OK, MSG_LEN);
+
+        sessionReceivesOneMessage();
+    }
+
+    @Test
+    public void shouldOnlyRetryTheMarkerOfAnUnrecordedMessageWhenItIsBackPressured()
+    {
+        givenMessagesAreNotArchived();
+        when(publication.saveUnrecordedFixMessage(anyLong(), anyInt(), anyInt(), anyLong(), anyInt(), anyLong()))
+            .thenReturn(BACK_PRESSURED, POSITION);
+
+        theEndpointReceivesACompleteMessage();
+        polls(-MSG_LEN);
+
+        theEndpointReceivesNothing();
+        polls(0);
+
+        savesAnUnrecordedMessage(times(1));
+        savesAMarker(times(2));
+
+        sessionReceivesOneMessage();
+    }
+
+    @Test
+    public void shouldRecordMessagesThatAreNotArchivedWhenTheUnrecordedStreamIsNotConnected()
+    {
+        givenMessagesAreNotArchived();
+        when(unrecordedPublication.saveMessage(
+            anyBuffer(), anyInt(), anyInt(), anyInt(), anyLong(), anyLong(), anyInt(), anyLong(), any(), anyInt(),
+            anyLong())).thenReturn(NOT_CONNECTED);
+
+        theEndpointReceivesACompleteMessage();
+
+        polls(MSG_LEN);
+
+        savesAFramedMessage();
+        savesAMarker(never());
+    }
+
     @Test
     public void shouldIgnoreMessageWithBodyLengthTooShort()
     {
@@ -299,9 +359,10 @@ public class ReceiverEndPointTest
         theEndpointReceivesTheRestOfTheMessage();
         endPoint.poll();
 
-        savesFramedMessages(2, OK, MSG_LEN);
+        // The partial message isn't moved to the start of the buffer before the rest of it is read.
+        savesTwoFramedMessages(1);
 
-        sessionReceivesTwoMessageAtBufferStart();
+        sessionReceivesTwoMessages();
     }
 
     @Test
@@ -473,6 +534,117 @@ public class ReceiverEndPointTest
         savesFramedMessages(1, OK, LOGON_LEN, LogonDecoder.MESSAGE_TYPE);
     }
 
+    @Test
+    public void shouldPublishFramedMessagesOnTheShardsPublicationWhenPolledOnAShard()
+    {
+        final FramerShard shard = givenEndPointHandedOverToAShard();
+        theEndpointReceivesACompleteMessage();
+
+        assertEquals(MSG_LEN, endPoint.pollOnShard(shard.shardId()));
+
+        savesFramedMessages(0, OK, MSG_LEN);
+        verify(shardPublication).saveMessage(
+            anyBuffer(), eq(0), eq(MSG_LEN), eq(LIBRARY_ID),
+            eq(MESSAGE_TYPE), eq(SESSION_ID), eq(SEQUENCE_INDEX), eq(CONNECTION_ID),
+            eq(OK), eq(0), eq(TIMESTAMP));
+        verify(gatewaySession, never()).onMessage(any(), anyInt(), anyInt(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldNotPollOnShardOnceReclaimed()
+    {
+        final FramerShard shard = givenEndPointHandedOverToAShard();
+        assertTrue(endPoint.tryReclaimFromShard());
+        theEndpointReceivesACompleteMessage();
+
+        assertEquals(0, endPoint.pollOnShard(shard.shardId()));
+        verifyNoInteractions(shardPublication);
+    }
+
+    @Test
+    public void shouldReturnToTheFramerWhenItDetectsADisconnectOnAShard() throws IOException
+    {
+        final FramerShard shard = givenEndPointHandedOverToAShard();
+        theChannelIsClosedByException();
+
+        assertEquals(1, endPoint.pollOnShard(shard.shardId()));
+
+        assertSame(endPoint, shard.pollReturnedEndPoint());
+        assertNull(shard.pollReturnedEndPoint());
+        assertFalse(endPoint.hasDisconnected());
+
+        assertTrue(endPoint.tryReclaimFromShard());
+        assertTrue(endPoint.onReclaimed());
+    }
+
+    @Test
+    public void shouldNotReclaimFromShardWhilstTheShardPolls()
+    {
+        final FramerShard shard = givenEndPointHandedOverToAShard();
+        final boolean[] reclaimedWhilstPolling = new boolean[1];
+        endpointBufferUpdatedWith(
+            (buffer) ->
+            {
+                reclaimedWhilstPolling[0] = endPoint.tryReclaimFromShard();
+                buffer.put(EG_MESSAGE, 0, MSG_LEN);
+                return MSG_LEN;
+            });
+
+        assertEquals(MSG_LEN, endPoint.pollOnShard(shard.shardId()));
+
+        assertFalse(reclaimedWhilstPolling[0]);
+        assertTrue(endPoint.tryReclaimFromShard());
+    }
+
+    @Test
+    public void shouldChangeOwnerOnceReclaimedFromShard()
+    {
+        final int newLibraryId = LIBRARY_ID + 1;
+        givenEndPointHandedOverToAShard();
+
+        endPoint.libraryId(newLibraryId);
+
+        verify(framer).reclaimReceiverEndPoint(endPoint);
+        assertEquals(LIBRARY_ID, endPoint.libraryId());
+
+        assertTrue(endPoint.tryReclaimFromShard());
+        assertFalse(endPoint.onReclaimed());
+
+        assertEquals(newLibraryId, endPoint.libraryId());
+        assertNull(endPoint.shard());
+    }
+
+    private FramerShard givenEndPointHandedOverToAShard()
+    {
+        final FramerShard shard = new FramerShard(1, shardPublication, null, BUFFER_SIZE, errorHandler, "");
+        endPoint.handOverTo(shard);
+        return shard;
+    }
+
+    private void givenMessagesAreNotArchived()
+    {
+        archivingPolicy = ArchivingPolicy.skipMessageTypes(singleton("D"));
+        when(unrecordedPublication.id()).thenReturn(UNRECORDED_SESSION_ID);
+        when(unrecordedPublication.saveMessage(
+            anyBuffer(), anyInt(), anyInt(), anyInt(), anyLong(), anyLong(), anyInt(), anyLong(), any(), anyInt(),
+            anyLong())).thenReturn(UNRECORDED_POSITION);
+        givenAnAuthenticatedReceiverEndPoint();
+    }
+
+    private void savesAnUnrecordedMessage(final VerificationMode mode)
+    {
+        verify(unrecordedPublication, mode).saveMessage(
+            anyBuffer(), eq(0), eq(MSG_LEN), eq(LIBRARY_ID),
+            eq(MESSAGE_TYPE), eq(SESSION_ID), eq(SEQUENCE_INDEX), eq(CONNECTION_ID),
+            eq(OK), eq(0), eq(TIMESTAMP));
+    }
+
+    private void savesAMarker(final VerificationMode mode)
+    {
+        verify(publication, mode).saveUnrecordedFixMessage(
+            SESSION_ID, SEQUENCE_INDEX, MSG_SEQ_NUM, MESSAGE_TYPE, UNRECORDED_SESSION_ID, UNRECORDED_POSITION);
+    }
+
     private void firstSaveAttemptIsBackPressured()
     {
         when(publication
@@ -709,12 +881,6 @@ public class ReceiverEndPointTest
         sessionReceivedCountIs(2);
     }
 
-    private void sessionReceivesTwoMessageAtBufferStart()
-    {
-        sessionReceivesMessageAt(0, MSG_LEN, times(2));
-        sessionReceivedCountIs(2);
-    }
-
     private void sessionReceivedCountIs(final int numberOfMessages)
     {
         verify(gatewaySession, times(numberOfMessages))
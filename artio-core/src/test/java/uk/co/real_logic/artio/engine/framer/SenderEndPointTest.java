@@ -416,6 +416,65 @@ public class SenderEndPointTest
         verifyNoMoreErrors();
     }
 
+    @Test
+    public void shouldWriteBatchedMessagesWithASingleGatheringWrite() throws IOException
+    {
+        channelWillGatheringWrite(2 * BODY_LENGTH);
+
+        onBatchedOutboundMessage(POSITION);
+        onBatchedOutboundMessage(POSITION + FRAGMENT_LENGTH);
+        verify(tcpChannel, never()).write(any(ByteBuffer[].class), anyInt(), anyInt());
+
+        endPoint.flushBatch(100);
+
+        verify(tcpChannel).write(any(ByteBuffer[].class), eq(0), eq(2));
+        byteBufferNotWritten();
+        assertBytesInBuffer(0);
+        verifyNoMoreErrors();
+    }
+
+    @Test
+    public void shouldBecomeSlowConsumerWhenBatchPartiallyWritten() throws IOException
+    {
+        final int firstWrites = BODY_LENGTH + 41;
+        channelWillGatheringWrite(firstWrites);
+
+        onBatchedOutboundMessage(POSITION);
+        onBatchedOutboundMessage(POSITION + FRAGMENT_LENGTH);
+        endPoint.flushBatch(100);
+
+        assertBytesInBuffer(2 * BODY_LENGTH - firstWrites);
+        verify(framer).slowStatus(LIBRARY_ID, CONNECTION_ID, true);
+
+        // The first message of the batch was completely written, so isn't retried.
+        onSlowOutboundMessage();
+        byteBufferNotWritten();
+        verifyNoMoreErrors();
+    }
+
+    @Test
+    public void shouldWriteBatchedLogoutWhenClosedInTheSameDutyCycle() throws IOException
+    {
+        channelWillGatheringWrite(BODY_LENGTH);
+
+        onBatchedOutboundMessage(POSITION);
+        endPoint.close();
+
+        verify(tcpChannel).write(any(ByteBuffer[].class), eq(0), eq(1));
+        verify(tcpChannel, never()).close();
+        verifyNoMoreErrors();
+    }
+
+    private void onBatchedOutboundMessage(final long position)
+    {
+        endPoint.onBatchedOutboundMessage(LIBRARY_ID, buffer, 0, BODY_LENGTH, 0, position, 100);
+    }
+
+    private void channelWillGatheringWrite(final int bytes) throws IOException
+    {
+        when(tcpChannel.write(any(ByteBuffer[].class), anyInt(), anyInt())).thenReturn((long)bytes);
+    }
+
     private void byteBufferNotWritten()
     {
         byteBufferWritten(never());
@@ -19,6 +19,7 @@ import org.agrona.ErrorHandler;
 import org.agrona.IoUtil;
 import org.agrona.concurrent.AtomicBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.After;
 import org.junit.Test;
 import uk.co.real_logic.artio.FileSystemCorruptionException;
 import uk.co.real_logic.artio.builder.LogonEncoder;
@@ -31,10 +32,12 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 import static uk.co.real_logic.artio.engine.framer.SessionContexts.DUPLICATE_SESSION;
@@ -45,6 +48,7 @@ public class SessionContextsTest
     private static final int BUFFER_SIZE = 8 * 1024;
     private static final int SEQUENCE_INDEX = 1;
     private static final int FILE_POSITION = 0;
+    private static final long SNAPSHOT_INTERVAL_IN_MS = 1_000;
 
     private ErrorHandler errorHandler = mock(ErrorHandler.class);
     private AtomicBuffer buffer = new UnsafeBuffer(ByteBuffer.allocate(BUFFER_SIZE));
@@ -58,6 +62,17 @@ public class SessionContextsTest
     private CompositeKey bSession = idStrategy.onInitiateLogon("b", null, null, "a", null, null);
     private CompositeKey cSession = idStrategy.onInitiateLogon("c", null, null, "c", null, null);
 
+    private File sessionIdFile = new File(IoUtil.tmpDirName(), "session-contexts-test");
+    private File snapshotFile = new File(sessionIdFile.getPath() + "-snapshot");
+
+    @After
+    public void tearDown()
+    {
+        sessionContexts.close();
+        IoUtil.deleteIfExists(snapshotFile);
+        IoUtil.deleteIfExists(new File(sessionIdFile.getPath() + "-snapshot-writable"));
+    }
+
     @Test
     public void sessionContextsAreUnique()
     {
@@ -220,6 +235,114 @@ public class SessionContextsTest
         assertEquals(3, cContext.sessionId());
     }
 
+    @Test
+    public void loadsSessionContextsFromSnapshotAfterRestart()
+    {
+        sessionContexts = newSnapshottingSessionContexts(buffer);
+        final SessionContext bContext = sessionContexts.onLogon(bSession);
+        final SessionContext aContext = sessionContexts.onLogon(aSession);
+        aContext.onSequenceReset();
+        sessionContexts.close();
+
+        assertTrue(snapshotFile.exists());
+
+        sessionContexts = newSessionContexts(buffer);
+        assertValuesEqual(aContext, sessionContexts.onLogon(aSession));
+        assertValuesEqual(bContext, sessionContexts.onLogon(bSession));
+        assertEquals(3, sessionContexts.onLogon(cSession).sessionId());
+    }
+
+    @Test
+    public void loadsSessionContextsAddedAfterSnapshot()
+    {
+        sessionContexts = newSnapshottingSessionContexts(buffer);
+        final SessionContext aContext = sessionContexts.onLogon(aSession);
+        sessionContexts.close();
+
+        final SessionContexts contextsBeforeCrash = newSessionContexts(buffer);
+        final SessionContext bContext = contextsBeforeCrash.onLogon(bSession);
+
+        sessionContexts = newSessionContexts(buffer);
+        assertValuesEqual(aContext, sessionContexts.onLogon(aSession));
+        assertValuesEqual(bContext, sessionContexts.onLogon(bSession));
+        assertEquals(3, sessionContexts.onLogon(cSession).sessionId());
+        contextsBeforeCrash.close();
+    }
+
+    @Test
+    public void takesSnapshotsAtIntervals()
+    {
+        sessionContexts = newSnapshottingSessionContexts(buffer);
+        assertEquals(0, sessionContexts.doWork(0));
+
+        sessionContexts.onLogon(aSession);
+        assertEquals(0, sessionContexts.doWork(SNAPSHOT_INTERVAL_IN_MS - 1));
+        assertFalse(snapshotFile.exists());
+
+        assertEquals(1, sessionContexts.doWork(SNAPSHOT_INTERVAL_IN_MS));
+        assertTrue(snapshotFile.exists());
+
+        assertEquals(0, sessionContexts.doWork(2 * SNAPSHOT_INTERVAL_IN_MS));
+    }
+
+    @Test
+    public void looksUpSnapshotSessionContextsBySessionId()
+    {
+        sessionContexts = newSnapshottingSessionContexts(buffer);
+        final SessionContext aContext = sessionContexts.onLogon(aSession);
+        aContext.onSequenceReset();
+        sessionContexts.close();
+
+        sessionContexts = newSessionContexts(buffer);
+        assertTrue(sessionContexts.isKnownSessionId(aContext.sessionId()));
+        sessionContexts.sequenceReset(aContext.sessionId());
+        sessionContexts.close();
+
+        sessionContexts = newSessionContexts(buffer);
+        assertEquals(aContext.sequenceIndex() + 1, sessionContexts.onLogon(aSession).sequenceIndex());
+    }
+
+    @Test
+    public void deletesSnapshotOnReset()
+    {
+        sessionContexts = newSnapshottingSessionContexts(buffer);
+        final SessionContext aContext = sessionContexts.onLogon(aSession);
+        sessionContexts.close();
+
+        sessionContexts = newSessionContexts(buffer);
+        sessionContexts.reset(null);
+        assertFalse(snapshotFile.exists());
+
+        sessionContexts = newSessionContexts(buffer);
+        assertSessionContextsReset(aContext, sessionContexts);
+    }
+
+    @Test
+    public void logsOnWithinASecondOfARestartWithManySessions()
+    {
+        final int sessionCount = 100_000;
+        final AtomicBuffer buffer = new UnsafeBuffer(ByteBuffer.allocate(16 * 1024 * 1024));
+        sessionContexts = newSnapshottingSessionContexts(buffer);
+
+        CompositeKey lastKey = null;
+        SessionContext lastContext = null;
+        for (int i = 0; i < sessionCount; i++)
+        {
+            lastKey = idStrategy.onInitiateLogon("b" + i, null, null, "a" + i, null, null);
+            lastContext = sessionContexts.onLogon(lastKey);
+        }
+        sessionContexts.close();
+
+        final long startInNs = System.nanoTime();
+        sessionContexts = newSessionContexts(buffer);
+        final SessionContext contextAfterRestart = sessionContexts.onLogon(lastKey);
+        final long durationInNs = System.nanoTime() - startInNs;
+
+        assertValuesEqual(lastContext, contextAfterRestart);
+        assertThat(durationInNs, lessThan(TimeUnit.SECONDS.toNanos(1)));
+        verify(errorHandler, never()).onError(any());
+    }
+
     private void verifyNoBackUp()
     {
         verify(mappedFile, never()).transferTo(any());
@@ -243,7 +366,13 @@ public class SessionContextsTest
     private SessionContexts newSessionContexts(final AtomicBuffer buffer)
     {
         when(mappedFile.buffer()).thenReturn(buffer);
-        return new SessionContexts(mappedFile, idStrategy, errorHandler);
+        return new SessionContexts(mappedFile, idStrategy, errorHandler, SNAPSHOT_INTERVAL_IN_MS);
+    }
+
+    private SessionContexts newSnapshottingSessionContexts(final AtomicBuffer buffer)
+    {
+        when(mappedFile.file()).thenReturn(sessionIdFile);
+        return newSessionContexts(buffer);
     }
 
     private void assertValuesEqual(
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.*;
+
+public class FileReplayIndexStoreTest
+{
+    private static final int STREAM_ID = 2;
+    private static final int OTHER_STREAM_ID = 12;
+    private static final int SEGMENT_SIZE = INITIAL_RECORD_OFFSET + 4 * RECORD_LENGTH;
+    private static final long SESSION_ID = 1;
+
+    private final UnsafeBuffer headBuffer = new UnsafeBuffer(0, 0);
+    private final ErrorHandler errorHandler = mock(ErrorHandler.class);
+
+    private File logFileDir;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        logFileDir = Files.createTempDirectory("file-replay-index-store").toFile();
+    }
+
+    @After
+    public void tearDown()
+    {
+        IoUtil.delete(logFileDir, true);
+    }
+
+    @Test
+    public void shouldNotStoreHeadInLegacyReplayIndexFile()
+    {
+        final FileReplayIndexStore store = newWriter();
+
+        assertTrue(store.wrapHead(SESSION_ID, headBuffer));
+        store.releaseHead(headBuffer);
+
+        assertTrue(replayIndexHeadFile(logFileDir.getPath(), SESSION_ID, STREAM_ID).exists());
+        assertFalse(legacyReplayIndexFile(logFileDir.getPath(), SESSION_ID, STREAM_ID).exists());
+
+        // Restarting doesn't mistake the head for a legacy index file.
+        newWriter();
+    }
+
+    @Test
+    public void shouldWriteWithLegacyReplayIndexFile() throws IOException
+    {
+        givenLegacyReplayIndexFile(STREAM_ID);
+
+        final FileReplayIndexStore store = newWriter();
+
+        assertTrue(store.wrapHead(SESSION_ID, headBuffer));
+        store.releaseHead(headBuffer);
+
+        // Left for the replay index to convert.
+        assertTrue(legacyReplayIndexFile(logFileDir.getPath(), SESSION_ID, STREAM_ID).exists());
+        verifyNoInteractions(errorHandler);
+    }
+
+    @Test
+    public void shouldReadWithLegacyReplayIndexFile() throws IOException
+    {
+        givenLegacyReplayIndexFile(STREAM_ID);
+
+        new FileReplayIndexStore(logFileDir.getPath(), STREAM_ID, LoggerUtil::mapExistingFile, errorHandler);
+
+        assertTrue(legacyReplayIndexFile(logFileDir.getPath(), SESSION_ID, STREAM_ID).exists());
+        verifyNoInteractions(errorHandler);
+    }
+
+    @Test
+    public void shouldIgnoreLegacyReplayIndexFileOfOtherStream() throws IOException
+    {
+        givenLegacyReplayIndexFile(OTHER_STREAM_ID);
+
+        newWriter();
+    }
+
+    private void givenLegacyReplayIndexFile(final int streamId) throws IOException
+    {
+        assertTrue(legacyReplayIndexFile(logFileDir.getPath(), SESSION_ID, streamId).createNewFile());
+    }
+
+    private FileReplayIndexStore newWriter()
+    {
+        return new FileReplayIndexStore(logFileDir.getPath(), STREAM_ID, SEGMENT_SIZE, LoggerUtil::map, errorHandler);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.logbuffer.Header;
+import org.junit.Test;
+import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
+import uk.co.real_logic.artio.messages.RequestDisconnectEncoder;
+
+import static io.aeron.logbuffer.FrameDescriptor.BEGIN_FRAG_FLAG;
+import static io.aeron.logbuffer.FrameDescriptor.END_FRAG_FLAG;
+import static io.aeron.logbuffer.FrameDescriptor.UNFRAGMENTED;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static uk.co.real_logic.artio.engine.logger.FixMessagePredicates.sessionOf;
+
+public class FirstFragmentFilterTest extends AbstractLogTest
+{
+    private final Header fragmentHeader = mock(Header.class);
+    private final FirstFragmentFilter filter = new FirstFragmentFilter(sessionOf(SESSION_ID));
+
+    @Test
+    public void shouldAcceptAllFragmentsOfMessageThatPassesPredicate()
+    {
+        bufferContainsExampleMessage(true, SESSION_ID, SEQUENCE_NUMBER, SEQUENCE_INDEX);
+
+        assertTrue(accept(BEGIN_FRAG_FLAG));
+        assertTrue(accept((byte)0));
+        assertTrue(accept(END_FRAG_FLAG));
+    }
+
+    @Test
+    public void shouldRejectAllFragmentsOfMessageThatFailsPredicate()
+    {
+        bufferContainsExampleMessage(true, SESSION_ID_2, SEQUENCE_NUMBER, SEQUENCE_INDEX);
+
+        assertFalse(accept(BEGIN_FRAG_FLAG));
+        assertFalse(accept((byte)0));
+        assertFalse(accept(END_FRAG_FLAG));
+    }
+
+    @Test
+    public void shouldTestEachUnfragmentedMessage()
+    {
+        bufferContainsExampleMessage(true, SESSION_ID_2, SEQUENCE_NUMBER, SEQUENCE_INDEX);
+        assertFalse(accept(UNFRAGMENTED));
+
+        bufferContainsExampleMessage(true, SESSION_ID, SEQUENCE_NUMBER, SEQUENCE_INDEX);
+        assertTrue(accept(UNFRAGMENTED));
+    }
+
+    @Test
+    public void shouldRejectMessagesThatAreNotFixMessages()
+    {
+        new RequestDisconnectEncoder().wrapAndApplyHeader(buffer, START, new MessageHeaderEncoder());
+
+        assertFalse(accept(UNFRAGMENTED));
+    }
+
+    private boolean accept(final byte flags)
+    {
+        when(fragmentHeader.flags()).thenReturn(flags);
+        return filter.accept(buffer, START, fragmentHeader);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.Aeron;
+import io.aeron.ExclusivePublication;
+import io.aeron.archive.ArchivingMediaDriver;
+import io.aeron.archive.client.AeronArchive;
+import io.aeron.archive.codecs.SourceLocation;
+import io.aeron.archive.status.RecordingPos;
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.YieldingIdleStrategy;
+import org.agrona.concurrent.status.CountersReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.TestFixtures;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.aeron.CommonContext.IPC_CHANNEL;
+import static org.agrona.concurrent.status.CountersReader.NULL_COUNTER_ID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static uk.co.real_logic.artio.TestFixtures.cleanupMediaDriver;
+import static uk.co.real_logic.artio.engine.EngineConfiguration.DEFAULT_ARCHIVE_SCANNER_STREAM;
+
+public class FixArchiveScannerTest extends AbstractLogTest
+{
+    private final YieldingIdleStrategy idleStrategy = new YieldingIdleStrategy();
+
+    private ArchivingMediaDriver mediaDriver;
+    private AeronArchive aeronArchive;
+    private ExclusivePublication publication;
+    private ExclusivePublication otherPublication;
+
+    @Before
+    public void setUp()
+    {
+        mediaDriver = TestFixtures.launchMediaDriver();
+        aeronArchive = AeronArchive.connect();
+        aeronArchive.startRecording(IPC_CHANNEL, STREAM_ID, SourceLocation.LOCAL);
+
+        final Aeron aeron = aeronArchive.context().aeron();
+        publication = aeron.addExclusivePublication(IPC_CHANNEL, STREAM_ID);
+        otherPublication = aeron.addExclusivePublication(IPC_CHANNEL, STREAM_ID);
+    }
+
+    @After
+    public void tearDown()
+    {
+        CloseHelper.close(publication);
+        CloseHelper.close(otherPublication);
+        CloseHelper.close(aeronArchive);
+        cleanupMediaDriver(mediaDriver);
+    }
+
+    @Test(timeout = 20_000L)
+    public void shouldMergeOverlappingRecordingsOfAStreamInTimestampOrder()
+    {
+        // Each publication is recorded separately, their messages are interleaved in time.
+        for (int timestamp = 1; timestamp <= 6; timestamp++)
+        {
+            offer(timestamp % 2 == 1 ? publication : otherPublication, timestamp);
+        }
+        awaitRecorded(publication);
+        awaitRecorded(otherPublication);
+
+        final List<Long> timestamps = new ArrayList<>();
+        final FixArchiveScanner.Context context = new FixArchiveScanner.Context()
+            .aeronDirectoryName(mediaDriver.mediaDriver().aeronDirectoryName())
+            .idleStrategy(idleStrategy);
+        try (FixArchiveScanner scanner = new FixArchiveScanner(context))
+        {
+            scanner.scan(
+                IPC_CHANNEL,
+                new int[]{ STREAM_ID },
+                (message, buffer, offset, length, header) -> timestamps.add(message.timestamp()),
+                false,
+                true,
+                DEFAULT_ARCHIVE_SCANNER_STREAM);
+        }
+
+        assertThat(timestamps, contains(1L, 2L, 3L, 4L, 5L, 6L));
+    }
+
+    private void offer(final ExclusivePublication publication, final long timestamp)
+    {
+        bufferContainsExampleMessage(true, SESSION_ID, (int)timestamp, SEQUENCE_INDEX);
+        messageFrame.timestamp(timestamp);
+
+        while (publication.offer(buffer, START, fragmentLength()) < 0)
+        {
+            idleStrategy.idle();
+        }
+    }
+
+    private void awaitRecorded(final ExclusivePublication publication)
+    {
+        final CountersReader counters = aeronArchive.context().aeron().countersReader();
+        int counterId = NULL_COUNTER_ID;
+        while (counterId == NULL_COUNTER_ID || counters.getCounterValue(counterId) < publication.position())
+        {
+            idleStrategy.idle();
+            counterId = RecordingPos.findCounterIdBySession(counters, publication.sessionId());
+        }
+    }
+}
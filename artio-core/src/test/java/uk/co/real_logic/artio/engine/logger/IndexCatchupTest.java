@@ -0,0 +1,305 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.Aeron;
+import io.aeron.Image;
+import io.aeron.Subscription;
+import io.aeron.archive.client.AeronArchive;
+import io.aeron.logbuffer.FragmentHandler;
+import io.aeron.logbuffer.Header;
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.ErrorHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.stubbing.Answer;
+import uk.co.real_logic.artio.engine.CompletionPosition;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class IndexCatchupTest
+{
+    private static final int ARCHIVE_REPLAY_STREAM = 2;
+    private static final int THREAD_COUNT = 4;
+    private static final int AERON_SESSION_ID = 3;
+    private static final long RECORDING_ID = 5;
+    private static final long OTHER_RECORDING_ID = 6;
+    private static final int FRAGMENT_LENGTH = 64;
+    private static final int MAX_REPLAYS = 8;
+
+    private final AeronArchive aeronArchive = mock(AeronArchive.class);
+    private final AeronArchive.Context archiveContext = mock(AeronArchive.Context.class);
+    private final Aeron aeron = mock(Aeron.class);
+    private final Subscription replaySubscription = mock(Subscription.class);
+    private final ErrorHandler errorHandler = mock(ErrorHandler.class);
+    private final AtomicCounter bytesRemaining = fakeCounter();
+    private final AtomicCounter estimatedTimeRemainingInMs = fakeCounter();
+    private final AtomicLong time = new AtomicLong();
+    private final Replay[] replays = new Replay[MAX_REPLAYS];
+    private final AtomicInteger replayCount = new AtomicInteger();
+
+    @Before
+    public void setUp()
+    {
+        for (int sessionId = 0; sessionId < MAX_REPLAYS; sessionId++)
+        {
+            replays[sessionId] = new Replay(sessionId);
+        }
+
+        when(aeronArchive.context()).thenReturn(archiveContext);
+        when(archiveContext.aeron()).thenReturn(aeron);
+        when(aeron.addSubscription(anyString(), eq(ARCHIVE_REPLAY_STREAM))).thenReturn(replaySubscription);
+        when(replaySubscription.imageBySessionId(anyInt())).then(inv -> replays[inv.<Integer>getArgument(0)].image);
+
+        when(aeronArchive.startReplay(anyLong(), anyLong(), anyLong(), anyString(), eq(ARCHIVE_REPLAY_STREAM)))
+            .then(inv ->
+            {
+                final Replay replay = replays[replayCount.getAndIncrement()];
+                replay.start(inv.getArgument(0), inv.getArgument(1), inv.getArgument(2));
+                return (long)replay.sessionId;
+            });
+    }
+
+    @Test
+    public void shouldCatchUpEveryIndexToRecordingStopPosition()
+    {
+        recordingStoppedAt(RECORDING_ID, 8 * FRAGMENT_LENGTH);
+        recordingStoppedAt(OTHER_RECORDING_ID, 4 * FRAGMENT_LENGTH);
+
+        final FakeIndex first = new FakeIndex("first")
+            .indexedUpTo(RECORDING_ID, 0)
+            .indexedUpTo(OTHER_RECORDING_ID, FRAGMENT_LENGTH);
+        final FakeIndex second = new FakeIndex("second")
+            .indexedUpTo(RECORDING_ID, 2 * FRAGMENT_LENGTH);
+        final FakeIndex third = new FakeIndex("third")
+            .indexedUpTo(OTHER_RECORDING_ID, 4 * FRAGMENT_LENGTH);
+
+        catchUp(indexer(first, second), indexer(third));
+
+        assertIndexedUpTo(first, RECORDING_ID, 8 * FRAGMENT_LENGTH);
+        assertIndexedUpTo(first, OTHER_RECORDING_ID, 4 * FRAGMENT_LENGTH);
+        assertIndexedUpTo(second, RECORDING_ID, 8 * FRAGMENT_LENGTH);
+        assertIndexedUpTo(third, OTHER_RECORDING_ID, 4 * FRAGMENT_LENGTH);
+        assertEquals(3, replayCount.get());
+        verifyNoMoreInteractions(errorHandler);
+    }
+
+    @Test
+    public void shouldCountDownBytesAndTimeRemainingToZero()
+    {
+        recordingStoppedAt(RECORDING_ID, 8 * FRAGMENT_LENGTH);
+        recordingStoppedAt(OTHER_RECORDING_ID, 4 * FRAGMENT_LENGTH);
+
+        final FakeIndex first = new FakeIndex("first")
+            .indexedUpTo(RECORDING_ID, 0)
+            .indexedUpTo(OTHER_RECORDING_ID, FRAGMENT_LENGTH);
+        final FakeIndex second = new FakeIndex("second")
+            .indexedUpTo(RECORDING_ID, 2 * FRAGMENT_LENGTH);
+
+        catchUp(indexer(first), indexer(second));
+
+        verify(bytesRemaining).setOrdered((8 + 3 + 6) * FRAGMENT_LENGTH);
+        assertEquals(0, bytesRemaining.get());
+        assertEquals(0, estimatedTimeRemainingInMs.get());
+    }
+
+    @Test
+    public void shouldShareReplayBetweenIndicesWithSameGapsInDifferentOrder()
+    {
+        recordingStoppedAt(RECORDING_ID, 8 * FRAGMENT_LENGTH);
+        recordingStoppedAt(OTHER_RECORDING_ID, 4 * FRAGMENT_LENGTH);
+
+        final FakeIndex first = new FakeIndex("first")
+            .indexedUpTo(RECORDING_ID, 0)
+            .indexedUpTo(OTHER_RECORDING_ID, FRAGMENT_LENGTH);
+        final FakeIndex second = new FakeIndex("second")
+            .indexedUpTo(OTHER_RECORDING_ID, FRAGMENT_LENGTH)
+            .indexedUpTo(RECORDING_ID, 0);
+
+        catchUp(indexer(first), indexer(second));
+
+        verifyReplayed(RECORDING_ID, 0, 8 * FRAGMENT_LENGTH);
+        verifyReplayed(OTHER_RECORDING_ID, FRAGMENT_LENGTH, 3 * FRAGMENT_LENGTH);
+        assertEquals(2, replayCount.get());
+        assertIndexedUpTo(first, RECORDING_ID, 8 * FRAGMENT_LENGTH);
+        assertIndexedUpTo(first, OTHER_RECORDING_ID, 4 * FRAGMENT_LENGTH);
+        assertIndexedUpTo(second, RECORDING_ID, 8 * FRAGMENT_LENGTH);
+        assertIndexedUpTo(second, OTHER_RECORDING_ID, 4 * FRAGMENT_LENGTH);
+    }
+
+    @Test
+    public void shouldReplaySeparatelyForIndicesWithDivergingGaps()
+    {
+        recordingStoppedAt(RECORDING_ID, 8 * FRAGMENT_LENGTH);
+
+        final FakeIndex first = new FakeIndex("first")
+            .indexedUpTo(RECORDING_ID, 0);
+        final FakeIndex second = new FakeIndex("second")
+            .indexedUpTo(RECORDING_ID, 2 * FRAGMENT_LENGTH);
+
+        catchUp(indexer(first, second));
+
+        verifyReplayed(RECORDING_ID, 0, 8 * FRAGMENT_LENGTH);
+        verifyReplayed(RECORDING_ID, 2 * FRAGMENT_LENGTH, 6 * FRAGMENT_LENGTH);
+        assertEquals(2, replayCount.get());
+        assertIndexedUpTo(first, RECORDING_ID, 8 * FRAGMENT_LENGTH);
+        assertIndexedUpTo(second, RECORDING_ID, 8 * FRAGMENT_LENGTH);
+    }
+
+    private void catchUp(final Indexer... indexers)
+    {
+        final IndexCatchup indexCatchup = new IndexCatchup(
+            aeronArchive,
+            errorHandler,
+            ARCHIVE_REPLAY_STREAM,
+            THREAD_COUNT,
+            Thread::new,
+            time::incrementAndGet,
+            bytesRemaining,
+            estimatedTimeRemainingInMs);
+
+        indexCatchup.catchUp(Arrays.asList(indexers));
+    }
+
+    private Indexer indexer(final Index... indices)
+    {
+        return new Indexer(
+            Arrays.asList(indices), mock(Subscription.class), "", mock(CompletionPosition.class), false);
+    }
+
+    private void recordingStoppedAt(final long recordingId, final long stopPosition)
+    {
+        when(aeronArchive.getStopPosition(recordingId)).thenReturn(stopPosition);
+    }
+
+    private void verifyReplayed(final long recordingId, final long position, final long length)
+    {
+        verify(aeronArchive).startReplay(
+            eq(recordingId), eq(position), eq(length), anyString(), eq(ARCHIVE_REPLAY_STREAM));
+    }
+
+    private void assertIndexedUpTo(final FakeIndex index, final long recordingId, final long position)
+    {
+        assertEquals(index.getName(), Long.valueOf(position), index.recordingIdToPosition.get(recordingId));
+    }
+
+    private AtomicCounter fakeCounter()
+    {
+        final AtomicLong value = new AtomicLong();
+        final AtomicCounter atomicCounter = mock(AtomicCounter.class);
+        final Answer<?> set = inv ->
+        {
+            value.set(inv.getArgument(0));
+            return null;
+        };
+
+        when(atomicCounter.get()).then(inv -> value.get());
+        doAnswer(set).when(atomicCounter).setOrdered(anyLong());
+        when(atomicCounter.getAndAdd(anyLong())).then(inv -> value.getAndAdd(inv.getArgument(0)));
+
+        return atomicCounter;
+    }
+
+    // Replays a recording as fragments whose body is the recording id and the position after the fragment.
+    private static final class Replay
+    {
+        private final int sessionId;
+        private final Image image = mock(Image.class);
+        private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[2 * BitUtil.SIZE_OF_LONG]);
+
+        private long recordingId;
+        private long position;
+        private long stopPosition;
+
+        Replay(final int sessionId)
+        {
+            this.sessionId = sessionId;
+
+            when(image.position()).then(inv -> position);
+            when(image.poll(any(FragmentHandler.class), anyInt()))
+                .then(inv -> poll(inv.getArgument(0), inv.getArgument(1)));
+        }
+
+        void start(final long recordingId, final long position, final long length)
+        {
+            this.recordingId = recordingId;
+            this.position = position;
+            this.stopPosition = position + length;
+        }
+
+        private int poll(final FragmentHandler handler, final int fragmentLimit)
+        {
+            int fragments = 0;
+            while (fragments < fragmentLimit && position < stopPosition)
+            {
+                position += FRAGMENT_LENGTH;
+                buffer.putLong(0, recordingId);
+                buffer.putLong(BitUtil.SIZE_OF_LONG, position);
+                handler.onFragment(buffer, 0, buffer.capacity(), null);
+                fragments++;
+            }
+
+            return fragments;
+        }
+    }
+
+    private static final class FakeIndex implements Index
+    {
+        private final Map<Long, Long> recordingIdToPosition = new LinkedHashMap<>();
+        private final String name;
+
+        FakeIndex(final String name)
+        {
+            this.name = name;
+        }
+
+        FakeIndex indexedUpTo(final long recordingId, final long position)
+        {
+            recordingIdToPosition.put(recordingId, position);
+            return this;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public void onFragment(final DirectBuffer buffer, final int offset, final int length, final Header header)
+        {
+            indexedUpTo(buffer.getLong(offset), buffer.getLong(offset + BitUtil.SIZE_OF_LONG));
+        }
+
+        public void readLastPosition(final IndexedPositionConsumer consumer)
+        {
+            recordingIdToPosition.forEach((recordingId, position) ->
+                consumer.accept(AERON_SESSION_ID, recordingId, position));
+        }
+
+        public void close()
+        {
+        }
+    }
+}
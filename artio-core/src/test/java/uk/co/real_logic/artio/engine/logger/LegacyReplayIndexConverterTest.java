@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.engine.framer.FakeEpochClock;
+import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordDecoder;
+import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordEncoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.*;
+
+public class LegacyReplayIndexConverterTest
+{
+    private static final int STREAM_ID = 2;
+    private static final long SESSION_ID = 1;
+    private static final int SEQUENCE_INDEX = 3;
+    private static final long RECORDING_ID = 4;
+    private static final int LEGACY_RECORD_COUNT = 4;
+    private static final int LEGACY_FILE_SIZE = LEGACY_INITIAL_RECORD_OFFSET + LEGACY_RECORD_COUNT * RECORD_LENGTH;
+    private static final int SEGMENT_SIZE = INITIAL_RECORD_OFFSET + 3 * RECORD_LENGTH;
+    private static final long CONVERSION_TIME = 1024;
+
+    private final ReplayIndexRecordEncoder recordEncoder = new ReplayIndexRecordEncoder();
+    private final ReplayIndexRecordDecoder recordDecoder = new ReplayIndexRecordDecoder();
+    private final UnsafeBuffer headBuffer = new UnsafeBuffer(0, 0);
+    private final UnsafeBuffer segmentBuffer = new UnsafeBuffer(0, 0);
+    private final ErrorHandler errorHandler = mock(ErrorHandler.class);
+    private final FakeEpochClock clock = new FakeEpochClock();
+
+    private File logFileDir;
+    private FileReplayIndexStore store;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        logFileDir = Files.createTempDirectory("legacy-replay-index").toFile();
+        store = new FileReplayIndexStore(logFileDir.getPath(), STREAM_ID, SEGMENT_SIZE, LoggerUtil::map, errorHandler);
+        clock.advanceMilliSeconds(CONVERSION_TIME);
+    }
+
+    @After
+    public void tearDown()
+    {
+        IoUtil.delete(logFileDir, true);
+    }
+
+    @Test
+    public void shouldConvertTheRecordsStillInTheRingIntoSegments()
+    {
+        // The ring has wrapped, so the first two records have been overwritten.
+        givenLegacyReplayIndexFile(6, 6);
+
+        convert();
+
+        assertFalse(legacyFile().exists());
+        assertSegments(0, 1);
+        assertSegment(0, CONVERSION_TIME, 3, 4, 5);
+        assertSegment(1, NOT_SEALED, 6);
+        verifyNoInteractions(errorHandler);
+    }
+
+    @Test
+    public void shouldDropARecordThatMayHaveBeenOverwrittenWhenTheEngineStopped()
+    {
+        // A seventh record was being written over the third when the engine stopped.
+        givenLegacyReplayIndexFile(6, 7);
+
+        convert();
+
+        assertSegments(0, 0);
+        assertSegment(0, NOT_SEALED, 4, 5, 6);
+    }
+
+    @Test
+    public void shouldRenameLegacyReplayIndexFileThatCantBeConverted() throws IOException
+    {
+        assertTrue(legacyFile().createNewFile());
+
+        convert();
+
+        assertFalse(legacyFile().exists());
+        assertTrue(new File(legacyFile().getPath() + LegacyReplayIndexConverter.UNCONVERTED_SUFFIX).exists());
+        verify(errorHandler).onError(any(IllegalStateException.class));
+    }
+
+    @Test
+    public void shouldIgnoreLegacyReplayIndexFileOfOtherStream()
+    {
+        givenLegacyReplayIndexFile(6, 6);
+
+        new LegacyReplayIndexConverter(store, clock, errorHandler).convert(logFileDir.getPath(), STREAM_ID + 1);
+
+        assertTrue(legacyFile().exists());
+        verifyNoInteractions(errorHandler);
+    }
+
+    private void convert()
+    {
+        new LegacyReplayIndexConverter(store, clock, errorHandler).convert(logFileDir.getPath(), STREAM_ID);
+    }
+
+    // Writes records with sequence numbers from 1 to recordCount into a ring.
+    private void givenLegacyReplayIndexFile(final int recordCount, final int beginChangeRecordCount)
+    {
+        final int capacity = LEGACY_FILE_SIZE - LEGACY_INITIAL_RECORD_OFFSET;
+        final MappedByteBuffer byteBuffer = IoUtil.mapNewFile(legacyFile(), LEGACY_FILE_SIZE);
+        final UnsafeBuffer buffer = new UnsafeBuffer(byteBuffer);
+        try
+        {
+            for (int i = 0; i < recordCount; i++)
+            {
+                recordEncoder
+                    .wrap(buffer, legacyOffset((long)i * RECORD_LENGTH, capacity))
+                    .position(i * 128L)
+                    .sequenceNumber(i + 1)
+                    .sequenceIndex(SEQUENCE_INDEX)
+                    .recordingId(RECORDING_ID)
+                    .length(128);
+            }
+
+            beginChangeOrdered(buffer, (long)beginChangeRecordCount * RECORD_LENGTH);
+            endChangeOrdered(buffer, (long)recordCount * RECORD_LENGTH);
+        }
+        finally
+        {
+            IoUtil.unmap(byteBuffer);
+        }
+    }
+
+    private File legacyFile()
+    {
+        return legacyReplayIndexFile(logFileDir.getPath(), SESSION_ID, STREAM_ID);
+    }
+
+    private void assertSegments(final long firstSegment, final long lastSegment)
+    {
+        assertTrue(store.wrapHead(SESSION_ID, headBuffer));
+        try
+        {
+            assertEquals(firstSegment, firstSegmentVolatile(headBuffer));
+            assertEquals(lastSegment, lastSegmentVolatile(headBuffer));
+        }
+        finally
+        {
+            store.releaseHead(headBuffer);
+        }
+    }
+
+    private void assertSegment(final long segment, final long sealedTime, final int... sequenceNumbers)
+    {
+        assertTrue(store.wrapSegment(SESSION_ID, segment, segmentBuffer));
+        try
+        {
+            assertEquals(sealedTime, sealedTime(segmentBuffer));
+            assertEquals((long)sequenceNumbers.length * RECORD_LENGTH, endChangeVolatile(segmentBuffer));
+            assertEquals(endChangeVolatile(segmentBuffer), beginChange(segmentBuffer));
+
+            for (int i = 0; i < sequenceNumbers.length; i++)
+            {
+                recordDecoder.wrap(
+                    segmentBuffer,
+                    offset((long)i * RECORD_LENGTH),
+                    ReplayIndexRecordDecoder.BLOCK_LENGTH,
+                    ReplayIndexRecordDecoder.SCHEMA_VERSION);
+
+                final int sequenceNumber = sequenceNumbers[i];
+                assertEquals(sequenceNumber, recordDecoder.sequenceNumber());
+                assertEquals((sequenceNumber - 1) * 128L, recordDecoder.position());
+                assertEquals(SEQUENCE_INDEX, recordDecoder.sequenceIndex());
+                assertEquals(RECORDING_ID, recordDecoder.recordingId());
+            }
+        }
+        finally
+        {
+            store.releaseSegment(segmentBuffer);
+        }
+    }
+}
@@ -26,7 +26,6 @@ import io.aeron.logbuffer.ControlledFragmentHandler;
 import org.agrona.ErrorHandler;
 import org.agrona.IoUtil;
 import org.agrona.concurrent.IdleStrategy;
-import org.agrona.concurrent.NoOpIdleStrategy;
 import org.agrona.concurrent.UnsafeBuffer;
 import org.agrona.concurrent.YieldingIdleStrategy;
 import org.junit.After;
@@ -35,12 +34,14 @@ import org.junit.Test;
 import org.mockito.verification.VerificationMode;
 import uk.co.real_logic.artio.CommonConfiguration;
 import uk.co.real_logic.artio.TestFixtures;
+import uk.co.real_logic.artio.decoder.ExampleMessageDecoder;
 import uk.co.real_logic.artio.dictionary.generation.Exceptions;
-import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
@@ -50,19 +51,19 @@ import static uk.co.real_logic.artio.LogTag.REPLAY;
 import static uk.co.real_logic.artio.TestFixtures.cleanupMediaDriver;
 import static uk.co.real_logic.artio.TestFixtures.largeTestReqId;
 import static uk.co.real_logic.artio.engine.EngineConfiguration.*;
-import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.RECORD_LENGTH;
-import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.REPLAY_POSITION_BUFFER_SIZE;
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.*;
 import static uk.co.real_logic.artio.engine.logger.Replayer.MOST_RECENT_MESSAGE;
 
 public class ReplayIndexTest extends AbstractLogTest
 {
     private static final String CHANNEL = CommonContext.IPC_CHANNEL;
 
-    private ByteBuffer indexBuffer = ByteBuffer.allocate(DEFAULT_REPLAY_INDEX_FILE_SIZE);
+    // Fakes the index files, so that the index and query see the same buffer for each file.
+    private final Map<File, ByteBuffer> fileToBuffer = new HashMap<>();
     private ExistingBufferFactory existingBufferFactory = mock(ExistingBufferFactory.class);
     private BufferFactory newBufferFactory = mock(BufferFactory.class);
     private ReplayIndex replayIndex;
-    private int totalMessages = (indexBuffer.capacity() - MessageHeaderEncoder.ENCODED_LENGTH) / RECORD_LENGTH;
+    private int totalMessages = recordCapacity(DEFAULT_REPLAY_INDEX_FILE_SIZE) / RECORD_LENGTH;
 
     private UnsafeBuffer replayPositionBuffer = new UnsafeBuffer(new byte[REPLAY_POSITION_BUFFER_SIZE]);
     private IndexedPositionConsumer positionConsumer = mock(IndexedPositionConsumer.class);
@@ -79,17 +80,32 @@ public class ReplayIndexTest extends AbstractLogTest
     private RecordingIdLookup recordingIdLookup;
 
     private void newReplayIndex()
+    {
+        newReplayIndex(DEFAULT_REPLAY_INDEX_FILE_SIZE, ReplayIndexRetentionPolicy.retainAll());
+    }
+
+    private void newReplayIndex(final int indexFileSize, final ReplayIndexRetentionPolicy retentionPolicy)
+    {
+        newReplayIndex(indexFileSize, retentionPolicy, null);
+    }
+
+    private void newReplayIndex(
+        final int indexFileSize,
+        final ReplayIndexRetentionPolicy retentionPolicy,
+        final ArchivingPolicy archivingPolicy)
     {
         replayIndex = new ReplayIndex(
             DEFAULT_LOG_FILE_DIR,
             STREAM_ID,
-            DEFAULT_REPLAY_INDEX_FILE_SIZE,
             DEFAULT_LOGGER_CACHE_NUM_SETS,
             DEFAULT_LOGGER_CACHE_SET_SIZE,
-            newBufferFactory,
+            new FileReplayIndexStore(DEFAULT_LOG_FILE_DIR, STREAM_ID, indexFileSize, newBufferFactory, errorHandler),
             replayPositionBuffer,
             errorHandler,
-            recordingIdLookup);
+            recordingIdLookup,
+            retentionPolicy,
+            archivingPolicy,
+            System::currentTimeMillis);
     }
 
     private Aeron aeron()
@@ -121,16 +137,17 @@ public class ReplayIndexTest extends AbstractLogTest
             DEFAULT_LOG_FILE_DIR,
             DEFAULT_LOGGER_CACHE_NUM_SETS,
             DEFAULT_LOGGER_CACHE_SET_SIZE,
-            existingBufferFactory,
+            new FileReplayIndexStore(
+                DEFAULT_LOG_FILE_DIR, DEFAULT_OUTBOUND_LIBRARY_STREAM, existingBufferFactory, errorHandler),
             DEFAULT_OUTBOUND_LIBRARY_STREAM,
-            new NoOpIdleStrategy(),
             aeronArchive,
             errorHandler,
             DEFAULT_ARCHIVE_REPLAY_STREAM);
 
-        returnBuffer(indexBuffer, SESSION_ID);
-        returnBuffer(ByteBuffer.allocate(16 * 1024), SESSION_ID_2);
-        when(newBufferFactory.map(any(), anyInt())).thenReturn(indexBuffer);
+        when(newBufferFactory.map(any(), anyInt())).then((inv) ->
+            fileToBuffer.computeIfAbsent(inv.getArgument(0), (file) -> ByteBuffer.allocate(inv.getArgument(1))));
+        when(existingBufferFactory.map(any())).then((inv) ->
+            fileToBuffer.getOrDefault(inv.getArgument(0), ByteBuffer.allocate(0)));
     }
 
     @After
@@ -269,6 +286,21 @@ public class ReplayIndexTest extends AbstractLogTest
         assertEquals(2, msgCount);
     }
 
+    @Test(timeout = 20_000L)
+    public void shouldQueryFromTheMiddleOfALaterSequenceIndex()
+    {
+        final int nextSequenceIndex = SEQUENCE_INDEX + 1;
+        IntStream.rangeClosed(1, 10).forEach(
+            (seqNum) -> indexExampleMessage(SESSION_ID, seqNum, SEQUENCE_INDEX));
+        IntStream.rangeClosed(1, 10).forEach(
+            (seqNum) -> indexExampleMessage(SESSION_ID, seqNum, nextSequenceIndex));
+
+        final int msgCount = query(4, nextSequenceIndex, 6, nextSequenceIndex);
+
+        assertEquals(3, msgCount);
+        verifyMessagesRead(3);
+    }
+
     @Test //(timeout = 20_000L)
     public void shouldNotStopIndexingWhenBufferFull()
     {
@@ -288,6 +320,55 @@ public class ReplayIndexTest extends AbstractLogTest
         verifyMessagesRead(expectedMessages);
     }
 
+    @Test(timeout = 20_000L)
+    public void shouldQueryAcrossSegments()
+    {
+        replayIndex.close();
+        newReplayIndex(segmentSize(4), ReplayIndexRetentionPolicy.retainAll());
+
+        IntStream.rangeClosed(1, 10).forEach(
+            (seqNum) -> indexExampleMessage(SESSION_ID, seqNum, SEQUENCE_INDEX));
+
+        final int msgCount = query(3, SEQUENCE_INDEX, 9, SEQUENCE_INDEX);
+
+        assertEquals(7, msgCount);
+        verifyMessagesRead(7);
+    }
+
+    @Test(timeout = 20_000L)
+    public void shouldOnlyQueryRetainedSegments()
+    {
+        replayIndex.close();
+        newReplayIndex(segmentSize(4), ReplayIndexRetentionPolicy.retainSegments(2));
+
+        IntStream.rangeClosed(1, 10).forEach(
+            (seqNum) -> indexExampleMessage(SESSION_ID, seqNum, SEQUENCE_INDEX));
+
+        // Segments hold 1-4, 5-8 and 9-10, and only the last two are retained.
+        final int msgCount = query(1, SEQUENCE_INDEX, 10, SEQUENCE_INDEX);
+
+        assertEquals(6, msgCount);
+        verifyMessagesRead(6);
+    }
+
+    @Test(timeout = 20_000L)
+    public void shouldRetainSegmentsOfRecentSequenceIndices()
+    {
+        replayIndex.close();
+        newReplayIndex(segmentSize(4), ReplayIndexRetentionPolicy.retainSequenceIndices(1));
+
+        final int nextSequenceIndex = SEQUENCE_INDEX + 1;
+        IntStream.rangeClosed(1, 4).forEach(
+            (seqNum) -> indexExampleMessage(SESSION_ID, seqNum, SEQUENCE_INDEX));
+        IntStream.rangeClosed(1, 5).forEach(
+            (seqNum) -> indexExampleMessage(SESSION_ID, seqNum, nextSequenceIndex));
+
+        final int msgCount = query(1, SEQUENCE_INDEX, MOST_RECENT_MESSAGE, nextSequenceIndex);
+
+        assertEquals(5, msgCount);
+        verifyMessagesRead(5);
+    }
+
     @Test(timeout = 20_000L)
     public void shouldUpdatePositionForIndexedRecord()
     {
@@ -312,6 +393,25 @@ public class ReplayIndexTest extends AbstractLogTest
         verifyMappedFile(SESSION_ID);
     }
 
+    @Test(timeout = 20_000L)
+    public void shouldNotIndexMessagesThatArchivingPolicySkips()
+    {
+        replayIndex.close();
+        newReplayIndex(
+            DEFAULT_REPLAY_INDEX_FILE_SIZE,
+            ReplayIndexRetentionPolicy.retainAll(),
+            (sessionId, messageType) -> sessionId != SESSION_ID || messageType != ExampleMessageDecoder.MESSAGE_TYPE);
+
+        indexExampleMessage();
+        indexExampleMessage(SESSION_ID_2, SEQUENCE_NUMBER, SEQUENCE_INDEX);
+
+        assertEquals(0, query());
+        verifyNoMessageRead();
+
+        assertEquals(1, query(SESSION_ID_2, SEQUENCE_NUMBER, SEQUENCE_INDEX, SEQUENCE_NUMBER, SEQUENCE_INDEX));
+        verifyMessagesRead(1);
+    }
+
     @Test(timeout = 20_000L)
     public void shouldRecordIndexesForMultipleSessions()
     {
@@ -344,12 +444,6 @@ public class ReplayIndexTest extends AbstractLogTest
             .onFragment(any(), anyInt(), anyInt(), any());
     }
 
-    private void returnBuffer(final ByteBuffer buffer, final long sessionId)
-    {
-        final File file = logFile(sessionId);
-        when(existingBufferFactory.map(file)).thenReturn(buffer);
-    }
-
     private void verifyMappedFile(final long sessionId, final int wantedNumberOfInvocations)
     {
         verify(existingBufferFactory, times(wantedNumberOfInvocations)).map(logFile(sessionId));
@@ -360,9 +454,14 @@ public class ReplayIndexTest extends AbstractLogTest
         verify(newBufferFactory).map(eq(logFile(sessionId)), anyInt());
     }
 
+    private int segmentSize(final int records)
+    {
+        return INITIAL_RECORD_OFFSET + records * RECORD_LENGTH;
+    }
+
     private File logFile(final long sessionId)
     {
-        return ReplayIndexDescriptor.replayIndexFile(DEFAULT_LOG_FILE_DIR, sessionId, STREAM_ID);
+        return ReplayIndexDescriptor.replayIndexHeadFile(DEFAULT_LOG_FILE_DIR, sessionId, STREAM_ID);
     }
 
     private void indexRecord()
@@ -40,6 +40,7 @@ import uk.co.real_logic.artio.engine.ReplayHandler;
 import uk.co.real_logic.artio.engine.SenderSequenceNumbers;
 import uk.co.real_logic.artio.fields.RejectReason;
 import uk.co.real_logic.artio.fields.UtcTimestampDecoder;
+import uk.co.real_logic.artio.messages.DisconnectReason;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 import uk.co.real_logic.artio.messages.ReplayCompleteDecoder;
 import uk.co.real_logic.artio.util.AsciiBuffer;
@@ -102,8 +103,19 @@ public class ReplayerTest extends AbstractLogTest
 
         setReplayedMessages(1);
 
-        replayer = new Replayer(
+        replayer = newReplayer(null);
+    }
+
+    private Replayer newReplayer(final ResendCache resendCache)
+    {
+        return newReplayer(resendCache, false);
+    }
+
+    private Replayer newReplayer(final ResendCache resendCache, final boolean gapFillUnarchivedMessages)
+    {
+        return new Replayer(
             replayQuery,
+            resendCache,
             publication,
             claim,
             idleStrategy,
@@ -113,6 +125,7 @@ public class ReplayerTest extends AbstractLogTest
             DEFAULT_NAME_PREFIX,
             clock,
             EngineConfiguration.DEFAULT_GAPFILL_ON_REPLAY_MESSAGE_TYPES,
+            gapFillUnarchivedMessages,
             replayHandler,
             senderSequenceNumbers,
             new FakeFixSessionCodecsFactory());
@@ -168,6 +181,60 @@ public class ReplayerTest extends AbstractLogTest
         verifyReplayCompleteMessageSent();
     }
 
+    @Test
+    public void shouldResendFromResendCacheWithoutQueryingArchive()
+    {
+        replayer = newReplayer(resendCacheWithExampleMessage());
+
+        final int srcLength = fragmentLength();
+        final long result = bufferHasResendRequest(END_SEQ_NO);
+        onRequestResendMessage(result);
+        verifyNoMoreInteractions(replayQuery);
+
+        setupMessage(srcLength);
+        replayer.doWork();
+
+        assertHasResentWithPossDupFlag(srcLength, times(1));
+
+        replayer.doWork();
+
+        verifyReplayCompleteMessageSent();
+        verifyNoMoreInteractions(errorHandler);
+    }
+
+    @Test
+    public void shouldQueryArchiveWhenResendCacheMissesMessages()
+    {
+        replayer = newReplayer(resendCacheWithExampleMessage());
+
+        final int endSeqNo = endSeqNoForTwoMessages();
+        final long result = bufferHasResendRequest(endSeqNo);
+        onRequestResendMessage(result);
+
+        verifyQueriedService(endSeqNo);
+    }
+
+    @Test
+    public void shouldQueryArchiveOnceSessionHasDisconnected()
+    {
+        replayer = newReplayer(resendCacheWithExampleMessage());
+
+        assertEquals(CONTINUE, replayer.onDisconnect(LIBRARY_ID, CONNECTION_ID, DisconnectReason.REMOTE_DISCONNECT));
+
+        final long result = bufferHasResendRequest(END_SEQ_NO);
+        onRequestResendMessage(result);
+
+        verifyQueriedService(END_SEQ_NO);
+    }
+
+    private ResendCache resendCacheWithExampleMessage()
+    {
+        final ResendCache resendCache = new ResendCache(mock(Subscription.class), 16, 1024, errorHandler);
+        bufferContainsExampleMessage(true);
+        resendCache.onFragment(buffer, START, fragmentLength(), fragmentHeader);
+        return resendCache;
+    }
+
     @Test
     public void shouldSupportConcurrentReplayRequests()
     {
@@ -498,6 +565,77 @@ public class ReplayerTest extends AbstractLogTest
         verifyIllegalStateException();
     }
 
+    @Test
+    public void shouldGapFillUnarchivedMessagesWithoutError()
+    {
+        replayer = newReplayer(null, true);
+
+        final int endSeqNo = endSeqNoForTwoMessages();
+
+        final int offset = setupCapturingClaim();
+        setReplayedMessages(0);
+
+        final long result = bufferHasResendRequest(endSeqNo);
+        onRequestResendMessage(result);
+
+        replayer.doWork();
+
+        assertSentGapFill(BEGIN_SEQ_NO, endSeqNo + 1, offset, times(1));
+        verifyNoMoreInteractions(errorHandler);
+    }
+
+    @Test
+    public void shouldGapFillSkippedMessageBetweenReplayedMessages()
+    {
+        replayer = newReplayer(null, true);
+
+        final int endSeqNo = BEGIN_SEQ_NO + 2;
+        setReplayedMessages(2);
+        gapFillCommittedAt(2, BEGIN_SEQ_NO + 1, endSeqNo);
+
+        onReplay(endSeqNo, inv ->
+        {
+            setupCapturingClaim();
+
+            onExampleMessage(BEGIN_SEQ_NO);
+            onExampleMessage(endSeqNo);
+
+            return true;
+        });
+
+        replayer.doWork();
+
+        verifyCommit(times(3));
+    }
+
+    @Test
+    public void shouldRetryGapFillOfSkippedMessageWhenBackPressured()
+    {
+        replayer = newReplayer(null, true);
+
+        final int endSeqNo = BEGIN_SEQ_NO + 2;
+        setReplayedMessages(2);
+        gapFillCommittedAt(2, BEGIN_SEQ_NO + 1, endSeqNo);
+
+        onReplay(endSeqNo, inv ->
+        {
+            setupCapturingClaim();
+            onExampleMessage(BEGIN_SEQ_NO);
+
+            backpressureTryClaim();
+            onExampleMessage(endSeqNo, ABORT);
+
+            setupCapturingClaim();
+            onExampleMessage(endSeqNo);
+
+            return true;
+        });
+
+        replayer.doWork();
+
+        verifyCommit(times(3));
+    }
+
     @Test
     public void shouldReplayMessageWithExpandingBodyLength()
     {
@@ -603,6 +741,19 @@ public class ReplayerTest extends AbstractLogTest
         reset(publication);
     }
 
+    private void gapFillCommittedAt(final int commit, final int msgSeqNum, final int newSeqNo)
+    {
+        final int[] commits = new int[1];
+        doAnswer(commitInv ->
+        {
+            if (++commits[0] == commit)
+            {
+                assertResultBufferHasGapFillMessage(claimedLength, msgSeqNum, newSeqNo);
+            }
+            return null;
+        }).when(claim).commit();
+    }
+
     private void assertResentGapFillThenMessage(final int endSeqNo, final int offset, final int srcLength)
     {
         doAnswer(commitInv ->
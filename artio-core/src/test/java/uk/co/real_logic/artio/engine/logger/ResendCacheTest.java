@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.Subscription;
+import io.aeron.logbuffer.Header;
+import org.agrona.ErrorHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static uk.co.real_logic.artio.engine.logger.ResendCache.NOT_CACHED;
+
+public class ResendCacheTest extends AbstractLogTest
+{
+    private static final int MESSAGE_CAPACITY = 4;
+
+    private final ErrorHandler errorHandler = mock(ErrorHandler.class);
+    private final UnsafeBuffer messageBuffer = new UnsafeBuffer(0, 0);
+    private final ResendCache resendCache = new ResendCache(
+        mock(Subscription.class), MESSAGE_CAPACITY, 1024, errorHandler);
+
+    @Test
+    public void shouldWrapCachedMessages()
+    {
+        cache(SEQUENCE_NUMBER);
+        cache(SEQUENCE_NUMBER + 1);
+
+        assertTrue(resendCache.containsAll(SESSION_ID, SEQUENCE_INDEX, SEQUENCE_NUMBER, SEQUENCE_NUMBER + 1));
+        assertEquals(SEQUENCE_NUMBER + 1, resendCache.lastSequenceNumber(SESSION_ID, SEQUENCE_INDEX));
+
+        assertTrue(resendCache.wrap(SESSION_ID, SEQUENCE_INDEX, SEQUENCE_NUMBER + 1, messageBuffer));
+        assertEquals(fragmentLength(), messageBuffer.capacity());
+        for (int i = 0; i < messageBuffer.capacity(); i++)
+        {
+            assertEquals(buffer.getByte(START + i), messageBuffer.getByte(i));
+        }
+    }
+
+    @Test
+    public void shouldOnlyContainMostRecentMessages()
+    {
+        for (int sequenceNumber = 1; sequenceNumber <= MESSAGE_CAPACITY + 1; sequenceNumber++)
+        {
+            cache(sequenceNumber);
+        }
+
+        assertFalse(resendCache.containsAll(SESSION_ID, SEQUENCE_INDEX, 1, MESSAGE_CAPACITY));
+        assertTrue(resendCache.containsAll(SESSION_ID, SEQUENCE_INDEX, 2, MESSAGE_CAPACITY + 1));
+        assertFalse(resendCache.wrap(SESSION_ID, SEQUENCE_INDEX, 1, messageBuffer));
+    }
+
+    @Test
+    public void shouldNotContainMessagesFromOtherSequenceIndicesOrSessions()
+    {
+        cache(SEQUENCE_NUMBER);
+
+        assertFalse(resendCache.containsAll(SESSION_ID, SEQUENCE_INDEX + 1, SEQUENCE_NUMBER, SEQUENCE_NUMBER));
+        assertFalse(resendCache.containsAll(SESSION_ID_2, SEQUENCE_INDEX, SEQUENCE_NUMBER, SEQUENCE_NUMBER));
+        assertEquals(NOT_CACHED, resendCache.lastSequenceNumber(SESSION_ID, SEQUENCE_INDEX + 1));
+    }
+
+    @Test
+    public void shouldNotContainMessagesThatAreTooLong()
+    {
+        final ResendCache resendCache = new ResendCache(
+            mock(Subscription.class), MESSAGE_CAPACITY, 16, errorHandler);
+        bufferContainsExampleMessage(true, SESSION_ID, SEQUENCE_NUMBER, SEQUENCE_INDEX);
+        resendCache.onFragment(buffer, START, fragmentLength(), mock(Header.class));
+
+        assertFalse(resendCache.containsAll(SESSION_ID, SEQUENCE_INDEX, SEQUENCE_NUMBER, SEQUENCE_NUMBER));
+    }
+
+    @Test
+    public void shouldDropCachedMessagesOfSessionWhenItDisconnects()
+    {
+        cache(SEQUENCE_NUMBER);
+
+        resendCache.onDisconnect(CONNECTION_ID);
+
+        assertFalse(resendCache.containsAll(SESSION_ID, SEQUENCE_INDEX, SEQUENCE_NUMBER, SEQUENCE_NUMBER));
+        assertEquals(NOT_CACHED, resendCache.lastSequenceNumber(SESSION_ID, SEQUENCE_INDEX));
+        assertFalse(resendCache.wrap(SESSION_ID, SEQUENCE_INDEX, SEQUENCE_NUMBER, messageBuffer));
+
+        cache(SEQUENCE_NUMBER + 1);
+
+        assertTrue(resendCache.containsAll(SESSION_ID, SEQUENCE_INDEX, SEQUENCE_NUMBER + 1, SEQUENCE_NUMBER + 1));
+    }
+
+    @Test
+    public void shouldKeepCachedMessagesWhenOtherConnectionDisconnects()
+    {
+        cache(SEQUENCE_NUMBER);
+
+        resendCache.onDisconnect(CONNECTION_ID_2);
+
+        assertTrue(resendCache.containsAll(SESSION_ID, SEQUENCE_INDEX, SEQUENCE_NUMBER, SEQUENCE_NUMBER));
+    }
+
+    private void cache(final int sequenceNumber)
+    {
+        bufferContainsExampleMessage(true, SESSION_ID, sequenceNumber, SEQUENCE_INDEX);
+        resendCache.onFragment(buffer, START, fragmentLength(), mock(Header.class));
+    }
+}
@@ -35,6 +35,8 @@ import uk.co.real_logic.artio.FileSystemCorruptionException;
 import uk.co.real_logic.artio.engine.MappedFile;
 import uk.co.real_logic.artio.engine.SessionInfo;
 import uk.co.real_logic.artio.engine.framer.FakeEpochClock;
+import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
+import uk.co.real_logic.artio.messages.UnrecordedFixMessageEncoder;
 
 import java.io.File;
 
@@ -48,13 +50,14 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static uk.co.real_logic.artio.TestFixtures.largeTestReqId;
 import static uk.co.real_logic.artio.TestFixtures.launchJustMediaDriver;
 import static uk.co.real_logic.artio.engine.EngineConfiguration.DEFAULT_INDEX_FILE_STATE_FLUSH_TIMEOUT_IN_MS;
 import static uk.co.real_logic.artio.engine.SectorFramer.SECTOR_SIZE;
+import static uk.co.real_logic.artio.engine.SequenceNumberExtractor.NO_SEQUENCE_NUMBER;
 import static uk.co.real_logic.artio.engine.logger.ErrorHandlerVerifier.verify;
 import static uk.co.real_logic.artio.engine.logger.SequenceNumberIndexDescriptor.*;
-import static uk.co.real_logic.artio.engine.logger.SequenceNumberIndexWriter.SEQUENCE_NUMBER_OFFSET;
 
 public class SequenceNumberIndexTest extends AbstractLogTest
 {
@@ -149,6 +152,20 @@ public class SequenceNumberIndexTest extends AbstractLogTest
         assertLastKnownSequenceNumberIs(SESSION_ID, updatedSequenceNumber);
     }
 
+    @Test
+    public void shouldStashSequenceNumbersOfUnrecordedMessages()
+    {
+        final int unrecordedSequenceNumber = 3;
+
+        indexFixMessage();
+
+        bufferContainsUnrecordedMessageMarker(unrecordedSequenceNumber);
+
+        indexRecord();
+
+        assertLastKnownSequenceNumberIs(SESSION_ID, unrecordedSequenceNumber);
+    }
+
     @Test
     public void shouldValidateBufferItReadsFrom()
     {
@@ -170,6 +187,18 @@ public class SequenceNumberIndexTest extends AbstractLogTest
         assertEquals(alignedEndPosition(), newReader.indexedPosition(publication.sessionId()));
     }
 
+    @Test
+    public void shouldSaveIndexedPositionUponCloseWithoutANewSequenceNumber()
+    {
+        bufferContainsUnrecordedMessageMarker(NO_SEQUENCE_NUMBER);
+        final long position = indexRecord();
+
+        writer.close();
+
+        final SequenceNumberIndexReader newReader = newInstanceAfterRestart();
+        assertEquals(position, newReader.indexedPosition(publication.sessionId()));
+    }
+
     @Test
     public void shouldRecordIndexedPosition()
     {
@@ -228,7 +257,7 @@ public class SequenceNumberIndexTest extends AbstractLogTest
 
         writer.close();
 
-        corruptIndexFile(SEQUENCE_NUMBER_OFFSET, SECTOR_SIZE / 2);
+        corruptIndexFile(recordOffset(SESSION_ID), RECORD_SIZE);
 
         newInstanceAfterRestart();
 
@@ -303,6 +332,51 @@ public class SequenceNumberIndexTest extends AbstractLogTest
         }
     }
 
+    @Test
+    public void shouldStashSequenceNumbersOfSessionsThatHashToTheSameSlot()
+    {
+        final int slotCount = slotCount(positionTableOffset(BUFFER_SIZE));
+        final int homeSlot = homeSlot(SESSION_ID, slotCount);
+        final long[] collidingSessionIds = new long[2];
+        long sessionId = SESSION_ID;
+        for (int i = 0; i < collidingSessionIds.length; i++)
+        {
+            do
+            {
+                sessionId++;
+            }
+            while (homeSlot(sessionId, slotCount) != homeSlot);
+
+            collidingSessionIds[i] = sessionId;
+        }
+
+        bufferContainsExampleMessage(true, SESSION_ID, SEQUENCE_NUMBER, SEQUENCE_INDEX);
+        indexRecord();
+        bufferContainsExampleMessage(true, collidingSessionIds[0], SEQUENCE_NUMBER + 1, SEQUENCE_INDEX);
+        indexRecord();
+
+        assertLastKnownSequenceNumberIs(SESSION_ID, SEQUENCE_NUMBER);
+        assertLastKnownSequenceNumberIs(collidingSessionIds[0], SEQUENCE_NUMBER + 1);
+        assertLastKnownSequenceNumberIs(collidingSessionIds[1], SessionInfo.UNK_SESSION);
+    }
+
+    @Test
+    public void shouldReadTheSequenceNumbersOfEverySession()
+    {
+        final long otherSessionId = SESSION_ID + 1;
+        bufferContainsExampleMessage(true, SESSION_ID, SEQUENCE_NUMBER, SEQUENCE_INDEX);
+        indexRecord();
+        bufferContainsExampleMessage(true, otherSessionId, SEQUENCE_NUMBER + 1, SEQUENCE_INDEX);
+        indexRecord();
+
+        final SequenceNumberConsumer consumer = mock(SequenceNumberConsumer.class);
+        reader.readLastKnownSequenceNumbers(consumer);
+
+        verify(consumer).accept(SESSION_ID, SEQUENCE_NUMBER);
+        verify(consumer).accept(otherSessionId, SEQUENCE_NUMBER + 1);
+        verifyNoMoreInteractions(consumer);
+    }
+
     @Test
     public void shouldResetSequenceNumbers()
     {
@@ -313,6 +387,11 @@ public class SequenceNumberIndexTest extends AbstractLogTest
         assertUnknownSession();
     }
 
+    private int recordOffset(final long sessionId)
+    {
+        return slotOffset(homeSlot(sessionId, slotCount(positionTableOffset(BUFFER_SIZE))));
+    }
+
     private SequenceNumberIndexReader newInstanceAfterRestart()
     {
         final AtomicBuffer inMemoryBuffer = newBuffer();
@@ -348,6 +427,18 @@ public class SequenceNumberIndexTest extends AbstractLogTest
         indexRecord();
     }
 
+    private void bufferContainsUnrecordedMessageMarker(final int sequenceNumber)
+    {
+        new UnrecordedFixMessageEncoder()
+            .wrapAndApplyHeader(buffer, START, header)
+            .session(SESSION_ID)
+            .sequenceIndex(SEQUENCE_INDEX)
+            .sequenceNumber(sequenceNumber);
+
+        offset = START + MessageHeaderEncoder.ENCODED_LENGTH + UnrecordedFixMessageEncoder.BLOCK_LENGTH;
+        logEntryLength = 0;
+    }
+
     private long indexLargeFixMessage()
     {
         buffer = new UnsafeBuffer(new byte[BIG_BUFFER_LENGTH]);
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.*;
+
+public class SharedReplayIndexStoreTest
+{
+    private static final int SEGMENT_SIZE = INITIAL_RECORD_OFFSET + 4 * RECORD_LENGTH;
+    private static final int SEGMENT_COUNT = 4;
+    private static final int SESSION_CAPACITY = 2;
+    private static final long SESSION_ID = 1;
+    private static final long OTHER_SESSION_ID = 2;
+
+    private final UnsafeBuffer headBuffer = new UnsafeBuffer(0, 0);
+    private final UnsafeBuffer segmentBuffer = new UnsafeBuffer(0, 0);
+
+    private File file;
+    private ByteBuffer fileBuffer;
+    private SharedReplayIndexStore store;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("replay-index-store", "");
+        store = newWriter();
+    }
+
+    @After
+    public void tearDown()
+    {
+        store.close();
+        IoUtil.deleteIfExists(file);
+    }
+
+    @Test
+    public void shouldChainSegmentsOfSession()
+    {
+        assertTrue(store.wrapHead(SESSION_ID, headBuffer));
+
+        writeSegment(SESSION_ID, 0, 10);
+        writeSegment(SESSION_ID, 1, 11);
+
+        assertSegmentValue(SESSION_ID, 0, 10);
+        assertSegmentValue(SESSION_ID, 1, 11);
+        assertEquals(SEGMENT_COUNT - 2, store.freeBlockCount());
+    }
+
+    @Test
+    public void shouldReuseBlocksOfDeletedSegments()
+    {
+        assertTrue(store.wrapHead(SESSION_ID, headBuffer));
+        assertTrue(store.wrapHead(OTHER_SESSION_ID, headBuffer));
+
+        for (int segment = 0; segment < SEGMENT_COUNT; segment++)
+        {
+            writeSegment(SESSION_ID, segment, segment);
+        }
+        assertFalse(store.wrapSegment(OTHER_SESSION_ID, 0, segmentBuffer));
+
+        store.deleteSegment(SESSION_ID, 0);
+        assertEquals(1, store.freeBlockCount());
+
+        assertTrue(store.wrapSegment(OTHER_SESSION_ID, 0, segmentBuffer));
+        assertEquals("Reused block should be cleared", 0, segmentBuffer.getInt(INITIAL_RECORD_OFFSET));
+        store.releaseSegment(segmentBuffer);
+
+        assertSegmentValue(SESSION_ID, 1, 1);
+    }
+
+    @Test
+    public void shouldNotAddSessionsBeyondCapacity()
+    {
+        assertTrue(store.wrapHead(SESSION_ID, headBuffer));
+        assertTrue(store.wrapHead(OTHER_SESSION_ID, headBuffer));
+
+        assertFalse(store.wrapHead(3, headBuffer));
+    }
+
+    @Test
+    public void shouldRecoverChainsWhenReopened()
+    {
+        assertTrue(store.wrapHead(SESSION_ID, headBuffer));
+        writeSegment(SESSION_ID, 0, 10);
+        writeSegment(SESSION_ID, 1, 11);
+        writeSegment(SESSION_ID, 2, 12);
+
+        // Stopped part way through rolling onto segment 2, having deleted segment 0 from the head.
+        firstSegmentOrdered(headBuffer, 1);
+        lastSegmentOrdered(headBuffer, 1);
+        store.releaseHead(headBuffer);
+
+        store.close();
+        store = newWriter();
+
+        assertEquals(SEGMENT_COUNT - 1, store.freeBlockCount());
+        assertSegmentValue(SESSION_ID, 1, 11);
+        assertTrue(store.wrapHead(SESSION_ID, headBuffer));
+        assertEquals(1, lastSegmentVolatile(headBuffer));
+    }
+
+    @Test
+    public void shouldReadWrittenHeadsAndSegments()
+    {
+        final SharedReplayIndexStore reader = new SharedReplayIndexStore(file, (existingFile) -> fileBuffer);
+        assertFalse(reader.wrapHead(SESSION_ID, headBuffer));
+
+        assertTrue(store.wrapHead(SESSION_ID, headBuffer));
+        lastSegmentOrdered(headBuffer, 1);
+        writeSegment(SESSION_ID, 1, 11);
+
+        final UnsafeBuffer readHeadBuffer = new UnsafeBuffer(0, 0);
+        assertTrue(reader.wrapHead(SESSION_ID, readHeadBuffer));
+        assertEquals(1, lastSegmentVolatile(readHeadBuffer));
+        assertTrue(reader.wrapSegment(SESSION_ID, 1, segmentBuffer));
+        assertEquals(11, segmentBuffer.getInt(INITIAL_RECORD_OFFSET));
+        assertFalse(reader.wrapSegment(SESSION_ID, 2, segmentBuffer));
+        assertFalse(reader.wrapHead(OTHER_SESSION_ID, readHeadBuffer));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectStoresLargerThanOneMapping()
+    {
+        new SharedReplayIndexStore(file, SEGMENT_SIZE, Integer.MAX_VALUE / SEGMENT_SIZE + 1, SESSION_CAPACITY,
+            (storeFile, size) -> ByteBuffer.allocate(size));
+    }
+
+    private SharedReplayIndexStore newWriter()
+    {
+        return new SharedReplayIndexStore(file, SEGMENT_SIZE, SEGMENT_COUNT, SESSION_CAPACITY, (storeFile, size) ->
+        {
+            if (fileBuffer == null)
+            {
+                fileBuffer = ByteBuffer.allocate(size);
+            }
+            return fileBuffer;
+        });
+    }
+
+    private void writeSegment(final long fixSessionId, final long segment, final int value)
+    {
+        assertTrue(store.wrapSegment(fixSessionId, segment, segmentBuffer));
+        assertEquals(SEGMENT_SIZE, segmentBuffer.capacity());
+        segmentBuffer.putInt(INITIAL_RECORD_OFFSET, value);
+        store.releaseSegment(segmentBuffer);
+    }
+
+    private void assertSegmentValue(final long fixSessionId, final long segment, final int value)
+    {
+        assertTrue(store.wrapSegment(fixSessionId, segment, segmentBuffer));
+        assertEquals(value, segmentBuffer.getInt(INITIAL_RECORD_OFFSET));
+        store.releaseSegment(segmentBuffer);
+    }
+}
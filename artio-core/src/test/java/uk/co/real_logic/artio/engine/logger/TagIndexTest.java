@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.logbuffer.Header;
+import org.agrona.BitUtil;
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static io.aeron.logbuffer.FrameDescriptor.*;
+import static io.aeron.protocol.DataHeaderFlyweight.HEADER_LENGTH;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+import static uk.co.real_logic.artio.engine.logger.TagIndexDescriptor.entryLength;
+import static uk.co.real_logic.artio.engine.logger.TagIndexDescriptor.tagIndexFile;
+
+public class TagIndexTest extends AbstractLogTest
+{
+    private static final int TEST_REQ_ID = 112;
+    private static final int AERON_SESSION_ID = 3;
+    private static final long RECORDING_ID = 5;
+    private static final int BUCKET_COUNT = 4;
+    private static final int ENTRY_CAPACITY = 3 * entryLength("ab1".length());
+
+    private final ErrorHandler errorHandler = mock(ErrorHandler.class);
+    private final RecordingIdLookup recordingIdLookup = mock(RecordingIdLookup.class);
+    private final Header fragmentHeader = mock(Header.class);
+    private final TagIndexEntryConsumer consumer = mock(TagIndexEntryConsumer.class);
+
+    private File logFileDir;
+    private TagIndex index;
+    private long position;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        logFileDir = Files.createTempDirectory("tag-index").toFile();
+
+        when(recordingIdLookup.getRecordingId(AERON_SESSION_ID)).thenReturn(RECORDING_ID);
+        when(fragmentHeader.streamId()).thenReturn(STREAM_ID);
+        when(fragmentHeader.sessionId()).thenReturn(AERON_SESSION_ID);
+
+        index = newIndex();
+    }
+
+    @After
+    public void tearDown()
+    {
+        index.close();
+        IoUtil.delete(logFileDir, true);
+    }
+
+    @Test
+    public void shouldFindMessagesByTagValue()
+    {
+        final long abcPosition = indexMessage("abc");
+        indexMessage("def");
+
+        assertEquals(1, query("abc"));
+        verify(consumer).accept(RECORDING_ID, abcPosition, frameLength());
+
+        assertEquals(1, query("def"));
+        assertEquals(0, query("ghi"));
+    }
+
+    @Test
+    public void shouldFindFragmentedMessages()
+    {
+        bufferContainsExampleMessage(true, SESSION_ID, SEQUENCE_NUMBER, SEQUENCE_INDEX, "abc");
+        final int firstLength = fragmentLength() / 2;
+        final int secondLength = fragmentLength() - firstLength;
+        final long beginPosition = position;
+
+        onFragment(START, firstLength, BEGIN_FRAG_FLAG);
+        onFragment(START + firstLength, secondLength, END_FRAG_FLAG);
+
+        assertEquals(1, query("abc"));
+        verify(consumer).accept(RECORDING_ID, beginPosition, (int)(position - beginPosition));
+    }
+
+    @Test
+    public void shouldNotFindOverwrittenEntries()
+    {
+        indexMessage("ab1");
+        indexMessage("ab2");
+        indexMessage("ab3");
+
+        assertEquals(0, query("ab1"));
+        assertEquals(1, query("ab2"));
+        assertEquals(1, query("ab3"));
+    }
+
+    @Test
+    public void shouldFindMessagesAndLastPositionAfterRestart()
+    {
+        indexMessage("abc");
+        index.close();
+
+        index = newIndex();
+        assertEquals(1, query("abc"));
+
+        final IndexedPositionConsumer positionConsumer = mock(IndexedPositionConsumer.class);
+        index.readLastPosition(positionConsumer);
+        verify(positionConsumer).accept(AERON_SESSION_ID, RECORDING_ID, position);
+    }
+
+    private TagIndex newIndex()
+    {
+        return new TagIndex(
+            logFileDir.getAbsolutePath(),
+            STREAM_ID,
+            new int[]{ TEST_REQ_ID },
+            BUCKET_COUNT,
+            ENTRY_CAPACITY,
+            errorHandler,
+            recordingIdLookup);
+    }
+
+    private int query(final String value)
+    {
+        try (TagIndexReader reader = new TagIndexReader(tagIndexFile(logFileDir.getAbsolutePath(), STREAM_ID)))
+        {
+            return reader.query(TEST_REQ_ID, value, consumer);
+        }
+    }
+
+    private long indexMessage(final String testReqId)
+    {
+        bufferContainsExampleMessage(true, SESSION_ID, SEQUENCE_NUMBER, SEQUENCE_INDEX, testReqId);
+        final long beginPosition = position;
+        onFragment(START, fragmentLength(), UNFRAGMENTED);
+        return beginPosition;
+    }
+
+    private void onFragment(final int offset, final int length, final byte flags)
+    {
+        position += BitUtil.align(length + HEADER_LENGTH, FRAME_ALIGNMENT);
+        when(fragmentHeader.position()).thenReturn(position);
+        when(fragmentHeader.flags()).thenReturn(flags);
+        index.onFragment(buffer, offset, length, fragmentHeader);
+    }
+
+    private int frameLength()
+    {
+        return BitUtil.align(fragmentLength() + HEADER_LENGTH, FRAME_ALIGNMENT);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.logbuffer.Header;
+import io.aeron.protocol.DataHeaderFlyweight;
+import org.agrona.BitUtil;
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static io.aeron.logbuffer.FrameDescriptor.FRAME_ALIGNMENT;
+import static io.aeron.protocol.DataHeaderFlyweight.HEADER_LENGTH;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+import static uk.co.real_logic.artio.engine.logger.TimestampIndexDescriptor.timestampIndexFile;
+
+public class TimestampIndexTest extends AbstractLogTest
+{
+    private static final int AERON_SESSION_ID = 3;
+    private static final long RECORDING_ID = 5;
+    private static final long OTHER_RECORDING_ID = 6;
+    private static final int TERM_LENGTH = 64 * 1024;
+
+    private final ErrorHandler errorHandler = mock(ErrorHandler.class);
+    private final RecordingIdLookup recordingIdLookup = mock(RecordingIdLookup.class);
+    private final Header fragmentHeader = mock(Header.class);
+
+    private File logFileDir;
+    private TimestampIndex index;
+    private int frameLength;
+    private long position;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        logFileDir = Files.createTempDirectory("timestamp-index").toFile();
+
+        when(recordingIdLookup.getRecordingId(AERON_SESSION_ID)).thenReturn(RECORDING_ID);
+        when(fragmentHeader.streamId()).thenReturn(STREAM_ID);
+        when(fragmentHeader.sessionId()).thenReturn(AERON_SESSION_ID);
+        when(fragmentHeader.flags()).thenReturn((byte)DataHeaderFlyweight.BEGIN_AND_END_FLAGS);
+        when(fragmentHeader.positionBitsToShift()).thenReturn(Integer.numberOfTrailingZeros(TERM_LENGTH));
+
+        bufferContainsExampleMessage(true);
+        frameLength = BitUtil.align(fragmentLength() + HEADER_LENGTH, FRAME_ALIGNMENT);
+
+        index = newIndex();
+    }
+
+    @After
+    public void tearDown()
+    {
+        index.close();
+        IoUtil.delete(logFileDir, true);
+    }
+
+    @Test
+    public void shouldSkipRangesOutsideOfTimeRange()
+    {
+        indexMessages(10, 20, 30, 40, 50, 60);
+        index.close();
+
+        final TimestampIndexReader reader = newReader();
+        assertEquals(2 * frameLength, reader.startPosition(RECORDING_ID, 0, 30));
+        assertEquals(4 * frameLength, reader.stopPosition(RECORDING_ID, 6 * frameLength, 41));
+    }
+
+    @Test
+    public void shouldNotSkipRangesWithTimestampsInTimeRange()
+    {
+        indexMessages(10, 20, 30, 40);
+        index.close();
+
+        final TimestampIndexReader reader = newReader();
+        assertEquals(0, reader.startPosition(RECORDING_ID, 0, 20));
+        assertEquals(4 * frameLength, reader.stopPosition(RECORDING_ID, 4 * frameLength, 31));
+    }
+
+    @Test
+    public void shouldNotSkipPositionsThatHaveNotBeenIndexed()
+    {
+        indexMessages(10, 20, 30, 40);
+        index.close();
+
+        final TimestampIndexReader reader = newReader();
+        assertEquals(6 * frameLength, reader.stopPosition(RECORDING_ID, 6 * frameLength, 0));
+        assertEquals(0, reader.startPosition(OTHER_RECORDING_ID, 0, 100));
+    }
+
+    @Test
+    public void shouldNotSkipAnyPositionsWithoutAnIndexFile()
+    {
+        final TimestampIndexReader reader = new TimestampIndexReader(new File(logFileDir, "missing"));
+
+        assertEquals(0, reader.startPosition(RECORDING_ID, 0, 100));
+        assertEquals(frameLength, reader.stopPosition(RECORDING_ID, frameLength, 0));
+    }
+
+    @Test
+    public void shouldReadLastIndexedPositionAfterRestart()
+    {
+        indexMessages(10, 20, 30);
+        index.close();
+
+        index = newIndex();
+        final IndexedPositionConsumer consumer = mock(IndexedPositionConsumer.class);
+        index.readLastPosition(consumer);
+
+        verify(consumer).accept(AERON_SESSION_ID, RECORDING_ID, 3 * frameLength);
+        verifyNoMoreInteractions(consumer);
+    }
+
+    @Test
+    public void shouldSkipRangesAcrossPaddingAtEndOfTerm()
+    {
+        indexMessages(10, 20, 30);
+        padToEndOfTerm();
+        indexMessages(40, 50, 60);
+        index.close();
+
+        assertSkipsRangesAcrossPaddingAtEndOfTerm();
+    }
+
+    @Test
+    public void shouldSkipRangesAcrossPaddingAtEndOfTermAfterRestart()
+    {
+        indexMessages(10, 20, 30);
+        index.close();
+
+        index = newIndex();
+        padToEndOfTerm();
+        indexMessages(40, 50, 60);
+        index.close();
+
+        assertSkipsRangesAcrossPaddingAtEndOfTerm();
+    }
+
+    private void assertSkipsRangesAcrossPaddingAtEndOfTerm()
+    {
+        final TimestampIndexReader reader = newReader();
+        assertEquals(TERM_LENGTH, reader.startPosition(RECORDING_ID, 0, 50));
+        assertEquals(2 * frameLength, reader.stopPosition(RECORDING_ID, TERM_LENGTH + 3 * frameLength, 21));
+    }
+
+    // Each range of the index covers two messages
+    private TimestampIndex newIndex()
+    {
+        return new TimestampIndex(
+            logFileDir.getAbsolutePath(), STREAM_ID, 2 * frameLength, errorHandler, recordingIdLookup);
+    }
+
+    private TimestampIndexReader newReader()
+    {
+        return new TimestampIndexReader(timestampIndexFile(logFileDir.getAbsolutePath(), STREAM_ID));
+    }
+
+    private void indexMessages(final long... timestamps)
+    {
+        for (final long timestamp : timestamps)
+        {
+            bufferContainsExampleMessage(true);
+            messageFrame.timestamp(timestamp);
+
+            when(fragmentHeader.termOffset()).thenReturn((int)(position & (TERM_LENGTH - 1)));
+            position += frameLength;
+            when(fragmentHeader.position()).thenReturn(position);
+            index.onFragment(buffer, START, fragmentLength(), fragmentHeader);
+        }
+    }
+
+    // The padding frame isn't delivered to the index
+    private void padToEndOfTerm()
+    {
+        position += TERM_LENGTH - (position & (TERM_LENGTH - 1));
+    }
+}
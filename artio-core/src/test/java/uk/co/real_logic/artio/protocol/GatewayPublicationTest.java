@@ -0,0 +1,295 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.protocol;
+
+import io.aeron.ExclusivePublication;
+import io.aeron.logbuffer.BufferClaim;
+import org.agrona.concurrent.NoOpIdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.builder.Encoder;
+import uk.co.real_logic.artio.builder.SessionHeaderEncoder;
+import uk.co.real_logic.artio.builder.TestRequestEncoder;
+import uk.co.real_logic.artio.fields.UtcTimestampEncoder;
+import uk.co.real_logic.artio.messages.FixMessageDecoder;
+import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static io.aeron.logbuffer.FrameDescriptor.FRAME_ALIGNMENT;
+import static io.aeron.protocol.DataHeaderFlyweight.HEADER_LENGTH;
+import static io.aeron.protocol.DataHeaderFlyweight.TERM_OFFSET_FIELD_OFFSET;
+import static io.aeron.protocol.HeaderFlyweight.FRAME_LENGTH_FIELD_OFFSET;
+import static io.aeron.protocol.HeaderFlyweight.HDR_TYPE_DATA;
+import static io.aeron.protocol.HeaderFlyweight.HDR_TYPE_PAD;
+import static io.aeron.protocol.HeaderFlyweight.TYPE_FIELD_OFFSET;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static org.agrona.BitUtil.align;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static uk.co.real_logic.artio.messages.MessageStatus.OK;
+
+public class GatewayPublicationTest
+{
+    private static final int LIBRARY_ID = 3;
+    private static final long SESSION_ID = 4;
+    private static final long CONNECTION_ID = 5;
+    private static final int SEQUENCE_INDEX = 0;
+    private static final String SHORT_ID = "A";
+    private static final String LONG_ID = "ABCDEFGHIJKLMNOPQRSTUVWXYZABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final byte UNWRITTEN = (byte)0xFE;
+
+    private final UnsafeBuffer termBuffer = new UnsafeBuffer(new byte[64 * 1024]);
+    private final ExclusivePublication dataPublication = mock(ExclusivePublication.class);
+    private final MutableAsciiBuffer fallbackBuffer = new MutableAsciiBuffer(new byte[8 * 1024]);
+    private final MutableAsciiBuffer expectedBuffer = new MutableAsciiBuffer(new byte[8 * 1024]);
+    private final TestRequestEncoder testRequest = new TestRequestEncoder();
+    private final UtcTimestampEncoder timestampEncoder = new UtcTimestampEncoder();
+    private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
+    private final FixMessageDecoder fixMessage = new FixMessageDecoder();
+
+    private GatewayPublication publication;
+    private int termOffset = 0;
+
+    @Before
+    public void setUp()
+    {
+        when(dataPublication.maxPayloadLength()).thenReturn(4096 - HEADER_LENGTH);
+        when(dataPublication.tryClaim(anyInt(), any(BufferClaim.class))).then(inv ->
+        {
+            final int length = (int)inv.getArguments()[0];
+            final BufferClaim claim = (BufferClaim)inv.getArguments()[1];
+            final int frameLength = length + HEADER_LENGTH;
+
+            termBuffer.putInt(termOffset + FRAME_LENGTH_FIELD_OFFSET, -frameLength, LITTLE_ENDIAN);
+            termBuffer.putShort(termOffset + TYPE_FIELD_OFFSET, (short)HDR_TYPE_DATA, LITTLE_ENDIAN);
+            termBuffer.putInt(termOffset + TERM_OFFSET_FIELD_OFFSET, termOffset, LITTLE_ENDIAN);
+            claim.wrap(termBuffer, termOffset, frameLength);
+
+            termOffset += align(frameLength, FRAME_ALIGNMENT);
+            return (long)termOffset;
+        });
+
+        publication = new GatewayPublication(
+            dataPublication, mock(AtomicCounter.class), new NoOpIdleStrategy(), () -> 0L, 1);
+
+        testRequest.header()
+            .senderCompID("sender")
+            .targetCompID("target")
+            .sendingTime(timestampEncoder.buffer(), timestampEncoder.encode(0));
+    }
+
+    @Test
+    public void shouldEncodeRepeatedMessageTypeIntoClaim()
+    {
+        final String first = send(LONG_ID, 1);
+        final String second = send(LONG_ID, 2);
+
+        assertEquals(2, countFrames(HDR_TYPE_DATA));
+        assertMessages(first, second);
+    }
+
+    @Test
+    public void shouldPadEndOfClaimWhenMessageIsShorterThanPreviousMessages()
+    {
+        final String first = send(LONG_ID, 1);
+        final long positionAfterFirst = termOffset;
+        final String second = send(SHORT_ID, 2);
+
+        final int secondFrameLength = frameLength((int)positionAfterFirst);
+        final int paddingOffset = (int)positionAfterFirst + align(secondFrameLength, FRAME_ALIGNMENT);
+        assertEquals(HDR_TYPE_PAD, frameType(paddingOffset));
+        assertEquals(paddingOffset, termBuffer.getInt(paddingOffset + TERM_OFFSET_FIELD_OFFSET, LITTLE_ENDIAN));
+        assertEquals(termOffset, paddingOffset + frameLength(paddingOffset));
+
+        assertMessages(first, second);
+    }
+
+    @Test
+    public void shouldReturnEndOfMessageAsPositionWhenPaddingEndOfClaim()
+    {
+        send(LONG_ID, 1);
+        final int secondFrameOffset = termOffset;
+
+        final long position = sendForPosition(SHORT_ID, 2);
+
+        assertEquals(secondFrameOffset + align(frameLength(secondFrameOffset), FRAME_ALIGNMENT), position);
+    }
+
+    @Test
+    public void shouldEncodeIntoClaimWhenMessageIsLongerThanPreviousMessages()
+    {
+        final String first = send(SHORT_ID, 1);
+        final String second = send(LONG_ID, 2);
+        final String third = send(LONG_ID, 3);
+
+        assertEquals(3, countFrames(HDR_TYPE_DATA));
+        assertMessages(first, second, third);
+    }
+
+    @Test
+    public void shouldNotWriteBeyondClaimWhenMessageIsLongerThanPreviousMessages()
+    {
+        final String first = send(SHORT_ID, 1);
+        termBuffer.setMemory(termOffset, termBuffer.capacity() - termOffset, UNWRITTEN);
+
+        final String second = send(LONG_ID, 2);
+
+        for (int i = termOffset; i < termBuffer.capacity(); i++)
+        {
+            assertEquals(UNWRITTEN, termBuffer.getByte(i));
+        }
+        assertMessages(first, second);
+    }
+
+    @Test
+    public void shouldCopyMessageWhenEncoderHasNoMaximumLength()
+    {
+        final Encoder unboundedEncoder = new Encoder()
+        {
+            public long encode(final MutableAsciiBuffer buffer, final int offset)
+            {
+                return testRequest.encode(buffer, offset);
+            }
+
+            public void reset()
+            {
+                testRequest.reset();
+            }
+
+            public long messageType()
+            {
+                return testRequest.messageType();
+            }
+
+            public SessionHeaderEncoder header()
+            {
+                return testRequest.header();
+            }
+
+            public void resetMessage()
+            {
+                testRequest.resetMessage();
+            }
+        };
+
+        final String first = send(unboundedEncoder, LONG_ID, 1);
+        final String second = send(unboundedEncoder, SHORT_ID, 2);
+
+        assertEquals(0, countFrames(HDR_TYPE_PAD));
+        assertMessages(first, second);
+    }
+
+    @Test
+    public void shouldEncodeIntoClaimWhenBodyLengthGainsADigit()
+    {
+        final String first = send(LONG_ID, 1);
+        final String second = send(SHORT_ID, 2);
+        final String third = send(LONG_ID, 3);
+
+        assertMessages(first, second, third);
+    }
+
+    private String send(final String testReqId, final int sequenceNumber)
+    {
+        return send(testRequest, testReqId, sequenceNumber);
+    }
+
+    private String send(final Encoder encoder, final String testReqId, final int sequenceNumber)
+    {
+        sendForPosition(encoder, testReqId, sequenceNumber);
+
+        final long result = testRequest.encode(expectedBuffer, 0);
+        return expectedBuffer.getAscii(Encoder.offset(result), Encoder.length(result));
+    }
+
+    private long sendForPosition(final String testReqId, final int sequenceNumber)
+    {
+        return sendForPosition(testRequest, testReqId, sequenceNumber);
+    }
+
+    private long sendForPosition(final Encoder encoder, final String testReqId, final int sequenceNumber)
+    {
+        testRequest.testReqID(testReqId);
+        testRequest.header().msgSeqNum(sequenceNumber);
+
+        return publication.saveMessage(
+            encoder,
+            fallbackBuffer,
+            LIBRARY_ID,
+            SESSION_ID,
+            SEQUENCE_INDEX,
+            CONNECTION_ID,
+            OK,
+            sequenceNumber);
+    }
+
+    private int countFrames(final int type)
+    {
+        int frames = 0;
+        for (int offset = 0; offset < termOffset; offset += align(frameLength(offset), FRAME_ALIGNMENT))
+        {
+            if (frameType(offset) == type)
+            {
+                frames++;
+            }
+        }
+        return frames;
+    }
+
+    private void assertMessages(final String... expectedMessages)
+    {
+        final List<String> messages = new ArrayList<>();
+        for (int offset = 0; offset < termOffset; offset += align(frameLength(offset), FRAME_ALIGNMENT))
+        {
+            if (frameType(offset) == HDR_TYPE_DATA)
+            {
+                final int headerOffset = offset + HEADER_LENGTH;
+                messageHeader.wrap(termBuffer, headerOffset);
+                fixMessage.wrap(
+                    termBuffer,
+                    headerOffset + messageHeader.encodedLength(),
+                    messageHeader.blockLength(),
+                    messageHeader.version());
+
+                assertEquals(LIBRARY_ID, fixMessage.libraryId());
+                assertEquals(CONNECTION_ID, fixMessage.connection());
+                messages.add(fixMessage.body());
+                assertEquals(frameLength(offset), fixMessage.limit() - offset);
+            }
+        }
+
+        assertEquals(Arrays.asList(expectedMessages), messages);
+    }
+
+    private int frameLength(final int offset)
+    {
+        return termBuffer.getInt(offset + FRAME_LENGTH_FIELD_OFFSET, LITTLE_ENDIAN);
+    }
+
+    private int frameType(final int offset)
+    {
+        return termBuffer.getShort(offset + TYPE_FIELD_OFFSET, LITTLE_ENDIAN) & 0xFFFF;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.session;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static uk.co.real_logic.artio.session.SessionPollTimers.NO_POLL_DEADLINE;
+import static uk.co.real_logic.artio.session.SessionPollTimers.POLL_IMMEDIATELY;
+
+public class SessionPollTimersTest
+{
+    private static final long START_TIME = 1_000_000;
+
+    private final SessionPollTimers timers = new SessionPollTimers(START_TIME);
+
+    @Test
+    public void shouldOnlyPollOnceDeadlineIsDue()
+    {
+        final FakePollable pollable = add(START_TIME + 100);
+
+        timers.poll(START_TIME + 99);
+        assertEquals(0, pollable.polls);
+
+        timers.poll(START_TIME + 100);
+        assertEquals(1, pollable.polls);
+    }
+
+    @Test
+    public void shouldPollDeadlinesThatPassWhilstNotPolling()
+    {
+        final FakePollable first = add(START_TIME + 10);
+        final FakePollable second = add(START_TIME + 5_000);
+        final FakePollable third = add(START_TIME + 20_000);
+
+        timers.poll(START_TIME + 10_000);
+
+        assertEquals(1, first.polls);
+        assertEquals(1, second.polls);
+        assertEquals(0, third.polls);
+    }
+
+    @Test
+    public void shouldRescheduleAtLaterDeadlineAfterPolling()
+    {
+        final FakePollable pollable = add(START_TIME + 100);
+
+        pollable.nextPollTimeInMs = START_TIME + 200;
+        timers.poll(START_TIME + 100);
+        timers.poll(START_TIME + 150);
+        assertEquals(1, pollable.polls);
+
+        timers.poll(START_TIME + 200);
+        assertEquals(2, pollable.polls);
+    }
+
+    @Test
+    public void shouldKeepPollingWhilstDeadlineIsInThePast()
+    {
+        final FakePollable pollable = add(START_TIME + 100);
+
+        timers.poll(START_TIME + 100);
+        timers.poll(START_TIME + 101);
+
+        assertEquals(2, pollable.polls);
+    }
+
+    @Test
+    public void shouldPollEarlierWhenRescheduled()
+    {
+        final FakePollable pollable = add(START_TIME + 10_000);
+
+        pollable.nextPollTimeInMs = POLL_IMMEDIATELY;
+        pollable.timer.reschedule();
+        timers.poll(START_TIME + 1);
+
+        assertEquals(1, pollable.polls);
+    }
+
+    @Test
+    public void shouldNotPollWithoutADeadline()
+    {
+        final FakePollable pollable = add(NO_POLL_DEADLINE);
+
+        timers.poll(START_TIME + 100_000);
+
+        assertEquals(0, pollable.polls);
+        assertEquals(0, timers.scheduledTimerCount());
+    }
+
+    @Test
+    public void shouldNotPollRemovedPollables()
+    {
+        final FakePollable pollable = add(START_TIME + 100);
+
+        timers.remove(pollable.timer);
+        pollable.timer.reschedule();
+        timers.poll(START_TIME + 100);
+
+        assertEquals(0, pollable.polls);
+        assertEquals(0, timers.scheduledTimerCount());
+    }
+
+    @Test
+    public void shouldNotPollPollableRemovedByAnEarlierPoll()
+    {
+        final FakePollable second = new FakePollable(START_TIME + 100);
+        final FakePollable first = new FakePollable(START_TIME + 100)
+        {
+            public int poll(final long timeInMs)
+            {
+                timers.remove(second.timer);
+                return super.poll(timeInMs);
+            }
+        };
+        timers.add(first.timer);
+        timers.add(second.timer);
+
+        timers.poll(START_TIME + 100);
+
+        assertEquals(1, first.polls);
+        assertEquals(0, second.polls);
+    }
+
+    private FakePollable add(final long nextPollTimeInMs)
+    {
+        final FakePollable pollable = new FakePollable(nextPollTimeInMs);
+        timers.add(pollable.timer);
+        return pollable;
+    }
+
+    static class FakePollable implements SessionPollTimers.Pollable
+    {
+        final SessionPollTimers.Timer timer = new SessionPollTimers.Timer(this);
+        long nextPollTimeInMs;
+        int polls;
+
+        FakePollable(final long nextPollTimeInMs)
+        {
+            this.nextPollTimeInMs = nextPollTimeInMs;
+        }
+
+        public int poll(final long timeInMs)
+        {
+            polls++;
+            return 1;
+        }
+
+        public long nextPollTimeInMs()
+        {
+            return nextPollTimeInMs;
+        }
+    }
+}
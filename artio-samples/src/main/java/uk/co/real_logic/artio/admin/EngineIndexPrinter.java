@@ -4,8 +4,6 @@ import uk.co.real_logic.artio.engine.EngineConfiguration;
 import uk.co.real_logic.artio.engine.MappedFile;
 import uk.co.real_logic.artio.engine.logger.SequenceNumberIndexReader;
 
-import static uk.co.real_logic.artio.engine.SessionInfo.UNK_SESSION;
-
 /**
  * This example shows how to print out the state of index files stored by the engine. Currently
  * only supports sequence numbers.
@@ -29,17 +27,8 @@ public final class EngineIndexPrinter
             final SequenceNumberIndexReader reader = new SequenceNumberIndexReader(
                 receivedSequenceNumberIndex.buffer(), Throwable::printStackTrace);
 
-            for (long sessionId = 0; sessionId < Long.MAX_VALUE; sessionId++)
-            {
-                final int sequenceNumber = reader.lastKnownSequenceNumber(sessionId);
-
-                if (sequenceNumber == UNK_SESSION)
-                {
-                    break;
-                }
-
-                System.out.printf("Last seen sequence number for %d is %d%n", sessionId, sequenceNumber);
-            }
+            reader.readLastKnownSequenceNumbers((sessionId, sequenceNumber) ->
+                System.out.printf("Last seen sequence number for %d is %d%n", sessionId, sequenceNumber));
         }
     }
 }
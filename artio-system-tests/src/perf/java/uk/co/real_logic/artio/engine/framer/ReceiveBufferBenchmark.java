@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015-2019 Real Logic Ltd, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import io.aeron.Publication;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.openjdk.jmh.annotations.*;
+import uk.co.real_logic.artio.Clock;
+import uk.co.real_logic.artio.TestData;
+import uk.co.real_logic.artio.dictionary.FixDictionary;
+import uk.co.real_logic.artio.messages.ConnectionType;
+import uk.co.real_logic.artio.messages.MessageStatus;
+import uk.co.real_logic.artio.protocol.GatewayPublication;
+import uk.co.real_logic.artio.session.Session;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures polling a {@link ReceiverEndPoint} that reads a stream of new order single messages, so it covers the end
+ * point's framing and its handling of the data left in its buffer after each read.
+ *
+ * Reads are simulated by copying a chunk of the stream into the end point's buffer, the chunk size isn't a multiple
+ * of the message length so most reads end with a partial message. Only the collaborators that the end point doesn't
+ * use whilst polling an authenticated session are mocks, the channel and publication are stubs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ReceiveBufferBenchmark
+{
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MESSAGES_IN_STREAM = 1024;
+    private static final long CONNECTION_ID = 1;
+    private static final long SESSION_ID = 2;
+    private static final int SEQUENCE_INDEX = 0;
+    private static final int LIBRARY_ID = 3;
+
+    @Param({"100", "1000", "4000"})
+    int readSize;
+
+    private ReceiverEndPoint endPoint;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        final UnsafeBuffer message = TestData.NEW_ORDER_SINGLE;
+        final int messageLength = message.capacity();
+        final byte[] stream = new byte[messageLength * MESSAGES_IN_STREAM];
+        for (int i = 0; i < MESSAGES_IN_STREAM; i++)
+        {
+            message.getBytes(0, stream, i * messageLength, messageLength);
+        }
+
+        final SocketChannel socketChannel = mock(SocketChannel.class);
+        when(socketChannel.getRemoteAddress()).thenReturn(new InetSocketAddress("localhost", 0));
+
+        final SessionContexts sessionContexts = mock(SessionContexts.class);
+        final FixDictionary fixDictionary = FixDictionary.of(FixDictionary.findDefault());
+
+        endPoint = new ReceiverEndPoint(
+            new StreamTcpChannel(socketChannel, stream, readSize),
+            BUFFER_SIZE,
+            new StubPublication(mock(Publication.class)),
+            null,
+            null,
+            CONNECTION_ID,
+            SESSION_ID,
+            SEQUENCE_INDEX,
+            sessionContexts,
+            new AtomicCounter(new UnsafeBuffer(ByteBuffer.allocateDirect(64)), 0),
+            null,
+            Throwable::printStackTrace,
+            LIBRARY_ID,
+            mock(GatewaySessions.class),
+            Clock.systemNanoTime(),
+            fixDictionary);
+
+        endPoint.gatewaySession(new GatewaySession(
+            CONNECTION_ID,
+            new SessionContext(SESSION_ID, SEQUENCE_INDEX, Session.NO_LOGON_TIME, sessionContexts, 0),
+            "localhost",
+            ConnectionType.ACCEPTOR,
+            null,
+            endPoint,
+            null,
+            null,
+            false,
+            0,
+            false,
+            false,
+            fixDictionary,
+            0));
+    }
+
+    @Benchmark
+    public int poll()
+    {
+        return endPoint.poll();
+    }
+
+    private static final class StreamTcpChannel extends TcpChannel
+    {
+        private final byte[] stream;
+        private final int readSize;
+
+        private int streamOffset;
+
+        StreamTcpChannel(final SocketChannel socketChannel, final byte[] stream, final int readSize)
+            throws IOException
+        {
+            super(socketChannel);
+            this.stream = stream;
+            this.readSize = readSize;
+        }
+
+        public int read(final ByteBuffer dst)
+        {
+            final int length = Math.min(Math.min(readSize, dst.remaining()), stream.length - streamOffset);
+
+            dst.put(stream, streamOffset, length);
+            streamOffset += length;
+            if (streamOffset == stream.length)
+            {
+                streamOffset = 0;
+            }
+
+            return length;
+        }
+    }
+
+    // Stands in for the inbound publication, its position counts the bytes framed so the framing isn't optimised away.
+    private static final class StubPublication extends GatewayPublication
+    {
+        private long position;
+
+        StubPublication(final Publication dataPublication)
+        {
+            super(dataPublication, null, null, null, 0);
+        }
+
+        public long saveMessage(
+            final DirectBuffer srcBuffer,
+            final int srcOffset,
+            final int srcLength,
+            final int libraryId,
+            final long messageType,
+            final long sessionId,
+            final int sequenceIndex,
+            final long connectionId,
+            final MessageStatus status,
+            final int sequenceNumber,
+            final long timestamp)
+        {
+            position += srcLength;
+            return position;
+        }
+    }
+}
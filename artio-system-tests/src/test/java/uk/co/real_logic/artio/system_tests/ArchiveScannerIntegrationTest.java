@@ -19,13 +19,20 @@ import org.agrona.CloseHelper;
 import org.hamcrest.Matchers;
 import org.junit.Before;
 import org.junit.Test;
+import uk.co.real_logic.artio.CommonConfiguration;
 import uk.co.real_logic.artio.engine.EngineConfiguration;
+import uk.co.real_logic.artio.engine.logger.FixArchiveScanner;
 import uk.co.real_logic.artio.library.LibraryConfiguration;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItems;
+import static org.junit.Assert.assertTrue;
+import static uk.co.real_logic.artio.engine.EngineConfiguration.DEFAULT_ARCHIVE_SCANNER_STREAM;
+import static uk.co.real_logic.artio.engine.logger.FixMessagePredicates.messageTypeOf;
 import static uk.co.real_logic.artio.TestFixtures.largeTestReqId;
 import static uk.co.real_logic.artio.TestFixtures.launchMediaDriver;
 import static uk.co.real_logic.artio.system_tests.SystemTestUtil.*;
@@ -91,6 +98,54 @@ public class ArchiveScannerIntegrationTest extends AbstractGatewayToGatewaySyste
         assertArchiveContainsMessages("hi");
     }
 
+    @Test
+    public void canScanInboundAndOutboundStreamsInTimestampOrder()
+    {
+        setupAndExchangeMessages();
+
+        final List<Long> timestamps = new ArrayList<>();
+        final List<String> messages = scanInboundAndOutboundStreams(true, timestamps);
+
+        assertContainsInboundAndOutboundLogons(messages);
+        for (int i = 1; i < timestamps.size(); i++)
+        {
+            assertTrue(timestamps.toString(), timestamps.get(i - 1) <= timestamps.get(i));
+        }
+    }
+
+    @Test
+    public void canScanInboundAndOutboundStreamsConcurrently()
+    {
+        setupAndExchangeMessages();
+
+        final List<String> messages = scanInboundAndOutboundStreams(false, new ArrayList<>());
+
+        assertContainsInboundAndOutboundLogons(messages);
+    }
+
+    @Test
+    public void canScanArchiveWithFixedFieldPredicate()
+    {
+        setupAndExchangeMessages();
+
+        final EngineConfiguration configuration = acceptingEngine.configuration();
+        final List<String> messages = new ArrayList<>();
+
+        try (FixArchiveScanner scanner = new FixArchiveScanner(scannerContext(configuration)))
+        {
+            scanner.scan(
+                configuration.libraryAeronChannel(),
+                configuration.outboundLibraryStream(),
+                messageTypeOf("A"),
+                (message, buffer, offset, length, header) -> messages.add(message.body()),
+                false,
+                DEFAULT_ARCHIVE_SCANNER_STREAM);
+        }
+
+        assertThat(messages.toString(), messages, contains(
+            Matchers.containsString("35=A\00149=acceptor\00156=initiator\00134=1")));
+    }
+
     private void setupAndExchangeMessages()
     {
         messagesCanBeExchanged();
@@ -110,4 +165,42 @@ public class ArchiveScannerIntegrationTest extends AbstractGatewayToGatewaySyste
             Matchers.containsString("\001112=" + testReqIdPrefix)));
     }
 
+    private List<String> scanInboundAndOutboundStreams(final boolean timestampOrdered, final List<Long> timestamps)
+    {
+        final EngineConfiguration configuration = acceptingEngine.configuration();
+        final List<String> messages = new ArrayList<>();
+
+        try (FixArchiveScanner scanner = new FixArchiveScanner(scannerContext(configuration)))
+        {
+            scanner.scan(
+                configuration.libraryAeronChannel(),
+                new int[]{ configuration.inboundLibraryStream(), configuration.outboundLibraryStream() },
+                (message, buffer, offset, length, header) ->
+                {
+                    messages.add(message.body());
+                    timestamps.add(message.timestamp());
+                },
+                false,
+                timestampOrdered,
+                DEFAULT_ARCHIVE_SCANNER_STREAM);
+        }
+
+        return messages;
+    }
+
+    private FixArchiveScanner.Context scannerContext(final EngineConfiguration configuration)
+    {
+        return new FixArchiveScanner.Context()
+            .aeronDirectoryName(configuration.aeronContext().aeronDirectoryName())
+            .idleStrategy(CommonConfiguration.backoffIdleStrategy());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void assertContainsInboundAndOutboundLogons(final List<String> messages)
+    {
+        assertThat(messages.toString(), messages, hasItems(
+            Matchers.containsString("35=A\00149=initiator\00156=acceptor\00134=1"),
+            Matchers.containsString("35=A\00149=acceptor\00156=initiator\00134=1")));
+    }
+
 }
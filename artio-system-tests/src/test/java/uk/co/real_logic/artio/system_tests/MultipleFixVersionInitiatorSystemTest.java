@@ -54,6 +54,7 @@ public class MultipleFixVersionInitiatorSystemTest extends AbstractGatewayToGate
     private static final int FIXT_OUTBOUND_LIBRARY_STREAM = 12;
     private static final int FIXT_OUTBOUND_REPLAY_STREAM = 13;
     private static final int FIXT_ARCHIVE_REPLAY_STREAM = 14;
+    private static final int FIXT_INBOUND_LIBRARY_DELIVERY_STREAM = 15;
 
     private int fixtPort = unusedPort();
 
@@ -107,6 +108,7 @@ public class MultipleFixVersionInitiatorSystemTest extends AbstractGatewayToGate
             .libraryName("fixtAccepting")
             .inboundLibraryStream(FIXT_INBOUND_LIBRARY_STREAM)
             .outboundLibraryStream(FIXT_OUTBOUND_LIBRARY_STREAM)
+            .inboundLibraryDeliveryStream(FIXT_INBOUND_LIBRARY_DELIVERY_STREAM)
             .sessionCustomisationStrategy(new FixTSessionCustomisationStrategy(FIX50));
 
         fixtAcceptingLibrary = connect(configuration);
@@ -127,6 +129,7 @@ public class MultipleFixVersionInitiatorSystemTest extends AbstractGatewayToGate
             .monitoringFile(acceptorMonitoringFile("fixtEngineCounters"))
             .inboundLibraryStream(FIXT_INBOUND_LIBRARY_STREAM)
             .outboundLibraryStream(FIXT_OUTBOUND_LIBRARY_STREAM)
+            .inboundLibraryDeliveryStream(FIXT_INBOUND_LIBRARY_DELIVERY_STREAM)
             .outboundReplayStream(FIXT_OUTBOUND_REPLAY_STREAM)
             .archiveReplayStream(FIXT_ARCHIVE_REPLAY_STREAM)
             .logFileDir(FIXT_ACCEPTOR_LOGS)
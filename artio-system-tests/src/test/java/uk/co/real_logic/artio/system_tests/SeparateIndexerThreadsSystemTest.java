@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015-2017 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.system_tests;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.engine.FixEngine;
+
+import static uk.co.real_logic.artio.TestFixtures.launchMediaDriver;
+import static uk.co.real_logic.artio.system_tests.SystemTestUtil.*;
+
+public class SeparateIndexerThreadsSystemTest extends AbstractGatewayToGatewaySystemTest
+{
+    @Before
+    public void launch()
+    {
+        mediaDriver = launchMediaDriver();
+
+        acceptingEngine = FixEngine.launch(acceptingConfig(port, ACCEPTOR_ID, INITIATOR_ID)
+            .separateIndexerThreads(true)
+            .deleteLogFileDirOnStart(true));
+
+        initiatingEngine = FixEngine.launch(initiatingConfig(libraryAeronPort)
+            .separateIndexerThreads(true)
+            .deleteLogFileDirOnStart(true));
+
+        acceptingLibrary = connect(acceptingLibraryConfig(acceptingHandler));
+        initiatingLibrary = newInitiatingLibrary(libraryAeronPort, initiatingHandler);
+        testSystem = new TestSystem(acceptingLibrary, initiatingLibrary);
+
+        connectSessions();
+    }
+
+    @Test
+    public void messagesCanBeSentFromInitiatorToAcceptingLibrary()
+    {
+        acquireAcceptingSession();
+
+        messagesCanBeExchanged();
+
+        assertSequenceIndicesAre(0);
+    }
+
+    @Test
+    public void enginesShouldManageAcceptingSession()
+    {
+        acquireAcceptingSession();
+
+        engineShouldManageSession(
+            acceptingSession, acceptingLibrary, acceptingOtfAcceptor,
+            initiatingSession, initiatingOtfAcceptor);
+    }
+
+    @Test
+    public void sessionsCanReconnect()
+    {
+        super.sessionsCanReconnect();
+    }
+}